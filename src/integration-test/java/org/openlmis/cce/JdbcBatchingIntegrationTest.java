@@ -0,0 +1,204 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.Lists;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.persistence.EntityManager;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openlmis.cce.domain.CatalogItem;
+import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.dto.AlertDto;
+import org.openlmis.cce.service.PermissionService;
+import org.openlmis.cce.service.event.DomainEventPublisher;
+import org.openlmis.cce.web.AlertBulkWriter;
+import org.openlmis.cce.web.csv.recordhandler.CatalogItemWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Counts statements that Hibernate prepares while the main write paths save many rows. Batched
+ * statements are prepared once per JDBC batch, so the counts show whether rows are sent in
+ * batches or one by one.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector"
+    + "=org.openlmis.cce.JdbcBatchingIntegrationTest$StatementRecorder")
+@ActiveProfiles({"test", "test-run"})
+@Transactional
+public class JdbcBatchingIntegrationTest {
+
+  private static final int CATALOG_ITEMS = 1_000;
+  private static final int ALERTS = 500;
+
+  private static final String INSERT_CATALOG_ITEM = "insert into cce.cce_catalog_items ";
+  private static final String UPDATE_CATALOG_ITEM = "update cce.cce_catalog_items ";
+  private static final String SELECT = "select ";
+  private static final String INSERT_ALERT = "insert into cce.cce_alerts ";
+  private static final String INSERT_STATUS_MESSAGE = "insert into cce.cce_alert_status_messages ";
+
+  @MockBean
+  private PermissionService permissionService;
+
+  @MockBean
+  private DomainEventPublisher domainEventPublisher;
+
+  @Autowired
+  private CatalogItemWriter catalogItemWriter;
+
+  @Autowired
+  private AlertBulkWriter alertBulkWriter;
+
+  @Autowired
+  private EntityManager entityManager;
+
+  @Value("${csvParser.chunkSize}")
+  private int chunkSize;
+
+  @Value("${spring.jpa.properties.hibernate.jdbc.batch_size}")
+  private int jdbcBatchSize;
+
+  @After
+  public void tearDown() {
+    StatementRecorder.stop();
+  }
+
+  @Test
+  public void shouldImportCatalogItemsInJdbcBatches() {
+    // every other item of the file already exists and is updated
+    for (int i = 0; i < CATALOG_ITEMS; i += 2) {
+      entityManager.persist(newCatalogItem(i, "type"));
+    }
+    entityManager.flush();
+    entityManager.clear();
+
+    List<CatalogItem> items = new ArrayList<>(CATALOG_ITEMS);
+    for (int i = 0; i < CATALOG_ITEMS; ++i) {
+      items.add(newCatalogItem(i, "updated-type"));
+    }
+
+    StatementRecorder.start();
+    List<List<CatalogItem>> chunks = Lists.partition(items, chunkSize);
+    chunks.forEach(catalogItemWriter::write);
+    List<String> statements = StatementRecorder.stop();
+
+    int batchesPerChunk = batches(chunkSize / 2, jdbcBatchSize);
+
+    // one lookup of existing items per chunk and no selects of single items before merging
+    assertThat(count(statements, SELECT)).isEqualTo(chunks.size());
+    assertThat(count(statements, INSERT_CATALOG_ITEM))
+        .isEqualTo(chunks.size() * batchesPerChunk);
+    assertThat(count(statements, UPDATE_CATALOG_ITEM))
+        .isEqualTo(chunks.size() * batchesPerChunk);
+    assertThat(statements).hasSize(chunks.size() * (1 + 2 * batchesPerChunk));
+  }
+
+  @Test
+  public void shouldSaveAlertBatchInJdbcBatches() {
+    CatalogItem catalogItem = new CatalogItemDataBuilder().buildAsNew();
+    entityManager.persist(catalogItem);
+    InventoryItem device = new InventoryItemDataBuilder()
+        .withId(null)
+        .withCatalogItem(catalogItem)
+        .build();
+    entityManager.persist(device);
+    entityManager.flush();
+    entityManager.clear();
+
+    List<AlertDto> alerts = new ArrayList<>(ALERTS);
+    for (int i = 0; i < ALERTS; ++i) {
+      AlertDto alert = new AlertDto();
+      alert.setAlertId("alert-" + i);
+      alert.setAlertType("warning_hot");
+      alert.setDeviceId(device.getId());
+      alert.setStartTs(ZonedDateTime.now());
+      alert.setStatus(Collections.singletonMap("en-US", "Equipment too hot"));
+      alerts.add(alert);
+    }
+
+    StatementRecorder.start();
+    alertBulkWriter.write(alerts);
+    List<String> statements = StatementRecorder.stop();
+
+    int batches = batches(ALERTS, jdbcBatchSize);
+
+    // status messages are inserted in batches too, after all alerts
+    assertThat(count(statements, INSERT_ALERT)).isEqualTo(batches);
+    assertThat(count(statements, INSERT_STATUS_MESSAGE)).isEqualTo(batches);
+    assertThat(statements.subList(statements.size() - 2 * batches, statements.size()))
+        .allMatch(sql -> sql.startsWith(INSERT_ALERT) || sql.startsWith(INSERT_STATUS_MESSAGE));
+  }
+
+  private CatalogItem newCatalogItem(int number, String type) {
+    return new CatalogItemDataBuilder()
+        .withEquipmentCode("batching-" + number)
+        .withManufacturer("manufacturer-" + number)
+        .withModel("model-" + number)
+        .withType(type)
+        .buildAsNew();
+  }
+
+  private static int batches(int rows, int batchSize) {
+    return (rows + batchSize - 1) / batchSize;
+  }
+
+  private static long count(List<String> statements, String prefix) {
+    return statements.stream().filter(sql -> sql.startsWith(prefix)).count();
+  }
+
+  /**
+   * Records statements prepared by the test thread, so that work done by background threads in
+   * the meantime is not counted.
+   */
+  public static class StatementRecorder implements StatementInspector {
+    private static final long serialVersionUID = 1L;
+    private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+    private static volatile Thread recorded;
+
+    static void start() {
+      STATEMENTS.clear();
+      recorded = Thread.currentThread();
+    }
+
+    static List<String> stop() {
+      recorded = null;
+      return new ArrayList<>(STATEMENTS);
+    }
+
+    @Override
+    public String inspect(String sql) {
+      if (Thread.currentThread() == recorded) {
+        STATEMENTS.add(sql.toLowerCase());
+      }
+
+      return sql;
+    }
+  }
+}
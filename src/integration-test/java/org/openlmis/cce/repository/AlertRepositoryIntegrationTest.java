@@ -21,6 +21,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 import org.junit.Before;
 import org.junit.Test;
@@ -243,4 +244,19 @@ public class AlertRepositoryIntegrationTest
     //then
     assertEquals(activeAlert1, alert);
   }
+
+  @Test
+  public void findByExternalIdInShouldReturnMatchingAlertsWithStatusMessages() {
+
+    //when
+    List<Alert> alerts = repository.findByExternalIdIn(Arrays.asList(
+        activeAlert1Id, inactiveAlert2.getExternalId(), UUID.randomUUID().toString()));
+
+    //then
+    assertEquals(2, alerts.size());
+    assertTrue(alerts.contains(activeAlert1));
+    assertTrue(alerts.contains(inactiveAlert2));
+    assertEquals(STATUS_MESSAGE_EQUIPMENT_FREEZING,
+        alerts.get(alerts.indexOf(inactiveAlert2)).getStatusMessages().get(STATUS_LOCALE));
+  }
 }
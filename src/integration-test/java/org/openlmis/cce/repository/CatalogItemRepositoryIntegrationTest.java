@@ -18,6 +18,7 @@ package org.openlmis.cce.repository;
 import static java.util.Collections.singletonList;
 import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertEquals;
@@ -30,6 +31,8 @@ import static org.openlmis.cce.domain.CatalogItem.EQUIPMENT_CODE;
 import static org.openlmis.cce.domain.CatalogItem.MANUFACTURER_FIELD;
 import static org.openlmis.cce.domain.CatalogItem.MODEL_FIELD;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import javax.persistence.EntityManager;
@@ -223,4 +226,31 @@ public class CatalogItemRepositoryIntegrationTest
         hasProperty(MODEL_FIELD, equalTo(item.getModel()))
     ));
   }
+
+  @Test
+  public void shouldFindExistingByEquipmentCodeAndByManufacturerAndModelInOneList() {
+    CatalogItem withCode = generateInstance();
+    withCode.setEquipmentCode("code, with \"quotes\" and {braces}");
+    repository.save(withCode);
+
+    CatalogItem withoutCode = generateInstance();
+    withoutCode.setEquipmentCode(null);
+    withoutCode.setManufacturer("manufacturer \\ with, comma");
+    repository.save(withoutCode);
+
+    CatalogItem missing = generateInstance();
+
+    List<CatalogItem> found = repository
+        .findExisting(Arrays.asList(withCode, withoutCode, missing));
+
+    assertThat(found, hasSize(2));
+    assertThat(found, hasItems(
+        hasProperty(EQUIPMENT_CODE, equalTo(withCode.getEquipmentCode())),
+        hasProperty(MANUFACTURER_FIELD, equalTo(withoutCode.getManufacturer()))));
+  }
+
+  @Test
+  public void shouldNotFindExistingForEmptyList() {
+    assertThat(repository.findExisting(Collections.emptyList()), hasSize(0));
+  }
 }
@@ -18,12 +18,19 @@ package org.openlmis.cce.repository;
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceException;
 import org.junit.Before;
@@ -34,8 +41,13 @@ import org.openlmis.cce.InventoryItemDataBuilder;
 import org.openlmis.cce.domain.CatalogItem;
 import org.openlmis.cce.domain.FunctionalStatus;
 import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.exception.ValidationMessageException;
+import org.openlmis.cce.repository.custom.FacilityProgramPair;
+import org.openlmis.cce.repository.custom.InventoryItemKey;
+import org.openlmis.cce.util.KeysetPage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.repository.CrudRepository;
@@ -82,6 +94,7 @@ public class InventoryItemRepositoryIntegrationTest
 
     when(pageable.getPageSize()).thenReturn(10);
     when(pageable.getPageNumber()).thenReturn(0);
+    when(pageable.getSort()).thenReturn(Sort.unsorted());
   }
 
   @Test(expected = PersistenceException.class)
@@ -99,94 +112,6 @@ public class InventoryItemRepositoryIntegrationTest
     entityManager.flush();
   }
 
-  @Test
-  public void shouldFindInventoryItemsByFacilityIds() {
-    InventoryItem item = generateInstance();
-    item = repository.save(item);
-
-    InventoryItem item2 = getInventoryItemDataBuilder()
-        .withFacilityId(item.getFacilityId())
-        .build();
-    repository.save(item2);
-
-    InventoryItem item3 = generateInstance();
-    item3 = repository.save(item3);
-
-    InventoryItem item4 = generateInstance();
-    repository.save(item4);
-
-    Page<InventoryItem> inventoryItems = repository.search(Arrays.asList(item.getFacilityId(),
-        item3.getFacilityId()), null, null, pageable);
-
-    assertEquals(3, inventoryItems.getTotalElements());
-    for (InventoryItem inventoryItem : inventoryItems) {
-      assertTrue(inventoryItem.getFacilityId().equals(item.getFacilityId())
-          || inventoryItem.getFacilityId().equals(item3.getFacilityId()));
-    }
-
-    inventoryItems = repository.search(singletonList(item.getFacilityId()), null, null, pageable);
-
-    assertEquals(2, inventoryItems.getTotalElements());
-    for (InventoryItem inventoryItem : inventoryItems) {
-      assertTrue(inventoryItem.getFacilityId().equals(item.getFacilityId()));
-    }
-  }
-
-  @Test
-  public void shouldFindInventoryItemsByProgramIds() {
-    InventoryItem item = generateInstance();
-    item = repository.save(item);
-
-    InventoryItem item2 = getInventoryItemDataBuilder()
-        .withProgramId(item.getProgramId())
-        .build();
-    repository.save(item2);
-
-    InventoryItem item3 = generateInstance();
-    item3 = repository.save(item3);
-
-    InventoryItem item4 = generateInstance();
-    repository.save(item4);
-
-    Page<InventoryItem> inventoryItems = repository.search(null, Arrays.asList(item.getProgramId(),
-        item3.getProgramId()), null, pageable);
-
-    assertEquals(3, inventoryItems.getTotalElements());
-    for (InventoryItem inventoryItem : inventoryItems) {
-      assertTrue(inventoryItem.getProgramId().equals(item.getProgramId())
-          || inventoryItem.getProgramId().equals(item3.getProgramId()));
-    }
-
-    inventoryItems = repository.search(null, singletonList(item.getProgramId()), null, pageable);
-
-    assertEquals(2, inventoryItems.getTotalElements());
-    for (InventoryItem inventoryItem : inventoryItems) {
-      assertTrue(inventoryItem.getProgramId().equals(item.getProgramId()));
-    }
-  }
-
-  @Test
-  public void shouldFindInventoryItemsByFacilityIdsAndProgramIds() {
-    InventoryItem item = generateInstance();
-    item = repository.save(item);
-
-    InventoryItem item2 = generateInstance();
-    item2 = repository.save(item2);
-
-    InventoryItem item3 = getInventoryItemDataBuilder()
-        .withFacilityId(item.getFacilityId())
-        .withProgramId(item2.getProgramId())
-        .build();
-
-    item3 = repository.save(item3);
-
-    Page<InventoryItem> inventoryItems = repository.search(singletonList(item.getFacilityId()),
-        singletonList(item2.getProgramId()), null, pageable);
-
-    assertEquals(1, inventoryItems.getTotalElements());
-    assertTrue(inventoryItems.getContent().get(0).getProgramId().equals(item3.getProgramId()));
-  }
-
   @Test
   public void shouldFindInventoryItemsByFunctionalStatus() {
     InventoryItem item1 = getInventoryItemDataBuilder().build();
@@ -206,8 +131,7 @@ public class InventoryItemRepositoryIntegrationTest
     repository.save(item4);
 
     Page<InventoryItem> inventoryItems = repository.search(
-        null,
-        null,
+        singletonList(FacilityProgramPair.of(item1.getFacilityId(), item1.getProgramId())),
         FunctionalStatus.FUNCTIONING,
         pageable
     );
@@ -244,10 +168,38 @@ public class InventoryItemRepositoryIntegrationTest
         ));
   }
 
+  @Test
+  public void shouldFindIdsByKeys() {
+    InventoryItem item = repository.save(generateInstance());
+    InventoryItem special = repository.save(getInventoryItemDataBuilder()
+        .withEquipmentTrackingId("a \"quoted\", {braced} \\ id")
+        .build());
+    repository.save(generateInstance());
+
+    InventoryItemKey itemKey = toKey(item);
+    InventoryItemKey specialKey = toKey(special);
+    InventoryItemKey missingKey = InventoryItemKey.of("missing",
+        catalogItem.getModel(), catalogItem.getType());
+
+    Map<InventoryItemKey, UUID> found = repository
+        .findIdsByKeys(Arrays.asList(itemKey, specialKey, missingKey));
+
+    assertEquals(2, found.size());
+    assertEquals(item.getId(), found.get(itemKey));
+    assertEquals(special.getId(), found.get(specialKey));
+  }
+
+  @Test
+  public void shouldNotFindIdsIfNoKeysAreGiven() {
+    repository.save(generateInstance());
+
+    assertTrue(repository.findIdsByKeys(Collections.emptyList()).isEmpty());
+  }
+
   @Test
   public void shouldSortInventoryItems() {
     when(pageable.getSort()).thenReturn(Sort.by("type", EQUIPMENT_TRACKING_ID));
-    InventoryItem item = generateInstance();
+    InventoryItem item = getInventoryItemDataBuilder().build();
     repository.save(item);
 
     CatalogItem catalogItem = new CatalogItemDataBuilder()
@@ -267,7 +219,9 @@ public class InventoryItemRepositoryIntegrationTest
         .build();
     repository.save(item3);
 
-    Page<InventoryItem> inventoryItems = repository.search(null, null, null, pageable);
+    Page<InventoryItem> inventoryItems = repository.search(
+        singletonList(FacilityProgramPair.of(item.getFacilityId(), item.getProgramId())),
+        null, pageable);
 
     assertEquals(3, inventoryItems.getTotalElements());
     InventoryItem inventoryItem0 = inventoryItems.getContent().get(0);
@@ -288,6 +242,126 @@ public class InventoryItemRepositoryIntegrationTest
     assertTrue(catalogItem1.getType().compareTo(catalogItem2.getType()) < 0);
   }
 
+  @Test
+  public void shouldFindInventoryItemsByFacilityProgramPairs() {
+    UUID programId = UUID.randomUUID();
+    UUID otherFacilityId = UUID.randomUUID();
+    UUID otherProgramId = UUID.randomUUID();
+
+    final InventoryItem item = repository.save(getInventoryItemDataBuilder()
+        .withFacilityId(facilityId)
+        .withProgramId(programId)
+        .build());
+    final InventoryItem other = repository.save(getInventoryItemDataBuilder()
+        .withFacilityId(otherFacilityId)
+        .withProgramId(otherProgramId)
+        .build());
+    repository.save(getInventoryItemDataBuilder()
+        .withFacilityId(facilityId)
+        .withProgramId(otherProgramId)
+        .build());
+    repository.save(generateInstance());
+
+    Page<InventoryItem> inventoryItems = repository.search(Arrays.asList(
+        FacilityProgramPair.of(facilityId, programId),
+        FacilityProgramPair.of(otherFacilityId, otherProgramId)),
+        null, PageRequest.of(0, 10, Sort.by(EQUIPMENT_TRACKING_ID)));
+
+    assertEquals(2, inventoryItems.getTotalElements());
+    assertEquals(new HashSet<>(Arrays.asList(item.getId(), other.getId())),
+        inventoryItems.getContent()
+            .stream()
+            .map(InventoryItem::getId)
+            .collect(Collectors.toSet()));
+  }
+
+  @Test
+  public void shouldFindInventoryItemsByFacilityProgramPairsAndStatus() {
+    InventoryItem item = repository.save(getInventoryItemDataBuilder()
+        .withFacilityId(facilityId)
+        .build());
+    repository.save(getInventoryItemDataBuilder()
+        .withFacilityId(facilityId)
+        .withUnserviceableStatus()
+        .build());
+
+    Page<InventoryItem> inventoryItems = repository.search(
+        singletonList(FacilityProgramPair.of(facilityId, item.getProgramId())),
+        FunctionalStatus.FUNCTIONING, PageRequest.of(0, 10, Sort.by("type")));
+
+    assertEquals(1, inventoryItems.getTotalElements());
+    assertEquals(item.getId(), inventoryItems.getContent().get(0).getId());
+    assertEquals(catalogItem.getType(),
+        inventoryItems.getContent().get(0).getCatalogItem().getType());
+  }
+
+  @Test(expected = ValidationMessageException.class)
+  public void shouldNotSearchByFacilityProgramPairsWithUnknownSortProperty() {
+    repository.search(singletonList(FacilityProgramPair.of(facilityId, UUID.randomUUID())),
+        null, PageRequest.of(0, 10, Sort.by("facilityId; DROP TABLE cce_inventory_items")));
+  }
+
+  @Test
+  public void shouldSeekInventoryItemsPageByPage() {
+    UUID programId = UUID.randomUUID();
+    for (String referenceName : Arrays.asList("b", "a", "b", "c", "b")) {
+      repository.save(getInventoryItemDataBuilder()
+          .withFacilityId(facilityId)
+          .withProgramId(programId)
+          .withReferenceName(referenceName)
+          .build());
+    }
+
+    List<FacilityProgramPair> pairs = singletonList(FacilityProgramPair.of(facilityId, programId));
+    Pageable firstPage = PageRequest.of(0, 2, Sort.by("referenceName"));
+    List<InventoryItem> found = new ArrayList<>();
+
+    KeysetPage<InventoryItem> page = repository.seek(pairs, null, "", true, firstPage);
+    assertEquals(Long.valueOf(5), page.getTotalElements());
+    found.addAll(page.getContent());
+
+    while (!page.isLast()) {
+      page = repository.seek(pairs, null, page.getNext(), false, firstPage);
+      assertNull(page.getTotalElements());
+      found.addAll(page.getContent());
+    }
+
+    assertEquals(5, found.size());
+    assertEquals(5, found.stream().map(InventoryItem::getId).distinct().count());
+    assertEquals(Arrays.asList("a", "b", "b", "b", "c"), found.stream()
+        .map(InventoryItem::getReferenceName)
+        .collect(Collectors.toList()));
+  }
+
+  @Test
+  public void shouldSeekInventoryItemsSortedByTypeDescending() {
+    CatalogItem otherCatalogItem = catalogItemRepository.save(new CatalogItemDataBuilder()
+        .withType("otherType")
+        .withModel("new-model")
+        .withManufacturer("some-manufacturer")
+        .buildAsNew());
+
+    InventoryItem item = repository.save(getInventoryItemDataBuilder()
+        .withFacilityId(facilityId)
+        .build());
+    InventoryItem other = repository.save(getInventoryItemDataBuilder()
+        .withCatalogItem(otherCatalogItem)
+        .withFacilityId(facilityId)
+        .build());
+
+    List<FacilityProgramPair> pairs = singletonList(
+        FacilityProgramPair.of(facilityId, item.getProgramId()));
+    Pageable firstPage = PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "type"));
+    boolean otherFirst = otherCatalogItem.getType().compareTo(catalogItem.getType()) > 0;
+
+    KeysetPage<InventoryItem> page = repository.seek(pairs, null, "", false, firstPage);
+    assertEquals(otherFirst ? other.getId() : item.getId(), page.getContent().get(0).getId());
+
+    page = repository.seek(pairs, null, page.getNext(), false, firstPage);
+    assertEquals(otherFirst ? item.getId() : other.getId(), page.getContent().get(0).getId());
+    assertTrue(page.isLast());
+  }
+
   @Test
   public void shouldReturnVolumeByFacility() {
     CatalogItem catalogItem2 = new CatalogItemDataBuilder()
@@ -344,6 +418,11 @@ public class InventoryItemRepositoryIntegrationTest
     assertEquals(Optional.empty(), volume);
   }
 
+  private InventoryItemKey toKey(InventoryItem item) {
+    return InventoryItemKey.of(item.getEquipmentTrackingId(), item.getCatalogItem().getModel(),
+        item.getCatalogItem().getType());
+  }
+
   private InventoryItemDataBuilder getInventoryItemDataBuilder() {
     return new InventoryItemDataBuilder()
         .withId(null)
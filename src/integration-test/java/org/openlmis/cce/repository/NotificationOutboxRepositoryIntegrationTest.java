@@ -0,0 +1,111 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import org.junit.Test;
+import org.openlmis.cce.domain.NotificationOutboxEntry;
+import org.openlmis.cce.domain.NotificationOutboxEntry.Type;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.repository.CrudRepository;
+
+public class NotificationOutboxRepositoryIntegrationTest
+    extends BaseCrudRepositoryIntegrationTest<NotificationOutboxEntry> {
+
+  private static final ZonedDateTime NOW = ZonedDateTime.now();
+
+  @Autowired
+  private NotificationOutboxRepository repository;
+
+  @Override
+  CrudRepository<NotificationOutboxEntry, UUID> getRepository() {
+    return repository;
+  }
+
+  @Override
+  NotificationOutboxEntry generateInstance() {
+    return generateInstance(NOW.minusMinutes(getNextInstanceNumber()));
+  }
+
+  private NotificationOutboxEntry generateInstance(ZonedDateTime createdDate) {
+    return NotificationOutboxEntry.newEntry(Type.NOTIFICATION, "{}", "en", createdDate);
+  }
+
+  @Test
+  public void shouldFindDueEntriesOldestFirst() {
+    NotificationOutboxEntry newer = repository.save(generateInstance(NOW.minusMinutes(1)));
+    NotificationOutboxEntry older = repository.save(generateInstance(NOW.minusMinutes(2)));
+
+    assertThat(repository.findDueForUpdate(NOW, 10))
+        .containsExactly(older, newer);
+  }
+
+  @Test
+  public void shouldLimitDueEntries() {
+    NotificationOutboxEntry older = repository.save(generateInstance(NOW.minusMinutes(2)));
+    repository.save(generateInstance(NOW.minusMinutes(1)));
+
+    assertThat(repository.findDueForUpdate(NOW, 1))
+        .containsExactly(older);
+  }
+
+  @Test
+  public void shouldNotFindEntriesThatAreNotDue() {
+    NotificationOutboxEntry leased = generateInstance(NOW.minusMinutes(1));
+    leased.lease(NOW.plusMinutes(5));
+    repository.save(leased);
+
+    NotificationOutboxEntry retried = generateInstance(NOW.minusMinutes(1));
+    retried.retry("error", NOW.plusMinutes(1));
+    repository.save(retried);
+
+    assertThat(repository.findDueForUpdate(NOW, 10)).isEmpty();
+  }
+
+  @Test
+  public void shouldNotFindFailedEntries() {
+    NotificationOutboxEntry failed = generateInstance(NOW.minusMinutes(1));
+    failed.fail("error");
+    repository.save(failed);
+
+    assertThat(repository.findDueForUpdate(NOW, 10)).isEmpty();
+  }
+
+  @Test
+  public void shouldFindWholePendingGroup() {
+    NotificationOutboxEntry failed = generateGroupedInstance("group", NOW, NOW);
+    failed.fail("error");
+    repository.save(failed);
+    repository.save(generateGroupedInstance("other", NOW.minusMinutes(1), NOW));
+
+    NotificationOutboxEntry due = repository.save(generateGroupedInstance("group",
+        NOW.minusMinutes(2), NOW.minusMinutes(1)));
+    NotificationOutboxEntry notDue = repository.save(generateGroupedInstance("group",
+        NOW.minusMinutes(1), NOW.plusMinutes(1)));
+
+    assertThat(repository.findPendingGroupForUpdate(Type.NONFUNCTIONAL_CCE.name(), "group"))
+        .containsExactly(due, notDue);
+  }
+
+  private NotificationOutboxEntry generateGroupedInstance(String groupKey,
+      ZonedDateTime createdDate, ZonedDateTime dueDate) {
+    return NotificationOutboxEntry.newGroupedEntry(Type.NONFUNCTIONAL_CCE, groupKey, "{}", "en",
+        createdDate, dueDate);
+  }
+}
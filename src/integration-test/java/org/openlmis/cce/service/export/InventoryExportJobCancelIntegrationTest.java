@@ -0,0 +1,128 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.export;
+
+import static java.util.Collections.singleton;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openlmis.cce.domain.InventoryExportJob;
+import org.openlmis.cce.domain.InventoryExportJob.Pair;
+import org.openlmis.cce.domain.InventoryExportJob.Status;
+import org.openlmis.cce.repository.InventoryExportJobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Cancels a running export job while its worker is about to save a checkpoint, each in its own
+ * transaction like in the application, and verifies that the cancel is not overwritten.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "export.jobs.pollIntervalMillis=3600000")
+@ActiveProfiles({"test", "test-run"})
+public class InventoryExportJobCancelIntegrationTest {
+
+  private static final long TIMEOUT_SECONDS = 10;
+
+  @Autowired
+  private InventoryExportJobService service;
+
+  @Autowired
+  private InventoryExportJobWorker worker;
+
+  @Autowired
+  private InventoryExportJobRepository repository;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  private InventoryExportJob job;
+
+  @Before
+  public void setUp() {
+    // no inventory items match the pair, so the worker saves its checkpoint right away
+    job = InventoryExportJob.newJob(UUID.randomUUID(),
+        singleton(Pair.of(UUID.randomUUID(), UUID.randomUUID())), null, ZonedDateTime.now());
+    job.start(ZonedDateTime.now(), ZonedDateTime.now().plusMinutes(5));
+    job = repository.save(job);
+  }
+
+  @After
+  public void tearDown() {
+    repository.deleteAll();
+  }
+
+  @Test
+  public void shouldNotOverwriteCancelWithCheckpoint() throws Exception {
+    CountDownLatch cancelled = new CountDownLatch(1);
+    CountDownLatch commit = new CountDownLatch(1);
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+    final CompletableFuture<Void> user = CompletableFuture.runAsync(() ->
+        transactionTemplate.execute(status -> {
+          service.cancel(job.getUserId(), job.getId());
+          cancelled.countDown();
+          await(commit);
+          return null;
+        }));
+
+    assertThat(cancelled.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+    CompletableFuture<Void> checkpoint = CompletableFuture.runAsync(() -> worker.run(job));
+
+    // the worker waits for the cancel to commit
+    assertNotDone(checkpoint);
+    commit.countDown();
+    user.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    checkpoint.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+    InventoryExportJob saved = repository.findById(job.getId()).orElseThrow(AssertionError::new);
+    assertThat(saved.getStatus()).isEqualTo(Status.CANCELLED);
+    assertThat(saved.isCheckpointed()).isFalse();
+    assertThat(worker.getFile(job.getId())).doesNotExist();
+  }
+
+  private static void assertNotDone(CompletableFuture<Void> future) throws Exception {
+    try {
+      future.get(1, TimeUnit.SECONDS);
+    } catch (TimeoutException ex) {
+      return;
+    }
+
+    throw new AssertionError("The worker has not waited for the cancel");
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertThat(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(ex);
+    }
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.notifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.openlmis.cce.service.PermissionService.CCE_INVENTORY_EDIT;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openlmis.cce.InventoryItemDataBuilder;
+import org.openlmis.cce.domain.FunctionalStatus;
+import org.openlmis.cce.domain.NotificationOutboxEntry;
+import org.openlmis.cce.domain.NotificationOutboxEntry.Type;
+import org.openlmis.cce.dto.FacilityDto;
+import org.openlmis.cce.dto.InventoryItemDto;
+import org.openlmis.cce.dto.RightDto;
+import org.openlmis.cce.dto.UserDto;
+import org.openlmis.cce.repository.NotificationOutboxRepository;
+import org.openlmis.cce.service.referencedata.FacilityReferenceDataService;
+import org.openlmis.cce.service.referencedata.RightReferenceDataService;
+import org.openlmis.cce.service.referencedata.SupervisoryNodeReferenceDataService;
+import org.openlmis.cce.service.referencedata.UserReferenceDataService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * Handles outbox groups through the real notifier and outbox, so that the notifications scheduled
+ * by the notifier are stored in the same transaction that removes the group.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "notificationOutbox.enabled=false")
+@ActiveProfiles({"test", "test-run"})
+public class NotificationOutboxWorkerIntegrationTest {
+
+  private static final String GROUP_KEY = "facility/program";
+
+  @MockBean
+  private FacilityReferenceDataService facilityReferenceDataService;
+
+  @MockBean
+  private RightReferenceDataService rightReferenceDataService;
+
+  @MockBean
+  private SupervisoryNodeReferenceDataService supervisoryNodeReferenceDataService;
+
+  @MockBean
+  private UserReferenceDataService userReferenceDataService;
+
+  @MockBean
+  private NotificationService notificationService;
+
+  @Autowired
+  private NotificationOutboxWorker worker;
+
+  @Autowired
+  private NotificationOutboxRepository repository;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  private UserDto first = newUser("first");
+  private UserDto second = newUser("second");
+
+  @Before
+  public void setUp() {
+    RightDto right = new RightDto();
+    right.setId(UUID.randomUUID());
+    when(rightReferenceDataService.findRight(CCE_INVENTORY_EDIT)).thenReturn(right);
+
+    FacilityDto facility = new FacilityDto();
+    facility.setName("facility");
+    when(facilityReferenceDataService.findById(any(UUID.class))).thenReturn(facility);
+
+    when(userReferenceDataService.findByRight(eq(right.getId()), any(UUID.class), any()))
+        .thenReturn(Arrays.asList(first, second));
+    when(userReferenceDataService.findById(any(UUID.class))).thenReturn(first);
+  }
+
+  @After
+  public void tearDown() {
+    repository.deleteAll();
+  }
+
+  @Test
+  public void shouldScheduleNotificationsAndRemoveHandledGroup() throws Exception {
+    NotificationOutboxEntry fridge = repository.save(newGroupedEntry("fridge"));
+    NotificationOutboxEntry freezer = repository.save(newGroupedEntry("freezer"));
+
+    assertThat(worker.drain()).isEqualTo(2);
+
+    List<NotificationOutboxEntry> entries = Lists.newArrayList(repository.findAll());
+    assertThat(entries)
+        .extracting(NotificationOutboxEntry::getId)
+        .doesNotContain(fridge.getId(), freezer.getId());
+    assertThat(entries)
+        .hasSize(2)
+        .allMatch(entry -> Type.NOTIFICATION == entry.getType());
+    assertThat(entries)
+        .extracting(entry -> read(entry).getUserId())
+        .containsExactlyInAnyOrder(first.getId(), second.getId());
+  }
+
+  private NotificationOutboxEntry newGroupedEntry(String referenceName) throws Exception {
+    InventoryItemDto inventoryItem = new InventoryItemDto();
+    new InventoryItemDataBuilder()
+        .withReferenceName(referenceName)
+        .withStatus(FunctionalStatus.AWAITING_REPAIR)
+        .build()
+        .export(inventoryItem);
+
+    ZonedDateTime due = ZonedDateTime.now().minusMinutes(1);
+
+    return NotificationOutboxEntry.newGroupedEntry(Type.NONFUNCTIONAL_CCE, GROUP_KEY,
+        objectMapper.writeValueAsString(inventoryItem), "en", due, due);
+  }
+
+  private NotificationDto read(NotificationOutboxEntry entry) {
+    try {
+      return objectMapper.readValue(entry.getPayload(), NotificationDto.class);
+    } catch (IOException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static UserDto newUser(String username) {
+    UserDto user = new UserDto();
+    user.setId(UUID.randomUUID());
+    user.setUsername(username);
+    return user;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.mockito.BDDMockito.given;
+import static org.openlmis.cce.web.util.WireMockResponses.MOCK_SERVICE_CHECK_RESULT;
+
+import com.jayway.restassured.RestAssured;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+
+public class ActuatorSecurityIntegrationTest extends BaseWebIntegrationTest {
+
+  private static final String METRICS_URL = "/actuator/metrics";
+  private static final String RECIPIENTS_URL = "/actuator/notificationrecipients";
+
+  @Test
+  public void shouldNotLetUsersReadMetrics() {
+    RestAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .when()
+        .get(METRICS_URL)
+        .then()
+        .statusCode(403);
+  }
+
+  @Test
+  public void shouldNotLetUsersDropNotificationRecipients() {
+    RestAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .when()
+        .delete(RECIPIENTS_URL)
+        .then()
+        .statusCode(403);
+  }
+
+  @Test
+  public void shouldLetServicesReadMetrics() {
+    wireMockRule.stubFor(post(urlEqualTo("/api/oauth/check_token"))
+        .willReturn(aResponse()
+            .withHeader(CONTENT_TYPE, APPLICATION_JSON)
+            .withBody(MOCK_SERVICE_CHECK_RESULT)));
+    given(permissionService.isServiceToken()).willReturn(true);
+
+    RestAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .when()
+        .get(METRICS_URL)
+        .then()
+        .statusCode(200);
+  }
+
+  @Test
+  public void shouldRequireTokenForHealth() {
+    RestAssured.given()
+        .when()
+        .get("/actuator/health")
+        .then()
+        .statusCode(401);
+  }
+}
@@ -15,6 +15,7 @@
 
 package org.openlmis.cce.web;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -24,6 +25,8 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.jayway.restassured.response.Response;
@@ -31,7 +34,9 @@ import guru.nidi.ramltester.junit.RamlMatchers;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -136,6 +141,31 @@ public class AlertControllerIntegrationTest extends BaseWebIntegrationTest {
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
   }
 
+  @Test
+  public void putBatchShouldReturnResultOfEachAlert() {
+    when(inventoryItemRepository.findAllById(any()))
+        .thenReturn(Collections.singletonList(inventoryItem));
+    when(alertRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+    AlertDto unknownDevice = new AlertDto();
+    unknownDevice.setAlertId(UUID.randomUUID().toString());
+    unknownDevice.setAlertType(ALERT_TYPE_WARNING_HOT);
+    unknownDevice.setDeviceId(UUID.randomUUID());
+    unknownDevice.setStartTs(alertDto.getStartTs());
+    unknownDevice.setStatus(alertDto.getStatus());
+
+    putBatch(Arrays.asList(alertDto, unknownDevice))
+        .then()
+        .statusCode(200)
+        .body("status", contains("CREATED", "FAILED"))
+        .body("[0].id", equalTo(alertDto.getAlertId()))
+        .body("[1].error.messageKey", equalTo(AlertMessageKeys.ERROR_DEVICE_ID_NOT_FOUND));
+
+    verify(alertRepository).saveAll(any());
+    verify(alertRepository, never()).save(any(Alert.class));
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
   @Test
   public void getCollectionShouldReturnOk() {
 
@@ -177,6 +207,16 @@ public class AlertControllerIntegrationTest extends BaseWebIntegrationTest {
         .put(RESOURCE_URL);
   }
   
+  private Response putBatch(List<AlertDto> alertDtos) {
+    return restAssured
+        .given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .contentType(APPLICATION_JSON)
+        .body(alertDtos)
+        .when()
+        .put(RESOURCE_URL + "/batch");
+  }
+
   private Response getCollection() {
     return restAssured
         .given()
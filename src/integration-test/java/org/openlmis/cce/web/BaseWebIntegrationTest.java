@@ -50,9 +50,9 @@ import org.openlmis.cce.i18n.MessageService;
 import org.openlmis.cce.repository.AlertRepository;
 import org.openlmis.cce.repository.CatalogItemRepository;
 import org.openlmis.cce.repository.InventoryItemRepository;
-import org.openlmis.cce.service.InventoryStatusProcessor;
 import org.openlmis.cce.service.ObjReferenceExpander;
 import org.openlmis.cce.service.PermissionService;
+import org.openlmis.cce.service.event.DomainEventPublisher;
 import org.openlmis.cce.service.referencedata.FacilityReferenceDataService;
 import org.openlmis.cce.util.AuthenticationHelper;
 import org.openlmis.cce.util.Message;
@@ -107,7 +107,7 @@ public abstract class BaseWebIntegrationTest {
   protected FacilityReferenceDataService facilityReferenceDataService;
 
   @MockBean
-  protected InventoryStatusProcessor inventoryStatusProcessor;
+  protected DomainEventPublisher domainEventPublisher;
 
   @MockBean
   protected ObjReferenceExpander objReferenceExpander;
@@ -23,6 +23,7 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.never;
@@ -38,11 +39,12 @@ import com.jayway.restassured.response.Response;
 import com.jayway.restassured.specification.RequestSpecification;
 import guru.nidi.ramltester.junit.RamlMatchers;
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
@@ -55,6 +57,8 @@ import org.openlmis.cce.dto.UploadResultDto;
 import org.openlmis.cce.service.PermissionService;
 import org.openlmis.cce.util.PageDto;
 import org.openlmis.cce.util.Pagination;
+import org.openlmis.cce.web.csv.recordhandler.CatalogItemBulkWriter;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -70,6 +74,9 @@ public class CatalogItemControllerIntegrationTest extends BaseWebIntegrationTest
   private CatalogItemDto catalogItemDto;
   private String managePermission = PermissionService.CCE_MANAGE;
 
+  @MockBean
+  private CatalogItemBulkWriter catalogItemBulkWriter;
+
 
   @Before
   public void setUp() {
@@ -244,6 +251,38 @@ public class CatalogItemControllerIntegrationTest extends BaseWebIntegrationTest
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.responseChecks());
   }
 
+  @Test
+  public void shouldUploadCsvInBulkMode() throws IOException {
+    ClassPathResource basicCsvToUpload =
+        new ClassPathResource("csv/catalogItems/csvWithBasicColumns.csv");
+    doAnswer(invocation -> {
+      Iterator<CatalogItem> entities = invocation.getArgument(0);
+      entities.forEachRemaining(entity -> { });
+      return null;
+    }).when(catalogItemBulkWriter).write(any());
+
+    UploadResultDto result = restAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .contentType(MediaType.MULTIPART_FORM_DATA_VALUE)
+        .queryParam("format", "csv")
+        .queryParam("bulk", true)
+        .multiPart(FILE_PARAM_NAME,
+            basicCsvToUpload.getFilename(),
+            basicCsvToUpload.getInputStream())
+        .when()
+        .post(RESOURCE_URL)
+        .then()
+        .statusCode(200)
+        .extract().as(UploadResultDto.class);
+
+    verify(catalogItemBulkWriter).write(any());
+    verify(catalogItemRepository, never()).saveAll(anyList());
+    assertEquals(1, result.getAmount().intValue());
+    // changed to responseChecks because file parameter is required
+    // and RAML check does not recognizes it in request
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.responseChecks());
+  }
+
   @Test
   public void shouldNotUploadCsvWithoutMandatoryFields() throws IOException {
     ClassPathResource basicCsvToUpload =
@@ -304,15 +343,15 @@ public class CatalogItemControllerIntegrationTest extends BaseWebIntegrationTest
 
   @Test
   public void shouldDownloadCsvWithAllPossibleFields() throws IOException {
-    when(catalogItemRepository.findAll())
-        .thenReturn(Arrays.asList(CatalogItem.newInstance(catalogItemDto)));
+    when(catalogItemRepository.streamAll())
+        .thenReturn(Stream.of(CatalogItem.newInstance(catalogItemDto)));
 
     String csvContent = download()
         .then()
         .statusCode(200)
         .extract().body().asString();
 
-    verify(catalogItemRepository).findAll();
+    verify(catalogItemRepository).streamAll();
     assertEquals("From PQS catalog,PQS equipment code,Type,Model,Manufacturer,"
         + "Energy source,Date of prequal,Storage temperature,Max operating temp (degrees C),"
         + "Min operating temp (degrees C),Energy consumption (NA for solar),Holdover time (hours),"
@@ -325,15 +364,15 @@ public class CatalogItemControllerIntegrationTest extends BaseWebIntegrationTest
 
   @Test
   public void shouldDownloadCsvWithHeadersOnly() throws IOException {
-    when(catalogItemRepository.findAll())
-        .thenReturn(Collections.emptyList());
+    when(catalogItemRepository.streamAll())
+        .thenReturn(Stream.empty());
 
     String csvContent = download()
         .then()
         .statusCode(200)
         .extract().body().asString();
 
-    verify(catalogItemRepository).findAll();
+    verify(catalogItemRepository).streamAll();
     assertEquals("From PQS catalog,PQS equipment code,Type,Model,Manufacturer,"
         + "Energy source,Date of prequal,Storage temperature,Max operating temp (degrees C),"
         + "Min operating temp (degrees C),Energy consumption (NA for solar),Holdover time (hours),"
@@ -0,0 +1,148 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.openlmis.cce.i18n.CsvExportMessageKeys.ERROR_EXPORT_JOB_NOT_FOUND;
+
+import guru.nidi.ramltester.junit.RamlMatchers;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openlmis.cce.domain.FunctionalStatus;
+import org.openlmis.cce.domain.InventoryExportJob;
+import org.openlmis.cce.domain.InventoryExportJob.Pair;
+import org.openlmis.cce.dto.InventoryExportJobRequestDto;
+import org.openlmis.cce.exception.NotFoundException;
+import org.openlmis.cce.service.export.InventoryExportJobService;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+
+public class InventoryExportJobControllerIntegrationTest extends BaseWebIntegrationTest {
+
+  private static final String RESOURCE_URL = "/api/inventoryItems/exportJobs";
+  private static final String ID_URL = RESOURCE_URL + "/{id}";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @MockBean
+  private InventoryExportJobService exportJobService;
+
+  private InventoryExportJob job;
+
+  @Before
+  public void setUp() {
+    mockUserAuthenticated();
+
+    job = InventoryExportJob.newJob(USER_ID,
+        Collections.singleton(Pair.of(UUID.randomUUID(), UUID.randomUUID())),
+        FunctionalStatus.FUNCTIONING, ZonedDateTime.now());
+    job.setId(UUID.randomUUID());
+  }
+
+  @Test
+  public void shouldSubmitExportJob() {
+    UUID programId = UUID.randomUUID();
+    InventoryExportJobRequestDto request = new InventoryExportJobRequestDto();
+    request.setProgramId(programId);
+    request.setFunctionalStatus(FunctionalStatus.FUNCTIONING);
+
+    given(exportJobService.submit(eq(USER_ID), eq(programId), any(),
+        eq(FunctionalStatus.FUNCTIONING))).willReturn(job);
+
+    restAssured
+        .given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .contentType(APPLICATION_JSON)
+        .body(request)
+        .when()
+        .post(RESOURCE_URL)
+        .then()
+        .statusCode(202)
+        .body("id", is(job.getId().toString()))
+        .body("status", is("QUEUED"));
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldReturnNotFoundForUnknownJob() {
+    given(exportJobService.get(USER_ID, job.getId()))
+        .willThrow(new NotFoundException(ERROR_EXPORT_JOB_NOT_FOUND));
+
+    restAssured
+        .given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .pathParam("id", job.getId())
+        .when()
+        .get(ID_URL)
+        .then()
+        .statusCode(404)
+        .body(MESSAGE, is(getMessage(ERROR_EXPORT_JOB_NOT_FOUND)));
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldDownloadFileOfCompletedJob() throws IOException {
+    Path file = folder.newFile().toPath();
+    Files.write(file, new byte[]{1, 2, 3});
+    given(exportJobService.getFile(USER_ID, job.getId())).willReturn(file);
+
+    restAssured
+        .given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .pathParam("id", job.getId())
+        .when()
+        .get(ID_URL + "/file")
+        .then()
+        .statusCode(200)
+        .header(HttpHeaders.CONTENT_LENGTH, is("3"))
+        .header(HttpHeaders.ACCEPT_RANGES, is("bytes"));
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldCancelJob() {
+    job.cancel(ZonedDateTime.now());
+    given(exportJobService.cancel(USER_ID, job.getId())).willReturn(job);
+
+    restAssured
+        .given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .pathParam("id", job.getId())
+        .when()
+        .put(ID_URL + "/cancel")
+        .then()
+        .statusCode(200)
+        .body("status", is("CANCELLED"));
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+}
@@ -17,6 +17,7 @@ package org.openlmis.cce.web;
 
 import static java.util.Collections.singleton;
 import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -26,6 +27,7 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
@@ -35,16 +37,20 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_ITEM_ALREADY_EXISTS;
 import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_ITEM_NOT_FOUND;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_REFERENCE_NAME_REQUIRED;
 import static org.openlmis.cce.i18n.PermissionMessageKeys.ERROR_NO_FOLLOWING_PERMISSION;
 import static org.openlmis.cce.service.PermissionService.CCE_INVENTORY_VIEW;
 import static org.openlmis.cce.service.ResourceNames.FACILITIES;
 import static org.openlmis.cce.service.ResourceNames.PROGRAMS;
 import static org.openlmis.cce.service.ResourceNames.USERS;
 
+import com.google.common.collect.Iterables;
 import com.jayway.restassured.response.Response;
 import com.jayway.restassured.specification.RequestSpecification;
 import guru.nidi.ramltester.junit.RamlMatchers;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -65,8 +71,12 @@ import org.openlmis.cce.dto.ObjectReferenceDto;
 import org.openlmis.cce.dto.PermissionStringDto;
 import org.openlmis.cce.dto.UserDto;
 import org.openlmis.cce.dto.UserObjectReferenceDto;
+import org.openlmis.cce.repository.custom.FacilityProgramPair;
+import org.openlmis.cce.service.PermissionIndex;
 import org.openlmis.cce.service.PermissionService;
 import org.openlmis.cce.service.PermissionStrings;
+import org.openlmis.cce.service.event.InventoryItemEvent;
+import org.openlmis.cce.service.event.InventoryItemEvent.Type;
 import org.openlmis.cce.util.PageDto;
 import org.openlmis.cce.util.Pagination;
 import org.springframework.data.domain.PageRequest;
@@ -125,6 +135,7 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
     inventoryItemDto.setLastModifier(lastModifier);
     inventoryItemDto.setId(response.getId());
     checkResponseAndRaml(response);
+    verifyPublished(Type.CREATED);
   }
 
   @Test
@@ -226,8 +237,7 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
     mockUserPermissions(userId, programId, facilityId);
 
     when(inventoryItemRepository.search(
-        eq(singleton(facilityId)),
-        eq(singleton(programId)),
+        eq(singleton(FacilityProgramPair.of(facilityId, programId))),
         eq(FunctionalStatus.FUNCTIONING),
         any(Pageable.class)))
         .thenReturn(Pagination.getPage(singletonList(inventoryItem), PageRequest.of(0, 1), 1));
@@ -255,8 +265,7 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
     mockUserPermissions(userId, programId, facilityId);
 
     when(inventoryItemRepository.search(
-        eq(singleton(facilityId)),
-        eq(singleton(programId)),
+        eq(singleton(FacilityProgramPair.of(facilityId, programId))),
         eq(null),
         any(Pageable.class)))
         .thenReturn(Pagination.getPage(
@@ -274,9 +283,9 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
     assertFalse(resultPage.hasPrevious());
     assertNull(resultPage.nextPageable());
 
-    // All 3 DTOs should be expanded
-    verify(objReferenceExpander, times(3))
-        .expandDto(any(InventoryItemDto.class), eq(Lists.asList(LAST_MODIFIER)));
+    // All 3 DTOs should be expanded at once
+    verify(objReferenceExpander)
+        .expandDtos(argThat(dtos -> Iterables.size(dtos) == 3), eq(Lists.asList(LAST_MODIFIER)));
 
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
   }
@@ -301,13 +310,13 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
     );
 
     PermissionStrings.Handler handler = mock(PermissionStrings.Handler.class);
-    when(handler.get()).thenReturn(Sets.asSet(permission1, permission2, permission3, permission4));
+    when(handler.getIndex()).thenReturn(PermissionIndex
+        .of(Sets.asSet(permission1, permission2, permission3, permission4)));
 
     when(permissionService.getPermissionStrings(userId)).thenReturn(handler);
 
     when(inventoryItemRepository.search(
-        eq(singleton(facilityId)),
-        eq(singleton(programId)),
+        eq(singleton(FacilityProgramPair.of(facilityId, programId))),
         eq(null),
         any(Pageable.class)))
         .thenReturn(Pagination.getPage(singletonList(inventoryItem), PageRequest.of(0, 1), 1));
@@ -338,13 +347,14 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
     );
 
     PermissionStrings.Handler handler = mock(PermissionStrings.Handler.class);
-    when(handler.get()).thenReturn(Sets.asSet(permission1, permission2));
+    when(handler.getIndex())
+        .thenReturn(PermissionIndex.of(Sets.asSet(permission1, permission2)));
 
     when(permissionService.getPermissionStrings(userId)).thenReturn(handler);
 
     when(inventoryItemRepository.search(
-        eq(Sets.asSet(permission1.getFacilityId(), permission2.getFacilityId())),
-        eq(singleton(programId)),
+        eq(Sets.asSet(FacilityProgramPair.of(permission1.getFacilityId(), programId),
+            FacilityProgramPair.of(permission2.getFacilityId(), programId))),
         eq(null),
         any(Pageable.class)))
         .thenReturn(Pagination.getPage(singletonList(inventoryItem), PageRequest.of(0, 1), 1));
@@ -409,7 +419,8 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
     assertEquals(inventoryItem.getId(), response.getId());
     checkResponseAndRaml(response);
 
-    verify(inventoryStatusProcessor, never()).functionalStatusChange(any());
+    verifyPublished(Type.UPDATED);
+    verifyNotPublished(Type.STATUS_CHANGED);
   }
 
   @Test
@@ -426,7 +437,7 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
         .then()
         .statusCode(200);
 
-    verify(inventoryStatusProcessor, times(1)).functionalStatusChange(any());
+    verifyPublished(Type.STATUS_CHANGED);
   }
 
   @Test
@@ -443,7 +454,7 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
         .then()
         .statusCode(200);
 
-    verify(inventoryStatusProcessor, never()).functionalStatusChange(any());
+    verifyNotPublished(Type.STATUS_CHANGED);
   }
 
   @Test
@@ -478,6 +489,44 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
   }
 
+  @Test
+  public void shouldSaveInventoryItemsInBatch() {
+    when(inventoryItemRepository.findAllById(any())).thenReturn(singletonList(inventoryItem));
+    when(inventoryItemRepository.saveAll(any()))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+
+    InventoryItemDto invalid = toDto(new InventoryItemDataBuilder().withId(null).build());
+    invalid.setReferenceName(null);
+
+    putInventoryItems(Arrays.asList(inventoryItemDto, invalid))
+        .then()
+        .statusCode(200)
+        .body("status", contains("UPDATED", "FAILED"))
+        .body("[0].id", equalTo(inventoryItem.getId().toString()))
+        .body("[1].error.messageKey", equalTo(ERROR_REFERENCE_NAME_REQUIRED));
+
+    verify(inventoryItemRepository).saveAll(any());
+    verify(inventoryItemRepository, never()).save(any(InventoryItem.class));
+    verifyPublished(Type.UPDATED);
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldReportInventoryItemsInBatchUserHasNoEditPermissionFor() {
+    doThrow(mockPermissionException(editPermission))
+        .when(permissionService).canEditInventory(any(UUID.class), any(UUID.class));
+    inventoryItemDto.setId(null);
+
+    putInventoryItems(singletonList(inventoryItemDto))
+        .then()
+        .statusCode(200)
+        .body("status", contains("FAILED"))
+        .body("[0].error.messageKey", equalTo(ERROR_NO_FOLLOWING_PERMISSION));
+
+    verify(inventoryItemRepository, never()).saveAll(any());
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
   @Test
   public void shouldDeleteInventoryItemWhenFoundById() {
     when(inventoryItemRepository.findById(inventoryId))
@@ -488,6 +537,7 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
         .statusCode(204);
 
     verify(inventoryItemRepository).delete(any(InventoryItem.class));
+    verifyPublished(Type.DELETED);
     assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
   }
 
@@ -531,6 +581,20 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
             2022
     ).then()
             .statusCode(204);
+
+    verifyPublished(Type.TRANSFERRED);
+  }
+
+  private void verifyPublished(Type type) {
+    verify(domainEventPublisher).publish(argThat(event -> isEventOfType(event, type)));
+  }
+
+  private void verifyNotPublished(Type type) {
+    verify(domainEventPublisher, never()).publish(argThat(event -> isEventOfType(event, type)));
+  }
+
+  private boolean isEventOfType(Object event, Type type) {
+    return event instanceof InventoryItemEvent && ((InventoryItemEvent) event).getType() == type;
   }
 
   private void mockUserPermissions(UUID userId, UUID programId, UUID facilityId) {
@@ -539,7 +603,7 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
     );
 
     PermissionStrings.Handler handler = mock(PermissionStrings.Handler.class);
-    when(handler.get()).thenReturn(singleton(permission));
+    when(handler.getIndex()).thenReturn(PermissionIndex.of(singleton(permission)));
 
     when(permissionService.getPermissionStrings(userId)).thenReturn(handler);
   }
@@ -633,6 +697,15 @@ public class InventoryItemControllerIntegrationTest extends BaseWebIntegrationTe
         .put(RESOURCE_URL_WITH_ID);
   }
 
+  private Response putInventoryItems(List<InventoryItemDto> inventoryItemDtos) {
+    return restAssured.given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .contentType(APPLICATION_JSON)
+        .body(inventoryItemDtos)
+        .when()
+        .put(RESOURCE_URL + "/batch");
+  }
+
   private Response deleteInventoryItem() {
     return restAssured
         .given()
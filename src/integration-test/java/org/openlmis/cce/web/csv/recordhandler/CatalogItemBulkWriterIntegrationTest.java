@@ -0,0 +1,134 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.recordhandler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import javax.persistence.EntityManager;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openlmis.cce.CatalogItemDataBuilder;
+import org.openlmis.cce.domain.CatalogItem;
+import org.openlmis.cce.domain.Dimensions;
+import org.openlmis.cce.repository.CatalogItemRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles({"test", "test-run"})
+@Transactional
+public class CatalogItemBulkWriterIntegrationTest {
+
+  private static final String CODE = "code";
+  private static final String MODEL = "model";
+
+  @Autowired
+  private CatalogItemBulkWriter writer;
+
+  @Autowired
+  private CatalogItemRepository repository;
+
+  @Autowired
+  private EntityManager entityManager;
+
+  @Test
+  public void shouldCreateNewItems() {
+    CatalogItem item = new CatalogItemDataBuilder()
+        .withEquipmentCode("code, with \"quotes\"")
+        .withModel("new-model")
+        .buildAsNew();
+    item.setDimensions(new Dimensions(1, 2, 3));
+
+    write(item);
+
+    CatalogItem saved = repository.findByEquipmentCode("code, with \"quotes\"");
+    assertThat(saved.getId()).isNotNull();
+    assertThat(saved.getModel()).isEqualTo("new-model");
+    assertThat(saved.getEnergySource()).isEqualTo(item.getEnergySource());
+    assertThat(saved.getDimensions()).isEqualTo(item.getDimensions());
+    assertThat(saved.getEnergyConsumption()).isNull();
+  }
+
+  @Test
+  public void shouldUpdateItemWithSameEquipmentCode() {
+    CatalogItem existing = save(new CatalogItemDataBuilder()
+        .withEquipmentCode(CODE)
+        .withModel(MODEL)
+        .buildAsNew());
+    long count = repository.count();
+
+    write(new CatalogItemDataBuilder()
+        .withEquipmentCode(CODE)
+        .withModel(MODEL)
+        .withType("other-type")
+        .buildAsNew());
+
+    assertThat(repository.count()).isEqualTo(count);
+    assertThat(repository.findById(existing.getId()).get().getType()).isEqualTo("other-type");
+  }
+
+  @Test
+  public void shouldUpdateItemWithSameManufacturerAndModelIfThereIsNoEquipmentCode() {
+    CatalogItem existing = save(new CatalogItemDataBuilder()
+        .withEquipmentCode(null)
+        .withManufacturer("manufacturer")
+        .withModel(MODEL)
+        .buildAsNew());
+    long count = repository.count();
+
+    write(new CatalogItemDataBuilder()
+        .withEquipmentCode(null)
+        .withManufacturer("manufacturer")
+        .withModel(MODEL)
+        .withNetVolume(50)
+        .buildAsNew());
+
+    assertThat(repository.count()).isEqualTo(count);
+    assertThat(repository.findById(existing.getId()).get().getNetVolume()).isEqualTo(50);
+  }
+
+  @Test
+  public void shouldSaveLastRowOfExistingItem() {
+    CatalogItem existing = save(new CatalogItemDataBuilder()
+        .withEquipmentCode(CODE)
+        .buildAsNew());
+    long count = repository.count();
+
+    write(
+        new CatalogItemDataBuilder().withEquipmentCode(CODE).withType("first").buildAsNew(),
+        new CatalogItemDataBuilder().withEquipmentCode(CODE).withType("last").buildAsNew());
+
+    assertThat(repository.count()).isEqualTo(count);
+    assertThat(repository.findById(existing.getId()).get().getType()).isEqualTo("last");
+  }
+
+  private CatalogItem save(CatalogItem item) {
+    CatalogItem saved = repository.save(item);
+    entityManager.flush();
+    entityManager.clear();
+    return saved;
+  }
+
+  private void write(CatalogItem... items) {
+    writer.write(Arrays.asList(items).iterator());
+    entityManager.clear();
+  }
+}
@@ -40,6 +40,21 @@ public abstract class WireMockResponses {
       + "  \"client_id\": \"trusted-client\"\n"
       + "}";
 
+  public static final String MOCK_SERVICE_CHECK_RESULT = "{"
+      + "  \"aud\": [\n"
+      + "    \"cce\"\n"
+      + "  ],\n"
+      + "  \"scope\": [\n"
+      + "    \"read\",\n"
+      + "    \"write\"\n"
+      + "  ],\n"
+      + "  \"exp\": 1474500343,\n"
+      + "  \"authorities\": [\n"
+      + "    \"TRUSTED_CLIENT\"\n"
+      + "  ],\n"
+      + "  \"client_id\": \"trusted-client\"\n"
+      + "}";
+
   public static final String MOCK_TOKEN_REQUEST_RESPONSE = "{"
       + "  \"access_token\": \"418c89c5-7f21-4cd1-a63a-38c47892b0fe\",\n"
       + "  \"token_type\": \"bearer\",\n"
@@ -0,0 +1,90 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce;
+
+import java.util.function.Function;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Base of benchmarks that need the database. The service is started once per fork against the
+ * database used by integration tests, so {@code DATABASE_URL}, {@code POSTGRES_USER} and
+ * {@code POSTGRES_PASSWORD} have to be set. Data created by a benchmark is committed, and it has
+ * to be removed again in {@link #removeData(EntityManager)}.
+ */
+@State(Scope.Benchmark)
+public abstract class DatabaseBenchmark {
+  private ConfigurableApplicationContext context;
+  private TransactionTemplate transactionTemplate;
+  private EntityManager entityManager;
+
+  /**
+   * Starts the service and creates the benchmark data.
+   */
+  @Setup
+  public void startService() {
+    context = new SpringApplicationBuilder(Application.class)
+        .profiles("test-run")
+        .properties("BASE_URL=http://localhost", "server.port=0",
+            "notificationOutbox.enabled=false")
+        .run();
+
+    transactionTemplate = new TransactionTemplate(getBean(PlatformTransactionManager.class));
+    entityManager = SharedEntityManagerCreator
+        .createSharedEntityManager(getBean(EntityManagerFactory.class));
+
+    inTransaction(manager -> {
+      createData(manager);
+      return null;
+    });
+  }
+
+  /**
+   * Removes the benchmark data and stops the service.
+   */
+  @TearDown
+  public void stopService() {
+    try {
+      inTransaction(manager -> {
+        removeData(manager);
+        return null;
+      });
+    } finally {
+      context.close();
+    }
+  }
+
+  protected abstract void createData(EntityManager entityManager);
+
+  protected abstract void removeData(EntityManager entityManager);
+
+  protected <T> T getBean(Class<T> type) {
+    return context.getBean(type);
+  }
+
+  protected <T> T inTransaction(Function<EntityManager, T> work) {
+    return transactionTemplate.execute(status -> work.apply(entityManager));
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.repository.custom.impl;
+
+import static org.openlmis.cce.domain.CatalogItem.EQUIPMENT_CODE;
+import static org.openlmis.cce.domain.CatalogItem.MANUFACTURER_FIELD;
+import static org.openlmis.cce.domain.CatalogItem.MODEL_FIELD;
+
+import com.google.common.collect.Lists;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openlmis.cce.CatalogItemDataBuilder;
+import org.openlmis.cce.DatabaseBenchmark;
+import org.openlmis.cce.domain.CatalogItem;
+import org.openlmis.cce.repository.CatalogItemRepository;
+
+/**
+ * Compares the lookup of existing catalog items by one OR'd predicate per uploaded row with the
+ * lookup by arrays of equipment codes and (manufacturer, model) pairs. Half of the items have an
+ * equipment code. Every item of an upload exists and is looked up in chunks of the CSV parser
+ * size, as the catalog item writer does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class CatalogItemFindExistingBenchmark extends DatabaseBenchmark {
+  private static final String PREFIX = "benchmark-";
+  private static final int CHUNK_SIZE = 250;
+  private static final int FLUSH_SIZE = 1000;
+
+  @Param({"1000", "10000", "100000"})
+  private int itemCount;
+
+  private CatalogItemRepository repository;
+  private List<List<CatalogItem>> chunks;
+
+  @Benchmark
+  public long findByPredicates() {
+    return inTransaction(manager -> findAll(manager, this::findByPredicates));
+  }
+
+  @Benchmark
+  public long findByArrays() {
+    return inTransaction(manager -> findAll(manager,
+        (chunkManager, chunk) -> repository.findExisting(chunk)));
+  }
+
+  /*
+    Items are persisted with the entity manager, so that no audit log entries are created. The
+    uploaded items are copies that are not persisted, like the rows of an upload.
+   */
+  @Override
+  protected void createData(EntityManager entityManager) {
+    repository = getBean(CatalogItemRepository.class);
+    List<CatalogItem> uploaded = new ArrayList<>();
+
+    for (int i = 0; i < itemCount; ++i) {
+      entityManager.persist(newCatalogItem(i));
+      uploaded.add(newCatalogItem(i));
+
+      if (i % FLUSH_SIZE == 0) {
+        entityManager.flush();
+        entityManager.clear();
+      }
+    }
+
+    entityManager.flush();
+    entityManager.clear();
+
+    chunks = Lists.partition(uploaded, CHUNK_SIZE);
+
+    if (findAll(entityManager, this::findByPredicates) != itemCount
+        || findAll(entityManager, (manager, chunk) -> repository.findExisting(chunk))
+        != itemCount) {
+      throw new IllegalStateException("Lookups found unexpected number of items");
+    }
+  }
+
+  @Override
+  protected void removeData(EntityManager entityManager) {
+    entityManager
+        .createQuery("DELETE FROM CatalogItem AS c WHERE c.model LIKE :prefix")
+        .setParameter("prefix", PREFIX + '%')
+        .executeUpdate();
+  }
+
+  private long findAll(EntityManager entityManager,
+      BiFunction<EntityManager, List<CatalogItem>, List<CatalogItem>> findExisting) {
+    long found = 0;
+
+    for (List<CatalogItem> chunk : chunks) {
+      found += findExisting.apply(entityManager, chunk).size();
+      entityManager.clear();
+    }
+
+    return found;
+  }
+
+  /*
+    The lookup used before the arrays, one equality predicate per item.
+   */
+  private List<CatalogItem> findByPredicates(EntityManager entityManager,
+      List<CatalogItem> items) {
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<CatalogItem> query = builder.createQuery(CatalogItem.class);
+    Root<CatalogItem> root = query.from(CatalogItem.class);
+    Predicate[] predicates = new Predicate[items.size()];
+
+    for (int i = 0; i < predicates.length; i++) {
+      CatalogItem item = items.get(i);
+
+      predicates[i] = null != item.getEquipmentCode()
+          ? builder.equal(root.get(EQUIPMENT_CODE), item.getEquipmentCode())
+          : builder.and(
+              builder.equal(root.get(MANUFACTURER_FIELD), item.getManufacturer()),
+              builder.equal(root.get(MODEL_FIELD), item.getModel()));
+    }
+
+    return entityManager.createQuery(query.where(builder.or(predicates))).getResultList();
+  }
+
+  private CatalogItem newCatalogItem(int number) {
+    return new CatalogItemDataBuilder()
+        .withEquipmentCode(number % 2 == 0 ? PREFIX + "code-" + number : null)
+        .withManufacturer(PREFIX + "manufacturer-" + number % 100)
+        .withModel(PREFIX + "model-" + number)
+        .buildAsNew();
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.repository.custom.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openlmis.cce.CatalogItemDataBuilder;
+import org.openlmis.cce.DatabaseBenchmark;
+import org.openlmis.cce.InventoryItemDataBuilder;
+import org.openlmis.cce.domain.CatalogItem;
+import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.repository.InventoryItemRepository;
+import org.openlmis.cce.repository.custom.FacilityProgramPair;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Compares the inventory item search by separate facility and program IN lists, which the
+ * service used before, with the search by exact (facility, program) pairs. Every pair gets one
+ * inventory item and one more item is added for the facility with a program from another pair,
+ * which is matched only by the cross product of IN lists.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class InventoryItemSearchBenchmark extends DatabaseBenchmark {
+  private static final int PROGRAMS = 10;
+  private static final int FLUSH_SIZE = 1000;
+  private static final Pageable PAGEABLE = PageRequest.of(0, 10, Sort.by("referenceName"));
+
+  @Param({"10", "1000", "20000"})
+  private int pairCount;
+
+  private InventoryItemRepository repository;
+  private CatalogItem catalogItem;
+  private List<FacilityProgramPair> pairs;
+  private Set<UUID> facilityIds;
+  private Set<UUID> programIds;
+
+  @Benchmark
+  public long searchByInLists() {
+    return inTransaction(this::searchByInLists);
+  }
+
+  @Benchmark
+  public long searchByPairs() {
+    return inTransaction(manager -> repository.search(pairs, null, PAGEABLE).getTotalElements());
+  }
+
+  /*
+    Items are persisted with the entity manager, so that no audit log entries are created.
+   */
+  @Override
+  protected void createData(EntityManager entityManager) {
+    repository = getBean(InventoryItemRepository.class);
+    catalogItem = new CatalogItemDataBuilder()
+        .withModel("benchmark-" + UUID.randomUUID())
+        .buildAsNew();
+    entityManager.persist(catalogItem);
+
+    List<UUID> programs = new ArrayList<>();
+    for (int i = 0; i < PROGRAMS; ++i) {
+      programs.add(UUID.randomUUID());
+    }
+
+    pairs = new ArrayList<>();
+    for (int i = 0; i < pairCount; ++i) {
+      UUID facilityId = UUID.randomUUID();
+
+      pairs.add(FacilityProgramPair.of(facilityId, programs.get(i % PROGRAMS)));
+      persist(entityManager, i * 2, facilityId, programs.get(i % PROGRAMS));
+      persist(entityManager, i * 2 + 1, facilityId, programs.get((i + 1) % PROGRAMS));
+    }
+
+    entityManager.flush();
+    entityManager.clear();
+
+    facilityIds = pairs.stream()
+        .map(FacilityProgramPair::getFacilityId)
+        .collect(Collectors.toSet());
+    programIds = pairs.stream()
+        .map(FacilityProgramPair::getProgramId)
+        .collect(Collectors.toSet());
+
+    if (searchByInLists(entityManager) != 2L * pairCount
+        || repository.search(pairs, null, PAGEABLE).getTotalElements() != pairCount) {
+      throw new IllegalStateException("Searches found unexpected number of items");
+    }
+  }
+
+  @Override
+  protected void removeData(EntityManager entityManager) {
+    entityManager
+        .createQuery("DELETE FROM InventoryItem AS i WHERE i.catalogItem.id = :catalogItemId")
+        .setParameter("catalogItemId", catalogItem.getId())
+        .executeUpdate();
+    entityManager.remove(entityManager.find(CatalogItem.class, catalogItem.getId()));
+  }
+
+  /*
+    The search used before the pairs, a JPQL query with facility and program IN lists.
+   */
+  private long searchByInLists(EntityManager entityManager) {
+    InventoryItemQueryBuilder select = new InventoryItemQueryBuilder(facilityIds, programIds,
+        null, PAGEABLE, false);
+    InventoryItemQueryBuilder count = new InventoryItemQueryBuilder(facilityIds, programIds,
+        null, PAGEABLE, true);
+
+    select.setParameters(entityManager.createQuery(select.build(), InventoryItem.class))
+        .setMaxResults(PAGEABLE.getPageSize())
+        .getResultList();
+
+    return count.setParameters(entityManager.createQuery(count.build(), Long.class))
+        .getSingleResult();
+  }
+
+  private void persist(EntityManager entityManager, int number, UUID facilityId,
+      UUID programId) {
+    entityManager.persist(new InventoryItemDataBuilder()
+        .withId(null)
+        .withCatalogItem(catalogItem)
+        .withFacilityId(facilityId)
+        .withProgramId(programId)
+        .withEquipmentTrackingId("benchmark-" + number)
+        .withReferenceName("item " + number)
+        .build());
+
+    if (number % FLUSH_SIZE == 0) {
+      entityManager.flush();
+      entityManager.clear();
+      catalogItem = entityManager.merge(catalogItem);
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service;
+
+import static org.apache.commons.lang3.StringUtils.equalsIgnoreCase;
+import static org.openlmis.cce.service.PermissionService.CCE_INVENTORY_EDIT;
+import static org.openlmis.cce.service.PermissionService.CCE_INVENTORY_VIEW;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openlmis.cce.dto.PermissionStringDto;
+import org.openlmis.cce.repository.custom.FacilityProgramPair;
+
+/**
+ * Compares scanning the set of permission strings with lookups in {@link PermissionIndex}, for
+ * permission checks and for deriving (facility, program) pairs of the inventory view right.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PermissionIndexBenchmark {
+  private static final int PROGRAMS = 4;
+
+  @Param({"100", "10000", "50000"})
+  private int permissionStringsCount;
+
+  private Set<PermissionStringDto> permissionStrings;
+  private PermissionIndex index;
+  private UUID facilityId;
+  private UUID programId;
+
+  /**
+   * Creates view and edit permission strings for generated facilities and programs.
+   */
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    List<UUID> programs = new ArrayList<>();
+
+    for (int i = 0; i < PROGRAMS; ++i) {
+      programs.add(new UUID(random.nextLong(), random.nextLong()));
+    }
+
+    permissionStrings = new HashSet<>();
+    while (permissionStrings.size() < permissionStringsCount) {
+      UUID facility = new UUID(random.nextLong(), random.nextLong());
+
+      for (UUID program : programs) {
+        permissionStrings.add(PermissionStringDto.create(CCE_INVENTORY_VIEW, facility, program));
+        permissionStrings.add(PermissionStringDto.create(CCE_INVENTORY_EDIT, facility, program));
+        facilityId = facility;
+        programId = program;
+      }
+    }
+
+    index = PermissionIndex.of(permissionStrings);
+  }
+
+  @Benchmark
+  public PermissionIndex buildIndex() {
+    return PermissionIndex.of(permissionStrings);
+  }
+
+  @Benchmark
+  public boolean containsInSet() {
+    return permissionStrings
+        .contains(PermissionStringDto.create(CCE_INVENTORY_EDIT, facilityId, programId));
+  }
+
+  @Benchmark
+  public boolean containsInIndex() {
+    return index.contains(CCE_INVENTORY_EDIT, facilityId, programId);
+  }
+
+  @Benchmark
+  public Set<FacilityProgramPair> facilityPairsByScan() {
+    Set<FacilityProgramPair> pairs = new HashSet<>();
+
+    for (PermissionStringDto permissionString : permissionStrings) {
+      if (equalsIgnoreCase(CCE_INVENTORY_VIEW, permissionString.getRightName())
+          && null != permissionString.getFacilityId()
+          && null != permissionString.getProgramId()
+          && permissionString.getFacilityId().equals(facilityId)) {
+        pairs.add(FacilityProgramPair
+            .of(permissionString.getFacilityId(), permissionString.getProgramId()));
+      }
+    }
+
+    return pairs;
+  }
+
+  @Benchmark
+  public Set<FacilityProgramPair> facilityPairsByIndex() {
+    return index.getPairs(CCE_INVENTORY_VIEW, facilityId, null);
+  }
+
+  @Benchmark
+  public Set<FacilityProgramPair> allPairsByScan() {
+    Set<FacilityProgramPair> pairs = new HashSet<>();
+
+    for (PermissionStringDto permissionString : permissionStrings) {
+      if (equalsIgnoreCase(CCE_INVENTORY_VIEW, permissionString.getRightName())
+          && null != permissionString.getFacilityId()
+          && null != permissionString.getProgramId()) {
+        pairs.add(FacilityProgramPair
+            .of(permissionString.getFacilityId(), permissionString.getProgramId()));
+      }
+    }
+
+    return pairs;
+  }
+
+  @Benchmark
+  public Set<FacilityProgramPair> allPairsByIndex() {
+    return index.getPairs(CCE_INVENTORY_VIEW, null, null);
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.beanutils.BeanUtilsBean;
+import org.apache.commons.beanutils.PropertyUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openlmis.cce.dto.UserObjectReferenceDto;
+import org.openlmis.util.converter.UuidConverter;
+import org.springframework.beans.BeanUtils;
+
+/**
+ * Compares populating expanded references of a 100-item page with commons-beanutils from a map
+ * (the JSON response read as a map first) and with Jackson reading the raw JSON straight into
+ * the reference DTO, with the getter of the expanded field resolved once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReferencePopulationBenchmark {
+  private static final int PAGE_SIZE = 100;
+  private static final String EXPAND = "lastModifier";
+  private static final String USER = "{\"id\":\"%s\",\"username\":\"administrator\","
+      + "\"firstName\":\"Admin\",\"lastName\":\"User\",\"email\":\"example@mail.com\","
+      + "\"jobTitle\":\"Chief\",\"timezone\":\"UTC\",\"homeFacilityId\":\"%s\","
+      + "\"verified\":true,\"active\":true,\"loginRestricted\":false,\"allowNotify\":true,"
+      + "\"extraData\":{\"color\":\"orange\"},\"roleAssignments\":[]}";
+
+  private ObjectMapper objectMapper;
+  private ObjectReader reader;
+  private BeanUtilsBean beanUtils;
+  private Method getter;
+
+  private List<byte[]> responses;
+
+  /**
+   * Prepares user responses of a page and both population paths.
+   */
+  @Setup
+  public void setUp() {
+    objectMapper = new ObjectMapper();
+    reader = objectMapper.reader().without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    beanUtils = BeanUtilsBean.getInstance();
+    beanUtils.getConvertUtils().register(new UuidConverter(), UUID.class);
+
+    PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(Item.class, EXPAND);
+    getter = descriptor.getReadMethod();
+
+    responses = new ArrayList<>();
+    for (int i = 0; i < PAGE_SIZE; ++i) {
+      responses.add(String.format(USER, UUID.randomUUID(), UUID.randomUUID())
+          .getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  @Benchmark
+  public List<Item> beanUtilsFromMap() throws Exception {
+    List<Item> page = createPage();
+
+    for (int i = 0; i < PAGE_SIZE; ++i) {
+      Map<String, Object> refObj = objectMapper
+          .readValue(responses.get(i), new TypeReference<Map<String, Object>>() {});
+      Object refDto = PropertyUtils.getProperty(page.get(i), EXPAND);
+      beanUtils.populate(refDto, refObj);
+    }
+
+    return page;
+  }
+
+  @Benchmark
+  public List<Item> jacksonFromJson() throws Exception {
+    List<Item> page = createPage();
+
+    for (int i = 0; i < PAGE_SIZE; ++i) {
+      Object refDto = getter.invoke(page.get(i));
+      read(refDto, responses.get(i));
+    }
+
+    return page;
+  }
+
+  private void read(Object refDto, byte[] refObj) throws IOException {
+    reader.withValueToUpdate(refDto).readValue(refObj);
+  }
+
+  private List<Item> createPage() {
+    List<Item> page = new ArrayList<>(PAGE_SIZE);
+
+    for (int i = 0; i < PAGE_SIZE; ++i) {
+      Item item = new Item();
+      item.setLastModifier(UserObjectReferenceDto.create(UUID.randomUUID(), "http://localhost",
+          ResourceNames.USERS));
+      page.add(item);
+    }
+
+    return page;
+  }
+
+  public static class Item {
+    private UserObjectReferenceDto lastModifier;
+
+    public UserObjectReferenceDto getLastModifier() {
+      return lastModifier;
+    }
+
+    public void setLastModifier(UserObjectReferenceDto lastModifier) {
+      this.lastModifier = lastModifier;
+    }
+  }
+}
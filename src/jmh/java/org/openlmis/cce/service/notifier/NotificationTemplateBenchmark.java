@@ -0,0 +1,133 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.notifier;
+
+import java.time.ZonedDateTime;
+import java.time.chrono.Chronology;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.FormatStyle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.text.StrSubstitutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares rendering the non-functional CCE email for a number of recipients with a
+ * StrSubstitutor and a formatter built for every event, and with templates compiled once and a
+ * formatter cached per locale.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NotificationTemplateBenchmark {
+  private static final String SUBJECT = "Attention: ${equipmentType} \"${referenceName}\" "
+      + "at facility ${facilityName} on ${saveDate} is ${functionalStatus}";
+  private static final String CONTENT = "Dear ${username}:\n"
+      + "This email is to inform you that the ${equipmentType} \"${referenceName}\" "
+      + "at ${facilityName} is has been marked as ${functionalStatus} with the "
+      + "reason \"${reasonForNonFunctionalStatus}\". The last status update for "
+      + "this device was made by user ${saveUser} at ${saveDate}.\n"
+      + "Please login to view the list of CCE needing attention "
+      + "at this facility. ${urlToViewCceList}";
+
+  @Param({"1", "10", "100"})
+  private int recipients;
+
+  private final Locale locale = Locale.ENGLISH;
+  private final ZonedDateTime saveDate = ZonedDateTime.now();
+  private final Map<Locale, DateTimeFormatter> formatters = new HashMap<>();
+
+  private MessageTemplate subject;
+  private MessageTemplate content;
+
+  /**
+   * Compiles the templates and caches the formatter, as done on the first notification.
+   */
+  @Setup
+  public void setUp() {
+    subject = MessageTemplate.compile(SUBJECT);
+    content = MessageTemplate.compile(CONTENT);
+    formatters.put(locale, createFormatter());
+  }
+
+  @Benchmark
+  public List<String> strSubstitutor() {
+    Map<String, String> valuesMap = getValuesMap(createFormatter());
+    StrSubstitutor sub = new StrSubstitutor(valuesMap);
+    List<String> emails = new ArrayList<>(recipients * 2);
+
+    for (int i = 0; i < recipients; ++i) {
+      valuesMap.put("username", "user" + i);
+      emails.add(sub.replace(SUBJECT));
+      emails.add(sub.replace(CONTENT));
+    }
+
+    return emails;
+  }
+
+  @Benchmark
+  public List<String> compiledTemplates() {
+    Map<String, String> valuesMap = getValuesMap(formatters.get(locale));
+    List<String> emails = new ArrayList<>(recipients * 2);
+
+    for (int i = 0; i < recipients; ++i) {
+      valuesMap.put("username", "user" + i);
+      emails.add(subject.render(valuesMap));
+      emails.add(content.render(valuesMap));
+    }
+
+    return emails;
+  }
+
+  private Map<String, String> getValuesMap(DateTimeFormatter formatter) {
+    Map<String, String> valuesMap = new HashMap<>();
+    valuesMap.put("equipmentType", "Refrigerator");
+    valuesMap.put("functionalStatus", "AWAITING_REPAIR");
+    valuesMap.put("referenceName", "Fridge 2");
+    valuesMap.put("reasonForNonFunctionalStatus", "DEAD");
+    valuesMap.put("saveUser", "administrator");
+    valuesMap.put("saveDate", formatter.format(saveDate));
+    valuesMap.put("facilityName", "Comfort Health Clinic");
+    valuesMap.put("urlToViewCceList", "http://localhost/#!/cce/inventory?page=0&size=10"
+        + "&facility=e6799d64-d10d-4011-b8c2-0e4d4a3f65ce"
+        + "&program=dce17f2e-af3e-40ad-8e00-3496adef44c3&supervised=true");
+    return valuesMap;
+  }
+
+  private DateTimeFormatter createFormatter() {
+    String datePattern = DateTimeFormatterBuilder.getLocalizedDateTimePattern(
+        FormatStyle.MEDIUM, FormatStyle.MEDIUM, Chronology.ofLocale(locale), locale);
+    return DateTimeFormatter.ofPattern(datePattern);
+  }
+}
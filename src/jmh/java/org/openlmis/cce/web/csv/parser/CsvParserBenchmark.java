@@ -0,0 +1,108 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.parser;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openlmis.cce.domain.CatalogItem;
+import org.openlmis.cce.dto.CatalogItemDto;
+import org.openlmis.cce.web.csv.model.ModelClass;
+import org.openlmis.cce.web.validator.CsvHeaderValidator;
+
+/**
+ * Measures the time to import a PQS catalog file with 100k rows. Writing a chunk waits for
+ * {@code writeMillis} to stand in for the database round trips of saving it, so the benchmark shows
+ * how well the pool overlaps writes with reading. A pool size of 1 matches the parser before the
+ * pool was shared and sized by {@code csvParser.poolSize}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class CsvParserBenchmark {
+  private static final int ROWS = 100_000;
+  private static final int CHUNK_SIZE = 250;
+  private static final String HEADER = "Type, Model, Manufacturer, Energy source, "
+      + "Storage temperature, From PQS catalog, PQS equipment code, Date of prequal, "
+      + "Max operating temp (degrees C), Min operating temp (degrees C), "
+      + "Energy consumption (NA for solar), Holdover time (hours), Dimensions, "
+      + "Visible in catalog, Archived\n";
+
+  @Param({"1", "4", "10"})
+  private int poolSize;
+
+  @Param({"0", "20"})
+  private long writeMillis;
+
+  private byte[] file;
+  private CsvParser parser;
+
+  /**
+   * Generates the catalog file and starts the parser pool.
+   */
+  @Setup
+  public void setUp() {
+    StringBuilder builder = new StringBuilder(HEADER);
+
+    for (int i = 0; i < ROWS; ++i) {
+      builder
+          .append("Refrigerator, model-").append(i)
+          .append(", Manufacturer ").append(i % 50)
+          .append(", ELECTRIC, PLUS4, Y, E003/").append(i)
+          .append(", 2010, 43, 10, 1.2, 20, \"120, 60, 85\", Y, N\n");
+    }
+
+    file = builder.toString().getBytes(UTF_8);
+    parser = new CsvParser(CHUNK_SIZE, poolSize, poolSize * 2);
+    parser.init();
+  }
+
+  @TearDown
+  public void tearDown() throws InterruptedException {
+    parser.shutdown();
+  }
+
+  @Benchmark
+  public int parse() throws IOException {
+    return parser.parse(new ByteArrayInputStream(file), new ModelClass<>(CatalogItemDto.class),
+        new CsvHeaderValidator(), CatalogItem.class, this::write);
+  }
+
+  private void write(List<CatalogItem> entities) {
+    if (writeMillis > 0) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(writeMillis));
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.parser;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openlmis.cce.domain.CatalogItem;
+import org.openlmis.cce.dto.CatalogItemDto;
+import org.openlmis.cce.web.csv.model.ModelClass;
+import org.openlmis.cce.web.csv.processor.CsvCellProcessors;
+import org.openlmis.cce.web.validator.CsvHeaderValidator;
+import org.supercsv.cellprocessor.ift.CellProcessor;
+import org.supercsv.io.dozer.CsvDozerBeanReader;
+import org.supercsv.prefs.CsvPreference;
+
+/**
+ * Compares reading a PQS catalog file into {@link CatalogItem} records with the Dozer bean reader
+ * the uploads used before, which mapped each row into a {@link CatalogItemDto} and then copied it,
+ * and with {@link CsvRecordReader}. Each operation is one row, so the score is rows per second.
+ * Run with {@code gradle jmh -PjmhInclude=CsvReaderBenchmark -PjmhProfilers=gc} to also get bytes
+ * allocated per row as gc.alloc.rate.norm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CsvReaderBenchmark {
+  private static final int ROWS = 10_000;
+  private static final String HEADER = "Type, Model, Manufacturer, Energy source, "
+      + "Storage temperature, From PQS catalog, PQS equipment code, Date of prequal, "
+      + "Max operating temp (degrees C), Min operating temp (degrees C), "
+      + "Energy consumption (NA for solar), Holdover time (hours), Dimensions, "
+      + "Visible in catalog, Archived\n";
+
+  private final ModelClass<CatalogItemDto> modelClass = new ModelClass<>(CatalogItemDto.class);
+  private final CsvHeaderValidator headerValidator = new CsvHeaderValidator();
+
+  private byte[] file;
+
+  /**
+   * Generates the catalog file.
+   */
+  @Setup
+  public void setUp() {
+    StringBuilder builder = new StringBuilder(HEADER);
+
+    for (int i = 0; i < ROWS; ++i) {
+      builder
+          .append("Refrigerator, model-").append(i)
+          .append(", Manufacturer ").append(i % 50)
+          .append(", ELECTRIC, PLUS4, Y, E003/").append(i)
+          .append(", 2010, 43, 10, 1.2, 20, \"120, 60, 85\", Y, N\n");
+    }
+
+    file = builder.toString().getBytes(UTF_8);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void dozerBeanReader(Blackhole blackhole) throws IOException {
+    CsvPreference preference = new CsvPreference.Builder(CsvPreference.STANDARD_PREFERENCE)
+        .surroundingSpacesNeedQuotes(true)
+        .build();
+
+    try (CsvDozerBeanReader reader = new CsvDozerBeanReader(
+        new InputStreamReader(new ByteArrayInputStream(file), UTF_8), preference)) {
+      String[] headers = reader.getHeader(true);
+      reader.configureBeanMapping(CatalogItemDto.class, modelClass.getFieldNameMappings(headers));
+      CellProcessor[] processors = CsvCellProcessors
+          .getParseProcessors(modelClass, Arrays.asList(headers))
+          .toArray(new CellProcessor[0]);
+
+      CatalogItemDto dto;
+      while (null != (dto = reader.read(CatalogItemDto.class, processors))) {
+        blackhole.consume(CatalogItem.newInstance(dto));
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void recordReader(Blackhole blackhole) throws IOException {
+    CsvRecordReader<CatalogItem> reader = new CsvRecordReader<>(modelClass,
+        new ByteArrayInputStream(file), headerValidator, CatalogItem.class);
+
+    CatalogItem item;
+    while (null != (item = reader.read())) {
+      blackhole.consume(item);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Configures the HTTP client shared by all outbound calls to other services. Connections are
+ * pooled and kept alive, and every request has connect and read timeouts, so a slow service
+ * cannot hold request threads forever.
+ */
+@Configuration
+public class HttpClientConfiguration {
+  static final String POOL_NAME = "outbound";
+
+  @Value("${httpClient.maxConnections}")
+  private int maxConnections;
+
+  @Value("${httpClient.maxConnectionsPerRoute}")
+  private int maxConnectionsPerRoute;
+
+  @Value("${httpClient.connectTimeoutMillis}")
+  private int connectTimeoutMillis;
+
+  @Value("${httpClient.connectionRequestTimeoutMillis}")
+  private int connectionRequestTimeoutMillis;
+
+  @Value("${httpClient.readTimeoutMillis}")
+  private int readTimeoutMillis;
+
+  @Value("${httpClient.idleTimeoutMillis}")
+  private long idleTimeoutMillis;
+
+  @Value("${httpClient.gzip}")
+  private boolean gzip;
+
+  /**
+   * Creates the connection pool and registers its utilisation metrics.
+   *
+   * @return Created connection manager.
+   */
+  @Bean(destroyMethod = "shutdown")
+  public PoolingHttpClientConnectionManager httpClientConnectionManager(
+      MeterRegistry meterRegistry) {
+    PoolingHttpClientConnectionManager connectionManager =
+        new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+    new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, POOL_NAME)
+        .bindTo(meterRegistry);
+
+    return connectionManager;
+  }
+
+  /**
+   * Creates the HTTP client. Connections are kept alive as long as the server allows but not
+   * longer than the idle timeout, and idle connections are closed in the background.
+   *
+   * @return Created HTTP client.
+   */
+  @Bean(destroyMethod = "close")
+  public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager connectionManager) {
+    RequestConfig requestConfig = RequestConfig
+        .custom()
+        .setConnectTimeout(connectTimeoutMillis)
+        .setConnectionRequestTimeout(connectionRequestTimeoutMillis)
+        .setSocketTimeout(readTimeoutMillis)
+        .build();
+
+    HttpClientBuilder builder = HttpClientBuilder
+        .create()
+        .setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(requestConfig)
+        .setKeepAliveStrategy((response, context) -> {
+          long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE
+              .getKeepAliveDuration(response, context);
+          return keepAlive > 0 ? Math.min(keepAlive, idleTimeoutMillis) : idleTimeoutMillis;
+        })
+        .evictExpiredConnections()
+        .evictIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+
+    if (!gzip) {
+      builder.disableContentCompression();
+    }
+
+    return builder.build();
+  }
+
+  /**
+   * Creates the rest template used for calls to other services.
+   *
+   * @return Created rest template.
+   */
+  @Bean
+  public RestTemplate restTemplate(CloseableHttpClient httpClient) {
+    return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+  }
+
+}
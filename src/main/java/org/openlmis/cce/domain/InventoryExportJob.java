@@ -0,0 +1,246 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.domain;
+
+import java.time.ZonedDateTime;
+import java.util.Set;
+import java.util.UUID;
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.Embeddable;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.JoinColumn;
+import javax.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Type;
+
+/**
+ * An export of inventory items from a set of (facility, program) pairs into a compressed CSV file,
+ * run in the background. The pairs are resolved from the rights of the user when the job is
+ * submitted. Progress is saved at checkpoints, so an interrupted job can be resumed from the last
+ * one instead of being started over. A running job holds a lease that its worker keeps renewing;
+ * a job whose lease has expired was interrupted.
+ */
+@Entity
+@Table(name = "inventory_export_jobs")
+@NoArgsConstructor
+@Getter
+public class InventoryExportJob extends BaseEntity {
+
+  @Type(type = UUID)
+  @Column(nullable = false)
+  private UUID userId;
+
+  @Enumerated(EnumType.STRING)
+  @Column(columnDefinition = TEXT, nullable = false)
+  private Status status;
+
+  @Enumerated(EnumType.STRING)
+  @Column(columnDefinition = TEXT)
+  private FunctionalStatus functionalStatus;
+
+  @ElementCollection
+  @CollectionTable(
+      name = "inventory_export_job_pairs",
+      joinColumns = @JoinColumn(name = "jobId"))
+  private Set<Pair> pairs;
+
+  @Column(nullable = false)
+  private long rowCount;
+
+  @Type(type = UUID)
+  private UUID lastItemId;
+
+  @Column(nullable = false)
+  private long fileSize;
+
+  @Column(columnDefinition = "timestamp with time zone", nullable = false)
+  private ZonedDateTime createdDate;
+
+  @Column(columnDefinition = "timestamp with time zone", nullable = false)
+  private ZonedDateTime modifiedDate;
+
+  @Column(columnDefinition = TEXT)
+  private String error;
+
+  @Column(columnDefinition = "timestamp with time zone")
+  private ZonedDateTime leaseExpiryDate;
+
+  private InventoryExportJob(UUID userId, Set<Pair> pairs,
+      FunctionalStatus functionalStatus, ZonedDateTime createdDate) {
+    this.userId = userId;
+    this.pairs = pairs;
+    this.functionalStatus = functionalStatus;
+    this.status = Status.QUEUED;
+    this.createdDate = createdDate;
+    this.modifiedDate = createdDate;
+  }
+
+  public static InventoryExportJob newJob(UUID userId, Set<Pair> pairs,
+      FunctionalStatus functionalStatus, ZonedDateTime createdDate) {
+    return new InventoryExportJob(userId, pairs, functionalStatus, createdDate);
+  }
+
+  public boolean isFinished() {
+    return Status.COMPLETED == status || Status.FAILED == status || Status.CANCELLED == status;
+  }
+
+  public boolean isCheckpointed() {
+    return null != lastItemId;
+  }
+
+  /**
+   * Checks if a worker is running the job at the given date.
+   */
+  public boolean isRunning(ZonedDateTime date) {
+    return Status.RUNNING == status && null != leaseExpiryDate && leaseExpiryDate.isAfter(date);
+  }
+
+  /**
+   * Checks if the job was started but its worker has stopped renewing the lease, for example
+   * because of a restart.
+   */
+  public boolean isInterrupted(ZonedDateTime date) {
+    return Status.RUNNING == status && !isRunning(date);
+  }
+
+  /**
+   * Marks the job as being run.
+   *
+   * @param date            date of the start
+   * @param leaseExpiryDate date after which the job is considered interrupted unless the lease
+   *                        is renewed
+   */
+  public void start(ZonedDateTime date, ZonedDateTime leaseExpiryDate) {
+    status = Status.RUNNING;
+    error = null;
+    modifiedDate = date;
+    this.leaseExpiryDate = leaseExpiryDate;
+  }
+
+  /**
+   * Saves the progress of the job. The file is known to hold all rows up to the given inventory
+   * item in its first {@code fileSize} bytes.
+   *
+   * @param lastItemId id of the last written inventory item
+   * @param rowCount   number of written rows
+   * @param fileSize   size of the file with all written rows
+   * @param date       date of the checkpoint
+   */
+  public void checkpoint(UUID lastItemId, long rowCount, long fileSize,
+      ZonedDateTime date) {
+    this.lastItemId = lastItemId;
+    this.rowCount = rowCount;
+    this.fileSize = fileSize;
+    modifiedDate = date;
+  }
+
+  public void complete(ZonedDateTime date) {
+    status = Status.COMPLETED;
+    modifiedDate = date;
+  }
+
+  /**
+   * Records a failure of the job. The job keeps its last checkpoint, so it can be resumed.
+   */
+  public void fail(String error, ZonedDateTime date) {
+    status = Status.FAILED;
+    this.error = error;
+    modifiedDate = date;
+  }
+
+  public void cancel(ZonedDateTime date) {
+    status = Status.CANCELLED;
+    modifiedDate = date;
+  }
+
+  /**
+   * Queues the job again to be continued from its last checkpoint.
+   */
+  public void resume(ZonedDateTime date) {
+    status = Status.QUEUED;
+    modifiedDate = date;
+  }
+
+  /**
+   * Exports current state of this object.
+   *
+   * @param exporter instance of {@link Exporter}
+   */
+  public void export(Exporter exporter) {
+    exporter.setId(id);
+    exporter.setStatus(status);
+    exporter.setFunctionalStatus(functionalStatus);
+    exporter.setRowCount(rowCount);
+    exporter.setCreatedDate(createdDate);
+    exporter.setModifiedDate(modifiedDate);
+    exporter.setError(error);
+  }
+
+  public interface Exporter {
+    void setId(UUID id);
+
+    void setStatus(Status status);
+
+    void setFunctionalStatus(FunctionalStatus functionalStatus);
+
+    void setRowCount(long rowCount);
+
+    void setCreatedDate(ZonedDateTime createdDate);
+
+    void setModifiedDate(ZonedDateTime modifiedDate);
+
+    void setError(String error);
+  }
+
+  public enum Status {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    CANCELLED
+  }
+
+  /**
+   * A facility and a program the inventory items are exported from.
+   */
+  @Embeddable
+  @Getter
+  @EqualsAndHashCode
+  @NoArgsConstructor(access = AccessLevel.PROTECTED)
+  @AllArgsConstructor(access = AccessLevel.PRIVATE)
+  public static class Pair {
+
+    @Type(type = UUID)
+    @Column(nullable = false)
+    private UUID facilityId;
+
+    @Type(type = UUID)
+    @Column(nullable = false)
+    private UUID programId;
+
+    public static Pair of(UUID facilityId, UUID programId) {
+      return new Pair(facilityId, programId);
+    }
+  }
+}
@@ -64,6 +64,7 @@ public class InventoryItem extends BaseEntity {
   @Column(columnDefinition = TEXT)
   private String equipmentTrackingId;
 
+  @Getter
   @Column(columnDefinition = TEXT, nullable = false)
   private String referenceName;
 
@@ -0,0 +1,154 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.domain;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * A notification waiting to be sent. Entries are written in the same transaction as the change
+ * that caused them and removed once the notification has been sent.
+ */
+@Entity
+@Table(name = "notification_outbox")
+@NoArgsConstructor
+@Getter
+public class NotificationOutboxEntry extends BaseEntity {
+
+  @Enumerated(EnumType.STRING)
+  @Column(columnDefinition = TEXT, nullable = false)
+  private Type type;
+
+  @Column(columnDefinition = TEXT)
+  private String groupKey;
+
+  @Column(columnDefinition = TEXT, nullable = false)
+  private String payload;
+
+  @Column(columnDefinition = TEXT)
+  private String locale;
+
+  @Enumerated(EnumType.STRING)
+  @Column(columnDefinition = TEXT, nullable = false)
+  private Status status;
+
+  @Column(nullable = false)
+  private int attempts;
+
+  @Column(columnDefinition = "timestamp with time zone", nullable = false)
+  private ZonedDateTime createdDate;
+
+  @Column(columnDefinition = "timestamp with time zone", nullable = false)
+  private ZonedDateTime nextAttemptDate;
+
+  @Column(columnDefinition = TEXT)
+  private String lastError;
+
+  private NotificationOutboxEntry(Type type, String groupKey, String payload, String locale,
+      ZonedDateTime createdDate, ZonedDateTime dueDate) {
+    this.type = type;
+    this.groupKey = groupKey;
+    this.payload = payload;
+    this.locale = locale;
+    this.status = Status.PENDING;
+    this.createdDate = createdDate;
+    this.nextAttemptDate = dueDate;
+  }
+
+  public static NotificationOutboxEntry newEntry(Type type, String payload, String locale,
+      ZonedDateTime createdDate) {
+    return new NotificationOutboxEntry(type, null, payload, locale, createdDate, createdDate);
+  }
+
+  /**
+   * Creates an entry that is handled together with other pending entries of the same type and
+   * group, no sooner than at the given date.
+   */
+  public static NotificationOutboxEntry newGroupedEntry(Type type, String groupKey,
+      String payload, String locale, ZonedDateTime createdDate, ZonedDateTime dueDate) {
+    return new NotificationOutboxEntry(type, groupKey, payload, locale, createdDate, dueDate);
+  }
+
+  /**
+   * Hides this entry from other workers until the given date, so it is processed only once.
+   *
+   * @param leaseEndDate date after which the entry may be claimed again
+   */
+  public void lease(ZonedDateTime leaseEndDate) {
+    nextAttemptDate = leaseEndDate;
+  }
+
+  /**
+   * Checks whether the lease that ends at the given date still holds this entry, that is no other
+   * worker has leased the entry since.
+   *
+   * @param leaseEndDate end of the lease taken on this entry
+   */
+  public boolean isLeasedUntil(ZonedDateTime leaseEndDate) {
+    // the database keeps fewer fractional digits than the clock may provide
+    return nextAttemptDate.toInstant().truncatedTo(ChronoUnit.MILLIS)
+        .equals(leaseEndDate.toInstant().truncatedTo(ChronoUnit.MILLIS));
+  }
+
+  /**
+   * Postpones this entry without counting it as an attempt.
+   *
+   * @param date date of the next attempt
+   */
+  public void defer(ZonedDateTime date) {
+    nextAttemptDate = date;
+  }
+
+  /**
+   * Records a failed attempt and schedules the next one.
+   *
+   * @param error reason of the failure
+   * @param retryDate date of the next attempt
+   */
+  public void retry(String error, ZonedDateTime retryDate) {
+    attempts++;
+    lastError = error;
+    nextAttemptDate = retryDate;
+  }
+
+  /**
+   * Records a failed attempt after which the entry is not retried anymore.
+   *
+   * @param error reason of the failure
+   */
+  public void fail(String error) {
+    attempts++;
+    lastError = error;
+    status = Status.FAILED;
+  }
+
+  public enum Type {
+    NONFUNCTIONAL_CCE,
+    NOTIFICATION
+  }
+
+  public enum Status {
+    PENDING,
+    FAILED
+  }
+}
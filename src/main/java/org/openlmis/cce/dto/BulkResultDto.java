@@ -0,0 +1,53 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.openlmis.cce.util.Message;
+
+/**
+ * Result of saving a single row of a bulk request.
+ *
+ * @param <T> type of the identifier of saved objects
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class BulkResultDto<T> {
+  private int index;
+  private T id;
+  private Status status;
+  private Message.LocalizedMessage error;
+
+  public static <T> BulkResultDto<T> created(int index, T id) {
+    return new BulkResultDto<>(index, id, Status.CREATED, null);
+  }
+
+  public static <T> BulkResultDto<T> updated(int index, T id) {
+    return new BulkResultDto<>(index, id, Status.UPDATED, null);
+  }
+
+  public static <T> BulkResultDto<T> failed(int index, T id, Message.LocalizedMessage error) {
+    return new BulkResultDto<>(index, id, Status.FAILED, error);
+  }
+
+  public enum Status {
+    CREATED, UPDATED, FAILED
+  }
+}
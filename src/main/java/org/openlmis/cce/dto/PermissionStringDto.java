@@ -59,7 +59,8 @@ public class PermissionStringDto {
    */
   public static PermissionStringDto from(String permissionString) {
     String[] elements = splitByWholeSeparator(permissionString, "|");
-    String rightName = elements[0];
+    // there are only a few distinct rights, so users with many strings share the same names
+    String rightName = elements[0].intern();
     UUID facilityId = elements.length > 1 ? UUID.fromString(elements[1]) : null;
     UUID programId = elements.length > 2 ? UUID.fromString(elements[2]) : null;
 
@@ -39,6 +39,8 @@ public class AlertMessageKeys {
       join(ERROR_PREFIX, "statusKey", REQUIRED);
   public static final String ERROR_DEVICE_ID_NOT_FOUND =
       join(ERROR_PREFIX, "deviceId.notFound");
+  public static final String ERROR_BATCH_TOO_LARGE =
+      join(ERROR_PREFIX, "batch.tooLarge");
 
   private AlertMessageKeys() {
     throw new UnsupportedOperationException();
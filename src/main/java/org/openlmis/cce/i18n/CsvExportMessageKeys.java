@@ -22,6 +22,9 @@ public class CsvExportMessageKeys {
   private static final String ERROR_PREFIX = SERVICE_ERROR_PREFIX + ".export";
 
   public static final String ERROR_EXPORT_RECORD_INVALID = ERROR_PREFIX + ".record.invalid";
+  public static final String ERROR_EXPORT_JOB_NOT_FOUND = ERROR_PREFIX + ".job.notFound";
+  public static final String ERROR_EXPORT_JOB_NOT_COMPLETED = ERROR_PREFIX + ".job.notCompleted";
+  public static final String ERROR_EXPORT_JOB_NOT_RESUMABLE = ERROR_PREFIX + ".job.notResumable";
 
   private CsvExportMessageKeys() {
     throw new UnsupportedOperationException();
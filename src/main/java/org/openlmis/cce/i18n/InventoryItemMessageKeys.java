@@ -52,12 +52,22 @@ public class InventoryItemMessageKeys extends MessageKeys {
       join(ERROR_PREFIX, "userId", INVALID);
   public static final String ERROR_ID_MISMATCH =
       join(ERROR_PREFIX, "id", MISMATCH);
+  public static final String ERROR_ID_NOT_UNIQUE =
+      join(ERROR_PREFIX, "id", NOT_UNIQUE);
+  public static final String ERROR_BATCH_TOO_LARGE =
+      join(ERROR_PREFIX, "batch", "tooLarge");
 
   //notifications
   public static final String EMAIL_NONFUNCTIONAL_CCE_SUBJECT
       = SERVICE_PREFIX + ".email.nonfunctionalCce.subject";
   public static final String EMAIL_NONFUNCTIONAL_CCE_CONTENT
       = SERVICE_PREFIX + ".email.nonfunctionalCce.content";
+  public static final String EMAIL_NONFUNCTIONAL_CCE_DIGEST_SUBJECT
+      = SERVICE_PREFIX + ".email.nonfunctionalCce.digest.subject";
+  public static final String EMAIL_NONFUNCTIONAL_CCE_DIGEST_CONTENT
+      = SERVICE_PREFIX + ".email.nonfunctionalCce.digest.content";
+  public static final String EMAIL_NONFUNCTIONAL_CCE_DIGEST_ITEM
+      = SERVICE_PREFIX + ".email.nonfunctionalCce.digest.item";
 
 
   private InventoryItemMessageKeys() {
@@ -20,10 +20,16 @@ public abstract class PageableMessageKeys extends MessageKeys {
   public static final String SIZE = "size";
   public static final String NOT_POSITIVE = "notPositive";
   public static final String NULL = "null";
+  public static final String CURSOR = "cursor";
 
   public static final String ERROR = join(SERVICE_ERROR_PREFIX, PAGEABLE);
   public static final String ERROR_SIZE = join(ERROR, SIZE);
   public static final String ERROR_SIZE_NULL = join(ERROR_SIZE, NULL);
   public static final String ERROR_SIZE_NOT_POSITIVE = join(ERROR_SIZE, NOT_POSITIVE);
+  public static final String ERROR_SORT_NOT_SUPPORTED = join(ERROR, "sort", "notSupported");
+  public static final String ERROR_CURSOR = join(ERROR, CURSOR);
+  public static final String ERROR_CURSOR_INVALID = join(ERROR_CURSOR, INVALID);
+  public static final String ERROR_CURSOR_SORT_NOT_SUPPORTED =
+      join(ERROR_CURSOR, "sort", "notSupported");
 
 }
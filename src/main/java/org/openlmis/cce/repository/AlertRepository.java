@@ -15,6 +15,7 @@
 
 package org.openlmis.cce.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import org.javers.spring.annotation.JaversSpringDataAuditable;
@@ -56,6 +57,13 @@ public interface AlertRepository extends PagingAndSortingRepository<Alert, UUID>
   
   Alert findByExternalId(String externalId);
 
+  @Query(value = "SELECT DISTINCT ca"
+      + " FROM Alert ca"
+      + " LEFT JOIN FETCH ca.statusMessages"
+      + " WHERE ca.externalId IN :externalIds"
+  )
+  List<Alert> findByExternalIdIn(@Param("externalIds") Collection<String> externalIds);
+
   @Query(value = "SELECT\n"
       + "    ca.*\n"
       + "FROM\n"
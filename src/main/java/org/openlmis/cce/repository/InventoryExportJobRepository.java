@@ -0,0 +1,70 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.repository;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import javax.persistence.LockModeType;
+import org.openlmis.cce.domain.InventoryExportJob;
+import org.openlmis.cce.domain.InventoryExportJob.Status;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
+
+public interface InventoryExportJobRepository
+    extends PagingAndSortingRepository<InventoryExportJob, UUID> {
+
+  /**
+   * Locks the oldest queued job. Jobs already locked by another transaction are skipped, so
+   * several instances can take jobs from the queue at the same time.
+   */
+  @Query(value = "SELECT\n"
+      + "    j.*\n"
+      + "FROM\n"
+      + "    cce.inventory_export_jobs j\n"
+      + "WHERE\n"
+      + "    j.status = 'QUEUED'\n"
+      + "ORDER BY j.createddate\n"
+      + "LIMIT 1\n"
+      + "FOR UPDATE SKIP LOCKED",
+      nativeQuery = true)
+  List<InventoryExportJob> findNextQueuedForUpdate();
+
+  /**
+   * Locks the job until the end of the transaction, so that the user and the worker do not
+   * overwrite each other's changes of it.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT j FROM InventoryExportJob j WHERE j.id = :id")
+  Optional<InventoryExportJob> findByIdForUpdate(@Param("id") UUID id);
+
+  /**
+   * Extends the lease of the given jobs that are still running.
+   */
+  @Modifying
+  @Query("UPDATE InventoryExportJob j SET j.leaseExpiryDate = :date"
+      + " WHERE j.id IN :ids AND j.status = :status")
+  void renewLeases(@Param("ids") Collection<UUID> ids, @Param("status") Status status,
+      @Param("date") ZonedDateTime date);
+
+  List<InventoryExportJob> findByStatusInAndModifiedDateBefore(Collection<Status> statuses,
+      ZonedDateTime date);
+}
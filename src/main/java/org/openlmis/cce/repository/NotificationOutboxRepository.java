@@ -0,0 +1,70 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.repository;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import org.openlmis.cce.domain.NotificationOutboxEntry;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
+
+public interface NotificationOutboxRepository
+    extends PagingAndSortingRepository<NotificationOutboxEntry, UUID> {
+
+  /**
+   * Locks pending entries that are due at the given date. Entries already locked by another
+   * transaction are skipped, so several workers can drain the outbox at the same time.
+   */
+  @Query(value = "SELECT\n"
+      + "    o.*\n"
+      + "FROM\n"
+      + "    cce.notification_outbox o\n"
+      + "WHERE\n"
+      + "    o.status = 'PENDING'\n"
+      + "    AND o.nextattemptdate <= :date\n"
+      + "ORDER BY o.nextattemptdate\n"
+      + "LIMIT :limit\n"
+      + "FOR UPDATE SKIP LOCKED",
+      nativeQuery = true)
+  List<NotificationOutboxEntry> findDueForUpdate(@Param("date") ZonedDateTime date,
+      @Param("limit") int limit);
+
+  /**
+   * Locks all pending entries of the given type and group, whether they are due or not. Entries
+   * locked by another transaction are waited for, so that an entry handled there is not returned.
+   */
+  @Query(value = "SELECT\n"
+      + "    o.*\n"
+      + "FROM\n"
+      + "    cce.notification_outbox o\n"
+      + "WHERE\n"
+      + "    o.type = :type\n"
+      + "    AND o.groupkey = :groupKey\n"
+      + "    AND o.status = 'PENDING'\n"
+      + "ORDER BY o.createddate\n"
+      + "FOR UPDATE",
+      nativeQuery = true)
+  List<NotificationOutboxEntry> findPendingGroupForUpdate(@Param("type") String type,
+      @Param("groupKey") String groupKey);
+
+  @Modifying
+  @Query("DELETE FROM NotificationOutboxEntry e WHERE e.id IN :ids")
+  void deleteByIdIn(@Param("ids") Collection<UUID> ids);
+}
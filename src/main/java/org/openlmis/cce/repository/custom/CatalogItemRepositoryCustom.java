@@ -16,6 +16,7 @@
 package org.openlmis.cce.repository.custom;
 
 import java.util.List;
+import java.util.stream.Stream;
 import org.openlmis.cce.domain.CatalogItem;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -26,4 +27,6 @@ public interface CatalogItemRepositoryCustom {
                            Boolean visibleInCatalog, Pageable pageable);
 
   List<CatalogItem> findExisting(List<CatalogItem> items);
+
+  Stream<CatalogItem> streamAll();
 }
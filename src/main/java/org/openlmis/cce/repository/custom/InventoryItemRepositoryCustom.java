@@ -16,14 +16,28 @@
 package org.openlmis.cce.repository.custom;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Stream;
 import org.openlmis.cce.domain.FunctionalStatus;
 import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.util.KeysetPage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 public interface InventoryItemRepositoryCustom {
 
-  Page<InventoryItem> search(Collection<UUID> facilityIds, Collection<UUID> programIds,
+  Page<InventoryItem> search(Collection<FacilityProgramPair> pairs,
                              FunctionalStatus functionalStatus, Pageable pageable);
+
+  KeysetPage<InventoryItem> seek(Collection<FacilityProgramPair> pairs,
+                                 FunctionalStatus functionalStatus, String after,
+                                 boolean includeTotal, Pageable pageable);
+
+  Map<InventoryItemKey, UUID> findIdsByKeys(Collection<InventoryItemKey> keys);
+
+  Stream<Object[]> streamExportRows(UUID facilityId, UUID programId);
+
+  Stream<Object[]> streamExportJobRows(UUID jobId, FunctionalStatus functionalStatus,
+                                       UUID afterId);
 }
@@ -15,20 +15,24 @@
 
 package org.openlmis.cce.repository.custom.impl;
 
-import static org.openlmis.cce.domain.CatalogItem.EQUIPMENT_CODE;
-import static org.openlmis.cce.domain.CatalogItem.MANUFACTURER_FIELD;
-import static org.openlmis.cce.domain.CatalogItem.MODEL_FIELD;
+import static org.openlmis.cce.repository.custom.impl.PostgresArrays.toTextArray;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import org.hibernate.jpa.QueryHints;
 import org.openlmis.cce.domain.CatalogItem;
 import org.openlmis.cce.repository.custom.CatalogItemRepositoryCustom;
 import org.openlmis.cce.util.Pagination;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -38,9 +42,26 @@ public class CatalogItemRepositoryImpl implements CatalogItemRepositoryCustom {
   private static final String ARCHIVED = "archived";
   private static final String VISIBLE_IN_CATALOG = "visibleInCatalog";
 
+  private static final String EQUIPMENT_CODES = "equipmentCodes";
+  private static final String MANUFACTURERS = "manufacturers";
+  private static final String MODELS = "models";
+
+  private static final String FIND_EXISTING_SQL = "SELECT c.*"
+      + " FROM cce.cce_catalog_items AS c"
+      + " WHERE c.equipmentCode = ANY(CAST(:" + EQUIPMENT_CODES + " AS text[]))"
+      + " UNION"
+      + " SELECT c.*"
+      + " FROM cce.cce_catalog_items AS c"
+      + " INNER JOIN unnest(CAST(:" + MANUFACTURERS + " AS text[]), CAST(:" + MODELS
+      + " AS text[])) AS k (manufacturer, model)"
+      + " ON c.manufacturer = k.manufacturer AND c.model = k.model";
+
   @PersistenceContext
   private EntityManager entityManager;
 
+  @Value("${export.fetchSize}")
+  private int fetchSize;
+
   /**
    * This method is supposed to retrieve all catalog items with matched parameters. To find all
    * wanted Catalog Items by type we use criteria query and equals operator.
@@ -71,34 +92,55 @@ public class CatalogItemRepositoryImpl implements CatalogItemRepositoryCustom {
     return Pagination.getPage(result, pageable, count);
   }
 
+  /**
+   * Finds catalog items that have the equipment code of one of the given items or, for items
+   * without an equipment code, the same manufacturer and model. Codes and (manufacturer, model)
+   * pairs are sent as arrays and matched in one query, so its text and plan do not depend on
+   * the number of items.
+   *
+   * @param items catalog items to look for
+   * @return existing catalog items matching any of the given items
+   */
   @Override
   public List<CatalogItem> findExisting(List<CatalogItem> items) {
-    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-    CriteriaQuery<CatalogItem> query = builder.createQuery(CatalogItem.class);
-    Root<CatalogItem> root = query.from(CatalogItem.class);
-
-    int size = items.size();
-    Predicate[] predicates = new Predicate[size];
-
-    for (int i = 0; i < size; i++) {
-      CatalogItem catalogItem = items.get(i);
-      Predicate predicate;
-
-      if (null != catalogItem.getEquipmentCode()) {
-        predicate = builder.equal(root.get(EQUIPMENT_CODE), catalogItem.getEquipmentCode());
-      } else {
-        predicate = builder.and(
-            builder.equal(root.get(MANUFACTURER_FIELD), catalogItem.getManufacturer()),
-            builder.equal(root.get(MODEL_FIELD), catalogItem.getModel())
-        );
-      }
-
-      predicates[i] = predicate;
+    if (items.isEmpty()) {
+      return Collections.emptyList();
     }
 
-    query.where(builder.or(predicates));
+    Map<Boolean, List<CatalogItem>> byEquipmentCode = items
+        .stream()
+        .collect(Collectors.partitioningBy(item -> null != item.getEquipmentCode()));
+    List<CatalogItem> withCode = byEquipmentCode.get(true);
+    List<CatalogItem> withoutCode = byEquipmentCode.get(false);
+
+    return entityManager
+        .createNativeQuery(FIND_EXISTING_SQL, CatalogItem.class)
+        .setParameter(EQUIPMENT_CODES, toTextArray(withCode, CatalogItem::getEquipmentCode))
+        .setParameter(MANUFACTURERS, toTextArray(withoutCode, CatalogItem::getManufacturer))
+        .setParameter(MODELS, toTextArray(withoutCode, CatalogItem::getModel))
+        .getResultList();
+  }
+
+  /**
+   * Streams all catalog items through a forward-only cursor, {@code export.fetchSize} rows at a
+   * time. Each item is detached once it is read so the persistence context does not grow with
+   * the number of items. The caller has to close the stream and consume it inside a transaction.
+   *
+   * @return stream of all catalog items
+   */
+  @Override
+  public Stream<CatalogItem> streamAll() {
+    return entityManager
+        .createQuery("SELECT c FROM CatalogItem AS c", CatalogItem.class)
+        .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+        .setHint(QueryHints.HINT_READONLY, true)
+        .getResultStream()
+        .map(this::detach);
+  }
 
-    return entityManager.createQuery(query).getResultList();
+  private CatalogItem detach(CatalogItem item) {
+    entityManager.detach(item);
+    return item;
   }
 
   private <T> CriteriaQuery<T> prepareQuery(CriteriaQuery<T> query, String type,
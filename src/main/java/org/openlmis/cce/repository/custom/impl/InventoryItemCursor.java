@@ -0,0 +1,166 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.repository.custom.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.openlmis.cce.i18n.PageableMessageKeys.ERROR_CURSOR_INVALID;
+import static org.openlmis.cce.i18n.PageableMessageKeys.ERROR_CURSOR_SORT_NOT_SUPPORTED;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.apache.commons.lang3.StringUtils;
+import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.exception.ValidationMessageException;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Position of the last returned row in keyset (seek) pagination of inventory items. It holds the
+ * values of the sort properties of that row and its id, which breaks ties between rows with equal
+ * sort values. Clients get the position as an opaque, url-safe token.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+final class InventoryItemCursor {
+  static final Map<String, String> PROPERTY_PATHS = ImmutableMap.of(
+      "referenceName", "i.referenceName",
+      "type", "c.type"
+  );
+
+  private static final Map<String, Function<InventoryItem, String>> PROPERTY_VALUES =
+      ImmutableMap.of(
+          "referenceName", InventoryItem::getReferenceName,
+          "type", item -> item.getCatalogItem().getType()
+      );
+
+  // PostgreSQL text values cannot contain the NUL character, so it is safe to use as separator
+  private static final String SEPARATOR = "\u0000";
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+  private final String sort;
+  private final List<String> values;
+  private final UUID id;
+
+  /**
+   * Creates the position before the first row, used to fetch the first keyset page.
+   *
+   * @param sort sort of the page, only properties from {@link #PROPERTY_PATHS} are supported
+   * @return the initial cursor
+   */
+  static InventoryItemCursor initial(Sort sort) {
+    return new InventoryItemCursor(signature(sort), Collections.emptyList(), null);
+  }
+
+  /**
+   * Creates the position of the given inventory item.
+   *
+   * @param item the last row of a page
+   * @param sort sort of the page
+   * @return the cursor pointing to the given item
+   */
+  static InventoryItemCursor of(InventoryItem item, Sort sort) {
+    List<String> values = new ArrayList<>();
+
+    for (Sort.Order order : sort) {
+      values.add(PROPERTY_VALUES.get(order.getProperty()).apply(item));
+    }
+
+    return new InventoryItemCursor(signature(sort), values, item.getId());
+  }
+
+  /**
+   * Reads the position from the given token. An empty token means the initial position.
+   *
+   * @param token token created by {@link #encode()}
+   * @param sort  sort of the requested page, it has to be the same as the one used to create the
+   *              token
+   * @return the decoded cursor
+   * @throws ValidationMessageException if the token is malformed or it was created for another
+   *                                    sort
+   */
+  static InventoryItemCursor decode(String token, Sort sort) {
+    String signature = signature(sort);
+
+    if (StringUtils.isBlank(token)) {
+      return new InventoryItemCursor(signature, Collections.emptyList(), null);
+    }
+
+    try {
+      String[] parts = new String(DECODER.decode(token), UTF_8).split(SEPARATOR, -1);
+
+      if (parts.length != sort.stream().count() + 2 || !signature.equals(parts[0])) {
+        throw new ValidationMessageException(ERROR_CURSOR_INVALID);
+      }
+
+      List<String> values = Arrays.asList(parts).subList(1, parts.length - 1);
+      UUID id = UUID.fromString(parts[parts.length - 1]);
+
+      return new InventoryItemCursor(signature, values, id);
+    } catch (IllegalArgumentException exp) {
+      throw new ValidationMessageException(exp, ERROR_CURSOR_INVALID);
+    }
+  }
+
+  /**
+   * Checks if this is the position before the first row.
+   */
+  boolean isInitial() {
+    return null == id;
+  }
+
+  /**
+   * Writes the position as an opaque, url-safe token.
+   */
+  String encode() {
+    List<Object> parts = new ArrayList<>();
+    parts.add(sort);
+    parts.addAll(values);
+    parts.add(id);
+
+    return ENCODER.encodeToString(Joiner.on(SEPARATOR).join(parts).getBytes(UTF_8));
+  }
+
+  private static String signature(Sort sort) {
+    List<String> orders = new ArrayList<>();
+
+    for (Sort.Order order : sort) {
+      if (!PROPERTY_PATHS.containsKey(order.getProperty())) {
+        throw new ValidationMessageException(
+            ERROR_CURSOR_SORT_NOT_SUPPORTED, order.getProperty());
+      }
+
+      orders.add(order.getProperty() + ':' + order.getDirection());
+    }
+
+    return Joiner.on(',').join(orders);
+  }
+
+}
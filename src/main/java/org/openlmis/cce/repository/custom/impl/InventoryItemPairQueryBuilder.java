@@ -0,0 +1,105 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.repository.custom.impl;
+
+import com.google.common.base.Joiner;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import javax.persistence.TypedQuery;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.PostgresUUIDType;
+import org.openlmis.cce.domain.FunctionalStatus;
+import org.openlmis.cce.repository.custom.FacilityProgramPair;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Builds the native SQL used by inventory item search limited to exact (facility, program) pairs.
+ * Instead of two IN lists, which match the cross product of facilities and programs, the pairs
+ * are sent as two arrays in single parameters each and joined with inventory items by unnest, so
+ * the query text does not depend on the number of pairs and the facility/program index is used.
+ *
+ * <p>The select query uses {i.*} and {c.*} aliases, so it has to be executed with the inventory
+ * item entity registered as "i" and the catalog item as "c".
+ */
+class InventoryItemPairQueryBuilder extends InventoryItemQueryBuilder {
+  static final String PAIR_FACILITY_IDS = "pairFacilityIds";
+  static final String PAIR_PROGRAM_IDS = "pairProgramIds";
+
+  static final String PAIRS_JOIN = "INNER JOIN unnest("
+      + "CAST(:" + PAIR_FACILITY_IDS + " AS uuid[]), CAST(:" + PAIR_PROGRAM_IDS + " AS uuid[])"
+      + ") AS p (facilityId, programId)"
+      + " ON i.facilityId = p.facilityId AND i.programId = p.programId";
+
+  static final String PAIR_SELECT_SQL = "SELECT {i.*}, {c.*} FROM cce.cce_inventory_items AS i"
+      + " INNER JOIN cce.cce_catalog_items AS c ON c.id = i.catalogItemId " + PAIRS_JOIN;
+  static final String PAIR_COUNT_SQL = "SELECT count(*) FROM cce.cce_inventory_items AS i "
+      + PAIRS_JOIN;
+
+  private final Collection<FacilityProgramPair> pairs;
+
+  InventoryItemPairQueryBuilder(Collection<FacilityProgramPair> pairs,
+      FunctionalStatus functionalStatus, Pageable pageable, boolean count,
+      InventoryItemCursor cursor) {
+    super(null, null, functionalStatus, pageable, count, cursor);
+    this.pairs = pairs;
+  }
+
+  @Override
+  String getSelectSql() {
+    return PAIR_SELECT_SQL;
+  }
+
+  @Override
+  String getCountSql() {
+    return PAIR_COUNT_SQL;
+  }
+
+  @Override
+  void addScopePredicates(List<String> predicates) {
+    // rows are limited by the join with pairs
+  }
+
+  @Override
+  void setScopeParameters(TypedQuery<?> query) {
+    setParameter(query, PAIR_FACILITY_IDS, toArray(FacilityProgramPair::getFacilityId));
+    setParameter(query, PAIR_PROGRAM_IDS, toArray(FacilityProgramPair::getProgramId));
+  }
+
+  @Override
+  void setParameter(TypedQuery<?> query, String name, Object value) {
+    // types of native query parameters are not known, so they are set explicitly
+    if (value instanceof UUID) {
+      query.unwrap(NativeQuery.class).setParameter(name, value, PostgresUUIDType.INSTANCE);
+    } else if (value instanceof Enum) {
+      query.setParameter(name, ((Enum) value).name());
+    } else {
+      query.setParameter(name, value);
+    }
+  }
+
+  /*
+    Iteration order of the pairs collection does not change between calls, so elements with the
+    same index in both arrays belong to the same pair.
+   */
+  private String toArray(Function<FacilityProgramPair, UUID> element) {
+    StringBuilder array = new StringBuilder("{");
+    Joiner.on(',').appendTo(array, pairs.stream().map(element).iterator());
+    return array.append('}').toString();
+  }
+
+}
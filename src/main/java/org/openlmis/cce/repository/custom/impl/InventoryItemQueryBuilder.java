@@ -15,7 +15,6 @@
 
 package org.openlmis.cce.repository.custom.impl;
 
-import static java.lang.String.format;
 import static org.apache.commons.collections.CollectionUtils.isEmpty;
 
 import com.google.common.base.Joiner;
@@ -24,29 +23,45 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
-import lombok.AllArgsConstructor;
+import javax.persistence.TypedQuery;
 import org.openlmis.cce.domain.FunctionalStatus;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 
-@AllArgsConstructor
+/**
+ * Builds the JPQL used by inventory item search. Search values are never inlined into the query
+ * text; they are bound as named parameters by {@link #setParameters(TypedQuery)}, so the query
+ * text depends only on which filters and sort orders are used and can be reused by the Hibernate
+ * query plan cache and the JDBC prepared statement cache.
+ *
+ * <p>If a cursor is passed, the query is built for keyset pagination: rows are additionally
+ * ordered by id and only rows placed after the cursor are selected.
+ */
 class InventoryItemQueryBuilder {
   static final String SELECT_SQL = "SELECT i FROM InventoryItem AS i"
       + " INNER JOIN FETCH i.catalogItem AS c";
   static final String COUNT_SQL = "SELECT count(i) FROM InventoryItem AS i";
 
-  static final String FACILITY_PREDICATE = "i.facilityId IN ('%s')";
-  static final String PROGRAM_PREDICATE = "i.programId IN ('%s')";
-  static final String STATUS_PREDICATE = "i.functionalStatus = '%s'";
+  static final String FACILITY_IDS = "facilityIds";
+  static final String PROGRAM_IDS = "programIds";
+  static final String FUNCTIONAL_STATUS = "functionalStatus";
+
+  static final String FACILITY_PREDICATE = "i.facilityId IN (:" + FACILITY_IDS + ")";
+  static final String PROGRAM_PREDICATE = "i.programId IN (:" + PROGRAM_IDS + ")";
+  static final String STATUS_PREDICATE = "i.functionalStatus = :" + FUNCTIONAL_STATUS;
+
+  static final String AFTER_VALUE = "afterValue";
+  static final String AFTER_ID = "afterId";
+  static final String ID_PATH = "i.id";
 
   private static final String WHERE = "WHERE";
   private static final String ORDER_BY = "ORDER BY";
 
   private static final String AND = "AND";
+  private static final String OR = "OR";
   private static final String ASC = "ASC";
   private static final String DESC = "DESC";
 
-  private static final String COLLECTION_JOINER = "','";
   private static final String COMMA = ",";
   private static final char SPACE = ' ';
 
@@ -58,6 +73,23 @@ class InventoryItemQueryBuilder {
   private final FunctionalStatus functionalStatus;
   private final Pageable pageable;
   private final boolean count;
+  private final InventoryItemCursor cursor;
+
+  InventoryItemQueryBuilder(Collection<UUID> facilityIds, Collection<UUID> programIds,
+      FunctionalStatus functionalStatus, Pageable pageable, boolean count) {
+    this(facilityIds, programIds, functionalStatus, pageable, count, null);
+  }
+
+  InventoryItemQueryBuilder(Collection<UUID> facilityIds, Collection<UUID> programIds,
+      FunctionalStatus functionalStatus, Pageable pageable, boolean count,
+      InventoryItemCursor cursor) {
+    this.facilityIds = facilityIds;
+    this.programIds = programIds;
+    this.functionalStatus = functionalStatus;
+    this.pageable = pageable;
+    this.count = count;
+    this.cursor = cursor;
+  }
 
   String build() {
     List<String> query = Lists.newArrayList();
@@ -69,42 +101,126 @@ class InventoryItemQueryBuilder {
     return Joiner.on(SPACE).join(query);
   }
 
+  /**
+   * Binds search values to the named parameters used by the query returned from {@link #build()}.
+   *
+   * @param query query created from the result of {@link #build()}
+   * @return the passed query
+   */
+  <T> TypedQuery<T> setParameters(TypedQuery<T> query) {
+    setScopeParameters(query);
+
+    if (null != functionalStatus) {
+      setParameter(query, FUNCTIONAL_STATUS, functionalStatus);
+    }
+
+    if (hasSeekPredicate()) {
+      List<String> values = cursor.getValues();
+
+      for (int i = 0; i < values.size(); ++i) {
+        setParameter(query, AFTER_VALUE + i, values.get(i));
+      }
+
+      setParameter(query, AFTER_ID, cursor.getId());
+    }
+
+    return query;
+  }
+
+  String getSelectSql() {
+    return SELECT_SQL;
+  }
+
+  String getCountSql() {
+    return COUNT_SQL;
+  }
+
+  /**
+   * Adds predicates that limit rows to the facilities and programs being searched.
+   */
+  void addScopePredicates(List<String> predicates) {
+    if (!isEmpty(facilityIds)) {
+      predicates.add(FACILITY_PREDICATE);
+    }
+
+    if (!isEmpty(programIds)) {
+      predicates.add(PROGRAM_PREDICATE);
+    }
+  }
+
+  void setScopeParameters(TypedQuery<?> query) {
+    if (!isEmpty(facilityIds)) {
+      setParameter(query, FACILITY_IDS, facilityIds);
+    }
+
+    if (!isEmpty(programIds)) {
+      setParameter(query, PROGRAM_IDS, programIds);
+    }
+  }
+
+  void setParameter(TypedQuery<?> query, String name, Object value) {
+    query.setParameter(name, value);
+  }
+
   private void addSelect(List<String> query) {
     if (count) {
-      query.add(COUNT_SQL);
+      query.add(getCountSql());
     } else {
-      query.add(SELECT_SQL);
+      query.add(getSelectSql());
     }
   }
 
   private void addWhere(List<String> query) {
-    boolean hasFacilities = !isEmpty(facilityIds);
-    boolean hasPrograms = !isEmpty(programIds);
-    boolean hasFunctionalStatus = functionalStatus != null;
+    List<String> predicates = Lists.newArrayList();
+    addScopePredicates(predicates);
+
+    if (functionalStatus != null) {
+      predicates.add(STATUS_PREDICATE);
+    }
 
-    if (hasFacilities || hasPrograms || hasFunctionalStatus) {
+    if (hasSeekPredicate()) {
+      predicates.add(getSeekPredicate());
+    }
+
+    if (!predicates.isEmpty()) {
       query.add(WHERE);
+      query.add(Joiner.on(SPACE + AND + SPACE).join(predicates));
+    }
+  }
 
-      if (hasFacilities) {
-        query.add(format(FACILITY_PREDICATE, Joiner.on(COLLECTION_JOINER).join(facilityIds)));
-      }
+  private boolean hasSeekPredicate() {
+    return !count && null != cursor && !cursor.isInitial();
+  }
 
-      if (hasPrograms) {
-        if (hasFacilities) {
-          query.add(AND);
-        }
+  /*
+    Rows after the cursor are the ones that are greater (or lower for descending order) on the
+    first sort property, or equal on it and greater on the next one, and so on, with the id as the
+    last sort property. For sort (a ASC, b DESC) it gives:
+    ((a > :afterValue0) OR (a = :afterValue0 AND b < :afterValue1)
+      OR (a = :afterValue0 AND b = :afterValue1 AND i.id > :afterId))
+   */
+  private String getSeekPredicate() {
+    List<String> alternatives = Lists.newArrayList();
+    List<String> equalities = Lists.newArrayList();
+    int index = 0;
 
-        query.add(format(PROGRAM_PREDICATE, Joiner.on(COLLECTION_JOINER).join(programIds)));
-      }
+    for (Sort.Order order : pageable.getSort()) {
+      String path = InventoryItemCursor.PROPERTY_PATHS.get(order.getProperty());
+      String parameter = ':' + AFTER_VALUE + index;
+      String operator = order.isAscending() ? " > " : " < ";
 
-      if (hasFunctionalStatus) {
-        if (hasFacilities || hasPrograms) {
-          query.add(AND);
-        }
+      List<String> alternative = Lists.newArrayList(equalities);
+      alternative.add(path + operator + parameter);
+      alternatives.add('(' + Joiner.on(SPACE + AND + SPACE).join(alternative) + ')');
 
-        query.add(format(STATUS_PREDICATE, functionalStatus.toString()));
-      }
+      equalities.add(path + " = " + parameter);
+      ++index;
     }
+
+    equalities.add(ID_PATH + " > :" + AFTER_ID);
+    alternatives.add('(' + Joiner.on(SPACE + AND + SPACE).join(equalities) + ')');
+
+    return '(' + Joiner.on(SPACE + OR + SPACE).join(alternatives) + ')';
   }
 
   private void addOrder(List<String> query, Pageable pageable) {
@@ -113,8 +229,9 @@ class InventoryItemQueryBuilder {
     }
 
     Iterator<Sort.Order> iterator = pageable.getSort().iterator();
+    boolean keyset = null != cursor;
 
-    if (!iterator.hasNext()) {
+    if (!iterator.hasNext() && !keyset) {
       return;
     }
 
@@ -140,6 +257,15 @@ class InventoryItemQueryBuilder {
         query.add(COMMA);
       }
     }
+
+    if (keyset) {
+      if (pageable.getSort().isSorted()) {
+        query.add(COMMA);
+      }
+
+      query.add(ID_PATH);
+      query.add(ASC);
+    }
   }
 
 
@@ -15,66 +15,305 @@
 
 package org.openlmis.cce.repository.custom.impl;
 
+import static org.openlmis.cce.i18n.PageableMessageKeys.ERROR_SORT_NOT_SUPPORTED;
+import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.FUNCTIONAL_STATUS;
+import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.STATUS_PREDICATE;
+import static org.openlmis.cce.repository.custom.impl.PostgresArrays.toTextArray;
+
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.PostgresUUIDType;
+import org.hibernate.type.StringType;
 import org.openlmis.cce.domain.FunctionalStatus;
 import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.exception.ValidationMessageException;
+import org.openlmis.cce.repository.custom.FacilityProgramPair;
+import org.openlmis.cce.repository.custom.InventoryItemKey;
 import org.openlmis.cce.repository.custom.InventoryItemRepositoryCustom;
+import org.openlmis.cce.util.KeysetPage;
 import org.openlmis.cce.util.Pagination;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 public class InventoryItemRepositoryImpl implements InventoryItemRepositoryCustom {
 
+  private static final String TYPE = "type";
+
+  private static final String TRACKING_IDS = "trackingIds";
+  private static final String MODELS = "models";
+  private static final String TYPES = "types";
+
+  private static final String FIND_IDS_BY_KEYS_SQL = "SELECT i.id, i.equipmentTrackingId,"
+      + " c.model, c.type"
+      + " FROM cce.cce_inventory_items AS i"
+      + " INNER JOIN cce.cce_catalog_items AS c ON c.id = i.catalogItemId"
+      + " INNER JOIN unnest(CAST(:" + TRACKING_IDS + " AS text[]), CAST(:" + MODELS
+      + " AS text[]), CAST(:" + TYPES + " AS text[])) AS k (equipmentTrackingId, model, type)"
+      + " ON i.equipmentTrackingId = k.equipmentTrackingId AND c.model = k.model"
+      + " AND c.type = k.type";
+
+  private static final String FACILITY_ID = "facilityId";
+  private static final String PROGRAM_ID = "programId";
+
+  private static final String JOB_ID = "jobId";
+  private static final String AFTER_ID = "afterId";
+
+  private static final String EXPORT_COLUMNS = "f.name AS facilityName, c.model, c.type,"
+      + " c.netVolume, i.referenceName, p.name AS programName, i.equipmentTrackingId,"
+      + " i.yearOfInstallation, i.yearOfWarrantyExpiry, i.functionalStatus,"
+      + " CONCAT(u.firstName, ' ', u.lastName) AS lastModifierName, i.modifiedDate";
+
+  private static final String EXPORT_JOINS =
+      " INNER JOIN cce.cce_catalog_items AS c ON c.id = i.catalogItemId"
+      + " INNER JOIN referencedata.facilities AS f ON f.id = i.facilityId"
+      + " INNER JOIN referencedata.programs AS p ON p.id = i.programId"
+      + " INNER JOIN referencedata.users AS u ON u.id = i.lastModifierId";
+
+  private static final String EXPORT_ROWS_SQL = "SELECT " + EXPORT_COLUMNS
+      + " FROM cce.cce_inventory_items AS i" + EXPORT_JOINS
+      + " WHERE f.id = :" + FACILITY_ID + " AND p.id = :" + PROGRAM_ID;
+
+  private static final String EXPORT_JOB_ROWS_SQL = "SELECT CAST(i.id AS varchar) AS id, "
+      + EXPORT_COLUMNS
+      + " FROM cce.cce_inventory_items AS i"
+      + " INNER JOIN cce.inventory_export_job_pairs AS s"
+      + " ON s.facilityId = i.facilityId AND s.programId = i.programId" + EXPORT_JOINS
+      + " WHERE s.jobId = :" + JOB_ID;
+
   @PersistenceContext
   private EntityManager entityManager;
 
+  @Value("${export.fetchSize}")
+  private int fetchSize;
+
   /**
-   * This method is supposed to retrieve all inventory items with matched parameters. Result is
-   * sorted and paginated by pageable parameter. You can use 'type' sort value and it will sort
-   * inventory items by their catalog item type.
+   * This method is supposed to retrieve all inventory items that belong to one of the given
+   * (facility, program) pairs and match other parameters. It does not return items from the
+   * cross product of facilities and programs. Result is sorted and paginated by pageable
+   * parameter. You can use 'type' sort value and it will sort inventory items by their catalog
+   * item type.
    *
-   * @param facilityIds list of facility ids
-   * @param programIds  list of program ids
-   * @param pageable    pagination and sort parameters
-   * @return Page of Catalog Items matching the parameters.
+   * @param pairs    facility and program pairs
+   * @param pageable pagination and sort parameters
+   * @return Page of Inventory Items matching the parameters.
    */
-  public Page<InventoryItem> search(Collection<UUID> facilityIds, Collection<UUID> programIds,
+  public Page<InventoryItem> search(Collection<FacilityProgramPair> pairs,
                                     FunctionalStatus functionalStatus, Pageable pageable) {
-    TypedQuery<Long> count = createQuery(
-        facilityIds, programIds, functionalStatus, pageable, Long.class
-    );
+    checkSortProperties(pageable.getSort());
 
-    TypedQuery<InventoryItem> select = createQuery(
-        facilityIds, programIds, functionalStatus, pageable, InventoryItem.class
-    );
+    List<InventoryItem> list = toInventoryItems(createPairQuery(
+        new InventoryItemPairQueryBuilder(pairs, functionalStatus, pageable, false, null))
+        .setMaxResults(pageable.getPageSize())
+        .setFirstResult(pageable.getPageNumber() * pageable.getPageSize())
+        .getResultList());
 
-    List<InventoryItem> list = select.getResultList();
-    Long size = count.getSingleResult();
+    long size = countPairs(pairs, functionalStatus, pageable);
 
     return Pagination.getPage(list, pageable, size);
   }
 
-  private <T> TypedQuery<T> createQuery(Collection<UUID> facilities, Collection<UUID> programs,
-                                        FunctionalStatus functionalStatus, Pageable pageable,
-                                        Class<T> type) {
-    boolean isNumber = Number.class.isAssignableFrom(type);
-    String sql = new InventoryItemQueryBuilder(facilities, programs, functionalStatus, pageable,
-        isNumber).build();
+  /**
+   * This method is supposed to retrieve inventory items that belong to one of the given
+   * (facility, program) pairs and match other parameters, using keyset (seek) pagination. Instead
+   * of skipping rows of previous pages, it selects rows placed after the row pointed by the
+   * cursor, and the total number of rows is counted only if it is requested. Only sorting by
+   * 'referenceName' and 'type' is supported, rows are additionally sorted by id.
+   *
+   * @param pairs        facility and program pairs
+   * @param after        cursor returned with the previous page, empty for the first page
+   * @param includeTotal true if the total number of matching rows should be counted
+   * @param pageable     page size and sort parameters, the page number is ignored
+   * @return Page of Inventory Items placed after the cursor.
+   */
+  public KeysetPage<InventoryItem> seek(Collection<FacilityProgramPair> pairs,
+                                        FunctionalStatus functionalStatus, String after,
+                                        boolean includeTotal, Pageable pageable) {
+    Sort sort = pageable.getSort();
+    int size = pageable.getPageSize();
+    InventoryItemCursor cursor = InventoryItemCursor.decode(after, sort);
 
-    TypedQuery<T> query = entityManager.createQuery(sql, type);
+    // one more row is fetched to find out if there is a next page
+    List<InventoryItem> list = toInventoryItems(createPairQuery(
+        new InventoryItemPairQueryBuilder(pairs, functionalStatus, pageable, false, cursor))
+        .setMaxResults(size < Integer.MAX_VALUE ? size + 1 : size)
+        .getResultList());
 
-    if (!isNumber && null != pageable) {
-      query
-          .setMaxResults(pageable.getPageSize())
-          .setFirstResult(pageable.getPageNumber() * pageable.getPageSize());
+    String next = null;
+    if (list.size() > size) {
+      list = list.subList(0, size);
+      next = InventoryItemCursor.of(list.get(size - 1), sort).encode();
     }
 
-    return query;
+    Long total = includeTotal ? countPairs(pairs, functionalStatus, pageable) : null;
+
+    return new KeysetPage<>(list, size, next, total);
+  }
+
+  /**
+   * Finds ids of inventory items that have one of the given equipment tracking id, catalog item
+   * model and type combinations. All combinations are sent as three arrays and matched in one
+   * query, whatever their number.
+   *
+   * @param keys combinations to look for
+   * @return ids of found inventory items by their combination
+   */
+  public Map<InventoryItemKey, UUID> findIdsByKeys(Collection<InventoryItemKey> keys) {
+    if (keys.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    List<?> rows = entityManager
+        .createNativeQuery(FIND_IDS_BY_KEYS_SQL)
+        .unwrap(NativeQuery.class)
+        .setParameter(TRACKING_IDS, toTextArray(keys, InventoryItemKey::getEquipmentTrackingId))
+        .setParameter(MODELS, toTextArray(keys, InventoryItemKey::getModel))
+        .setParameter(TYPES, toTextArray(keys, InventoryItemKey::getType))
+        .addScalar("id", PostgresUUIDType.INSTANCE)
+        .addScalar("equipmentTrackingId", StringType.INSTANCE)
+        .addScalar("model", StringType.INSTANCE)
+        .addScalar("type", StringType.INSTANCE)
+        .getResultList();
+
+    Map<InventoryItemKey, UUID> ids = new HashMap<>();
+
+    for (Object row : rows) {
+      Object[] columns = (Object[]) row;
+      ids.put(InventoryItemKey.of((String) columns[1], (String) columns[2], (String) columns[3]),
+          (UUID) columns[0]);
+    }
+
+    return ids;
+  }
+
+  /**
+   * Streams rows of the inventory items CSV export for the given facility and program. Rows are
+   * read through a forward-only cursor, {@code export.fetchSize} rows at a time, so the caller
+   * has to close the stream and consume it inside a transaction.
+   *
+   * @param facilityId id of the facility
+   * @param programId  id of the program
+   * @return stream of facility name, model, type, net volume, reference name, program name,
+   *         equipment tracking id, year of installation, year of warranty expiry, functional
+   *         status, last modifier name and modified date columns
+   */
+  @SuppressWarnings("unchecked")
+  public Stream<Object[]> streamExportRows(UUID facilityId, UUID programId) {
+    return entityManager
+        .createNativeQuery(EXPORT_ROWS_SQL)
+        .unwrap(NativeQuery.class)
+        .setParameter(FACILITY_ID, facilityId)
+        .setParameter(PROGRAM_ID, programId)
+        .setFetchSize(fetchSize)
+        .setReadOnly(true)
+        .stream();
+  }
+
+  /**
+   * Streams rows of an inventory export job, ordered by inventory item id, like
+   * {@link #streamExportRows(UUID, UUID)} does for a single facility and program. Items are taken
+   * from the (facility, program) pairs saved with the job. Each row starts with the id of the
+   * inventory item as text, so the job can be continued after the last written item.
+   *
+   * @param jobId            id of the export job
+   * @param functionalStatus if set, only items with this status are returned
+   * @param afterId          if set, only items with greater ids are returned
+   * @return stream of inventory item id followed by columns of the single facility export
+   */
+  @SuppressWarnings("unchecked")
+  public Stream<Object[]> streamExportJobRows(UUID jobId, FunctionalStatus functionalStatus,
+      UUID afterId) {
+    StringBuilder sql = new StringBuilder(EXPORT_JOB_ROWS_SQL);
+
+    if (null != functionalStatus) {
+      sql.append(" AND ").append(STATUS_PREDICATE);
+    }
+
+    if (null != afterId) {
+      sql.append(" AND i.id > :").append(AFTER_ID);
+    }
+
+    NativeQuery<Object[]> query = entityManager
+        .createNativeQuery(sql.append(" ORDER BY i.id").toString())
+        .unwrap(NativeQuery.class)
+        .setParameter(JOB_ID, jobId, PostgresUUIDType.INSTANCE);
+
+    if (null != functionalStatus) {
+      query.setParameter(FUNCTIONAL_STATUS, functionalStatus.name());
+    }
+
+    if (null != afterId) {
+      query.setParameter(AFTER_ID, afterId, PostgresUUIDType.INSTANCE);
+    }
+
+    return query
+        .setFetchSize(fetchSize)
+        .setReadOnly(true)
+        .stream();
+  }
+
+  private TypedQuery<?> createPairQuery(InventoryItemPairQueryBuilder builder) {
+    NativeQuery<?> query = entityManager
+        .unwrap(Session.class)
+        .createNativeQuery(builder.build())
+        .addEntity("i", InventoryItem.class)
+        .addJoin("c", "i.catalogItem");
+
+    return builder.setParameters(query);
+  }
+
+  private long countPairs(Collection<FacilityProgramPair> pairs,
+                          FunctionalStatus functionalStatus, Pageable pageable) {
+    InventoryItemPairQueryBuilder builder = new InventoryItemPairQueryBuilder(pairs,
+        functionalStatus, pageable, true, null);
+    TypedQuery<?> query = entityManager.createNativeQuery(builder.build())
+        .unwrap(NativeQuery.class);
+
+    return ((Number) builder.setParameters(query).getSingleResult()).longValue();
+  }
+
+  /*
+    Native query is built from sort properties, so they have to be checked. Catalog item type and
+    basic inventory item attributes are allowed.
+   */
+  private void checkSortProperties(Sort sort) {
+    EntityType<InventoryItem> entity = entityManager.getMetamodel().entity(InventoryItem.class);
+
+    for (Sort.Order order : sort) {
+      String property = order.getProperty();
+      boolean basic = entity.getAttributes()
+          .stream()
+          .anyMatch(attribute -> attribute.getName().equals(property)
+              && attribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.BASIC);
+
+      if (!TYPE.equals(property) && !basic) {
+        throw new ValidationMessageException(ERROR_SORT_NOT_SUPPORTED, property);
+      }
+    }
+  }
+
+  /*
+    Rows of the pair query contain the inventory item and its joined catalog item.
+   */
+  private List<InventoryItem> toInventoryItems(List<?> rows) {
+    return rows
+        .stream()
+        .map(row -> (InventoryItem) ((Object[]) row)[0])
+        .collect(Collectors.toList());
   }
 
 }
@@ -0,0 +1,48 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.repository.custom.impl;
+
+import java.util.Collection;
+import java.util.function.Function;
+
+final class PostgresArrays {
+
+  private PostgresArrays() {
+    throw new UnsupportedOperationException();
+  }
+
+  /*
+    Builds a Postgres array literal. Elements are quoted, so they may contain commas, quotes and
+    braces. Iteration order of the collection does not change between calls, so elements with the
+    same index in arrays built from the same collection belong to the same object.
+   */
+  static <T> String toTextArray(Collection<T> objects, Function<T, String> element) {
+    StringBuilder array = new StringBuilder("{");
+
+    for (T object : objects) {
+      if (array.length() > 1) {
+        array.append(',');
+      }
+
+      array
+          .append('"')
+          .append(element.apply(object).replace("\\", "\\\\").replace("\"", "\\\""))
+          .append('"');
+    }
+
+    return array.append('}').toString();
+  }
+}
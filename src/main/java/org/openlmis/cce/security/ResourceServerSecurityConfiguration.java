@@ -90,6 +90,10 @@ public class ResourceServerSecurityConfiguration implements ResourceServerConfig
             "/cce/webjars/**",
             "/cce/docs/**"
         ).permitAll()
+        .antMatchers("/actuator/health").fullyAuthenticated()
+        // metrics and cache management are not meant for users
+        .antMatchers("/actuator/**")
+        .access("#oauth2.isClient() and @permissionService.isServiceToken()")
         .antMatchers("/**").fullyAuthenticated();
   }
 
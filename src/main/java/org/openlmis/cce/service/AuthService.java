@@ -17,8 +17,19 @@ package org.openlmis.cce.service;
 
 import static org.openlmis.cce.util.RequestHelper.createUri;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
 import org.apache.commons.codec.binary.Base64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -26,11 +37,20 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestOperations;
-import org.springframework.web.client.RestTemplate;
 
+/**
+ * Obtains service (client credentials) access tokens. A token is reused until shortly before it
+ * expires; then a single thread fetches a new one while the others keep using the old token. If
+ * that fetch fails, the old token is used until it expires and the fetch is tried again.
+ */
 @Service
 public class AuthService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(AuthService.class);
+
   private static final String ACCESS_TOKEN = "access_token";
+  private static final String EXPIRES_IN = "expires_in";
+
+  static final String TOKEN_METER = "cce.auth.token";
 
   @Value("${auth.server.clientId}")
   private String clientId;
@@ -41,14 +61,112 @@ public class AuthService {
   @Value("${auth.server.authorizationUrl}")
   private String authorizationUrl;
 
-  private RestOperations restTemplate = new RestTemplate();
+  @Value("${auth.server.token.refreshMarginSeconds}")
+  private long refreshMarginSeconds;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Autowired
+  private Clock clock;
+
+  @Autowired
+  private RestOperations restTemplate;
+
+  private final Lock lock = new ReentrantLock();
+  private volatile AccessToken token;
+
+  private Counter hits;
+  private Counter fetches;
+  private Counter invalidations;
+  private Counter refreshFailures;
 
   /**
-   * Retrieves access token from the auth service.
+   * Registers token counters.
+   */
+  @PostConstruct
+  public void init() {
+    hits = meterRegistry.counter(TOKEN_METER, "result", "hit");
+    fetches = meterRegistry.counter(TOKEN_METER, "result", "fetch");
+    invalidations = meterRegistry.counter(TOKEN_METER, "result", "invalidation");
+    refreshFailures = meterRegistry.counter(TOKEN_METER, "result", "refresh_failure");
+  }
+
+  /**
+   * Returns a cached access token or retrieves a new one from the auth service.
    *
    * @return token.
    */
   public String obtainAccessToken() {
+    AccessToken current = token;
+    long now = clock.millis();
+
+    if (null != current && now < current.refreshAt) {
+      hits.increment();
+      return current.value;
+    }
+
+    boolean usable = null != current && now < current.expiresAt;
+
+    if (usable && !lock.tryLock()) {
+      // another thread is refreshing the token, the current one is still valid
+      hits.increment();
+      return current.value;
+    }
+
+    if (!usable) {
+      lock.lock();
+    }
+
+    try {
+      current = token;
+      long lockedAt = clock.millis();
+
+      if (null != current && lockedAt < current.refreshAt) {
+        hits.increment();
+        return current.value;
+      }
+
+      try {
+        AccessToken fetched = fetchAccessToken();
+        token = fetched;
+        fetches.increment();
+
+        return fetched.value;
+      } catch (RuntimeException ex) {
+        if (null == current || lockedAt >= current.expiresAt) {
+          throw ex;
+        }
+
+        // the current token is still valid, the next call tries to refresh it again
+        LOGGER.warn("Unable to refresh service access token, the current one is used", ex);
+        refreshFailures.increment();
+
+        return current.value;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Drops the given token from the cache, so the next call of {@link #obtainAccessToken()}
+   * retrieves a new one. Nothing happens if the token was already replaced.
+   */
+  public void invalidateAccessToken(String value) {
+    lock.lock();
+
+    try {
+      if (null != token && token.value.equals(value)) {
+        token = null;
+        invalidations.increment();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private AccessToken fetchAccessToken() {
     String plainCreds = clientId + ":" + clientSecret;
     byte[] plainCredsBytes = plainCreds.getBytes();
     byte[] base64CredsBytes = Base64.encodeBase64(plainCredsBytes);
@@ -63,11 +181,29 @@ public class AuthService {
         .init()
         .set("grant_type", "client_credentials");
 
+    long requestedAt = clock.millis();
     ResponseEntity<?> response = restTemplate.exchange(
         createUri(authorizationUrl, params), HttpMethod.POST, request, Object.class
     );
 
-    return ((Map<String, String>) response.getBody()).get(ACCESS_TOKEN);
+    Map<String, Object> body = (Map<String, Object>) response.getBody();
+    Object expiresIn = body.get(EXPIRES_IN);
+
+    // without expiration time the token is not reused
+    long validity = expiresIn instanceof Number
+        ? TimeUnit.SECONDS.toMillis(((Number) expiresIn).longValue())
+        : 0;
+    long margin = Math.min(TimeUnit.SECONDS.toMillis(refreshMarginSeconds), validity / 2);
+
+    return new AccessToken((String) body.get(ACCESS_TOKEN),
+        requestedAt + validity - margin, requestedAt + validity);
+  }
+
+  @AllArgsConstructor
+  private static final class AccessToken {
+    private final String value;
+    private final long refreshAt;
+    private final long expiresAt;
   }
 
 }
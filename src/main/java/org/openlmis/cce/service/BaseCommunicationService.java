@@ -17,6 +17,7 @@ package org.openlmis.cce.service;
 
 import static org.openlmis.cce.util.RequestHelper.createEntity;
 import static org.openlmis.cce.util.RequestHelper.createUri;
+import static org.openlmis.cce.util.RequestHelper.executeWithToken;
 
 import java.net.URI;
 import org.slf4j.Logger;
@@ -27,7 +28,6 @@ import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestOperations;
-import org.springframework.web.client.RestTemplate;
 
 public abstract class BaseCommunicationService {
   protected final Logger logger = LoggerFactory.getLogger(getClass());
@@ -35,7 +35,8 @@ public abstract class BaseCommunicationService {
   @Autowired
   private AuthService authService;
 
-  private RestOperations restTemplate = new RestTemplate();
+  @Autowired
+  private RestOperations restTemplate;
 
   protected abstract String getServiceUrl();
 
@@ -46,8 +47,10 @@ public abstract class BaseCommunicationService {
                                           HttpMethod method, Class<P> type) {
     String url = getServiceUrl() + getUrl() + resourceUrl;
     URI uri = createUri(url, parameters);
-    HttpEntity<Object> entity = createEntity(payload, addAuthHeader(headers));
-    return restTemplate.exchange(uri, method, entity, type);
+    return executeWithToken(authService, token -> {
+      HttpEntity<Object> entity = createEntity(payload, addAuthHeader(headers, token));
+      return restTemplate.exchange(uri, method, entity, type);
+    });
   }
 
   protected <P> ResponseEntity<P> execute(String resourceUrl, RequestParameters parameters,
@@ -55,13 +58,15 @@ public abstract class BaseCommunicationService {
                                           HttpMethod method, ParameterizedTypeReference<P> type) {
     String url = getServiceUrl() + getUrl() + resourceUrl;
     URI uri = createUri(url, parameters);
-    HttpEntity<Object> entity = createEntity(payload, addAuthHeader(headers));
-    return restTemplate.exchange(uri, method, entity, type);
+    return executeWithToken(authService, token -> {
+      HttpEntity<Object> entity = createEntity(payload, addAuthHeader(headers, token));
+      return restTemplate.exchange(uri, method, entity, type);
+    });
   }
 
-  private RequestHeaders addAuthHeader(RequestHeaders headers) {
+  private RequestHeaders addAuthHeader(RequestHeaders headers, String token) {
     return null == headers
-        ? RequestHeaders.init().setAuth(authService.obtainAccessToken())
-        : headers.setAuth(authService.obtainAccessToken());
+        ? RequestHeaders.init().setAuth(token)
+        : headers.setAuth(token);
   }
 }
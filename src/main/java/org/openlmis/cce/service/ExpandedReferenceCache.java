@@ -0,0 +1,107 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service;
+
+import static org.openlmis.cce.service.ResourceNames.SEPARATOR;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache of objects retrieved by {@link ObjReferenceExpander}, kept as raw JSON and keyed by href.
+ * It is shared between requests and it is bounded in size and time. The cache is created separately
+ * for each resource type (like facilities or users), with limits read from
+ * {@code objReferenceExpander.cache.<resource>.maxSize} and {@code ...ttlSeconds} properties, or
+ * the {@code default} ones.
+ */
+@Component
+public class ExpandedReferenceCache {
+  static final String CACHE_NAME = "expandedReferences";
+
+  private static final String PROPERTY_PREFIX = "objReferenceExpander.cache.";
+  private static final String DEFAULT_RESOURCE = "default";
+
+  @Autowired
+  private Environment environment;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private final Map<String, Cache<String, byte[]>> caches = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the object retrieved from the given href, or null if it is not cached. An empty array
+   * means that the referenced object does not exist.
+   */
+  public byte[] get(String href) {
+    return getCache(href).getIfPresent(href);
+  }
+
+  /**
+   * Stores the object retrieved from the given href. Null is stored as an empty array, so objects
+   * that do not exist are not requested again until the entry expires.
+   */
+  public byte[] put(String href, byte[] refObj) {
+    byte[] value = null == refObj ? ArrayUtils.EMPTY_BYTE_ARRAY : refObj;
+
+    getCache(href).put(href, value);
+
+    return value;
+  }
+
+  private Cache<String, byte[]> getCache(String href) {
+    return caches.computeIfAbsent(getResource(href), this::createCache);
+  }
+
+  private Cache<String, byte[]> createCache(String resource) {
+    Cache<String, byte[]> cache = CacheBuilder
+        .newBuilder()
+        .maximumSize(getLimit(resource, "maxSize"))
+        .expireAfterWrite(getLimit(resource, "ttlSeconds"), TimeUnit.SECONDS)
+        .recordStats()
+        .build();
+
+    return GuavaCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME, "resource", resource);
+  }
+
+  private long getLimit(String resource, String name) {
+    Long limit = environment.getProperty(PROPERTY_PREFIX + resource + '.' + name, Long.class);
+
+    return null == limit
+        ? environment.getRequiredProperty(PROPERTY_PREFIX + DEFAULT_RESOURCE + '.' + name,
+            Long.class)
+        : limit;
+  }
+
+  // hrefs have the form of <service url>/api/<resource>/<id>
+  private String getResource(String href) {
+    String resource = StringUtils
+        .substringAfterLast(StringUtils.substringBeforeLast(href, SEPARATOR), SEPARATOR);
+
+    return StringUtils.isBlank(resource) ? DEFAULT_RESOURCE : resource;
+  }
+
+}
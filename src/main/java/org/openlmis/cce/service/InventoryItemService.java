@@ -17,15 +17,14 @@ package org.openlmis.cce.service;
 
 import static java.util.Collections.emptyList;
 import static org.apache.commons.collections4.CollectionUtils.isEmpty;
-import static org.apache.commons.lang3.StringUtils.equalsIgnoreCase;
 import static org.openlmis.cce.service.PermissionService.CCE_INVENTORY_VIEW;
 
-import com.google.common.collect.Sets;
 import java.util.Set;
 import java.util.UUID;
 import org.openlmis.cce.domain.InventoryItem;
-import org.openlmis.cce.dto.PermissionStringDto;
 import org.openlmis.cce.repository.InventoryItemRepository;
+import org.openlmis.cce.repository.custom.FacilityProgramPair;
+import org.openlmis.cce.util.KeysetPage;
 import org.openlmis.cce.util.Pagination;
 import org.slf4j.ext.XLogger;
 import org.slf4j.ext.XLoggerFactory;
@@ -47,8 +46,9 @@ public class InventoryItemService {
   private PermissionService permissionService;
 
   /**
-   * This method is supposed to retrieve all inventory items with matched parameters. Result is
-   * sorted and paginated by pageable parameter. You can use 'type' sort value and it will sort
+   * This method is supposed to retrieve all inventory items with matched parameters. Only items
+   * from (facility, program) pairs the user has the inventory view right for are returned. Result
+   * is sorted and paginated by pageable parameter. You can use 'type' sort value and it will sort
    * inventory items by their catalog item type.
    *
    * @param   userId    the id of the user to search the inventoryItems for
@@ -63,35 +63,50 @@ public class InventoryItemService {
     Profiler profiler = new Profiler("INVENTORY_ITEM_SERVICE_SEARCH");
     profiler.setLogger(XLOGGER);
 
-    profiler.start("GET_PERMISSION_STRINGS");
-    PermissionStrings.Handler handler = permissionService.getPermissionStrings(userId);
-    Set<PermissionStringDto> permissionStrings = handler.get();
-
-    profiler.start("GET_PROGRAMS_AND_FACILITIES");
-    Set<UUID> programIds = Sets.newHashSet();
-    Set<UUID> facilityIds = Sets.newHashSet();
-
-    UUID facilityId = params.getFacilityId();
-    UUID programId = params.getProgramId();
-    for (PermissionStringDto permissionString : permissionStrings) {
-      if (equalsIgnoreCase(CCE_INVENTORY_VIEW, permissionString.getRightName())) {
-        if (facilityId == null || permissionString.getFacilityId().equals(facilityId)) {
-          facilityIds.add(permissionString.getFacilityId());
-        }
-
-        if (programId == null || permissionString.getProgramId().equals(programId)) {
-          programIds.add(permissionString.getProgramId());
-        }
-      }
-    }
+    Set<FacilityProgramPair> pairs = getPermittedPairs(userId, params, profiler);
 
     profiler.start("INVENTORY_ITEM_REPOSITORY_SEARCH");
     Page<InventoryItem> page;
-    if (isEmpty(facilityIds) && isEmpty(programIds)) {
+    if (isEmpty(pairs)) {
       // missing rights
       page = Pagination.getPage(emptyList(), pageable);
     } else {
-      page = repository.search(facilityIds, programIds, params.getFunctionalStatus(), pageable);
+      page = repository.search(pairs, params.getFunctionalStatus(), pageable);
+    }
+
+    profiler.stop().log();
+    XLOGGER.exit(page);
+    return page;
+  }
+
+  /**
+   * This method is supposed to retrieve inventory items with matched parameters using keyset
+   * (seek) pagination. Result is sorted by pageable parameter, only 'referenceName' and 'type'
+   * sort values are supported. The page starts after the row pointed by the cursor.
+   *
+   * @param   userId        the id of the user to search the inventoryItems for
+   * @param   params        the search parameters
+   * @param   after         the cursor returned with the previous page, empty for the first page
+   * @param   includeTotal  true if the total number of matching items should be returned
+   * @param   pageable      the page size and sort parameters
+   * @return                the page of inventory items matching given parameters
+   */
+  public KeysetPage<InventoryItem> seek(UUID userId, InventoryItemSearchParams params,
+                                        String after, boolean includeTotal, Pageable pageable) {
+
+    XLOGGER.entry(userId, params, after, includeTotal, pageable);
+    Profiler profiler = new Profiler("INVENTORY_ITEM_SERVICE_SEEK");
+    profiler.setLogger(XLOGGER);
+
+    Set<FacilityProgramPair> pairs = getPermittedPairs(userId, params, profiler);
+
+    profiler.start("INVENTORY_ITEM_REPOSITORY_SEEK");
+    KeysetPage<InventoryItem> page;
+    if (isEmpty(pairs)) {
+      // missing rights
+      page = KeysetPage.empty(pageable.getPageSize(), includeTotal);
+    } else {
+      page = repository.seek(pairs, params.getFunctionalStatus(), after, includeTotal, pageable);
     }
 
     profiler.stop().log();
@@ -99,4 +114,21 @@ public class InventoryItemService {
     return page;
   }
 
+  /*
+    Returns exactly the (facility, program) pairs for which the user has the inventory view
+    right, limited to the facility and program from search parameters if they are set.
+   */
+  private Set<FacilityProgramPair> getPermittedPairs(UUID userId,
+      InventoryItemSearchParams params, Profiler profiler) {
+    profiler.start("GET_PERMISSION_STRINGS");
+    PermissionStrings.Handler handler = permissionService.getPermissionStrings(userId);
+    PermissionIndex index = handler.getIndex();
+
+    profiler.start("GET_FACILITY_PROGRAM_PAIRS");
+    Set<FacilityProgramPair> pairs = index
+        .getPairs(CCE_INVENTORY_VIEW, params.getFacilityId(), params.getProgramId());
+
+    return pairs;
+  }
+
 }
@@ -17,10 +17,12 @@ package org.openlmis.cce.service;
 
 import org.openlmis.cce.domain.FunctionalStatus;
 import org.openlmis.cce.dto.InventoryItemDto;
-import org.openlmis.cce.service.notifier.NonfunctionalCceNotifier;
+import org.openlmis.cce.service.event.InventoryItemEvent;
+import org.openlmis.cce.service.notifier.NotificationOutbox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -29,16 +31,30 @@ public class InventoryStatusProcessor {
   protected final Logger logger = LoggerFactory.getLogger(getClass());
 
   @Autowired
-  private NonfunctionalCceNotifier nonfunctionalCceNotifier;
+  private NotificationOutbox notificationOutbox;
 
   /**
-   * Process inventory functional status change.
+   * Processes status changes published in the transaction that made them, so the outbox entry
+   * commits or rolls back together with the change.
+   *
+   * @param event an inventory item event
+   */
+  @EventListener
+  public void onInventoryItemEvent(InventoryItemEvent event) {
+    if (event.getType() == InventoryItemEvent.Type.STATUS_CHANGED) {
+      functionalStatusChange(event.getInventoryItem());
+    }
+  }
+
+  /**
+   * Process inventory functional status change. Notifications are only scheduled here, they are
+   * sent in the background after the current transaction commits.
    * @param inventoryItem a inventoryItem that has just changed its status
    */
   public void functionalStatusChange(InventoryItemDto inventoryItem) {
     logger.debug("Status processor called with: {}", inventoryItem);
     if (inventoryItem.getFunctionalStatus() != FunctionalStatus.FUNCTIONING) {
-      nonfunctionalCceNotifier.notify(inventoryItem);
+      notificationOutbox.addNonfunctionalCce(inventoryItem);
     }
   }
 }
@@ -20,29 +20,49 @@ import static org.openlmis.cce.i18n.MessageKeys.ERROR_DTO_EXPANSION_CAST;
 import static org.openlmis.cce.i18n.MessageKeys.ERROR_DTO_EXPANSION_HREF;
 import static org.openlmis.cce.util.RequestHelper.createEntity;
 import static org.openlmis.cce.util.RequestHelper.createUri;
+import static org.openlmis.cce.util.RequestHelper.executeWithToken;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.PostConstruct;
-import org.apache.commons.beanutils.BeanUtilsBean;
-import org.apache.commons.beanutils.PropertyUtils;
-import org.apache.commons.collections.MapUtils;
+import javax.annotation.PreDestroy;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.openlmis.cce.dto.ObjectReferenceDto;
 import org.openlmis.cce.exception.ValidationMessageException;
-import org.openlmis.util.converter.UuidConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestOperations;
-import org.springframework.web.client.RestTemplate;
 
 @Component
 public class ObjReferenceExpander {
@@ -52,17 +72,48 @@ public class ObjReferenceExpander {
   @Autowired
   private AuthService authService;
 
-  private BeanUtilsBean beanUtils;
+  @Autowired
+  private RestOperations restTemplate;
+
+  @Autowired
+  private ExpandedReferenceCache cache;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  private ObjectReader reader;
+
+  // class -> property name -> getter, resolved once per DTO class
+  private final Map<Class<?>, Map<String, Method>> getters = new ConcurrentHashMap<>();
 
-  private RestOperations restTemplate = new RestTemplate();
+  @Value("${objReferenceExpander.poolSize}")
+  private int poolSize;
+
+  @Value("${objReferenceExpander.queueSize}")
+  private int queueSize;
+
+  private ExecutorService pool;
+  private Executor executor;
 
   /**
-   * Create an instance of the {@link BeanUtilsBean} and register custom converters with it.
+   * Creates the reader that deserializes referenced objects into reference DTOs and the pool used
+   * to retrieve referenced objects in parallel.
    */
   @PostConstruct
-  public void registerConverters() {
-    beanUtils = BeanUtilsBean.getInstance();
-    beanUtils.getConvertUtils().register(new UuidConverter(), UUID.class);
+  public void init() {
+    reader = objectMapper.reader().without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    // if all threads are busy the request thread retrieves objects itself
+    pool = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueSize),
+        new ThreadFactoryBuilder().setNameFormat("reference-expander-%d").setDaemon(true).build(),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    executor = pool;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    pool.shutdownNow();
   }
 
   /**
@@ -76,22 +127,51 @@ public class ObjReferenceExpander {
    * @param expands a list of field names from the passed DTO to expand
    */
   public void expandDto(Object dto, List<String> expands) {
-    if (expands == null) {
+    expandDtos(Collections.singletonList(dto), expands);
+  }
+
+  /**
+   * Expands all given DTO objects like {@link #expandDto(Object, List)} does. Each distinct
+   * referenced object is retrieved only once and the objects are retrieved in parallel. Objects
+   * are taken from {@link ExpandedReferenceCache} when possible.
+   *
+   * @param dtos the DTOs to expand
+   * @param expands a list of field names from the passed DTOs to expand
+   */
+  public void expandDtos(Iterable<?> dtos, List<String> expands) {
+    if (expands == null || expands.isEmpty()) {
       return;
     }
 
-    for (String expand : expands) {
-      try {
+    Map<String, List<Pair<String, ObjectReferenceDto>>> references = new LinkedHashMap<>();
+
+    for (Object dto : dtos) {
+      for (String expand : expands) {
         ObjectReferenceDto refDto = getObjectReferenceDto(dto, expand);
         String href = getHref(expand, refDto);
 
-        Map<String, Object> refObj = retrieve(href);
-        if (MapUtils.isNotEmpty(refObj)) {
-          beanUtils.populate(refDto, refObj);
-        }
-      } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException ex) {
-        throw new ValidationMessageException(ex, ERROR_DTO_EXPANSION_ASSIGNMENT, expand);
+        references
+            .computeIfAbsent(href, key -> new ArrayList<>())
+            .add(Pair.of(expand, refDto));
+      }
+    }
+
+    Map<String, byte[]> refObjs = retrieveAll(references.keySet());
+
+    references.forEach((href, refDtos) -> {
+      byte[] refObj = refObjs.get(href);
+
+      if (ArrayUtils.isNotEmpty(refObj)) {
+        refDtos.forEach(refDto -> populate(refDto.getLeft(), refDto.getRight(), refObj));
       }
+    });
+  }
+
+  private void populate(String expand, ObjectReferenceDto refDto, byte[] refObj) {
+    try {
+      reader.withValueToUpdate(refDto).readValue(refObj);
+    } catch (IOException ex) {
+      throw new ValidationMessageException(ex, ERROR_DTO_EXPANSION_ASSIGNMENT, expand);
     }
   }
 
@@ -103,9 +183,22 @@ public class ObjReferenceExpander {
     return href;
   }
 
-  private ObjectReferenceDto getObjectReferenceDto(Object dto, String expand)
-      throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
-    Object retrievedField = PropertyUtils.getProperty(dto, expand);
+  private ObjectReferenceDto getObjectReferenceDto(Object dto, String expand) {
+    Method getter = getters
+        .computeIfAbsent(dto.getClass(), ObjReferenceExpander::findGetters)
+        .get(expand);
+
+    if (null == getter) {
+      throw new ValidationMessageException(ERROR_DTO_EXPANSION_ASSIGNMENT, expand);
+    }
+
+    Object retrievedField;
+
+    try {
+      retrievedField = getter.invoke(dto);
+    } catch (IllegalAccessException | InvocationTargetException ex) {
+      throw new ValidationMessageException(ex, ERROR_DTO_EXPANSION_ASSIGNMENT, expand);
+    }
 
     if (!(retrievedField instanceof ObjectReferenceDto)) {
       throw new ValidationMessageException(ERROR_DTO_EXPANSION_CAST, expand);
@@ -113,11 +206,64 @@ public class ObjReferenceExpander {
     return (ObjectReferenceDto) retrievedField;
   }
 
-  private Map<String, Object> retrieve(String href) {
-    HttpEntity<Object> entity = createEntity(null,
-        RequestHeaders.init().setAuth(authService.obtainAccessToken()));
+  private static Map<String, Method> findGetters(Class<?> type) {
+    Map<String, Method> found = new HashMap<>();
+
+    for (PropertyDescriptor descriptor : BeanUtils.getPropertyDescriptors(type)) {
+      if (null != descriptor.getReadMethod()) {
+        found.put(descriptor.getName(), descriptor.getReadMethod());
+      }
+    }
+
+    return found;
+  }
+
+  private Map<String, byte[]> retrieveAll(Collection<String> hrefs) {
+    Map<String, byte[]> refObjs = new HashMap<>();
+    List<String> missing = new ArrayList<>();
+
+    for (String href : hrefs) {
+      byte[] refObj = cache.get(href);
+
+      if (null == refObj) {
+        missing.add(href);
+      } else {
+        refObjs.put(href, refObj);
+      }
+    }
+
+    if (missing.size() == 1) {
+      String href = missing.get(0);
+      refObjs.put(href, cache.put(href, retrieve(href)));
+
+      return refObjs;
+    }
+
+    Map<String, CompletableFuture<byte[]>> futures = new LinkedHashMap<>();
+    missing.forEach(href -> futures
+        .put(href, CompletableFuture.supplyAsync(() -> retrieve(href), executor)));
+
+    try {
+      futures.forEach((href, future) -> refObjs.put(href, cache.put(href, future.join())));
+    } catch (CompletionException ex) {
+      futures.values().forEach(future -> future.cancel(true));
+
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+
+      throw ex;
+    }
+
+    return refObjs;
+  }
+
+  private byte[] retrieve(String href) {
     try {
-      return restTemplate.exchange(createUri(href), HttpMethod.GET, entity, Map.class).getBody();
+      return executeWithToken(authService, token -> {
+        HttpEntity<Object> entity = createEntity(null, RequestHeaders.init().setAuth(token));
+        return restTemplate.exchange(createUri(href), HttpMethod.GET, entity, byte[].class);
+      }).getBody();
     } catch (HttpStatusCodeException ex) {
       // We don't want to stop processing if the referenced instance does not exist.
       if (HttpStatus.NOT_FOUND == ex.getStatusCode()) {
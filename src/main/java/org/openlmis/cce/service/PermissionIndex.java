@@ -0,0 +1,157 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Collections.unmodifiableSet;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.openlmis.cce.dto.PermissionStringDto;
+import org.openlmis.cce.repository.custom.FacilityProgramPair;
+
+/**
+ * Permission strings of a single user compiled for lookups. The strings are grouped by right name
+ * (matched case-insensitively) and then by facility and program, so both permission checks and
+ * deriving the (facility, program) pairs of a right do not scan all strings of the user. The index
+ * is immutable and it is built once each time the permission strings are (re)loaded.
+ */
+public final class PermissionIndex {
+  private static final PermissionIndex EMPTY = new PermissionIndex(emptySet(), emptyMap());
+
+  private final Set<PermissionStringDto> permissionStrings;
+  private final Map<String, RightIndex> rights;
+
+  private PermissionIndex(Set<PermissionStringDto> permissionStrings,
+      Map<String, RightIndex> rights) {
+    this.permissionStrings = permissionStrings;
+    this.rights = rights;
+  }
+
+  /**
+   * Compiles the given permission strings.
+   *
+   * @param permissionStrings permission strings of a user
+   * @return the index of the given permission strings
+   */
+  public static PermissionIndex of(Collection<PermissionStringDto> permissionStrings) {
+    if (permissionStrings.isEmpty()) {
+      return EMPTY;
+    }
+
+    Map<String, RightIndex> rights = new HashMap<>();
+
+    for (PermissionStringDto permissionString : permissionStrings) {
+      rights
+          .computeIfAbsent(normalize(permissionString.getRightName()), key -> new RightIndex())
+          .add(permissionString.getFacilityId(), permissionString.getProgramId());
+    }
+
+    rights.values().forEach(RightIndex::seal);
+
+    return new PermissionIndex(
+        unmodifiableSet(new HashSet<>(permissionStrings)), unmodifiableMap(rights));
+  }
+
+  public Set<PermissionStringDto> getPermissionStrings() {
+    return permissionStrings;
+  }
+
+  /**
+   * Checks if there is the given permission string. Facility and program should be null for
+   * general (home facility independent) rights.
+   */
+  public boolean contains(String rightName, UUID facilityId, UUID programId) {
+    RightIndex right = rights.get(normalize(rightName));
+    return null != right && right.contains(facilityId, programId);
+  }
+
+  /**
+   * Returns (facility, program) pairs that the given right was granted for. Permission strings
+   * without facility or program are skipped.
+   *
+   * @param rightName  name of the right
+   * @param facilityId if set, only pairs with the given facility are returned
+   * @param programId  if set, only pairs with the given program are returned
+   * @return unmodifiable set of pairs
+   */
+  public Set<FacilityProgramPair> getPairs(String rightName, UUID facilityId, UUID programId) {
+    RightIndex right = rights.get(normalize(rightName));
+
+    if (null == right) {
+      return emptySet();
+    }
+
+    if (null != facilityId && null != programId) {
+      return right.contains(facilityId, programId)
+          ? singleton(FacilityProgramPair.of(facilityId, programId))
+          : emptySet();
+    }
+
+    if (null != facilityId) {
+      return right.pairsByFacility.getOrDefault(facilityId, emptySet());
+    }
+
+    if (null != programId) {
+      return right.pairsByProgram.getOrDefault(programId, emptySet());
+    }
+
+    return right.pairs;
+  }
+
+  private static String normalize(String rightName) {
+    return null == rightName ? null : rightName.toUpperCase(Locale.ENGLISH);
+  }
+
+  private static final class RightIndex {
+    // hash maps and sets are used because they accept null facility and program
+    private Map<UUID, Set<UUID>> programsByFacility = new HashMap<>();
+    private Map<UUID, Set<FacilityProgramPair>> pairsByFacility = new HashMap<>();
+    private Map<UUID, Set<FacilityProgramPair>> pairsByProgram = new HashMap<>();
+    private Set<FacilityProgramPair> pairs = new HashSet<>();
+
+    void add(UUID facilityId, UUID programId) {
+      programsByFacility.computeIfAbsent(facilityId, key -> new HashSet<>()).add(programId);
+
+      if (null != facilityId && null != programId) {
+        FacilityProgramPair pair = FacilityProgramPair.of(facilityId, programId);
+        pairsByFacility.computeIfAbsent(facilityId, key -> new HashSet<>()).add(pair);
+        pairsByProgram.computeIfAbsent(programId, key -> new HashSet<>()).add(pair);
+        pairs.add(pair);
+      }
+    }
+
+    void seal() {
+      programsByFacility.replaceAll((key, value) -> unmodifiableSet(value));
+      pairsByFacility.replaceAll((key, value) -> unmodifiableSet(value));
+      pairsByProgram.replaceAll((key, value) -> unmodifiableSet(value));
+      pairs = unmodifiableSet(pairs);
+    }
+
+    boolean contains(UUID facilityId, UUID programId) {
+      Set<UUID> programs = programsByFacility.get(facilityId);
+      return null != programs && programs.contains(programId);
+    }
+  }
+}
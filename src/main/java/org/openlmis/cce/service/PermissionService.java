@@ -20,7 +20,6 @@ import static org.openlmis.cce.i18n.PermissionMessageKeys.ERROR_NO_FOLLOWING_PER
 
 import java.util.UUID;
 import org.openlmis.cce.domain.InventoryItem;
-import org.openlmis.cce.dto.PermissionStringDto;
 import org.openlmis.cce.exception.PermissionMessageException;
 import org.openlmis.cce.util.AuthenticationHelper;
 import org.openlmis.cce.util.Message;
@@ -101,8 +100,18 @@ public class PermissionService {
    *         doesn't have permission.
    */
   public void canEditInventoryOrIsApiKey(InventoryItem inventoryItem) {
-    if (!hasPermission(CCE_INVENTORY_EDIT, inventoryItem.getProgramId(),
-        inventoryItem.getFacilityId(), true, true, true)) {
+    canEditInventoryOrIsApiKey(inventoryItem.getProgramId(), inventoryItem.getFacilityId());
+  }
+
+  /**
+   * Checks if current client is either an API key, or current user has permission to edit CCE
+   * inventory.
+   *
+   * @throws PermissionMessageException if the current client is not an API key, or current user
+   *         doesn't have permission.
+   */
+  public void canEditInventoryOrIsApiKey(UUID programId, UUID facilityId) {
+    if (!hasPermission(CCE_INVENTORY_EDIT, programId, facilityId, true, true, true)) {
       throw new PermissionMessageException(new Message(
           ERROR_NO_FOLLOWING_PERMISSION, CCE_INVENTORY_EDIT));
     }
@@ -188,9 +197,8 @@ public class PermissionService {
 
     UUID user = authenticationHelper.getCurrentUser().getId();
     PermissionStrings.Handler handler = getPermissionStrings(user);
-    PermissionStringDto permission = PermissionStringDto.create(rightName, facility, program);
 
-    return handler.get().contains(permission);
+    return handler.getIndex().contains(rightName, facility, program);
   }
 
   private boolean checkServiceToken(boolean allowServiceTokens, boolean allowApiKey,
@@ -208,6 +216,14 @@ public class PermissionService {
     return false;
   }
 
+  /**
+   * Checks if the current request was made with a service token. Unlike the other checks this
+   * one does not throw, so it can be used in web security expressions.
+   */
+  public boolean isServiceToken() {
+    return hasPermission(null, null, null, false, true, false);
+  }
+
   public PermissionStrings.Handler getPermissionStrings(UUID userId) {
     return permissionStrings.forUser(userId);
   }
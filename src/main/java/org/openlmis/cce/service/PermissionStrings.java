@@ -15,49 +15,206 @@
 
 package org.openlmis.cce.service;
 
-import com.google.common.collect.Maps;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.openlmis.cce.dto.PermissionStringDto;
 import org.openlmis.cce.service.referencedata.UserReferenceDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+/**
+ * Keeps permission strings of users. The last known permission strings of a user are served for
+ * up to the max staleness period. Once they are older than the refresh period, they are
+ * revalidated in the background with the stored ETag, so most requests do not wait for the
+ * reference data service. Handlers of users that were not active for the idle period are evicted
+ * and the number of kept handlers is limited. Loaded permission strings are compiled into a
+ * {@link PermissionIndex}.
+ */
 @Component
 public class PermissionStrings {
-  private final Map<UUID, Handler> handlers = Maps.newConcurrentMap();
+  private static final Logger LOGGER = LoggerFactory.getLogger(PermissionStrings.class);
+
+  static final String CACHE_METER = "cce.permission.strings.cache";
+  static final String REVALIDATION_METER = "cce.permission.strings.revalidations";
 
   @Autowired
   private UserReferenceDataService userReferenceDataService;
 
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Autowired
+  private Clock clock;
+
+  @Value("${permissionStrings.cache.refreshAfterMillis}")
+  private long refreshAfterMillis;
+
+  @Value("${permissionStrings.cache.maxStalenessMillis}")
+  private long maxStalenessMillis;
+
+  @Value("${permissionStrings.cache.maxUsers}")
+  private long maxUsers;
+
+  @Value("${permissionStrings.cache.idleMillis}")
+  private long idleMillis;
+
+  @Value("${permissionStrings.cache.revalidationPoolSize}")
+  private int revalidationPoolSize;
+
+  @Value("${permissionStrings.cache.revalidationQueueSize}")
+  private int revalidationQueueSize;
+
+  private LoadingCache<UUID, Handler> handlers;
+  private ExecutorService revalidationPool;
+  private Executor executor;
+
+  private Counter hits;
+  private Counter misses;
+  private Counter asyncRevalidations;
+  private Counter syncRevalidations;
+  private Counter failedRevalidations;
+
+  /**
+   * Creates the handler cache, the revalidation pool and counters.
+   */
+  @PostConstruct
+  public void init() {
+    handlers = CacheBuilder
+        .newBuilder()
+        .maximumSize(maxUsers)
+        .expireAfterAccess(idleMillis, TimeUnit.MILLISECONDS)
+        .build(CacheLoader.from(Handler::new));
+
+    revalidationPool = new ThreadPoolExecutor(revalidationPoolSize, revalidationPoolSize,
+        0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(revalidationQueueSize),
+        new ThreadFactoryBuilder()
+            .setNameFormat("permission-strings-%d")
+            .setDaemon(true)
+            .build());
+    executor = revalidationPool;
+
+    hits = meterRegistry.counter(CACHE_METER, "result", "hit");
+    misses = meterRegistry.counter(CACHE_METER, "result", "miss");
+    asyncRevalidations = meterRegistry.counter(REVALIDATION_METER, "mode", "async");
+    syncRevalidations = meterRegistry.counter(REVALIDATION_METER, "mode", "sync");
+    failedRevalidations = meterRegistry.counter(REVALIDATION_METER, "mode", "failed");
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    revalidationPool.shutdownNow();
+  }
+
   Handler forUser(UUID user) {
-    return handlers.computeIfAbsent(user, Handler::new);
+    return handlers.getUnchecked(user);
   }
 
   public class Handler implements Supplier<Set<PermissionStringDto>> {
-    private UUID userId;
+    private final UUID userId;
+    private final AtomicBoolean revalidating = new AtomicBoolean();
 
-    private Set<PermissionStringDto> permissionStrings;
-    private String etag;
+    private volatile PermissionIndex index;
+    private volatile String etag;
+    private volatile long validatedAt;
 
     Handler(UUID userId) {
       this.userId = userId;
     }
 
     @Override
-    public synchronized Set<PermissionStringDto> get() {
+    public Set<PermissionStringDto> get() {
+      return getIndex().getPermissionStrings();
+    }
+
+    /**
+     * Returns the permission strings compiled for lookups by right, facility and program.
+     */
+    public PermissionIndex getIndex() {
+      PermissionIndex current = index;
+      long age = clock.millis() - validatedAt;
+
+      if (null != current && age < maxStalenessMillis) {
+        hits.increment();
+
+        if (age >= refreshAfterMillis) {
+          revalidateInBackground();
+        }
+
+        return current;
+      }
+
+      misses.increment();
+      return revalidate();
+    }
+
+    private synchronized PermissionIndex revalidate() {
+      // another thread could revalidate permission strings while this one was waiting
+      if (null != index && clock.millis() - validatedAt < refreshAfterMillis) {
+        return index;
+      }
+
+      syncRevalidations.increment();
+      fetch();
+
+      return index;
+    }
+
+    private void revalidateInBackground() {
+      if (!revalidating.compareAndSet(false, true)) {
+        return;
+      }
+
+      try {
+        executor.execute(() -> {
+          try {
+            synchronized (this) {
+              asyncRevalidations.increment();
+              fetch();
+            }
+          } catch (RuntimeException exp) {
+            failedRevalidations.increment();
+            LOGGER.warn("Could not revalidate permission strings of user {}", userId, exp);
+          } finally {
+            revalidating.set(false);
+          }
+        });
+      } catch (RejectedExecutionException exp) {
+        revalidating.set(false);
+        LOGGER.debug("Revalidation of permission strings of user {} was rejected", userId);
+      }
+    }
+
+    private void fetch() {
       ServiceResponse<List<String>> response = userReferenceDataService
           .getPermissionStrings(userId, etag);
 
       if (response.isModified()) {
-        permissionStrings = PermissionStringDto.from(response.getBody());
+        index = PermissionIndex.of(PermissionStringDto.from(response.getBody()));
         etag = response.getETag();
       }
 
-      return permissionStrings;
+      validatedAt = clock.millis();
     }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,175 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.event;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Publishes domain events in two steps:
+ * <ul>
+ *   <li>right away to Spring {@code @EventListener}s, which run in the caller's transaction. This
+ *   path is reserved for writes that have to commit or roll back together with the change, like
+ *   the outbox entries added by {@code InventoryStatusProcessor}. Anything else subscribes as a
+ *   {@link DomainEventListener},</li>
+ *   <li>after the transaction commits to {@link DomainEventListener}s, which run on a bounded
+ *   pool so they only see committed changes and do not add latency to the write. When the queue
+ *   is full the publishing thread waits for free space, which slows producers down instead of
+ *   dropping events. Events of a rolled back transaction are not delivered to them.</li>
+ * </ul>
+ * Outcomes of background listeners are counted by the "cce.domain.events" meter and the number of
+ * waiting events by the "cce.domain.events.queue" gauge.
+ */
+@Component
+public class DomainEventPublisher {
+  static final String EVENTS_METER = "cce.domain.events";
+  static final String QUEUE_METER = "cce.domain.events.queue";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DomainEventPublisher.class);
+
+  @Autowired
+  private ApplicationEventPublisher applicationEventPublisher;
+
+  @Autowired(required = false)
+  private List<DomainEventListener<?>> listeners = Collections.emptyList();
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Value("${domainEvents.poolSize}")
+  private int poolSize;
+
+  @Value("${domainEvents.queueSize}")
+  private int queueSize;
+
+  private ThreadPoolExecutor pool;
+  private Executor executor;
+
+  /**
+   * Creates the pool used to run background listeners.
+   */
+  @PostConstruct
+  public void init() {
+    pool = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueSize),
+        new ThreadFactoryBuilder().setNameFormat("domain-events-%d").setDaemon(true).build(),
+        DomainEventPublisher::waitForQueue);
+    executor = pool;
+
+    meterRegistry.gauge(QUEUE_METER, pool, executorPool -> executorPool.getQueue().size());
+  }
+
+  /**
+   * Lets the listeners finish the events that are already queued.
+   */
+  @PreDestroy
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+  /**
+   * Publishes the given event. Without an active transaction background listeners get the event
+   * immediately.
+   *
+   * @param event the event to publish
+   */
+  public void publish(Object event) {
+    applicationEventPublisher.publishEvent(event);
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+              dispatch(event);
+            }
+          });
+    } else {
+      dispatch(event);
+    }
+  }
+
+  private void dispatch(Object event) {
+    for (DomainEventListener<?> listener : listeners) {
+      if (listener.getEventType().isInstance(event)) {
+        execute(listener, event);
+      }
+    }
+  }
+
+  private void execute(DomainEventListener<?> listener, Object event) {
+    try {
+      executor.execute(() -> handle(listener, event));
+    } catch (RejectedExecutionException ex) {
+      // the change has been committed already, so the caller must not fail
+      LOGGER.error("Listener {} did not get {}", listener.getClass().getSimpleName(), event, ex);
+      count(event, "rejected");
+    }
+  }
+
+  private <E> void handle(DomainEventListener<E> listener, Object event) {
+    String result = "handled";
+
+    try {
+      listener.onEvent(listener.getEventType().cast(event));
+    } catch (RuntimeException ex) {
+      LOGGER.error("Listener {} failed to handle {}", listener.getClass().getSimpleName(), event,
+          ex);
+      result = "failed";
+    }
+
+    count(event, result);
+  }
+
+  private void count(Object event, String result) {
+    meterRegistry
+        .counter(EVENTS_METER, "event", event.getClass().getSimpleName(), "result", result)
+        .increment();
+  }
+
+  // the caller does not run listeners itself, its finished transaction is still bound to the
+  // thread after commit
+  private static void waitForQueue(Runnable task, ThreadPoolExecutor pool) {
+    if (pool.isShutdown()) {
+      throw new RejectedExecutionException("Domain event pool is shut down");
+    }
+
+    try {
+      pool.getQueue().put(task);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RejectedExecutionException("Interrupted while waiting for a free thread", ex);
+    }
+  }
+
+}
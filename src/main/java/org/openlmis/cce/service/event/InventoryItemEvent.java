@@ -0,0 +1,60 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.event;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.openlmis.cce.dto.InventoryItemDto;
+
+/**
+ * A change of an inventory item. A change of the functional status is published as a separate
+ * event, next to the update that made it.
+ */
+@Getter
+@ToString
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class InventoryItemEvent {
+
+  public enum Type {
+    CREATED, UPDATED, TRANSFERRED, DELETED, STATUS_CHANGED
+  }
+
+  private final Type type;
+  private final InventoryItemDto inventoryItem;
+
+  public static InventoryItemEvent created(InventoryItemDto inventoryItem) {
+    return new InventoryItemEvent(Type.CREATED, inventoryItem);
+  }
+
+  public static InventoryItemEvent updated(InventoryItemDto inventoryItem) {
+    return new InventoryItemEvent(Type.UPDATED, inventoryItem);
+  }
+
+  public static InventoryItemEvent transferred(InventoryItemDto inventoryItem) {
+    return new InventoryItemEvent(Type.TRANSFERRED, inventoryItem);
+  }
+
+  public static InventoryItemEvent deleted(InventoryItemDto inventoryItem) {
+    return new InventoryItemEvent(Type.DELETED, inventoryItem);
+  }
+
+  public static InventoryItemEvent statusChanged(InventoryItemDto inventoryItem) {
+    return new InventoryItemEvent(Type.STATUS_CHANGED, inventoryItem);
+  }
+
+}
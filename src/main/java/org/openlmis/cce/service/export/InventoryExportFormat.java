@@ -0,0 +1,48 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.export;
+
+import org.apache.commons.csv.CSVFormat;
+
+/**
+ * CSV format of inventory item exports, shared by the single facility download and export jobs.
+ */
+public final class InventoryExportFormat {
+  private static final String[] HEADERS = {
+      "Facility Name", "Model", "Type", "Net Volume", "Reference Name",
+      "Program Name", "Serial No.", "Year of Installation",
+      "Year of Warranty Expiry", "Functional Status", "Last Modifier Name",
+      "Modified Date"
+  };
+
+  private InventoryExportFormat() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Returns the format that prints the header row when a printer is created.
+   */
+  public static CSVFormat withHeader() {
+    return CSVFormat.DEFAULT.withHeader(HEADERS);
+  }
+
+  /**
+   * Returns the format that prints rows only, used to append rows to an export.
+   */
+  public static CSVFormat withoutHeader() {
+    return CSVFormat.DEFAULT;
+  }
+}
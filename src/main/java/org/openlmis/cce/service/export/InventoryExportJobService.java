@@ -0,0 +1,182 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.export;
+
+import static org.apache.commons.collections4.CollectionUtils.isEmpty;
+import static org.openlmis.cce.i18n.CsvExportMessageKeys.ERROR_EXPORT_JOB_NOT_COMPLETED;
+import static org.openlmis.cce.i18n.CsvExportMessageKeys.ERROR_EXPORT_JOB_NOT_FOUND;
+import static org.openlmis.cce.i18n.CsvExportMessageKeys.ERROR_EXPORT_JOB_NOT_RESUMABLE;
+import static org.openlmis.cce.i18n.PermissionMessageKeys.ERROR_NO_FOLLOWING_PERMISSION;
+import static org.openlmis.cce.service.PermissionService.CCE_INVENTORY_VIEW;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.openlmis.cce.domain.FunctionalStatus;
+import org.openlmis.cce.domain.InventoryExportJob;
+import org.openlmis.cce.domain.InventoryExportJob.Pair;
+import org.openlmis.cce.domain.InventoryExportJob.Status;
+import org.openlmis.cce.exception.NotFoundException;
+import org.openlmis.cce.exception.PermissionMessageException;
+import org.openlmis.cce.exception.ValidationMessageException;
+import org.openlmis.cce.repository.InventoryExportJobRepository;
+import org.openlmis.cce.service.PermissionService;
+import org.openlmis.cce.util.Message;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Service
+public class InventoryExportJobService {
+
+  @Autowired
+  private InventoryExportJobRepository repository;
+
+  @Autowired
+  private PermissionService permissionService;
+
+  @Autowired
+  private InventoryExportJobWorker worker;
+
+  @Autowired
+  private Clock clock;
+
+  /**
+   * Queues an export of inventory items from (facility, program) pairs for which the user has
+   * the inventory view right. The pairs are limited to the given program and facilities if they
+   * are set.
+   *
+   * @param userId           the id of the user that submits the job
+   * @param programId        if set, only items of this program are exported
+   * @param facilityIds      if set, only items of these facilities are exported
+   * @param functionalStatus if set, only items with this status are exported
+   * @return the queued job
+   * @throws PermissionMessageException if the user has no right for any of the facilities
+   */
+  public InventoryExportJob submit(UUID userId, UUID programId, Set<UUID> facilityIds,
+      FunctionalStatus functionalStatus) {
+    Set<Pair> pairs = permissionService
+        .getPermissionStrings(userId)
+        .getIndex()
+        .getPairs(CCE_INVENTORY_VIEW, null, programId)
+        .stream()
+        .filter(pair -> isEmpty(facilityIds) || facilityIds.contains(pair.getFacilityId()))
+        .map(pair -> Pair.of(pair.getFacilityId(), pair.getProgramId()))
+        .collect(Collectors.toSet());
+
+    boolean allFacilitiesPermitted = isEmpty(facilityIds) || pairs
+        .stream()
+        .map(Pair::getFacilityId)
+        .collect(Collectors.toSet())
+        .containsAll(facilityIds);
+
+    if (pairs.isEmpty() || !allFacilitiesPermitted) {
+      throw new PermissionMessageException(
+          new Message(ERROR_NO_FOLLOWING_PERMISSION, CCE_INVENTORY_VIEW));
+    }
+
+    return repository.save(InventoryExportJob.newJob(userId, pairs, functionalStatus, now()));
+  }
+
+  /**
+   * Returns the job submitted by the user.
+   *
+   * @throws NotFoundException if there is no such job or it was submitted by another user
+   */
+  public InventoryExportJob get(UUID userId, UUID jobId) {
+    return repository
+        .findById(jobId)
+        .filter(job -> userId.equals(job.getUserId()))
+        .orElseThrow(() -> new NotFoundException(ERROR_EXPORT_JOB_NOT_FOUND));
+  }
+
+  /**
+   * Cancels the job and removes its file. A running job is stopped at its next checkpoint.
+   * Cancelling a cancelled job has no effect. The job stays locked until the caller's transaction
+   * ends.
+   */
+  public InventoryExportJob cancel(UUID userId, UUID jobId) {
+    InventoryExportJob job = getForUpdate(userId, jobId);
+
+    if (Status.CANCELLED == job.getStatus()) {
+      return job;
+    }
+
+    boolean running = job.isRunning(now());
+    job.cancel(now());
+
+    if (!running) {
+      worker.deleteFile(jobId);
+    }
+
+    return repository.save(job);
+  }
+
+  /**
+   * Queues a failed or interrupted job again. It is continued from its last checkpoint. The job
+   * stays locked until the caller's transaction ends.
+   *
+   * @throws ValidationMessageException if the job is neither failed nor interrupted
+   */
+  public InventoryExportJob resume(UUID userId, UUID jobId) {
+    InventoryExportJob job = getForUpdate(userId, jobId);
+
+    if (Status.FAILED != job.getStatus() && !job.isInterrupted(now())) {
+      throw new ValidationMessageException(ERROR_EXPORT_JOB_NOT_RESUMABLE, job.getStatus());
+    }
+
+    job.resume(now());
+
+    return repository.save(job);
+  }
+
+  /**
+   * Returns the gzip compressed CSV file of the completed job.
+   *
+   * @throws ValidationMessageException if the job has not completed
+   * @throws NotFoundException if the file does not exist anymore
+   */
+  public Path getFile(UUID userId, UUID jobId) {
+    InventoryExportJob job = get(userId, jobId);
+
+    if (Status.COMPLETED != job.getStatus()) {
+      throw new ValidationMessageException(ERROR_EXPORT_JOB_NOT_COMPLETED, job.getStatus());
+    }
+
+    Path file = worker.getFile(jobId);
+
+    if (!Files.isRegularFile(file)) {
+      throw new NotFoundException(ERROR_EXPORT_JOB_NOT_FOUND);
+    }
+
+    return file;
+  }
+
+  // the worker locks the job as well before it saves its progress
+  private InventoryExportJob getForUpdate(UUID userId, UUID jobId) {
+    return repository
+        .findByIdForUpdate(jobId)
+        .filter(job -> userId.equals(job.getUserId()))
+        .orElseThrow(() -> new NotFoundException(ERROR_EXPORT_JOB_NOT_FOUND));
+  }
+
+  private ZonedDateTime now() {
+    return ZonedDateTime.now(clock);
+  }
+}
@@ -0,0 +1,398 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.export;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.openlmis.cce.domain.InventoryExportJob;
+import org.openlmis.cce.domain.InventoryExportJob.Status;
+import org.openlmis.cce.repository.InventoryExportJobRepository;
+import org.openlmis.cce.repository.InventoryItemRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs inventory export jobs. A single thread polls for queued jobs and hands them to a bounded
+ * pool of workers, so exports never occupy request threads. Rows are streamed from the database
+ * into a gzip file on local disk. Every {@code export.jobs.checkpointRows} rows the current gzip
+ * member is finished and synced to disk and the progress is saved with the job. A resumed job
+ * truncates the file to the last checkpoint and appends a new member, which gzip readers treat as
+ * a continuation of the same file. A job cancelled while it runs is stopped at the next
+ * checkpoint. Finished jobs and their files are removed after {@code export.jobs.retentionHours}.
+ *
+ * <p>Queued jobs are claimed with a row lock that other instances skip, so each job is run once.
+ * The lease of every running job is renewed on each poll and lasts
+ * {@code export.jobs.leaseSeconds}; a running job whose lease has expired was interrupted and can
+ * be resumed. Files are kept in {@code export.jobs.directory}, which has to be shared by all
+ * instances for a file to be downloaded through any of them.
+ */
+@Component
+public class InventoryExportJobWorker {
+
+  static final String JOBS_METER = "cce.export.jobs";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(InventoryExportJobWorker.class);
+  private static final int MAX_ERROR_LENGTH = 1000;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final String FILE_SUFFIX = ".csv.gz";
+  private static final Set<Status> FINISHED =
+      EnumSet.of(Status.COMPLETED, Status.FAILED, Status.CANCELLED);
+
+  @Autowired
+  private InventoryExportJobRepository jobRepository;
+
+  @Autowired
+  private InventoryItemRepository inventoryItemRepository;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private Clock clock;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Value("${export.jobs.directory}")
+  private String directory;
+
+  @Value("${export.jobs.poolSize}")
+  private int poolSize;
+
+  @Value("${export.jobs.pollIntervalMillis}")
+  private long pollIntervalMillis;
+
+  @Value("${export.jobs.checkpointRows}")
+  private int checkpointRows;
+
+  @Value("${export.jobs.retentionHours}")
+  private long retentionHours;
+
+  @Value("${export.jobs.leaseSeconds}")
+  private long leaseSeconds;
+
+  private final Set<UUID> running = ConcurrentHashMap.newKeySet();
+
+  private TransactionTemplate transactionTemplate;
+  private TransactionTemplate readOnlyTransactionTemplate;
+  private ScheduledExecutorService poller;
+  private ExecutorService pool;
+  private Executor executor;
+
+  /**
+   * Creates the export directory and the worker pool and starts polling for queued jobs.
+   */
+  @PostConstruct
+  public void init() throws IOException {
+    Files.createDirectories(Paths.get(directory));
+
+    // progress is saved while the rows are still read in the outer read-only transaction
+    transactionTemplate = new TransactionTemplate(transactionManager);
+    transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+    readOnlyTransactionTemplate.setReadOnly(true);
+
+    // jobs are claimed only when a thread is free, so the queue never fills up
+    pool = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(poolSize),
+        new ThreadFactoryBuilder().setNameFormat("inventory-export-%d").setDaemon(true).build());
+    executor = pool;
+
+    poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("inventory-export-poller").setDaemon(true).build());
+    poller.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops polling and interrupts running jobs. An interrupted job is marked as failed, or keeps
+   * the RUNNING status until its lease expires if it could not be, and can be resumed from its
+   * last checkpoint.
+   */
+  @PreDestroy
+  public void shutdown() {
+    poller.shutdownNow();
+    pool.shutdownNow();
+  }
+
+  /**
+   * Returns the path of the file the job writes to.
+   */
+  public Path getFile(UUID jobId) {
+    return Paths.get(directory, jobId + FILE_SUFFIX);
+  }
+
+  /**
+   * Removes the file of the job, if there is one.
+   */
+  public void deleteFile(UUID jobId) {
+    try {
+      Files.deleteIfExists(getFile(jobId));
+    } catch (IOException ex) {
+      LOGGER.warn("Unable to delete the file of inventory export job {}", jobId, ex);
+    }
+  }
+
+  void poll() {
+    try {
+      removeExpired();
+      renewLeases();
+
+      while (running.size() < poolSize) {
+        InventoryExportJob job = claim();
+
+        if (null == job) {
+          break;
+        }
+
+        running.add(job.getId());
+        executor.execute(() -> run(job));
+      }
+    } catch (RuntimeException ex) {
+      // an exception would cancel all further scheduled runs
+      LOGGER.error("Unable to start inventory export jobs", ex);
+    }
+  }
+
+  void run(InventoryExportJob job) {
+    UUID jobId = job.getId();
+    String result;
+
+    try {
+      if (export(job) && update(jobId, completed -> completed.complete(now()))) {
+        result = "completed";
+      } else {
+        result = "cancelled";
+        deleteFile(jobId);
+      }
+    } catch (RuntimeException | IOException ex) {
+      LOGGER.error("Inventory export job {} failed", jobId, ex);
+      result = "failed";
+      String error = StringUtils.abbreviate(ex.getMessage(), MAX_ERROR_LENGTH);
+      update(jobId, failed -> failed.fail(error, now()));
+    } finally {
+      running.remove(jobId);
+    }
+
+    meterRegistry.counter(JOBS_METER, "result", result).increment();
+  }
+
+  private boolean export(InventoryExportJob job) throws IOException {
+    Path file = getFile(job.getId());
+
+    try (FileChannel channel = FileChannel.open(file, CREATE, WRITE)) {
+      // anything written after the last checkpoint is written again
+      long size = job.isCheckpointed() ? job.getFileSize() : 0;
+      channel.truncate(size);
+      channel.position(size);
+
+      ExportFile exportFile = new ExportFile(channel);
+      exportFile.startMember(job.isCheckpointed()
+          ? InventoryExportFormat.withoutHeader()
+          : InventoryExportFormat.withHeader());
+
+      Boolean exported = readOnlyTransactionTemplate.execute(status -> {
+        try {
+          return write(job, exportFile);
+        } catch (IOException ex) {
+          throw new UncheckedIOException(ex);
+        }
+      });
+
+      return Boolean.TRUE.equals(exported);
+    }
+  }
+
+  private boolean write(InventoryExportJob job, ExportFile exportFile) throws IOException {
+    UUID lastItemId = job.getLastItemId();
+    long rowCount = job.getRowCount();
+    int sinceCheckpoint = 0;
+
+    try (Stream<Object[]> rows = inventoryItemRepository
+        .streamExportJobRows(job.getId(), job.getFunctionalStatus(), lastItemId)) {
+      Iterator<Object[]> iterator = rows.iterator();
+
+      while (iterator.hasNext()) {
+        Object[] row = iterator.next();
+        exportFile.print(row);
+        lastItemId = UUID.fromString((String) row[0]);
+        ++rowCount;
+
+        if (++sinceCheckpoint == checkpointRows) {
+          if (!checkpoint(job.getId(), lastItemId, rowCount, exportFile.finishMember())) {
+            return false;
+          }
+
+          exportFile.startMember(InventoryExportFormat.withoutHeader());
+          sinceCheckpoint = 0;
+        }
+      }
+    }
+
+    return checkpoint(job.getId(), lastItemId, rowCount, exportFile.finishMember());
+  }
+
+  private boolean checkpoint(UUID jobId, UUID lastItemId, long rowCount, long fileSize) {
+    return update(jobId, job -> job.checkpoint(lastItemId, rowCount, fileSize, now()));
+  }
+
+  /*
+    Changes the job only if it is still running, so a cancelled job is not brought back. The job
+    is locked while it is checked and changed, so a cancel made in the meantime is not overwritten.
+   */
+  private boolean update(UUID jobId, Consumer<InventoryExportJob> change) {
+    Boolean updated = transactionTemplate.execute(status -> jobRepository
+        .findByIdForUpdate(jobId)
+        .filter(job -> Status.RUNNING == job.getStatus())
+        .map(job -> {
+          change.accept(job);
+          jobRepository.save(job);
+          return true;
+        })
+        .orElse(false));
+
+    return Boolean.TRUE.equals(updated);
+  }
+
+  private InventoryExportJob claim() {
+    return transactionTemplate.execute(status -> {
+      List<InventoryExportJob> queued = jobRepository.findNextQueuedForUpdate();
+
+      if (queued.isEmpty()) {
+        return null;
+      }
+
+      InventoryExportJob job = queued.get(0);
+      job.start(now(), getLeaseExpiryDate());
+
+      return jobRepository.save(job);
+    });
+  }
+
+  private void renewLeases() {
+    if (running.isEmpty()) {
+      return;
+    }
+
+    List<UUID> ids = new ArrayList<>(running);
+
+    transactionTemplate.execute(status -> {
+      jobRepository.renewLeases(ids, Status.RUNNING, getLeaseExpiryDate());
+      return null;
+    });
+  }
+
+  private ZonedDateTime getLeaseExpiryDate() {
+    return now().plusSeconds(leaseSeconds);
+  }
+
+  private void removeExpired() {
+    ZonedDateTime expiryDate = now().minusHours(retentionHours);
+
+    transactionTemplate.execute(status -> {
+      List<InventoryExportJob> expired = jobRepository
+          .findByStatusInAndModifiedDateBefore(FINISHED, expiryDate);
+
+      expired.forEach(job -> deleteFile(job.getId()));
+      jobRepository.deleteAll(expired);
+
+      return null;
+    });
+  }
+
+  private ZonedDateTime now() {
+    return ZonedDateTime.now(clock);
+  }
+
+  /*
+    Writes the export file as a series of gzip members. Once a member is finished, everything
+    written so far is on disk and the size of the file can be saved as a checkpoint.
+   */
+  private static final class ExportFile {
+    private final FileChannel channel;
+    private final OutputStream output;
+    private CSVPrinter printer;
+
+    ExportFile(FileChannel channel) {
+      this.channel = channel;
+      this.output = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+    }
+
+    void startMember(CSVFormat format) throws IOException {
+      GZIPOutputStream member =
+          new GZIPOutputStream(new CloseShieldOutputStream(output), BUFFER_SIZE);
+      printer = new CSVPrinter(new OutputStreamWriter(member, UTF_8), format);
+    }
+
+    void print(Object[] row) throws IOException {
+      // the first column is the inventory item id, which is not exported
+      printer.printRecord(Arrays.asList(row).subList(1, row.length));
+    }
+
+    long finishMember() throws IOException {
+      printer.close();
+      output.flush();
+      channel.force(false);
+      return channel.position();
+    }
+  }
+}
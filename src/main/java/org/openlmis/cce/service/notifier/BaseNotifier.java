@@ -15,36 +15,23 @@
 
 package org.openlmis.cce.service.notifier;
 
-import java.time.chrono.Chronology;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeFormatterBuilder;
-import java.time.format.FormatStyle;
-import java.util.Locale;
-import org.openlmis.cce.i18n.MessageService;
-import org.openlmis.cce.util.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.i18n.LocaleContextHolder;
 
 public class BaseNotifier {
 
   protected final Logger logger = LoggerFactory.getLogger(getClass());
 
   @Autowired
-  protected MessageService messageService;
+  protected NotificationTemplates templates;
 
-  protected String getMessage(String key) {
-    return messageService
-        .localize(new Message(key))
-        .asMessage();
+  protected MessageTemplate getTemplate(String key) {
+    return templates.get(key);
   }
 
   protected DateTimeFormatter getDateTimeFormatter() {
-    Locale locale = LocaleContextHolder.getLocale();
-
-    String datePattern = DateTimeFormatterBuilder.getLocalizedDateTimePattern(
-        FormatStyle.MEDIUM, FormatStyle.MEDIUM, Chronology.ofLocale(locale), locale);
-    return DateTimeFormatter.ofPattern(datePattern);
+    return templates.getDateTimeFormatter();
   }
 }
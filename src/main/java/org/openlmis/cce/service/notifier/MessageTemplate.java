@@ -0,0 +1,116 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.notifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A message with ${name} placeholders, parsed once so that rendering only concatenates the
+ * literal parts with the values. Like {@link org.apache.commons.lang3.text.StrSubstitutor},
+ * "$${" is an escaped "${" and placeholders without a value are kept as they are. Unlike it,
+ * values are not scanned for placeholders themselves.
+ */
+public final class MessageTemplate {
+  private static final String PREFIX = "${";
+  private static final char SUFFIX = '}';
+  private static final char ESCAPE = '$';
+
+  // literals[i] is followed by variables[i], the last literal ends the template
+  private final String[] literals;
+  private final String[] variables;
+  private final String[] placeholders;
+  private final int literalsLength;
+
+  private MessageTemplate(List<String> literals, List<String> variables) {
+    this.literals = literals.toArray(new String[0]);
+    this.variables = variables.toArray(new String[0]);
+    this.placeholders = new String[this.variables.length];
+
+    for (int i = 0; i < this.variables.length; ++i) {
+      placeholders[i] = PREFIX + this.variables[i] + SUFFIX;
+    }
+
+    this.literalsLength = literals.stream().mapToInt(String::length).sum();
+  }
+
+  /**
+   * Parses the given text into a template.
+   *
+   * @param text the message text
+   * @return the compiled template
+   */
+  public static MessageTemplate compile(String text) {
+    List<String> literals = new ArrayList<>();
+    List<String> variables = new ArrayList<>();
+    StringBuilder literal = new StringBuilder();
+    int position = 0;
+
+    while (position < text.length()) {
+      int start = text.indexOf(PREFIX, position);
+      int end = start < 0 ? -1 : text.indexOf(SUFFIX, start + PREFIX.length());
+
+      if (end < 0) {
+        break;
+      }
+
+      if (start > position && text.charAt(start - 1) == ESCAPE) {
+        literal.append(text, position, start - 1).append(PREFIX);
+        position = start + PREFIX.length();
+      } else {
+        literals.add(literal.append(text, position, start).toString());
+        variables.add(text.substring(start + PREFIX.length(), end));
+        literal.setLength(0);
+        position = end + 1;
+      }
+    }
+
+    literals.add(literal.append(text, position, text.length()).toString());
+
+    return new MessageTemplate(literals, variables);
+  }
+
+  /**
+   * Renders the template with the given values.
+   *
+   * @param values values of the placeholders by name
+   * @return the message
+   */
+  public String render(Map<String, String> values) {
+    if (variables.length == 0) {
+      return literals[0];
+    }
+
+    String[] parts = new String[variables.length];
+    int length = literalsLength;
+
+    for (int i = 0; i < variables.length; ++i) {
+      String value = values.get(variables[i]);
+      parts[i] = null == value ? placeholders[i] : value;
+      length += parts[i].length();
+    }
+
+    StringBuilder builder = new StringBuilder(length).append(literals[0]);
+
+    for (int i = 0; i < parts.length; ++i) {
+      builder.append(parts[i]).append(literals[i + 1]);
+    }
+
+    return builder.toString();
+  }
+
+}
@@ -16,6 +16,9 @@
 package org.openlmis.cce.service.notifier;
 
 import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_CONTENT;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_DIGEST_CONTENT;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_DIGEST_ITEM;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_DIGEST_SUBJECT;
 import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_SUBJECT;
 import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_USER_INVALID;
 import static org.openlmis.cce.service.PermissionService.CCE_INVENTORY_EDIT;
@@ -23,9 +26,11 @@ import static org.openlmis.cce.service.PermissionService.CCE_INVENTORY_EDIT;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Sets;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -33,7 +38,6 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import javax.validation.constraints.NotNull;
-import org.apache.commons.lang3.text.StrSubstitutor;
 import org.openlmis.cce.domain.CatalogItem;
 import org.openlmis.cce.dto.InventoryItemDto;
 import org.openlmis.cce.dto.RightDto;
@@ -60,7 +64,7 @@ public class NonfunctionalCceNotifier extends BaseNotifier {
   private SupervisoryNodeReferenceDataService supervisoryNodeReferenceDataService;
 
   @Autowired
-  private NotificationService notificationService;
+  private NotificationOutbox notificationOutbox;
 
   @Autowired
   private FacilityReferenceDataService facilityReferenceDataService;
@@ -71,16 +75,34 @@ public class NonfunctionalCceNotifier extends BaseNotifier {
   @Autowired
   private CatalogItemRepository catalogItemRepository;
 
+  @Autowired
+  private NotificationRecipientCache recipientCache;
+
   @Value("${email.urlToViewCce}")
   private String urlToViewCce;
 
   /**
-   * Notify user with Edit Inventory rights for the facility assigned with inventory item.
+   * Notify user with Edit Inventory rights for the facility assigned with inventory item. The
+   * notifications are added to the {@link NotificationOutbox} so that each of them is sent and
+   * retried separately.
    *
    * @param inventoryItem InventoryItem that became non functional
    */
   public void notify(InventoryItemDto inventoryItem) {
-    Collection<UserDto> recipients = getRecipients(inventoryItem);
+    notify(Collections.singletonList(inventoryItem));
+  }
+
+  /**
+   * Notify users like {@link #notify(InventoryItemDto)} does about inventory items of one facility
+   * and program. When there is more than one item, each user gets a single digest listing all of
+   * them. An item that changed several times is listed once, with its latest status.
+   *
+   * @param inventoryItems InventoryItems that became non functional, in order of the changes
+   */
+  public void notify(List<InventoryItemDto> inventoryItems) {
+    List<InventoryItemDto> items = getLatestChanges(inventoryItems);
+    InventoryItemDto first = items.get(0);
+    Collection<UserDto> recipients = getRecipients(first);
 
     if (logger.isDebugEnabled()) {
       logger.debug(
@@ -90,34 +112,44 @@ public class NonfunctionalCceNotifier extends BaseNotifier {
     }
 
     if (!recipients.isEmpty()) {
-      String subject = getMessage(EMAIL_NONFUNCTIONAL_CCE_SUBJECT);
-      String content = getMessage(EMAIL_NONFUNCTIONAL_CCE_CONTENT);
+      MessageTemplate subject;
+      MessageTemplate content;
+      Map<String, String> valuesMap;
+
+      if (items.size() == 1) {
+        subject = getTemplate(EMAIL_NONFUNCTIONAL_CCE_SUBJECT);
+        content = getTemplate(EMAIL_NONFUNCTIONAL_CCE_CONTENT);
+        valuesMap = getValuesMap(first);
+      } else {
+        subject = getTemplate(EMAIL_NONFUNCTIONAL_CCE_DIGEST_SUBJECT);
+        content = getTemplate(EMAIL_NONFUNCTIONAL_CCE_DIGEST_CONTENT);
+        valuesMap = getDigestValuesMap(items);
+      }
 
-      Map<String, String> valuesMap = getValuesMap(inventoryItem);
-      StrSubstitutor sub = new StrSubstitutor(valuesMap);
       for (UserDto recipient : recipients) {
         valuesMap.put("username", recipient.getUsername());
-        logger.debug("Sending notification to: " + recipient.getUsername());
-        notificationService.notify(recipient, sub.replace(subject), sub.replace(content));
+        logger.debug("Scheduling notification to: " + recipient.getUsername());
+        notificationOutbox.addNotification(NotificationDto.email(recipient.getId(),
+            subject.render(valuesMap), content.render(valuesMap)));
       }
     }
   }
 
-  @NotNull
-  private Collection<UserDto> getRecipients(InventoryItemDto inventoryItem) {
-    SupervisoryNodeDto supervisoryNode = supervisoryNodeReferenceDataService
-        .findSupervisoryNode(inventoryItem.getFacilityId(), inventoryItem.getProgramId());
+  private List<InventoryItemDto> getLatestChanges(List<InventoryItemDto> inventoryItems) {
+    Map<UUID, InventoryItemDto> latest = new LinkedHashMap<>();
 
-    if (supervisoryNode == null) {
-      logger.warn("There is no supervisory node for program {} and facility {}",
-          inventoryItem.getProgramId(), inventoryItem.getFacilityId());
-    } else {
-      logger.debug("Supervisory node found: {}", supervisoryNode.getName());
+    for (InventoryItemDto inventoryItem : inventoryItems) {
+      latest.remove(inventoryItem.getId());
+      latest.put(inventoryItem.getId(), inventoryItem);
     }
 
-    RightDto right = rightReferenceDataService.findRight(CCE_INVENTORY_EDIT);
+    return new ArrayList<>(latest.values());
+  }
 
-    return getRecipients(right.getId(), inventoryItem.getProgramId(), supervisoryNode);
+  @NotNull
+  private Collection<UserDto> getRecipients(InventoryItemDto inventoryItem) {
+    return recipientCache.get(inventoryItem.getFacilityId(), inventoryItem.getProgramId(),
+        () -> resolveRecipients(inventoryItem));
   }
 
   @VisibleForTesting
@@ -137,10 +169,47 @@ public class NonfunctionalCceNotifier extends BaseNotifier {
     return users;
   }
 
+  private Collection<UserDto> resolveRecipients(InventoryItemDto inventoryItem) {
+    SupervisoryNodeDto supervisoryNode = supervisoryNodeReferenceDataService
+        .findSupervisoryNode(inventoryItem.getFacilityId(), inventoryItem.getProgramId());
+
+    if (supervisoryNode == null) {
+      logger.warn("There is no supervisory node for program {} and facility {}",
+          inventoryItem.getProgramId(), inventoryItem.getFacilityId());
+    } else {
+      logger.debug("Supervisory node found: {}", supervisoryNode.getName());
+    }
+
+    RightDto right = rightReferenceDataService.findRight(CCE_INVENTORY_EDIT);
+
+    return getRecipients(right.getId(), inventoryItem.getProgramId(), supervisoryNode);
+  }
+
   private Map<String, String> getValuesMap(InventoryItemDto inventoryItem) {
+    Map<String, String> valuesMap = getItemValuesMap(inventoryItem);
+    valuesMap.put("facilityName", getFacilityName(inventoryItem.getFacilityId()));
+    valuesMap.put("urlToViewCceList", getUrlToViewCceList(inventoryItem));
+    return valuesMap;
+  }
+
+  private Map<String, String> getDigestValuesMap(List<InventoryItemDto> inventoryItems) {
+    InventoryItemDto first = inventoryItems.get(0);
+    MessageTemplate itemTemplate = getTemplate(EMAIL_NONFUNCTIONAL_CCE_DIGEST_ITEM);
+
+    Map<String, String> valuesMap = new HashMap<>();
+    valuesMap.put("count", String.valueOf(inventoryItems.size()));
+    valuesMap.put("facilityName", getFacilityName(first.getFacilityId()));
+    valuesMap.put("items", inventoryItems
+        .stream()
+        .map(item -> itemTemplate.render(getItemValuesMap(item)))
+        .collect(Collectors.joining("\n")));
+    valuesMap.put("urlToViewCceList", getUrlToViewCceList(first));
+    return valuesMap;
+  }
+
+  private Map<String, String> getItemValuesMap(InventoryItemDto inventoryItem) {
     Map<String, String> valuesMap = new HashMap<>();
     valuesMap.put("equipmentType", getType(inventoryItem));
-    valuesMap.put("facilityName", getFacilityName(inventoryItem.getFacilityId()));
     valuesMap.put("functionalStatus", inventoryItem.getFunctionalStatus().toString());
     valuesMap.put("referenceName", inventoryItem.getReferenceName());
     valuesMap.put(
@@ -151,7 +220,6 @@ public class NonfunctionalCceNotifier extends BaseNotifier {
     );
     valuesMap.put("saveUser", getUsername(inventoryItem));
     valuesMap.put("saveDate", getDateTimeFormatter().format(inventoryItem.getModifiedDate()));
-    valuesMap.put("urlToViewCceList", getUrlToViewCceList(inventoryItem));
     return valuesMap;
   }
 
@@ -15,6 +15,7 @@
 
 package org.openlmis.cce.service.notifier;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.UUID;
 import lombok.AllArgsConstructor;
@@ -33,4 +34,17 @@ import lombok.ToString;
 public final class NotificationDto {
   private UUID userId;
   private Map<String, MessageDto> messages;
+
+  /**
+   * Creates a notification sent to the given user by email.
+   *
+   * @param userId  receiver of the notification
+   * @param subject subject of the email
+   * @param content content of the email
+   * @return new notification
+   */
+  public static NotificationDto email(UUID userId, String subject, String content) {
+    return new NotificationDto(userId, Collections.singletonMap(
+        NotificationChannelDto.EMAIL.toString(), new MessageDto(subject, content)));
+  }
 }
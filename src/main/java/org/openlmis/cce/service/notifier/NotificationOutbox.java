@@ -0,0 +1,93 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.notifier;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import org.openlmis.cce.domain.NotificationOutboxEntry;
+import org.openlmis.cce.domain.NotificationOutboxEntry.Type;
+import org.openlmis.cce.dto.InventoryItemDto;
+import org.openlmis.cce.exception.ServerException;
+import org.openlmis.cce.repository.NotificationOutboxRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Stores notifications in the outbox table. Entries are saved as part of the caller's
+ * transaction, so they are sent only if that transaction commits and are never lost if it does.
+ * The {@link NotificationOutboxWorker} sends them in the background.
+ */
+@Component
+public class NotificationOutbox {
+
+  @Autowired
+  private NotificationOutboxRepository repository;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private Clock clock;
+
+  @Value("${notificationOutbox.coalesceWindowSeconds}")
+  private long coalesceWindowSeconds;
+
+  /**
+   * Schedules notifying users that the given inventory item became non functional. The
+   * notification waits for the coalesce window, and all status changes of the same facility and
+   * program made until then are sent together in one digest.
+   *
+   * @param inventoryItem InventoryItem that became non functional
+   */
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void addNonfunctionalCce(InventoryItemDto inventoryItem) {
+    final ZonedDateTime now = ZonedDateTime.now(clock);
+    String groupKey = inventoryItem.getFacilityId() + "/" + inventoryItem.getProgramId();
+
+    repository.save(NotificationOutboxEntry.newGroupedEntry(Type.NONFUNCTIONAL_CCE, groupKey,
+        toJson(inventoryItem), getLocale(), now, now.plusSeconds(coalesceWindowSeconds)));
+  }
+
+  /**
+   * Schedules sending the given notification.
+   *
+   * @param notification notification to send
+   */
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void addNotification(NotificationDto notification) {
+    repository.save(NotificationOutboxEntry.newEntry(Type.NOTIFICATION, toJson(notification),
+        getLocale(), ZonedDateTime.now(clock)));
+  }
+
+  private String toJson(Object payload) {
+    try {
+      return objectMapper.writeValueAsString(payload);
+    } catch (JsonProcessingException ex) {
+      throw new ServerException(ex);
+    }
+  }
+
+  private String getLocale() {
+    return LocaleContextHolder.getLocale().toLanguageTag();
+  }
+
+}
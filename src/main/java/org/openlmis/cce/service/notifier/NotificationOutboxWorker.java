@@ -0,0 +1,411 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.notifier;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.commons.lang3.StringUtils;
+import org.openlmis.cce.domain.NotificationOutboxEntry;
+import org.openlmis.cce.domain.NotificationOutboxEntry.Type;
+import org.openlmis.cce.dto.InventoryItemDto;
+import org.openlmis.cce.exception.ServerException;
+import org.openlmis.cce.repository.NotificationOutboxRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Sends notifications stored in the {@link NotificationOutbox}. A single thread polls the outbox
+ * for due entries. Notifications are sent as a batch through {@link NotificationService}, other
+ * entries are handed to a bounded pool of workers. An entry is removed once it was handled; a
+ * failed entry is retried with exponential backoff until the maximum number of attempts is
+ * reached, after which it is kept with the FAILED status. Notifications over the limit of
+ * {@link NotificationRateLimiter} wait until the window of their recipient ends.
+ */
+@Component
+public class NotificationOutboxWorker {
+
+  static final String OUTBOX_METER = "cce.notification.outbox";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(NotificationOutboxWorker.class);
+  private static final int MAX_ERROR_LENGTH = 1000;
+
+  @Autowired
+  private NotificationOutboxRepository repository;
+
+  @Autowired
+  private NonfunctionalCceNotifier nonfunctionalCceNotifier;
+
+  @Autowired
+  private NotificationService notificationService;
+
+  @Autowired
+  private NotificationRateLimiter rateLimiter;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private Clock clock;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Value("${notificationOutbox.enabled}")
+  private boolean enabled;
+
+  @Value("${notificationOutbox.pollIntervalMillis}")
+  private long pollIntervalMillis;
+
+  @Value("${notificationOutbox.batchSize}")
+  private int batchSize;
+
+  @Value("${notificationOutbox.poolSize}")
+  private int poolSize;
+
+  @Value("${notificationOutbox.leaseMillis}")
+  private long leaseMillis;
+
+  @Value("${notificationOutbox.maxAttempts}")
+  private int maxAttempts;
+
+  @Value("${notificationOutbox.backoff.initialMillis}")
+  private long backoffInitialMillis;
+
+  @Value("${notificationOutbox.backoff.maxMillis}")
+  private long backoffMaxMillis;
+
+  private TransactionTemplate transactionTemplate;
+  private ScheduledExecutorService poller;
+  private ExecutorService pool;
+  private Executor executor;
+
+  /**
+   * Creates the worker pool and starts polling the outbox.
+   */
+  @PostConstruct
+  public void init() {
+    transactionTemplate = new TransactionTemplate(transactionManager);
+
+    // a whole batch fits in the queue; the poller waits for it before claiming the next one
+    pool = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(batchSize),
+        new ThreadFactoryBuilder().setNameFormat("notification-outbox-%d").setDaemon(true).build(),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    executor = pool;
+
+    if (enabled) {
+      poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("notification-outbox-poller").setDaemon(true).build());
+      poller.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Stops polling the outbox. Entries being handled at that moment are claimed again once their
+   * lease expires.
+   */
+  @PreDestroy
+  public void shutdown() {
+    if (null != poller) {
+      poller.shutdownNow();
+    }
+    pool.shutdownNow();
+  }
+
+  void poll() {
+    try {
+      // keep going while the outbox holds a backlog
+      while (drain() == batchSize) {
+        LOGGER.debug("Notification outbox batch full, claiming the next one");
+      }
+    } catch (RuntimeException ex) {
+      // an exception would cancel all further scheduled runs
+      LOGGER.error("Unable to drain the notification outbox", ex);
+    }
+  }
+
+  /**
+   * Claims a batch of due entries and handles them. Notifications are sent together as one batch,
+   * other entries are handled on the worker pool, once for each group.
+   *
+   * @return number of claimed entries
+   */
+  int drain() {
+    List<NotificationOutboxEntry> entries = claim();
+    Map<UUID, NotificationDto> notifications = new LinkedHashMap<>();
+    Set<String> groups = new HashSet<>();
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+    for (NotificationOutboxEntry entry : entries) {
+      if (Type.NOTIFICATION == entry.getType()) {
+        addNotification(entry, notifications);
+      } else if (null == entry.getGroupKey() || groups.add(entry.getGroupKey())) {
+        // the whole group is handled with its first entry
+        futures.add(CompletableFuture.runAsync(() -> process(entry), executor));
+      }
+    }
+
+    send(notifications);
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+    return entries.size();
+  }
+
+  private List<NotificationOutboxEntry> claim() {
+    return transactionTemplate.execute(status -> {
+      final ZonedDateTime now = ZonedDateTime.now(clock);
+      List<NotificationOutboxEntry> entries = repository.findDueForUpdate(now, batchSize);
+
+      // other workers skip the entries until the lease ends, even after this transaction commits
+      entries.forEach(entry -> entry.lease(now.plus(leaseMillis, ChronoUnit.MILLIS)));
+      repository.saveAll(entries);
+
+      return entries;
+    });
+  }
+
+  private void addNotification(NotificationOutboxEntry entry,
+      Map<UUID, NotificationDto> notifications) {
+    try {
+      notifications.put(entry.getId(), read(entry, NotificationDto.class));
+    } catch (ServerException ex) {
+      LOGGER.warn("Unable to read notification outbox entry {}", entry.getId(), ex);
+      recordFailure(entry.getId(), ex.toString());
+    }
+  }
+
+  private void send(Map<UUID, NotificationDto> notifications) {
+    Map<UUID, ZonedDateTime> limited = new HashMap<>();
+    notifications.forEach((id, notification) -> {
+      if (!rateLimiter.tryAcquire(notification.getUserId())) {
+        limited.put(id, ZonedDateTime.now(clock)
+            .plusSeconds(rateLimiter.getRemainingSeconds(notification.getUserId())));
+      }
+    });
+
+    if (!limited.isEmpty()) {
+      defer(limited);
+      limited.keySet().forEach(notifications::remove);
+    }
+
+    if (notifications.isEmpty()) {
+      return;
+    }
+
+    Set<UUID> failed = notificationService.sendAll(notifications);
+    List<UUID> sent = notifications
+        .keySet()
+        .stream()
+        .filter(id -> !failed.contains(id))
+        .collect(Collectors.toList());
+
+    if (!sent.isEmpty()) {
+      transactionTemplate.execute(status -> {
+        repository.deleteByIdIn(sent);
+        return null;
+      });
+      meterRegistry.counter(OUTBOX_METER, "result", "sent").increment(sent.size());
+    }
+
+    // only the notifications that failed are retried, each with its own backoff; they do not
+    // count against the limit of their recipients
+    failed.forEach(id -> {
+      rateLimiter.release(notifications.get(id).getUserId());
+      recordFailure(id, "Notification could not be sent");
+    });
+  }
+
+  // each entry waits until the window of its recipient ends
+  private void defer(Map<UUID, ZonedDateTime> dates) {
+    transactionTemplate.execute(status -> {
+      List<NotificationOutboxEntry> entries = Lists
+          .newArrayList(repository.findAllById(dates.keySet()));
+      entries.forEach(entry -> entry.defer(dates.get(entry.getId())));
+      return repository.saveAll(entries);
+    });
+
+    meterRegistry.counter(OUTBOX_METER, "result", "deferred").increment(dates.size());
+  }
+
+  /**
+   * Handles the claimed entry together with its group. The group is locked only while it is
+   * leased, so no row locks are held during remote calls. The notifier then runs in a second
+   * transaction that also removes the handled entries, so the notifications it adds to the outbox
+   * are stored only together with the removal and a digest is never scheduled twice.
+   */
+  private void process(NotificationOutboxEntry claimed) {
+    List<NotificationOutboxEntry> group;
+
+    try {
+      group = claimGroup(claimed);
+    } catch (RuntimeException ex) {
+      LOGGER.warn("Unable to claim notification outbox entry {}", claimed.getId(), ex);
+      recordFailure(claimed.getId(), ex.toString());
+      return;
+    }
+
+    if (group.isEmpty()) {
+      return;
+    }
+
+    List<UUID> ids = group
+        .stream()
+        .map(NotificationOutboxEntry::getId)
+        .collect(Collectors.toList());
+
+    try {
+      transactionTemplate.execute(status -> {
+        handle(group);
+        repository.deleteByIdIn(ids);
+        return null;
+      });
+    } catch (RuntimeException ex) {
+      LOGGER.warn("Unable to handle notification outbox entries {}", ids, ex);
+      ids.forEach(id -> recordFailure(id, ex.toString()));
+      return;
+    }
+
+    meterRegistry.counter(OUTBOX_METER, "result", "handled").increment();
+  }
+
+  private List<NotificationOutboxEntry> claimGroup(NotificationOutboxEntry claimed) {
+    if (null == claimed.getGroupKey()) {
+      // the entry was leased when it was claimed
+      return Collections.singletonList(claimed);
+    }
+
+    final ZonedDateTime leaseEndDate = claimed.getNextAttemptDate();
+
+    return transactionTemplate.execute(status -> {
+      // entries of the group that are not due yet join it as well
+      List<NotificationOutboxEntry> group = repository
+          .findPendingGroupForUpdate(claimed.getType().name(), claimed.getGroupKey());
+
+      boolean stillLeased = group
+          .stream()
+          .anyMatch(entry -> entry.getId().equals(claimed.getId())
+              && entry.isLeasedUntil(leaseEndDate));
+
+      if (!stillLeased) {
+        // another worker has taken the group over together with the entry
+        return Collections.<NotificationOutboxEntry>emptyList();
+      }
+
+      ZonedDateTime now = ZonedDateTime.now(clock);
+      group.forEach(entry -> entry.lease(now.plus(leaseMillis, ChronoUnit.MILLIS)));
+      repository.saveAll(group);
+
+      return group;
+    });
+  }
+
+  private void handle(List<NotificationOutboxEntry> group) {
+    NotificationOutboxEntry first = group.get(0);
+
+    if (Type.NONFUNCTIONAL_CCE != first.getType()) {
+      throw new IllegalStateException("Unsupported outbox entry type: " + first.getType());
+    }
+
+    Locale previous = LocaleContextHolder.getLocale();
+
+    if (null != first.getLocale()) {
+      LocaleContextHolder.setLocale(Locale.forLanguageTag(first.getLocale()));
+    }
+
+    try {
+      nonfunctionalCceNotifier.notify(group
+          .stream()
+          .map(entry -> read(entry, InventoryItemDto.class))
+          .collect(Collectors.toList()));
+    } finally {
+      LocaleContextHolder.setLocale(previous);
+    }
+  }
+
+  private <T> T read(NotificationOutboxEntry entry, Class<T> type) {
+    try {
+      return objectMapper.readValue(entry.getPayload(), type);
+    } catch (IOException ex) {
+      throw new ServerException(ex);
+    }
+  }
+
+  private void recordFailure(UUID id, String error) {
+    transactionTemplate.execute(status -> {
+      repository.findById(id).ifPresent(entry -> {
+        String lastError = StringUtils.abbreviate(error, MAX_ERROR_LENGTH);
+
+        if (entry.getAttempts() + 1 >= maxAttempts) {
+          LOGGER.error("Giving up on notification outbox entry {} after {} attempts: {}",
+              id, entry.getAttempts() + 1, error);
+          entry.fail(lastError);
+          meterRegistry.counter(OUTBOX_METER, "result", "failed").increment();
+        } else {
+          entry.retry(lastError, ZonedDateTime.now(clock)
+              .plus(getBackoffMillis(entry.getAttempts() + 1), ChronoUnit.MILLIS));
+          meterRegistry.counter(OUTBOX_METER, "result", "retried").increment();
+        }
+
+        repository.save(entry);
+      });
+      return null;
+    });
+  }
+
+  private long getBackoffMillis(int attempts) {
+    // the shift is capped to keep the delay from overflowing, maxMillis is the real limit
+    long delay = backoffInitialMillis << Math.min(attempts - 1, 20);
+    return Math.min(delay, backoffMaxMillis);
+  }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.notifier;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.time.Clock;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limits how many notifications a single user gets within a time window. The window of a user
+ * starts with the first notification sent to them. Counts are kept by this instance only, so with
+ * several instances running a user may get the limit from each of them.
+ */
+@Component
+public class NotificationRateLimiter {
+
+  @Autowired
+  private Clock clock;
+
+  @Value("${notification.rateLimit.maxPerRecipient}")
+  private int maxPerRecipient;
+
+  @Value("${notification.rateLimit.windowSeconds}")
+  private long windowSeconds;
+
+  private Cache<UUID, Window> windows;
+
+  /**
+   * Creates the windows, which expire on their own after their time has passed.
+   */
+  @PostConstruct
+  public void init() {
+    windows = CacheBuilder
+        .newBuilder()
+        .expireAfterWrite(windowSeconds, TimeUnit.SECONDS)
+        .ticker(new Ticker() {
+          @Override
+          public long read() {
+            return TimeUnit.MILLISECONDS.toNanos(clock.millis());
+          }
+        })
+        .build();
+  }
+
+  /**
+   * Counts a notification for the given user if the limit allows it.
+   *
+   * @param userId receiver of the notification
+   * @return true if the notification may be sent now, false if it should wait
+   */
+  public boolean tryAcquire(UUID userId) {
+    if (maxPerRecipient <= 0) {
+      return true;
+    }
+
+    try {
+      Window window = windows.get(userId, () -> new Window(clock.millis()));
+      // the counter never goes over the limit, so a released slot can be taken again
+      return window.count.getAndUpdate(count -> count < maxPerRecipient ? count + 1 : count)
+          < maxPerRecipient;
+    } catch (ExecutionException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  /**
+   * Gives back a slot taken by {@link #tryAcquire(UUID)} for a notification that was not sent.
+   *
+   * @param userId receiver of the notification
+   */
+  public void release(UUID userId) {
+    Window window = windows.getIfPresent(userId);
+
+    if (null != window) {
+      window.count.updateAndGet(count -> Math.max(count - 1, 0));
+    }
+  }
+
+  /**
+   * Returns the number of seconds until the current window of the given user ends, rounded up.
+   *
+   * @param userId receiver of notifications
+   * @return seconds after which the user may get notifications again, zero if there is no window
+   */
+  public long getRemainingSeconds(UUID userId) {
+    Window window = windows.getIfPresent(userId);
+
+    if (null == window) {
+      return 0;
+    }
+
+    long remainingMillis = TimeUnit.SECONDS.toMillis(windowSeconds)
+        - (clock.millis() - window.startMillis);
+
+    return Math.max((remainingMillis + 999) / 1000, 0);
+  }
+
+  private static final class Window {
+    private final long startMillis;
+    private final AtomicInteger count = new AtomicInteger();
+
+    private Window(long startMillis) {
+      this.startMillis = startMillis;
+    }
+  }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.notifier;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openlmis.cce.dto.UserDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Users notified about inventory items of a facility and program. Resolving them takes several
+ * calls to referencedata, while they rarely change and are the same for every item of the given
+ * facility and program. Entries expire after {@code notification.recipients.cache.ttlSeconds}
+ * and can be invalidated explicitly, see {@link NotificationRecipientCacheEndpoint}.
+ */
+@Component
+public class NotificationRecipientCache {
+  static final String CACHE_NAME = "notificationRecipients";
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Value("${notification.recipients.cache.ttlSeconds}")
+  private long ttlSeconds;
+
+  @Value("${notification.recipients.cache.maxSize}")
+  private long maxSize;
+
+  private Cache<Pair<UUID, UUID>, Collection<UserDto>> cache;
+
+  /**
+   * Creates the cache and registers its metrics.
+   */
+  @PostConstruct
+  public void init() {
+    cache = CacheBuilder
+        .newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+        .recordStats()
+        .build();
+
+    GuavaCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+  }
+
+  /**
+   * Returns the recipients for the given facility and program, resolving them with the given
+   * loader if they are not cached. Concurrent calls for the same key resolve recipients once.
+   *
+   * @param facilityId facility of the inventory item
+   * @param programId program of the inventory item
+   * @param loader resolves the recipients
+   * @return unmodifiable collection of recipients
+   */
+  public Collection<UserDto> get(UUID facilityId, UUID programId,
+      Supplier<Collection<UserDto>> loader) {
+    try {
+      return cache.get(Pair.of(facilityId, programId),
+          () -> Collections.unmodifiableList(new ArrayList<>(loader.get())));
+    } catch (ExecutionException | UncheckedExecutionException ex) {
+      Throwables.throwIfUnchecked(ex.getCause());
+      throw new IllegalStateException(ex.getCause());
+    }
+  }
+
+  /**
+   * Removes cached recipients. A null facility or program matches all of them, so passing nulls
+   * for both clears the whole cache.
+   *
+   * @param facilityId facility to remove recipients for, or null
+   * @param programId program to remove recipients for, or null
+   */
+  public void invalidate(UUID facilityId, UUID programId) {
+    if (null == facilityId && null == programId) {
+      cache.invalidateAll();
+      return;
+    }
+
+    cache.asMap().keySet().removeIf(key ->
+        (null == facilityId || facilityId.equals(key.getLeft()))
+            && (null == programId || programId.equals(key.getRight())));
+  }
+
+}
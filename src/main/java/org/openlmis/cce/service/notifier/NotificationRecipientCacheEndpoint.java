@@ -13,27 +13,30 @@
  * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
  */
 
-package org.openlmis.cce.web.csv.recordhandler;
+package org.openlmis.cce.service.notifier;
 
-import org.openlmis.cce.domain.CatalogItem;
-import org.openlmis.cce.dto.CatalogItemDto;
-import org.openlmis.cce.web.validator.CatalogItemValidator;
+import java.util.UUID;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
 /**
- * CatalogItemProcessor is used for uploads of Catalog Item. It uploads each catalog item record by
- * record.
+ * Lets operators drop cached notification recipients after supervision or rights were changed,
+ * for example {@code DELETE /actuator/notificationrecipients?facilityId=...}. Like the other
+ * actuator endpoints apart from health, it is only available with a service token.
  */
 @Component
-public class CatalogItemProcessor implements RecordProcessor<CatalogItemDto, CatalogItem> {
+@Endpoint(id = "notificationrecipients")
+public class NotificationRecipientCacheEndpoint {
 
   @Autowired
-  private CatalogItemValidator catalogItemValidator;
+  private NotificationRecipientCache recipientCache;
 
-  @Override
-  public CatalogItem process(CatalogItemDto dto) {
-    catalogItemValidator.validateExistingCatalogItem(dto);
-    return CatalogItem.newInstance(dto);
+  @DeleteOperation
+  public void invalidate(@Nullable UUID facilityId, @Nullable UUID programId) {
+    recipientCache.invalidate(facilityId, programId);
   }
-}
\ No newline at end of file
+
+}
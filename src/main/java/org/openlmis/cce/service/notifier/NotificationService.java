@@ -17,10 +17,21 @@ package org.openlmis.cce.service.notifier;
 
 import static org.openlmis.cce.service.notifier.NotificationChannelDto.EMAIL;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.net.URI;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import org.openlmis.cce.dto.UserDto;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.openlmis.cce.service.AuthService;
 import org.openlmis.cce.service.RequestHeaders;
 import org.openlmis.cce.util.RequestHelper;
@@ -32,10 +43,12 @@ import org.springframework.http.HttpEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestOperations;
-import org.springframework.web.client.RestTemplate;
 
 @Service
 public class NotificationService {
+  static final String BATCH_METER = "cce.notification.batch";
+  static final String BATCH_FAILURES_METER = "cce.notification.batch.failures";
+
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
   @Autowired
@@ -44,18 +57,84 @@ public class NotificationService {
   @Value("${notification.url}")
   private String notificationUrl;
 
-  private RestOperations restTemplate = new RestTemplate();
+  @Autowired
+  private RestOperations restTemplate;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Value("${notification.poolSize}")
+  private int poolSize;
+
+  @Value("${notification.queueSize}")
+  private int queueSize;
+
+  private ExecutorService pool;
+  private Executor executor;
+
+  /**
+   * Creates the pool used to send a batch of notifications concurrently.
+   */
+  @PostConstruct
+  public void init() {
+    // if all threads are busy the calling thread sends notifications itself
+    pool = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueSize),
+        new ThreadFactoryBuilder().setNameFormat("notification-sender-%d").setDaemon(true).build(),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    executor = pool;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    pool.shutdownNow();
+  }
 
   /**
-   * Send an email notification.
+   * Send a batch of notifications. The notification service accepts one notification per
+   * request, so the requests are sent concurrently on a bounded pool. A failure to send one
+   * notification does not affect the others; the caller gets the keys of the failed ones.
    *
-   * @param user    receiver of the notification
-   * @param subject subject of the email
-   * @param content content of the email
-   * @return true if success, false if failed.
+   * @param notifications notifications to send by keys chosen by the caller
+   * @return keys of notifications that could not be sent
    */
-  public boolean notify(UserDto user, String subject, String content) {
-    NotificationDto request = buildNotification(user, subject, content);
+  public <K> Set<K> sendAll(Map<K, NotificationDto> notifications) {
+    final long start = System.nanoTime();
+    Map<K, CompletableFuture<Boolean>> futures = new LinkedHashMap<>();
+
+    notifications.forEach((key, notification) -> futures.put(key,
+        CompletableFuture.supplyAsync(() -> trySend(notification), executor)));
+
+    Set<K> failed = futures
+        .entrySet()
+        .stream()
+        .filter(entry -> !entry.getValue().join())
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toSet());
+
+    meterRegistry.timer(BATCH_METER).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    meterRegistry.summary(BATCH_FAILURES_METER).record(failed.size());
+
+    if (!failed.isEmpty()) {
+      logger.warn("Unable to send {} of {} notifications", failed.size(), notifications.size());
+    }
+
+    return failed;
+  }
+
+  private boolean trySend(NotificationDto request) {
+    try {
+      return send(request);
+    } catch (RuntimeException ex) {
+      logger.error("Unable to send notification to user {}", request.getUserId(), ex);
+      return false;
+    }
+  }
+
+  /*
+    Sends a notification, returns true if success, false if failed.
+   */
+  private boolean send(NotificationDto request) {
     logger.debug("Sending request:"
         + "\n subject:" + request.getMessages().get(EMAIL.toString()).getSubject()
         + "\n content:" + request.getMessages().get(EMAIL.toString()).getBody()
@@ -63,11 +142,14 @@ public class NotificationService {
 
     String url = notificationUrl + "/api/notifications";
     try {
-      RequestHeaders headers = RequestHeaders.init().setAuth(authService.obtainAccessToken());
       URI uri = RequestHelper.createUri(url);
-      HttpEntity<NotificationDto> entity = RequestHelper.createEntity(request, headers);
 
-      restTemplate.postForObject(uri, entity, Object.class);
+      RequestHelper.executeWithToken(authService, token -> {
+        RequestHeaders headers = RequestHeaders.init().setAuth(token);
+        HttpEntity<NotificationDto> entity = RequestHelper.createEntity(request, headers);
+
+        return restTemplate.postForObject(uri, entity, Object.class);
+      });
     } catch (HttpStatusCodeException ex) {
       logger.error(
           "Unable to send notification. Error code: {}, response message: {}",
@@ -78,11 +160,4 @@ public class NotificationService {
 
     return true;
   }
-
-  private NotificationDto buildNotification(UserDto user, String subject, String content) {
-    Map<String, MessageDto> messages = new HashMap<>();
-    messages.put(EMAIL.toString(), new MessageDto(subject, content));
-
-    return new NotificationDto(user.getId(), messages);
-  }
 }
@@ -0,0 +1,76 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.notifier;
+
+import java.time.chrono.Chronology;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.FormatStyle;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.openlmis.cce.i18n.MessageService;
+import org.openlmis.cce.util.Message;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Provides notification templates and date formatters for the current locale. Each message is
+ * localized and compiled once per locale, and so is each formatter.
+ */
+@Component
+public class NotificationTemplates {
+
+  @Autowired
+  private MessageService messageService;
+
+  private final Map<Locale, Map<String, MessageTemplate>> templates = new ConcurrentHashMap<>();
+  private final Map<Locale, DateTimeFormatter> formatters = new ConcurrentHashMap<>();
+
+  /**
+   * Gets the template of the given message in the current locale.
+   *
+   * @param key the message key
+   * @return the compiled template
+   */
+  public MessageTemplate get(String key) {
+    return templates
+        .computeIfAbsent(LocaleContextHolder.getLocale(), locale -> new ConcurrentHashMap<>())
+        .computeIfAbsent(key, this::compile);
+  }
+
+  /**
+   * Gets the medium date and time formatter of the current locale.
+   *
+   * @return the formatter
+   */
+  public DateTimeFormatter getDateTimeFormatter() {
+    return formatters.computeIfAbsent(LocaleContextHolder.getLocale(),
+        NotificationTemplates::createDateTimeFormatter);
+  }
+
+  private MessageTemplate compile(String key) {
+    return MessageTemplate.compile(messageService.localize(new Message(key)).asMessage());
+  }
+
+  private static DateTimeFormatter createDateTimeFormatter(Locale locale) {
+    String datePattern = DateTimeFormatterBuilder.getLocalizedDateTimePattern(
+        FormatStyle.MEDIUM, FormatStyle.MEDIUM, Chronology.ofLocale(locale), locale);
+    return DateTimeFormatter.ofPattern(datePattern);
+  }
+
+}
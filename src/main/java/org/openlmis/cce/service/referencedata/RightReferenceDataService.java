@@ -16,6 +16,8 @@
 package org.openlmis.cce.service.referencedata;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.openlmis.cce.dto.RightDto;
 import org.openlmis.cce.service.RequestParameters;
 import org.openlmis.cce.service.ResourceNames;
@@ -24,6 +26,9 @@ import org.springframework.stereotype.Service;
 @Service
 public class RightReferenceDataService extends BaseReferenceDataService<RightDto> {
 
+  // rights are defined by services at deployment, their ids don't change while we are running
+  private final Map<String, RightDto> rightsByName = new ConcurrentHashMap<>();
+
   @Override
   protected String getUrl() {
     return ResourceNames.getRightsPath();
@@ -40,12 +45,28 @@ public class RightReferenceDataService extends BaseReferenceDataService<RightDto
   }
 
   /**
-   * Find a correct right by the provided name.
+   * Find a correct right by the provided name. Found rights are kept for the life of the process.
    *
    * @param name right name
    * @return right related with the name or {@code null}.
    */
   public RightDto findRight(String name) {
+    RightDto right = rightsByName.get(name);
+
+    if (null == right) {
+      // the call is made outside of the map, concurrent lookups of the same name may repeat it
+      right = searchRight(name);
+
+      if (null != right) {
+        RightDto previous = rightsByName.putIfAbsent(name, right);
+        right = null == previous ? right : previous;
+      }
+    }
+
+    return right;
+  }
+
+  private RightDto searchRight(String name) {
     List<RightDto> rights = findAll("search", RequestParameters.init().set("name", name));
     return rights.isEmpty() ? null : rights.get(0);
   }
@@ -0,0 +1,64 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.util;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A page of keyset (seek) pagination. Instead of a page number it carries the opaque cursor of
+ * the next page, which should be passed back as the {@code after} parameter. The total number of
+ * elements is only present if it was explicitly requested.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public final class KeysetPage<T> implements Iterable<T> {
+
+  private final List<T> content;
+  private final int size;
+  private final String next;
+
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private final Long totalElements;
+
+  /**
+   * Creates an empty page.
+   */
+  public static <T> KeysetPage<T> empty(int size, boolean includeTotal) {
+    return new KeysetPage<>(Collections.emptyList(), size, null, includeTotal ? 0L : null);
+  }
+
+  public int getNumberOfElements() {
+    return content.size();
+  }
+
+  public boolean isLast() {
+    return null == next;
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return content.iterator();
+  }
+}
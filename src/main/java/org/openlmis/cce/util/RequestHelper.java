@@ -17,9 +17,13 @@ package org.openlmis.cce.util;
 
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+import org.openlmis.cce.service.AuthService;
 import org.openlmis.cce.service.RequestHeaders;
 import org.openlmis.cce.service.RequestParameters;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.util.UriComponentsBuilder;
 import org.springframework.web.util.UriUtils;
 
@@ -58,4 +62,27 @@ public final class RequestHelper {
     return new HttpEntity<>(payload, headers.toHeaders());
   }
 
+  /**
+   * Executes the given request with a service access token. If the request is rejected with
+   * 401 (Unauthorized), the token is invalidated and the request is retried once with a new one.
+   *
+   * @param authService service that provides access tokens
+   * @param request     the request that takes an access token
+   * @return result of the request
+   */
+  public static <T> T executeWithToken(AuthService authService, Function<String, T> request) {
+    String token = authService.obtainAccessToken();
+
+    try {
+      return request.apply(token);
+    } catch (HttpStatusCodeException ex) {
+      if (HttpStatus.UNAUTHORIZED != ex.getStatusCode()) {
+        throw ex;
+      }
+
+      authService.invalidateAccessToken(token);
+      return request.apply(authService.obtainAccessToken());
+    }
+  }
+
 }
@@ -0,0 +1,227 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web;
+
+import static org.openlmis.cce.i18n.AlertMessageKeys.ERROR_BATCH_TOO_LARGE;
+import static org.openlmis.cce.i18n.AlertMessageKeys.ERROR_DEVICE_ID_NOT_FOUND;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import org.openlmis.cce.domain.Alert;
+import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.dto.AlertDto;
+import org.openlmis.cce.dto.BulkResultDto;
+import org.openlmis.cce.exception.PermissionMessageException;
+import org.openlmis.cce.exception.ValidationMessageException;
+import org.openlmis.cce.i18n.MessageService;
+import org.openlmis.cce.repository.AlertRepository;
+import org.openlmis.cce.repository.InventoryItemRepository;
+import org.openlmis.cce.repository.custom.FacilityProgramPair;
+import org.openlmis.cce.service.PermissionService;
+import org.openlmis.cce.service.event.AlertEvent;
+import org.openlmis.cce.service.event.DomainEventPublisher;
+import org.openlmis.cce.util.Message;
+import org.openlmis.cce.web.validator.AlertValidator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates and updates many alerts at once. Devices and existing alerts are loaded with one query
+ * each, permissions are checked once per facility and program, and alerts are written in JDBC
+ * batches. Rows that are invalid, point to a missing device or that the user has no right to edit
+ * are reported instead of failing the whole request. The remaining rows are written together, so
+ * an error while writing them, like a constraint violation, fails all of them.
+ */
+@Component
+public class AlertBulkWriter {
+
+  @Autowired
+  private AlertRepository alertRepository;
+
+  @Autowired
+  private InventoryItemRepository inventoryItemRepository;
+
+  @Autowired
+  private AlertValidator alertValidator;
+
+  @Autowired
+  private PermissionService permissionService;
+
+  @Autowired
+  private DomainEventPublisher domainEventPublisher;
+
+  @Autowired
+  private MessageService messageService;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Value("${alert.batch.maxSize}")
+  private int maxSize;
+
+  /**
+   * Saves the given alerts. Alerts with an alert id of an existing alert update it, other alerts
+   * are created. If the same alert id is given more than once, rows are applied in order, like
+   * separate requests would be.
+   *
+   * @param alertDtos the alerts to save
+   * @return result of each row, in the order of the given alerts
+   */
+  public List<BulkResultDto<String>> write(List<AlertDto> alertDtos) {
+    if (alertDtos.size() > maxSize) {
+      throw new ValidationMessageException(ERROR_BATCH_TOO_LARGE, maxSize);
+    }
+
+    Map<Integer, Message> errors = new HashMap<>();
+    List<AlertDto> valid = new ArrayList<>();
+
+    for (int i = 0; i < alertDtos.size(); ++i) {
+      try {
+        alertValidator.validateFields(alertDtos.get(i));
+        valid.add(alertDtos.get(i));
+      } catch (ValidationMessageException ex) {
+        errors.put(i, ex.asMessage());
+      }
+    }
+
+    Map<UUID, InventoryItem> devices = findDevices(valid);
+    Map<String, Alert> existing = findExisting(valid);
+    Map<FacilityProgramPair, Optional<Message>> permissions = new HashMap<>();
+    Set<Integer> updates = new HashSet<>();
+
+    // the last alert for each alert id, that will be saved
+    Map<String, Alert> alerts = new LinkedHashMap<>();
+
+    for (int i = 0; i < alertDtos.size(); ++i) {
+      if (errors.containsKey(i)) {
+        continue;
+      }
+
+      AlertDto dto = alertDtos.get(i);
+      InventoryItem device = devices.get(dto.getDeviceId());
+
+      if (null == device) {
+        errors.put(i, new Message(ERROR_DEVICE_ID_NOT_FOUND));
+        continue;
+      }
+
+      Optional<Message> denied = permissions.computeIfAbsent(
+          FacilityProgramPair.of(device.getFacilityId(), device.getProgramId()),
+          this::checkPermission);
+
+      if (denied.isPresent()) {
+        errors.put(i, denied.get());
+        continue;
+      }
+
+      Alert alert = Alert.createNew(dto.getExternalId(), dto.getType(), device,
+          dto.getStartTimestamp(), dto.getEndTimestamp(), dto.getStatusMessages(),
+          dto.getDismissTimestamp());
+
+      Alert previous = alerts.containsKey(dto.getExternalId())
+          ? alerts.get(dto.getExternalId())
+          : existing.get(dto.getExternalId());
+
+      if (null != previous) {
+        alert.fillInFrom(previous);
+        updates.add(i);
+      }
+
+      alerts.put(dto.getExternalId(), alert);
+    }
+
+    save(alerts.values());
+
+    List<BulkResultDto<String>> results = new ArrayList<>(alertDtos.size());
+
+    for (int i = 0; i < alertDtos.size(); ++i) {
+      String externalId = alertDtos.get(i).getExternalId();
+
+      if (errors.containsKey(i)) {
+        results.add(BulkResultDto.failed(i, externalId, messageService.localize(errors.get(i))));
+      } else if (updates.contains(i)) {
+        results.add(BulkResultDto.updated(i, externalId));
+      } else {
+        results.add(BulkResultDto.created(i, externalId));
+      }
+    }
+
+    return results;
+  }
+
+  private Map<UUID, InventoryItem> findDevices(List<AlertDto> alertDtos) {
+    Set<UUID> ids = new HashSet<>();
+    alertDtos.forEach(dto -> ids.add(dto.getDeviceId()));
+
+    Map<UUID, InventoryItem> devices = new HashMap<>();
+
+    if (!ids.isEmpty()) {
+      inventoryItemRepository.findAllById(ids).forEach(item -> devices.put(item.getId(), item));
+    }
+
+    return devices;
+  }
+
+  private Map<String, Alert> findExisting(List<AlertDto> alertDtos) {
+    Set<String> externalIds = new HashSet<>();
+    alertDtos.forEach(dto -> externalIds.add(dto.getExternalId()));
+
+    Map<String, Alert> existing = new HashMap<>();
+
+    if (!externalIds.isEmpty()) {
+      alertRepository.findByExternalIdIn(externalIds)
+          .forEach(alert -> existing.put(alert.getExternalId(), alert));
+    }
+
+    return existing;
+  }
+
+  private Optional<Message> checkPermission(FacilityProgramPair pair) {
+    try {
+      permissionService.canEditInventoryOrIsApiKey(pair.getProgramId(), pair.getFacilityId());
+      return Optional.empty();
+    } catch (PermissionMessageException ex) {
+      return Optional.of(ex.asMessage());
+    }
+  }
+
+  private void save(Iterable<Alert> alerts) {
+    if (!alerts.iterator().hasNext()) {
+      return;
+    }
+
+    List<Alert> saved = new ArrayList<>();
+    alertRepository.saveAll(alerts).forEach(saved::add);
+    entityManager.flush();
+
+    for (Alert alert : saved) {
+      AlertDto dto = new AlertDto();
+      alert.export(dto);
+      domainEventPublisher.publish(AlertEvent.saved(dto));
+    }
+  }
+
+}
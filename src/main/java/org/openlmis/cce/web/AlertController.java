@@ -25,9 +25,12 @@ import java.util.stream.Collectors;
 import org.openlmis.cce.domain.Alert;
 import org.openlmis.cce.domain.InventoryItem;
 import org.openlmis.cce.dto.AlertDto;
+import org.openlmis.cce.dto.BulkResultDto;
 import org.openlmis.cce.repository.AlertRepository;
 import org.openlmis.cce.repository.InventoryItemRepository;
 import org.openlmis.cce.service.PermissionService;
+import org.openlmis.cce.service.event.AlertEvent;
+import org.openlmis.cce.service.event.DomainEventPublisher;
 import org.openlmis.cce.util.Pagination;
 import org.openlmis.cce.web.validator.AlertValidator;
 import org.slf4j.ext.XLogger;
@@ -39,6 +42,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -67,6 +71,12 @@ public class AlertController extends BaseController {
   
   @Autowired
   InventoryItemRepository inventoryItemRepository;
+
+  @Autowired
+  DomainEventPublisher domainEventPublisher;
+
+  @Autowired
+  AlertBulkWriter alertBulkWriter;
   
   /**
    * Creates or updates a CCE alert.
@@ -106,12 +116,38 @@ public class AlertController extends BaseController {
 
     profiler.start("CREATE_RESPONSE_DTO");
     AlertDto responseDto = exportToDto(savedAlert);
+    domainEventPublisher.publish(AlertEvent.saved(responseDto));
 
     profiler.stop().log();
     XLOGGER.exit(responseDto);
     return responseDto;
   }
 
+  /**
+   * Creates or updates many CCE alerts at once. Alerts with the same alert id are applied in
+   * order. Alerts that can't be saved, because they are invalid, their device doesn't exist or
+   * the user has no right to edit it, are reported in the result and don't stop other alerts from
+   * being saved. An error while writing the other alerts fails the whole request.
+   *
+   * @param alertDtos DTOs used to create or update CCE alerts.
+   * @return result of each alert, in the order of the request.
+   */
+  @PutMapping("/batch")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public List<BulkResultDto<String>> saveAlerts(@RequestBody List<AlertDto> alertDtos) {
+    XLOGGER.entry(alertDtos.size());
+    Profiler profiler = new Profiler("SAVE_ALERTS");
+    profiler.setLogger(XLOGGER);
+
+    profiler.start("WRITE");
+    List<BulkResultDto<String>> results = alertBulkWriter.write(alertDtos);
+
+    profiler.stop().log();
+    XLOGGER.exit(results.size());
+    return results;
+  }
+
   /**
    * Get all CCE Inventory items that user has right for.
    *
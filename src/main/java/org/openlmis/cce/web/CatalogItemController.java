@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import javax.servlet.http.HttpServletResponse;
 import org.openlmis.cce.domain.CatalogItem;
@@ -39,7 +40,7 @@ import org.openlmis.cce.util.Pagination;
 import org.openlmis.cce.web.csv.format.CsvFormatter;
 import org.openlmis.cce.web.csv.model.ModelClass;
 import org.openlmis.cce.web.csv.parser.CsvParser;
-import org.openlmis.cce.web.csv.recordhandler.CatalogItemProcessor;
+import org.openlmis.cce.web.csv.recordhandler.CatalogItemBulkWriter;
 import org.openlmis.cce.web.csv.recordhandler.CatalogItemWriter;
 import org.openlmis.cce.web.validator.CatalogItemValidator;
 import org.openlmis.cce.web.validator.CsvHeaderValidator;
@@ -74,6 +75,7 @@ public class CatalogItemController extends BaseController {
   private static final String RESOURCE_URL = "/catalogItems";
   private static final String FORMAT = "format";
   private static final String CSV = "csv";
+  private static final String CATALOG_ITEMS_EXPORT = "catalogItems";
 
   private static final String PROFILER_CREATE_DTO = "PROFILER_CREATE_DTO";
 
@@ -87,10 +89,10 @@ public class CatalogItemController extends BaseController {
   private PermissionService permissionService;
 
   @Autowired
-  private CatalogItemProcessor catalogItemProcessor;
+  private CatalogItemWriter catalogItemWriter;
 
   @Autowired
-  private CatalogItemWriter catalogItemWriter;
+  private CatalogItemBulkWriter catalogItemBulkWriter;
 
   @Autowired
   private CsvParser csvParser;
@@ -249,17 +251,20 @@ public class CatalogItemController extends BaseController {
   }
 
   /**
-   * Uploads csv file and converts to domain object.
+   * Uploads csv file and converts to domain object. In bulk mode all items are loaded with a few
+   * statements instead of being saved chunk by chunk, which is faster for full catalog refreshes.
    *
    * @param file File in ".csv" format to upload.
+   * @param bulk whether the file should be loaded in bulk mode
    * @return number of uploaded records
    */
   @PostMapping(value = RESOURCE_URL, params = FORMAT)
   @ResponseBody
   @ResponseStatus(HttpStatus.OK)
   public UploadResultDto upload(@RequestParam(FORMAT) String format,
+                                @RequestParam(value = "bulk", defaultValue = "false") boolean bulk,
                                 @RequestPart("file") MultipartFile file) {
-    XLOGGER.entry(format);
+    XLOGGER.entry(format, bulk);
     Profiler profiler = new Profiler("UPLOAD_CATALOG_ITEMS_FILE");
     profiler.setLogger(XLOGGER);
 
@@ -282,10 +287,13 @@ public class CatalogItemController extends BaseController {
     try {
 
       profiler.start("PARSE_FILE");
-      int result = csvParser.parse(
-          file.getInputStream(), modelClass, csvHeaderValidator,
-          catalogItemProcessor, catalogItemWriter
-      );
+      int result = bulk
+          ? csvParser.parseInBulk(
+              file.getInputStream(), modelClass, csvHeaderValidator,
+              CatalogItem.class, catalogItemBulkWriter)
+          : csvParser.parse(
+              file.getInputStream(), modelClass, csvHeaderValidator,
+              CatalogItem.class, catalogItemWriter);
 
       profiler.start("CREATE_RESPONSE");
       UploadResultDto uploadResult = new UploadResultDto(result);
@@ -303,11 +311,13 @@ public class CatalogItemController extends BaseController {
   }
 
   /**
-   * Downloads csv file with all catalog items.
+   * Downloads csv file with all catalog items. Items are streamed from the database straight into
+   * the response, which is sent in chunks.
    */
   @GetMapping(value = RESOURCE_URL, params = FORMAT)
   @ResponseBody
   @ResponseStatus(HttpStatus.OK)
+  @Transactional(readOnly = true)
   public void download(@RequestParam(FORMAT) String format,
                        HttpServletResponse response) throws IOException {
     XLOGGER.entry(format);
@@ -323,20 +333,14 @@ public class CatalogItemController extends BaseController {
       return;
     }
 
-    profiler.start("FIND_ALL");
-    Iterable<CatalogItem> items = catalogRepository.findAll();
-
-    profiler.start(PROFILER_CREATE_DTO);
-    List<CatalogItemDto> catalogItems = toDto(items);
-
     response.setContentType("text/csv");
     response.addHeader(HttpHeaders.CONTENT_DISPOSITION,
         DISPOSITION_BASE + "catalog_items.csv");
 
-    try {
-      profiler.start("WRITE_TO_OUTPUT");
-      csvFormatter.process(
-          response.getOutputStream(), new ModelClass<>(CatalogItemDto.class), catalogItems);
+    profiler.start("STREAM_TO_OUTPUT");
+    try (Stream<CatalogItem> items = catalogRepository.streamAll()) {
+      csvFormatter.process(CATALOG_ITEMS_EXPORT, response.getOutputStream(),
+          new ModelClass<>(CatalogItemDto.class), items.map(this::toDto));
     } catch (IOException ex) {
       throw new ValidationMessageException(ex, MessageKeys.ERROR_IO, ex.getMessage());
     } finally {
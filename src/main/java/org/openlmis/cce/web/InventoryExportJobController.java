@@ -0,0 +1,162 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web;
+
+import static org.openlmis.cce.web.InventoryExportJobController.RESOURCE_PATH;
+
+import java.nio.file.Path;
+import java.util.UUID;
+import org.openlmis.cce.domain.InventoryExportJob;
+import org.openlmis.cce.dto.InventoryExportJobDto;
+import org.openlmis.cce.dto.InventoryExportJobRequestDto;
+import org.openlmis.cce.service.export.InventoryExportJobService;
+import org.openlmis.cce.util.AuthenticationHelper;
+import org.slf4j.ext.XLogger;
+import org.slf4j.ext.XLoggerFactory;
+import org.slf4j.profiler.Profiler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@Controller
+@Transactional
+@RequestMapping(RESOURCE_PATH)
+public class InventoryExportJobController extends BaseController {
+
+  private static final XLogger XLOGGER =
+      XLoggerFactory.getXLogger(InventoryExportJobController.class);
+
+  static final String RESOURCE_PATH = InventoryItemController.RESOURCE_PATH + "/exportJobs";
+  private static final String ID_URL = "/{id}";
+  private static final String GZIP = "application/gzip";
+  private static final String FILE_NAME = "inventory_items.csv.gz";
+
+  @Autowired
+  private InventoryExportJobService exportJobService;
+
+  @Autowired
+  private AuthenticationHelper authenticationHelper;
+
+  /**
+   * Submits an export of inventory items from facilities and programs the user has the inventory
+   * view right for. The export runs in the background; the returned job can be polled for its
+   * status and, once completed, its gzip compressed CSV file can be fetched.
+   *
+   * @param request program, facilities and functional status of exported items, all optional
+   * @return the queued export job
+   */
+  @PostMapping
+  @ResponseStatus(HttpStatus.ACCEPTED)
+  @ResponseBody
+  public InventoryExportJobDto submit(@RequestBody InventoryExportJobRequestDto request) {
+    XLOGGER.entry(request);
+    Profiler profiler = new Profiler("SUBMIT_INVENTORY_EXPORT_JOB");
+    profiler.setLogger(XLOGGER);
+
+    UUID userId = authenticationHelper.getCurrentUser().getId();
+
+    profiler.start("SUBMIT");
+    InventoryExportJob job = exportJobService.submit(userId, request.getProgramId(),
+        request.getFacilityIds(), request.getFunctionalStatus());
+
+    InventoryExportJobDto dto = exportToDto(job);
+
+    profiler.stop().log();
+    XLOGGER.exit(dto);
+    return dto;
+  }
+
+  /**
+   * Gets the status of an export job submitted by the user.
+   *
+   * @param jobId id of the export job
+   * @return the export job
+   */
+  @GetMapping(ID_URL)
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public InventoryExportJobDto getJob(@PathVariable("id") UUID jobId) {
+    UUID userId = authenticationHelper.getCurrentUser().getId();
+    return exportToDto(exportJobService.get(userId, jobId));
+  }
+
+  /**
+   * Fetches the gzip compressed CSV file of a completed export job. Range requests are
+   * supported, so an interrupted download can be continued.
+   *
+   * @param jobId id of the export job
+   * @return the file
+   */
+  @GetMapping(ID_URL + "/file")
+  public ResponseEntity<Resource> getFile(@PathVariable("id") UUID jobId) {
+    UUID userId = authenticationHelper.getCurrentUser().getId();
+    Path file = exportJobService.getFile(userId, jobId);
+
+    return ResponseEntity
+        .ok()
+        .contentType(MediaType.parseMediaType(GZIP))
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + FILE_NAME)
+        .body(new FileSystemResource(file));
+  }
+
+  /**
+   * Cancels an export job and removes its file.
+   *
+   * @param jobId id of the export job
+   * @return the cancelled export job
+   */
+  @PutMapping(ID_URL + "/cancel")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public InventoryExportJobDto cancel(@PathVariable("id") UUID jobId) {
+    UUID userId = authenticationHelper.getCurrentUser().getId();
+    return exportToDto(exportJobService.cancel(userId, jobId));
+  }
+
+  /**
+   * Resumes a failed or interrupted export job from its last checkpoint.
+   *
+   * @param jobId id of the export job
+   * @return the queued export job
+   */
+  @PutMapping(ID_URL + "/resume")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public InventoryExportJobDto resume(@PathVariable("id") UUID jobId) {
+    UUID userId = authenticationHelper.getCurrentUser().getId();
+    return exportToDto(exportJobService.resume(userId, jobId));
+  }
+
+  private InventoryExportJobDto exportToDto(InventoryExportJob job) {
+    InventoryExportJobDto dto = new InventoryExportJobDto();
+    job.export(dto);
+    return dto;
+  }
+}
@@ -0,0 +1,299 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web;
+
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_BATCH_TOO_LARGE;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_ID_NOT_UNIQUE;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_ITEM_ALREADY_EXISTS;
+
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.dto.BulkResultDto;
+import org.openlmis.cce.dto.InventoryItemDto;
+import org.openlmis.cce.exception.PermissionMessageException;
+import org.openlmis.cce.exception.ValidationMessageException;
+import org.openlmis.cce.i18n.MessageService;
+import org.openlmis.cce.repository.InventoryItemRepository;
+import org.openlmis.cce.repository.custom.FacilityProgramPair;
+import org.openlmis.cce.repository.custom.InventoryItemKey;
+import org.openlmis.cce.service.PermissionService;
+import org.openlmis.cce.service.event.DomainEventPublisher;
+import org.openlmis.cce.service.event.InventoryItemEvent;
+import org.openlmis.cce.util.AuthenticationHelper;
+import org.openlmis.cce.util.Message;
+import org.openlmis.cce.web.validator.InventoryItemValidator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates and updates many inventory items at once. Existing items are loaded with one query,
+ * uniqueness of all items is verified with one query, permissions are checked once per facility
+ * and program, and items are written in JDBC batches. Rows that are invalid, clash with other
+ * items or that the user has no right to edit are reported instead of failing the whole request.
+ * The remaining rows are written together, so an error while writing them, like a constraint
+ * violation, fails all of them.
+ */
+@Component
+public class InventoryItemBulkWriter {
+
+  @Autowired
+  private InventoryItemRepository inventoryItemRepository;
+
+  @Autowired
+  private InventoryItemValidator validator;
+
+  @Autowired
+  private PermissionService permissionService;
+
+  @Autowired
+  private AuthenticationHelper authenticationHelper;
+
+  @Autowired
+  private InventoryItemDtoBuilder inventoryItemDtoBuilder;
+
+  @Autowired
+  private DomainEventPublisher domainEventPublisher;
+
+  @Autowired
+  private MessageService messageService;
+
+  @Autowired
+  private Clock clock;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Value("${inventoryItem.batch.maxSize}")
+  private int maxSize;
+
+  /**
+   * Saves the given inventory items. Items with an id of an existing item update it, other items
+   * are created.
+   *
+   * @param inventoryItems the items to save
+   * @return result of each row, in the order of the given items
+   */
+  public List<BulkResultDto<UUID>> write(List<InventoryItemDto> inventoryItems) {
+    if (inventoryItems.size() > maxSize) {
+      throw new ValidationMessageException(ERROR_BATCH_TOO_LARGE, maxSize);
+    }
+
+    List<Row> rows = validate(inventoryItems);
+    List<Row> valid = new ArrayList<>();
+
+    for (Row row : rows) {
+      if (null == row.error) {
+        valid.add(row);
+      }
+    }
+
+    save(valid);
+
+    List<BulkResultDto<UUID>> results = new ArrayList<>(rows.size());
+
+    for (Row row : rows) {
+      results.add(row.toResult());
+    }
+
+    return results;
+  }
+
+  private List<Row> validate(List<InventoryItemDto> inventoryItems) {
+    Map<UUID, InventoryItem> existing = findExisting(inventoryItems);
+    Map<FacilityProgramPair, Optional<Message>> permissions = new HashMap<>();
+    Set<UUID> ids = new HashSet<>();
+    List<Row> rows = new ArrayList<>(inventoryItems.size());
+
+    for (int i = 0; i < inventoryItems.size(); ++i) {
+      InventoryItemDto dto = inventoryItems.get(i);
+      Row row = new Row(i, dto, existing.get(dto.getId()));
+      rows.add(row);
+
+      if (null != dto.getId() && !ids.add(dto.getId())) {
+        row.error = new Message(ERROR_ID_NOT_UNIQUE, dto.getId());
+        continue;
+      }
+
+      try {
+        validator.validateFields(dto);
+      } catch (ValidationMessageException ex) {
+        row.error = ex.asMessage();
+        continue;
+      }
+
+      row.error = permissions
+          .computeIfAbsent(row.getFacilityProgramPair(), this::checkPermission)
+          .orElse(null);
+    }
+
+    validateUniqueConstraints(rows);
+
+    return rows;
+  }
+
+  private Map<UUID, InventoryItem> findExisting(List<InventoryItemDto> inventoryItems) {
+    Set<UUID> ids = new HashSet<>();
+
+    for (InventoryItemDto dto : inventoryItems) {
+      if (null != dto.getId()) {
+        ids.add(dto.getId());
+      }
+    }
+
+    Map<UUID, InventoryItem> existing = new HashMap<>();
+
+    if (!ids.isEmpty()) {
+      inventoryItemRepository.findAllById(ids).forEach(item -> existing.put(item.getId(), item));
+    }
+
+    return existing;
+  }
+
+  private Optional<Message> checkPermission(FacilityProgramPair pair) {
+    try {
+      permissionService.canEditInventory(pair.getProgramId(), pair.getFacilityId());
+      return Optional.empty();
+    } catch (PermissionMessageException ex) {
+      return Optional.of(ex.asMessage());
+    }
+  }
+
+  private void validateUniqueConstraints(List<Row> rows) {
+    List<Row> candidates = new ArrayList<>();
+    Set<InventoryItemKey> keys = new HashSet<>();
+
+    for (Row row : rows) {
+      if (null == row.error && validator.needsUniqueConstraintsCheck(row.dto, row.existing)) {
+        InventoryItemKey key = row.getKey();
+
+        // items without a tracking id, model or type never clash with other items
+        if (null != key.getEquipmentTrackingId() && null != key.getModel()
+            && null != key.getType()) {
+          candidates.add(row);
+          keys.add(key);
+        }
+      }
+    }
+
+    Map<InventoryItemKey, UUID> found = inventoryItemRepository.findIdsByKeys(keys);
+    Set<InventoryItemKey> claimed = new HashSet<>();
+
+    for (Row row : candidates) {
+      InventoryItemKey key = row.getKey();
+      UUID foundId = found.get(key);
+
+      if ((null != foundId && !foundId.equals(row.dto.getId())) || !claimed.add(key)) {
+        row.error = new Message(ERROR_ITEM_ALREADY_EXISTS, key.getEquipmentTrackingId(),
+            key.getType(), key.getModel());
+      }
+    }
+  }
+
+  private void save(List<Row> rows) {
+    if (rows.isEmpty()) {
+      return;
+    }
+
+    UUID userId = authenticationHelper.getCurrentUser().getId();
+    ZonedDateTime modifiedDate = ZonedDateTime.now(clock);
+    List<InventoryItem> items = new ArrayList<>(rows.size());
+
+    for (Row row : rows) {
+      row.dto.setLastModifierId(userId);
+      InventoryItem item = InventoryItem.newInstance(row.dto);
+
+      if (null != row.existing) {
+        row.statusChanged = item.statusChanged(row.existing);
+        row.existing.updateFrom(item);
+        item = row.existing;
+      }
+
+      item.setModifiedDate(modifiedDate);
+      items.add(item);
+    }
+
+    List<InventoryItem> saved = new ArrayList<>(items.size());
+    inventoryItemRepository.saveAll(items).forEach(saved::add);
+    entityManager.flush();
+
+    List<InventoryItemDto> dtos = inventoryItemDtoBuilder.build(saved);
+
+    for (int i = 0; i < rows.size(); ++i) {
+      Row row = rows.get(i);
+      row.saved = dtos.get(i);
+
+      if (null == row.existing) {
+        domainEventPublisher.publish(InventoryItemEvent.created(row.saved));
+      } else {
+        domainEventPublisher.publish(InventoryItemEvent.updated(row.saved));
+
+        if (row.statusChanged) {
+          domainEventPublisher.publish(InventoryItemEvent.statusChanged(row.saved));
+        }
+      }
+    }
+  }
+
+  private final class Row {
+    private final int index;
+    private final InventoryItemDto dto;
+    private final InventoryItem existing;
+    private Message error;
+    private boolean statusChanged;
+    private InventoryItemDto saved;
+
+    Row(int index, InventoryItemDto dto, InventoryItem existing) {
+      this.index = index;
+      this.dto = dto;
+      this.existing = existing;
+    }
+
+    // facility and program of an existing item can't be changed by an update
+    FacilityProgramPair getFacilityProgramPair() {
+      return null == existing
+          ? FacilityProgramPair.of(dto.getFacility().getId(), dto.getProgramId())
+          : FacilityProgramPair.of(existing.getFacilityId(), existing.getProgramId());
+    }
+
+    InventoryItemKey getKey() {
+      return InventoryItemKey.of(dto.getEquipmentTrackingId(), dto.getCatalogItem().getModel(),
+          dto.getCatalogItem().getType());
+    }
+
+    BulkResultDto<UUID> toResult() {
+      if (null != error) {
+        return BulkResultDto.failed(index, dto.getId(), messageService.localize(error));
+      }
+
+      return null == existing
+          ? BulkResultDto.created(index, saved.getId())
+          : BulkResultDto.updated(index, saved.getId());
+    }
+  }
+
+}
@@ -25,10 +25,11 @@ import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 import javax.servlet.http.HttpServletResponse;
-import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.dto.BulkResultDto;
 import org.openlmis.cce.dto.InventoryItemDto;
 import org.openlmis.cce.dto.InventoryItemTransferDto;
 import org.openlmis.cce.exception.NotFoundException;
@@ -39,12 +40,16 @@ import org.openlmis.cce.i18n.MessageService;
 import org.openlmis.cce.repository.InventoryItemRepository;
 import org.openlmis.cce.service.InventoryItemSearchParams;
 import org.openlmis.cce.service.InventoryItemService;
-import org.openlmis.cce.service.InventoryStatusProcessor;
 import org.openlmis.cce.service.ObjReferenceExpander;
 import org.openlmis.cce.service.PermissionService;
+import org.openlmis.cce.service.event.DomainEventPublisher;
+import org.openlmis.cce.service.event.InventoryItemEvent;
+import org.openlmis.cce.service.export.InventoryExportFormat;
 import org.openlmis.cce.util.AuthenticationHelper;
+import org.openlmis.cce.util.KeysetPage;
 import org.openlmis.cce.util.Message;
 import org.openlmis.cce.util.Pagination;
+import org.openlmis.cce.web.csv.format.CsvStreamer;
 import org.openlmis.cce.web.validator.InventoryItemValidator;
 import org.slf4j.ext.XLogger;
 import org.slf4j.ext.XLoggerFactory;
@@ -78,7 +83,9 @@ public class InventoryItemController extends BaseController {
   private static final String FORMAT = "format";
   private static final String PROGRAM_ID = "programId";
   private static final String FACILITY_ID = "facilityId";
+  private static final String AFTER = "after";
   private static final String CSV = "csv";
+  private static final String INVENTORY_ITEMS_EXPORT = "inventoryItems";
   private static final String DISPOSITION_BASE = "attachment; filename=";
 
   @Autowired
@@ -100,7 +107,7 @@ public class InventoryItemController extends BaseController {
   private InventoryItemValidator validator;
 
   @Autowired
-  private InventoryStatusProcessor inventoryStatusProcessor;
+  private DomainEventPublisher domainEventPublisher;
 
   @Autowired
   private ObjReferenceExpander objReferenceExpander;
@@ -108,6 +115,12 @@ public class InventoryItemController extends BaseController {
   @Autowired
   private MessageService messageService;
 
+  @Autowired
+  private InventoryItemBulkWriter inventoryItemBulkWriter;
+
+  @Autowired
+  private CsvStreamer csvStreamer;
+
   /**
    * Allows creating new CCE Inventory item. If the id is specified, it will be ignored.
    *
@@ -135,6 +148,7 @@ public class InventoryItemController extends BaseController {
 
     profiler.start("SAVE_AND_CREATE_DTO");
     InventoryItemDto dto = saveInventory(inventoryItem);
+    domainEventPublisher.publish(InventoryItemEvent.created(dto));
 
     profiler.stop().log();
     XLOGGER.exit(dto);
@@ -214,6 +228,48 @@ public class InventoryItemController extends BaseController {
     return page;
   }
 
+  /**
+   * Get CCE Inventory items that user has right for, using keyset (seek) pagination. The first
+   * page is requested with an empty {@code after} parameter, next pages with the cursor returned
+   * in the previous page. Only 'referenceName' and 'type' sort values are supported.
+   *
+   * @param after        cursor of the page, empty for the first page
+   * @param includeTotal true if the total number of items should be returned
+   * @return CCE Inventory items.
+   */
+  @GetMapping(params = AFTER)
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public KeysetPage<InventoryItemDto> getAllAfter(InventoryItemSearchParams params,
+      @RequestParam(AFTER) String after,
+      @RequestParam(value = "includeTotal", defaultValue = "false") boolean includeTotal,
+      @SortDefault(sort = "referenceName") Pageable pageable) {
+    XLOGGER.entry(params, after, includeTotal, pageable);
+    Profiler profiler = new Profiler("GET_INVENTORY_ITEMS_AFTER");
+    profiler.setLogger(XLOGGER);
+
+    profiler.start("GET_CURRENT_USER");
+    UUID userId = authenticationHelper.getCurrentUser().getId();
+
+    profiler.start("SEEK");
+    KeysetPage<InventoryItem> itemsPage = inventoryItemService
+        .seek(userId, params, after, includeTotal, pageable);
+
+    profiler.start("CREATE_DTOS");
+    List<InventoryItemDto> dtos = inventoryItemDtoBuilder.build(itemsPage.getContent());
+
+    profiler.start("CREATE_PAGE");
+    KeysetPage<InventoryItemDto> page = new KeysetPage<>(dtos, itemsPage.getSize(),
+        itemsPage.getNext(), itemsPage.getTotalElements());
+
+    profiler.start("EXPAND_DTOS");
+    expandDtos(page, params);
+
+    profiler.stop().log();
+    XLOGGER.exit(page);
+    return page;
+  }
+
   /**
    * Transfer CCE Inventory item to specified facility.
    */
@@ -239,7 +295,8 @@ public class InventoryItemController extends BaseController {
     inventoryItemDto.setProgramId(transferDto.getProgramId());
     inventoryItemDto.setYearOfInstallation(transferDto.getYearOfInstallation());
 
-    saveInventory(InventoryItem.newInstance(inventoryItemDto));
+    InventoryItemDto dto = saveInventory(InventoryItem.newInstance(inventoryItemDto));
+    domainEventPublisher.publish(InventoryItemEvent.transferred(dto));
   }
 
   /**
@@ -286,6 +343,7 @@ public class InventoryItemController extends BaseController {
 
       profiler.start("SAVE_AND_CREATE_DTO");
       dto = saveInventory(inventoryItem);
+      domainEventPublisher.publish(InventoryItemEvent.created(dto));
     }
 
     profiler.stop().log();
@@ -293,6 +351,32 @@ public class InventoryItemController extends BaseController {
     return dto;
   }
 
+  /**
+   * Creates or updates many CCE Inventory items at once. Items with an id of an existing item
+   * update it, other items are created. Items that are invalid, clash with other items or that
+   * the user has no right to edit are reported in the result and don't stop other items from
+   * being saved. An error while writing the other items fails the whole request.
+   *
+   * @param inventoryItemDtos Inventory items that will be saved
+   * @return result of each item, in the order of the request.
+   */
+  @PutMapping("/batch")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public List<BulkResultDto<UUID>> saveInventoryItems(
+      @RequestBody List<InventoryItemDto> inventoryItemDtos) {
+    XLOGGER.entry(inventoryItemDtos.size());
+    Profiler profiler = new Profiler("SAVE_INVENTORY_ITEMS");
+    profiler.setLogger(XLOGGER);
+
+    profiler.start("WRITE");
+    List<BulkResultDto<UUID>> results = inventoryItemBulkWriter.write(inventoryItemDtos);
+
+    profiler.stop().log();
+    XLOGGER.exit(results.size());
+    return results;
+  }
+
   /**
    * Deletes CCE Inventory item with the given id.
    */
@@ -317,16 +401,20 @@ public class InventoryItemController extends BaseController {
 
     profiler.start("DELETE");
     inventoryRepository.delete(inventoryItem.get());
+    domainEventPublisher
+        .publish(InventoryItemEvent.deleted(inventoryItemDtoBuilder.build(inventoryItem.get())));
 
     profiler.stop().log();
     XLOGGER.exit();
   }
 
   /**
-   * Downloads csv file with all inventory items.
+   * Downloads csv file with all inventory items of the facility and program. Items are streamed
+   * from the database straight into the response, which is sent in chunks.
    */
   @GetMapping(value = "/download")
   @ResponseStatus(HttpStatus.OK)
+  @Transactional(readOnly = true)
   public void download(@RequestParam(FORMAT) String format,
                        @RequestParam(PROGRAM_ID) UUID programId,
                        @RequestParam(FACILITY_ID) UUID facilityId,
@@ -345,33 +433,15 @@ public class InventoryItemController extends BaseController {
       return;
     }
 
-    profiler.start("FIND_ALL");
-    List<Object[]> items = inventoryRepository.findByFacilityIdAndProgramId(facilityId, programId);
-
     response.setContentType("text/csv");
     response.addHeader(HttpHeaders.CONTENT_DISPOSITION,
             DISPOSITION_BASE + "inventory_items.csv");
 
-    try {
-      profiler.start("WRITE_TO_OUTPUT");
-      CSVFormat csvFormat = CSVFormat.DEFAULT.withHeader(
-              "Facility Name", "Model", "Type", "Net Volume", "Reference Name",
-              "Program Name", "Serial No.", "Year of Installation",
-              "Year of Warranty Expiry", "Functional Status", "Last Modifier Name",
-              "Modified Date"
-      );
-
-      CSVPrinter csvPrinter = new CSVPrinter(response.getWriter(), csvFormat);
-
-      for (Object[] item : items) {
-        csvPrinter.printRecord(
-                item[0], item[1], item[2], item[3], item[4],
-                item[5], item[6], item[7], item[8], item[9],
-                item[10], item[11]
-        );
-      }
-
-      csvPrinter.flush();
+    profiler.start("STREAM_TO_OUTPUT");
+    try (Stream<Object[]> items = inventoryRepository.streamExportRows(facilityId, programId)) {
+      CSVPrinter csvPrinter = new CSVPrinter(response.getWriter(),
+          InventoryExportFormat.withHeader());
+      csvStreamer.stream(INVENTORY_ITEMS_EXPORT, items, csvPrinter, csvPrinter::printRecord);
       csvPrinter.close();
     } catch (IOException ex) {
       throw new ValidationMessageException(
@@ -388,8 +458,9 @@ public class InventoryItemController extends BaseController {
     boolean changed = inventoryItem.statusChanged(existingInventory);
     existingInventory.updateFrom(inventoryItem);
     InventoryItemDto itemDto = saveInventory(existingInventory);
+    domainEventPublisher.publish(InventoryItemEvent.updated(itemDto));
     if (changed) {
-      inventoryStatusProcessor.functionalStatusChange(itemDto);
+      domainEventPublisher.publish(InventoryItemEvent.statusChanged(itemDto));
     }
     return itemDto;
   }
@@ -404,10 +475,8 @@ public class InventoryItemController extends BaseController {
     return inventoryItemDtoBuilder.build(inventoryRepository.save(inventoryItem));
   }
 
-  private void expandDtos(Page<InventoryItemDto> page,
+  private void expandDtos(Iterable<InventoryItemDto> page,
                           InventoryItemSearchParams params) {
-    for (InventoryItemDto dto : page) {
-      objReferenceExpander.expandDto(dto, params.getExpand());
-    }
+    objReferenceExpander.expandDtos(page, params.getExpand());
   }
 }
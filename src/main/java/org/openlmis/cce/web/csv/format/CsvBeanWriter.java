@@ -58,6 +58,22 @@ class CsvBeanWriter<T extends BaseDto> {
     csvDozerBeanWriter.close();
   }
 
+  void writeHeader() throws IOException {
+    csvDozerBeanWriter.writeHeader(headers);
+  }
+
+  void write(T dto) throws IOException {
+    csvDozerBeanWriter.write(dto, processors);
+  }
+
+  void flush() throws IOException {
+    csvDozerBeanWriter.flush();
+  }
+
+  void close() throws IOException {
+    csvDozerBeanWriter.close();
+  }
+
   private void configureDozerBeanWriter(OutputStream outputStream) throws IOException {
     CsvPreference csvPreference = new CsvPreference.Builder(CsvPreference.STANDARD_PREFERENCE)
         .surroundingSpacesNeedQuotes(true)
@@ -20,11 +20,13 @@ import static org.openlmis.cce.i18n.CsvExportMessageKeys.ERROR_EXPORT_RECORD_INV
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.List;
+import java.util.stream.Stream;
 import lombok.NoArgsConstructor;
 import org.openlmis.cce.dto.BaseDto;
 import org.openlmis.cce.exception.ValidationMessageException;
 import org.openlmis.cce.util.Message;
 import org.openlmis.cce.web.csv.model.ModelClass;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.supercsv.exception.SuperCsvException;
 import org.supercsv.util.CsvContext;
@@ -37,6 +39,9 @@ import org.supercsv.util.CsvContext;
 @NoArgsConstructor
 public class CsvFormatter {
 
+  @Autowired
+  private CsvStreamer csvStreamer;
+
   /**
    * Parses data from input stream into the corresponding model.
    *
@@ -57,6 +62,34 @@ public class CsvFormatter {
     }
   }
 
+  /**
+   * Writes data from the stream into the output stream as it is read, flushing the output
+   * periodically. See {@link CsvStreamer}.
+   *
+   * @param export       name of the export used in metrics
+   * @param outputStream output stream of csv file
+   * @param modelClass   java model which will be mapped to the csv row
+   * @param dtos         rows to write
+   * @return number of written rows
+   */
+  public <T extends BaseDto> long process(String export, OutputStream outputStream,
+                                          ModelClass<T> modelClass,
+                                          Stream<T> dtos) throws IOException {
+
+    CsvBeanWriter<T> csvBeanWriter = new CsvBeanWriter<>(modelClass, outputStream);
+
+    try {
+      csvBeanWriter.writeHeader();
+      long count = csvStreamer.stream(export, dtos, csvBeanWriter::flush, csvBeanWriter::write);
+      csvBeanWriter.close();
+
+      return count;
+    } catch (SuperCsvException err) {
+      Message message = getCsvRowErrorMessage(err);
+      throw new ValidationMessageException(err, message);
+    }
+  }
+
   private Message getCsvRowErrorMessage(SuperCsvException err) {
     CsvContext context = err.getCsvContext();
     int row = context.getRowNumber() - 1;
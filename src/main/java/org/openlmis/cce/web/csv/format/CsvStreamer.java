@@ -0,0 +1,97 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.format;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes rows of a CSV export one by one as they are read from the database. The output is
+ * flushed every {@code export.flushEveryRows} rows, so with no content length set the response
+ * is sent in chunks and neither the rows nor the whole file are kept in memory.
+ */
+@Component
+public class CsvStreamer {
+  static final String ROWS_METER = "cce.export.rows";
+  static final String CHUNKS_METER = "cce.export.chunks";
+  static final String DURATION_METER = "cce.export.duration";
+  static final String EXPORT_TAG = "export";
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Value("${export.flushEveryRows}")
+  private int flushEveryRows;
+
+  /**
+   * Writes all rows to the output and flushes it every {@code export.flushEveryRows} rows and
+   * after the last one. The caller stays responsible for closing the stream and the output.
+   *
+   * @param export name of the export the metrics are tagged with
+   * @param rows   rows to write
+   * @param output output to flush
+   * @param writer writes a single row to the output
+   * @return number of written rows
+   */
+  public <T> long stream(String export, Stream<T> rows, Flushable output,
+      RowWriter<? super T> writer) throws IOException {
+    final long start = System.nanoTime();
+    long count = 0;
+    long chunks = 0;
+    // anything written before the first row, like a header, is sent with the first chunk
+    boolean pending = true;
+
+    try {
+      Iterator<T> iterator = rows.iterator();
+
+      while (iterator.hasNext()) {
+        writer.write(iterator.next());
+        ++count;
+        pending = true;
+
+        if (count % flushEveryRows == 0) {
+          output.flush();
+          ++chunks;
+          pending = false;
+        }
+      }
+
+      if (pending) {
+        output.flush();
+        ++chunks;
+      }
+    } finally {
+      meterRegistry.counter(ROWS_METER, EXPORT_TAG, export).increment(count);
+      meterRegistry.counter(CHUNKS_METER, EXPORT_TAG, export).increment(chunks);
+      meterRegistry
+          .timer(DURATION_METER, EXPORT_TAG, export)
+          .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    return count;
+  }
+
+  public interface RowWriter<T> {
+    void write(T row) throws IOException;
+  }
+}
@@ -15,24 +15,39 @@
 
 package org.openlmis.cce.web.csv.parser;
 
-import static java.util.concurrent.CompletableFuture.runAsync;
 import static org.openlmis.cce.i18n.CsvUploadMessageKeys.ERROR_UPLOAD_RECORD_INVALID;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import lombok.NoArgsConstructor;
 import org.openlmis.cce.domain.BaseEntity;
-import org.openlmis.cce.dto.BaseDto;
 import org.openlmis.cce.exception.ValidationMessageException;
 import org.openlmis.cce.util.Message;
 import org.openlmis.cce.web.csv.model.ModelClass;
-import org.openlmis.cce.web.csv.recordhandler.RecordProcessor;
+import org.openlmis.cce.web.csv.recordhandler.BulkRecordWriter;
 import org.openlmis.cce.web.csv.recordhandler.RecordWriter;
 import org.openlmis.cce.web.validator.CsvHeaderValidator;
 import org.slf4j.ext.XLogger;
@@ -44,15 +59,30 @@ import org.supercsv.exception.SuperCsvException;
 import org.supercsv.util.CsvContext;
 
 /**
- * This class has logic to invoke corresponding respective record handler to parse data from input
- * stream into the corresponding model. To speed up the process for huge files the stream is divided
- * into smaller chunks. The chunk size is set by {@code csvParser.chunkSize} property. Each chunk is
- * executed asynchronously in the thread pool with size set by {@code csvParser.poolSize}.
+ * This class has logic to parse data from input stream into records of the corresponding class and
+ * pass them to the record writer. To speed up the process for huge files the stream is divided
+ * into smaller chunks. The chunk size is set by {@code csvParser.chunkSize} property. The calling
+ * thread reads the chunks and each chunk is written in a thread pool shared by all
+ * uploads, with size set by {@code csvParser.poolSize}. At most {@code csvParser.queueSize} chunks
+ * wait for a free thread; when the queue is full the calling thread waits for space, which holds
+ * back reading. Chunks are never written by the calling thread, so a writer does not join the
+ * transaction of the caller and each chunk is committed on its own.
+ *
+ * <p>Chunks run in any order, unless they share a key given by
+ * {@link RecordWriter#getKeys(BaseEntity)}. Before such a chunk is started, the calling thread
+ * waits until the earlier chunks with its keys have finished, so rows of the same record are
+ * written in file order.
+ *
+ * <p>If chunks fail, the error of the one that comes first in the file is reported, no matter
+ * which failed first. No further chunks are read after a failure and parsing returns only once
+ * all started chunks have finished.
  */
 @Component
 @NoArgsConstructor
 public class CsvParser {
   private static final XLogger XLOGGER = XLoggerFactory.getXLogger(CsvParser.class);
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+  private static final String SHUTTING_DOWN = "CSV parser is shutting down";
 
   @Value("${csvParser.chunkSize}")
   private int chunkSize;
@@ -60,52 +90,101 @@ public class CsvParser {
   @Value("${csvParser.poolSize}")
   private int poolSize;
 
+  @Value("${csvParser.queueSize}")
+  private int queueSize;
+
+  private ExecutorService pool;
+  private Executor executor;
+
+  CsvParser(int chunkSize, int poolSize, int queueSize) {
+    this.chunkSize = chunkSize;
+    this.poolSize = poolSize;
+    this.queueSize = queueSize;
+  }
+
   /**
-   * Parses data from input stream into the corresponding model.
+   * Creates the pool used to process and write chunks.
+   */
+  @PostConstruct
+  public void init() {
+    pool = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueSize),
+        new ThreadFactoryBuilder().setNameFormat("csv-parser-%d").setDaemon(true).build(),
+        CsvParser::waitForQueue);
+    executor = pool;
+  }
+
+  /**
+   * Lets chunks that have already been read finish. Chunks still waiting after the timeout are
+   * cancelled, so uploads waiting for them fail instead of hanging.
+   */
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    pool.shutdown();
+
+    if (!pool.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+      pool.shutdownNow().forEach(task -> ((ChunkTask) task).cancel());
+    }
+  }
+
+  /**
+   * Parses data from input stream into records. Columns are described by the import fields of the
+   * model class and set on the record fields with the same names.
    *
    * @return number of uploaded records
    */
-  public <D extends BaseDto, E extends BaseEntity> int parse(InputStream inputStream,
-                                                             ModelClass<D> modelClass,
-                                                             CsvHeaderValidator headerValidator,
-                                                             RecordProcessor<D, E> processor,
-                                                             RecordWriter<E> writer)
+  public <E extends BaseEntity> int parse(InputStream inputStream, ModelClass<?> modelClass,
+                                          CsvHeaderValidator headerValidator, Class<E> recordClass,
+                                          RecordWriter<E> writer)
       throws IOException {
     XLOGGER.entry();
     Profiler profiler = new Profiler("PARSE");
     profiler.setLogger(XLOGGER);
 
-    profiler.start("NEW_CSV_BEAN_READER");
-    CsvBeanReader<D> csvBeanReader = new CsvBeanReader<>(
-        modelClass, inputStream, headerValidator
+    profiler.start("NEW_CSV_RECORD_READER");
+    CsvRecordReader<E> csvRecordReader = new CsvRecordReader<>(
+        modelClass, inputStream, headerValidator, recordClass
     );
 
     profiler.start("VALIDATE_HEADERS");
-    csvBeanReader.validateHeaders();
+    csvRecordReader.validateHeaders();
 
-    profiler.start("CREATE_EXECUTOR_SERVICE");
-    ExecutorService executor = Executors.newFixedThreadPool(Math.min(1, poolSize));
-    List<CompletableFuture<Void>> futures = Lists.newArrayList();
+    List<CompletableFuture<Void>> chunks = Lists.newArrayList();
+    Map<Object, CompletableFuture<Void>> lastChunkByKey = Maps.newHashMap();
+    AtomicBoolean failed = new AtomicBoolean();
 
     try {
       profiler.start("HANDLE_FILE");
-      while (true) {
-        List<D> imported = doRead(csvBeanReader);
+      while (!failed.get()) {
+        List<E> imported = doRead(csvRecordReader);
 
         if (imported.isEmpty()) {
           break;
         }
 
-        Runnable runnable = () -> doWrite(processor, writer, imported);
-        CompletableFuture<Void> future = runAsync(runnable, executor);
-        futures.add(future);
+        Collection<Object> keys = getKeys(imported, writer);
+        awaitEarlierChunks(keys, lastChunkByKey);
+
+        if (failed.get()) {
+          break;
+        }
+
+        ChunkTask task = new ChunkTask(() -> writer.write(imported), failed);
+        executor.execute(task);
+        chunks.add(task.result);
+        keys.forEach(key -> lastChunkByKey.put(key, task.result));
       }
-    } finally {
-      profiler.start("WAIT_FOR_THREADS");
-      futures.forEach(CompletableFuture::join);
+    } catch (IOException | RuntimeException ex) {
+      // an earlier chunk may have failed on a row that comes before the one that could not be read
+      profiler.start("WAIT_FOR_CHUNKS");
+      awaitChunks(chunks);
+      throw ex;
     }
 
-    int count = csvBeanReader.getRowNumber() - 1;
+    profiler.start("WAIT_FOR_CHUNKS");
+    awaitChunks(chunks);
+
+    int count = csvRecordReader.getRowNumber() - 1;
 
     profiler.stop().log();
     XLOGGER.exit(count);
@@ -113,38 +192,212 @@ public class CsvParser {
     return count;
   }
 
-  private <D extends BaseDto> List<D> doRead(CsvBeanReader<D> csvBeanReader) throws IOException {
+  /**
+   * Parses data from input stream into records and passes all of them to the writer at once, in
+   * the calling thread. Records are read while the writer consumes them, so the file is never
+   * held in memory. An invalid record fails the writer at its row.
+   *
+   * @return number of uploaded records
+   */
+  public <E extends BaseEntity> int parseInBulk(InputStream inputStream, ModelClass<?> modelClass,
+                                                CsvHeaderValidator headerValidator,
+                                                Class<E> recordClass, BulkRecordWriter<E> writer)
+      throws IOException {
+    XLOGGER.entry();
+    Profiler profiler = new Profiler("PARSE_IN_BULK");
+    profiler.setLogger(XLOGGER);
+
+    profiler.start("NEW_CSV_RECORD_READER");
+    CsvRecordReader<E> csvRecordReader = new CsvRecordReader<>(
+        modelClass, inputStream, headerValidator, recordClass
+    );
+
+    profiler.start("VALIDATE_HEADERS");
+    csvRecordReader.validateHeaders();
+
+    RecordIterator<E> records = new RecordIterator<>(csvRecordReader);
+
     try {
-      List<D> list = Lists.newArrayList();
+      profiler.start("WRITE");
+      writer.write(records);
+    } catch (UncheckedIOException ex) {
+      profiler.stop().log();
+      XLOGGER.exit();
 
-      for (int i = 0; i < chunkSize; ++i) {
-        D imported = csvBeanReader.readWithCellProcessors();
+      throw ex.getCause();
+    }
 
-        if (null == imported) {
-          break;
-        }
+    int count = csvRecordReader.getRowNumber() - 1;
 
-        list.add(imported);
+    profiler.stop().log();
+    XLOGGER.exit(count);
+
+    return count;
+  }
+
+  private <E> List<E> doRead(CsvRecordReader<E> csvRecordReader) throws IOException {
+    List<E> list = Lists.newArrayListWithCapacity(chunkSize);
+
+    for (int i = 0; i < chunkSize; ++i) {
+      E imported = read(csvRecordReader);
+
+      if (null == imported) {
+        break;
       }
 
-      return list;
+      list.add(imported);
+    }
+
+    return list;
+  }
+
+  private static <E> E read(CsvRecordReader<E> csvRecordReader) throws IOException {
+    try {
+      return csvRecordReader.read();
     } catch (SuperCsvException err) {
       Message message = getCsvRowErrorMessage(err);
       throw new ValidationMessageException(err, message);
     }
   }
 
-  private <D extends BaseDto, E extends BaseEntity> void doWrite(RecordProcessor<D, E> processor,
-                                                                 RecordWriter<E> writer,
-                                                                 List<D> imported) {
-    List<E> entities = imported.stream().map(processor::process).collect(Collectors.toList());
-    writer.write(entities);
+  private static <E extends BaseEntity> Collection<Object> getKeys(List<E> entities,
+      RecordWriter<E> writer) {
+    Set<Object> keys = Sets.newHashSet();
+
+    for (E entity : entities) {
+      keys.addAll(writer.getKeys(entity));
+    }
+
+    return keys;
   }
 
-  private Message getCsvRowErrorMessage(SuperCsvException err) {
+  /*
+    Waits for the chunks that were started earlier with any of the given keys. Their errors are
+    reported once all chunks have finished.
+   */
+  private static void awaitEarlierChunks(Collection<Object> keys,
+      Map<Object, CompletableFuture<Void>> lastChunkByKey) {
+    for (Object key : keys) {
+      CompletableFuture<Void> earlier = lastChunkByKey.get(key);
+
+      if (null != earlier && !earlier.isDone()) {
+        try {
+          earlier.join();
+        } catch (CompletionException | CancellationException ex) {
+          XLOGGER.debug("Earlier chunk with key {} failed", key);
+        }
+      }
+    }
+  }
+
+  /*
+    Waits for all chunks and throws the error of the first failed chunk in file order.
+   */
+  private void awaitChunks(List<CompletableFuture<Void>> chunks) {
+    RuntimeException error = null;
+
+    for (CompletableFuture<Void> chunk : chunks) {
+      try {
+        chunk.join();
+      } catch (CompletionException | CancellationException ex) {
+        if (null == error) {
+          error = ex.getCause() instanceof RuntimeException
+              ? (RuntimeException) ex.getCause()
+              : ex;
+        }
+      }
+    }
+
+    if (null != error) {
+      throw error;
+    }
+  }
+
+  private static Message getCsvRowErrorMessage(SuperCsvException err) {
     CsvContext context = err.getCsvContext();
     int row = context.getRowNumber() - 1;
     return new Message(ERROR_UPLOAD_RECORD_INVALID, row, err.getMessage());
   }
 
+  private static void waitForQueue(Runnable task, ThreadPoolExecutor pool) {
+    if (pool.isShutdown()) {
+      throw new RejectedExecutionException(SHUTTING_DOWN);
+    }
+
+    try {
+      pool.getQueue().put(task);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RejectedExecutionException("Interrupted while waiting for a free thread", ex);
+    }
+
+    // the pool may have been shut down while the caller was waiting
+    if (pool.isShutdown() && pool.remove(task)) {
+      throw new RejectedExecutionException(SHUTTING_DOWN);
+    }
+  }
+
+  private static final class RecordIterator<E> implements Iterator<E> {
+    private final CsvRecordReader<E> csvRecordReader;
+    private E next;
+    private boolean finished;
+
+    RecordIterator(CsvRecordReader<E> csvRecordReader) {
+      this.csvRecordReader = csvRecordReader;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (null == next && !finished) {
+        try {
+          next = read(csvRecordReader);
+        } catch (IOException ex) {
+          throw new UncheckedIOException(ex);
+        }
+
+        finished = null == next;
+      }
+
+      return null != next;
+    }
+
+    @Override
+    public E next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+
+      E record = next;
+      next = null;
+      return record;
+    }
+  }
+
+  private static final class ChunkTask implements Runnable {
+    private final Runnable work;
+    private final AtomicBoolean failed;
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+    ChunkTask(Runnable work, AtomicBoolean failed) {
+      this.work = work;
+      this.failed = failed;
+    }
+
+    @Override
+    public void run() {
+      try {
+        work.run();
+        result.complete(null);
+      } catch (RuntimeException | Error ex) {
+        failed.set(true);
+        result.completeExceptionally(ex);
+      }
+    }
+
+    void cancel() {
+      failed.set(true);
+      result.cancel(false);
+    }
+  }
+
 }
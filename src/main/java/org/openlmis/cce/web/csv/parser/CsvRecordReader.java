@@ -0,0 +1,188 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.parser;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+
+import com.google.common.collect.Maps;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+import org.openlmis.cce.web.csv.model.ModelClass;
+import org.openlmis.cce.web.csv.model.ModelField;
+import org.openlmis.cce.web.csv.processor.CsvCellProcessors;
+import org.openlmis.cce.web.validator.CsvHeaderValidator;
+import org.supercsv.cellprocessor.ift.CellProcessor;
+import org.supercsv.exception.SuperCsvException;
+import org.supercsv.util.CsvContext;
+
+/**
+ * Reads CSV rows straight into records of the given class. Columns are described by the import
+ * fields of the {@link ModelClass} and set on the record field with the same name. The cell
+ * processor and the record field of each column are looked up once from the headers, so reading
+ * a row only tokenizes it, parses each cell and sets it by column index.
+ */
+class CsvRecordReader<T> {
+  private static final Map<Class<?>, Map<String, Field>> FIELDS = Maps.newConcurrentMap();
+
+  private final ModelClass<?> modelClass;
+  private final CsvHeaderValidator csvHeaderValidator;
+  private final CsvTokenizer tokenizer;
+  private final Constructor<T> constructor;
+  private final CsvContext context = new CsvContext(0, 0, 0);
+  private final CellProcessor[] processors;
+  private final Field[] fields;
+
+  @Getter
+  private final String[] headers;
+
+  CsvRecordReader(ModelClass<?> modelClass, InputStream inputStream,
+                  CsvHeaderValidator csvHeaderValidator, Class<T> recordClass) throws IOException {
+    this.modelClass = modelClass;
+    this.csvHeaderValidator = csvHeaderValidator;
+    this.tokenizer = new CsvTokenizer(new InputStreamReader(inputStream, UTF_8));
+    this.constructor = getConstructor(recordClass);
+
+    List<String> header = tokenizer.readRow();
+    headers = null == header ? new String[0] : header.toArray(new String[0]);
+
+    processors = CsvCellProcessors
+        .getParseProcessors(modelClass, asList(headers))
+        .toArray(new CellProcessor[0]);
+
+    Map<String, Field> recordFields = FIELDS
+        .computeIfAbsent(recordClass, CsvRecordReader::getRecordFields);
+    fields = new Field[headers.length];
+
+    for (int i = 0; i < headers.length; ++i) {
+      ModelField importField = modelClass.findImportFieldWithName(headers[i]);
+
+      if (null != importField) {
+        fields[i] = getRecordField(recordClass, recordFields, importField);
+      }
+    }
+  }
+
+  /**
+   * Reads the next row into a new record.
+   *
+   * @return the record, or null at the end of input
+   * @throws SuperCsvException if the row can't be read or one of its cells can't be parsed
+   */
+  T read() throws IOException {
+    List<String> columns = tokenizer.readRow();
+
+    if (null == columns) {
+      return null;
+    }
+
+    context.setLineNumber(tokenizer.getLineNumber());
+    context.setRowNumber(tokenizer.getRowNumber());
+    context.setColumnNumber(1);
+
+    if (columns.size() != headers.length) {
+      throw new SuperCsvException(String.format("the nameMapping array and the number of columns "
+          + "read should be the same size (nameMapping length = %d, columns = %d)",
+          headers.length, columns.size()), context);
+    }
+
+    T record = newRecord();
+
+    for (int i = 0; i < fields.length; ++i) {
+      Field field = fields[i];
+
+      if (null != field) {
+        context.setColumnNumber(i + 1);
+        set(record, field, processors[i].execute(columns.get(i), context));
+      }
+    }
+
+    return record;
+  }
+
+  /**
+   * Returns the number of rows read so far, including the header.
+   */
+  int getRowNumber() {
+    return tokenizer.getRowNumber();
+  }
+
+  void validateHeaders() {
+    csvHeaderValidator.validateHeaders(asList(headers), modelClass, false);
+  }
+
+  private T newRecord() {
+    try {
+      return constructor.newInstance();
+    } catch (InstantiationException | IllegalAccessException | InvocationTargetException ex) {
+      throw new IllegalStateException("Unable to create " + constructor.getName(), ex);
+    }
+  }
+
+  private void set(T record, Field field, Object value) {
+    try {
+      field.set(record, value);
+    } catch (IllegalAccessException ex) {
+      throw new IllegalStateException("Unable to set " + field, ex);
+    }
+  }
+
+  private static <T> Constructor<T> getConstructor(Class<T> recordClass) {
+    try {
+      Constructor<T> constructor = recordClass.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      return constructor;
+    } catch (NoSuchMethodException ex) {
+      throw new IllegalArgumentException(recordClass + " has no default constructor", ex);
+    }
+  }
+
+  private static Field getRecordField(Class<?> recordClass, Map<String, Field> recordFields,
+                                      ModelField importField) {
+    String name = importField.getField().getName();
+    Field field = recordFields.get(name);
+
+    if (null == field || !importField.getNested().isEmpty()) {
+      throw new IllegalArgumentException(
+          "Import field " + name + " can't be set on " + recordClass.getName());
+    }
+
+    return field;
+  }
+
+  private static Map<String, Field> getRecordFields(Class<?> recordClass) {
+    Map<String, Field> fields = Maps.newHashMap();
+
+    for (Class<?> type = recordClass; null != type; type = type.getSuperclass()) {
+      for (Field field : type.getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers())) {
+          field.setAccessible(true);
+          fields.putIfAbsent(field.getName(), field);
+        }
+      }
+    }
+
+    return fields;
+  }
+}
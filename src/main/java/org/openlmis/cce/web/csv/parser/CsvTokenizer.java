@@ -0,0 +1,220 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import org.supercsv.exception.SuperCsvException;
+import org.supercsv.util.CsvContext;
+
+/**
+ * Splits CSV input into rows of columns. It follows the preferences the uploads have always been
+ * read with: comma separated columns, double quotes with doubled quotes as escapes, spaces around
+ * unquoted columns and outside of quotes ignored, and empty lines skipped. An empty unquoted column
+ * is read as null.
+ *
+ * <p>The read buffer, the column builder and the list of columns are reused between rows, so the
+ * list returned by {@link #readRow()} is only valid until the next call.
+ */
+final class CsvTokenizer {
+  private static final int BUFFER_SIZE = 8192;
+  private static final int EOF = -1;
+  private static final char DELIMITER = ',';
+  private static final char QUOTE = '"';
+  private static final char SPACE = ' ';
+  private static final char CR = '\r';
+  private static final char LF = '\n';
+
+  private final Reader reader;
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private final StringBuilder column = new StringBuilder();
+  private final List<String> columns = new ArrayList<>();
+
+  private int position;
+  private int limit;
+  private int lineNumber;
+  private int rowNumber;
+
+  CsvTokenizer(Reader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * Returns the line the last row ended on.
+   */
+  int getLineNumber() {
+    return lineNumber;
+  }
+
+  /**
+   * Returns the number of rows read so far.
+   */
+  int getRowNumber() {
+    return rowNumber;
+  }
+
+  /**
+   * Reads the next row.
+   *
+   * @return columns of the row, or null at the end of input
+   * @throws SuperCsvException if the input ends inside a quoted column
+   */
+  List<String> readRow() throws IOException {
+    columns.clear();
+
+    int next = skipEmptyLines();
+
+    if (EOF == next) {
+      return null;
+    }
+
+    int startLine = lineNumber;
+
+    while (true) {
+      next = readColumn(next, startLine);
+
+      if (DELIMITER != next) {
+        break;
+      }
+
+      next = read();
+    }
+
+    ++rowNumber;
+    return columns;
+  }
+
+  private int skipEmptyLines() throws IOException {
+    while (true) {
+      ++lineNumber;
+      int next = read();
+
+      if (CR == next) {
+        skipLineFeed();
+      } else if (LF != next) {
+        return next;
+      }
+    }
+  }
+
+  /*
+    Reads a column starting with the given character and returns the character that ended it.
+   */
+  private int readColumn(int first, int startLine) throws IOException {
+    column.setLength(0);
+
+    int next = skipSpaces(first);
+    boolean quoted = QUOTE == next;
+
+    if (quoted) {
+      next = skipSpaces(readQuoted(startLine));
+    }
+
+    // spaces inside quotes are kept
+    int quotedLength = column.length();
+
+    while (DELIMITER != next && !isEndOfLine(next)) {
+      column.append((char) next);
+      next = read();
+    }
+
+    int length = column.length();
+
+    while (length > quotedLength && SPACE == column.charAt(length - 1)) {
+      --length;
+    }
+
+    column.setLength(length);
+    columns.add(quoted || length > 0 ? column.toString() : null);
+
+    if (CR == next) {
+      skipLineFeed();
+    }
+
+    return next;
+  }
+
+  /*
+    Reads a quoted part of a column and returns the character after the closing quote.
+   */
+  private int readQuoted(int startLine) throws IOException {
+    while (true) {
+      int next = read();
+
+      if (EOF == next) {
+        throw new SuperCsvException(String.format("unexpected end of file while reading quoted "
+            + "column beginning on line %d and ending on line %d", startLine, lineNumber),
+            new CsvContext(lineNumber, rowNumber + 1, columns.size() + 1));
+      }
+
+      if (QUOTE == next) {
+        next = read();
+
+        if (QUOTE != next) {
+          return next;
+        }
+      } else if (CR == next || LF == next) {
+        if (CR == next) {
+          skipLineFeed();
+        }
+
+        ++lineNumber;
+        next = LF;
+      }
+
+      column.append((char) next);
+    }
+  }
+
+  private int skipSpaces(int first) throws IOException {
+    int next = first;
+
+    while (SPACE == next) {
+      next = read();
+    }
+
+    return next;
+  }
+
+  private void skipLineFeed() throws IOException {
+    if (fill() && LF == buffer[position]) {
+      ++position;
+    }
+  }
+
+  private boolean isEndOfLine(int next) {
+    return EOF == next || CR == next || LF == next;
+  }
+
+  private int read() throws IOException {
+    return fill() ? buffer[position++] : EOF;
+  }
+
+  private boolean fill() throws IOException {
+    if (position < limit) {
+      return true;
+    }
+
+    int read = reader.read(buffer, 0, BUFFER_SIZE);
+
+    position = 0;
+    limit = Math.max(read, 0);
+
+    return read > 0;
+  }
+}
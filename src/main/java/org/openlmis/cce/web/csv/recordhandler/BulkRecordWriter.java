@@ -15,14 +15,15 @@
 
 package org.openlmis.cce.web.csv.recordhandler;
 
+import java.util.Iterator;
 import org.openlmis.cce.domain.BaseEntity;
-import org.openlmis.cce.dto.BaseDto;
 
 /**
- * This interface is implemented by all record processors.
+ * This interface is implemented by record writers that take all records of a file at once. The
+ * writer has to consume all records; they are read from the file while it iterates over them.
  */
-public interface RecordProcessor<T extends BaseDto, R extends BaseEntity> {
+public interface BulkRecordWriter<T extends BaseEntity> {
 
-  R process(T dto);
+  void write(Iterator<T> entities);
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,205 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.recordhandler;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Joiner;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.hibernate.Session;
+import org.openlmis.cce.domain.CatalogItem;
+import org.openlmis.cce.domain.Dimensions;
+import org.openlmis.cce.exception.ServerException;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.ext.XLogger;
+import org.slf4j.ext.XLoggerFactory;
+import org.slf4j.profiler.Profiler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Saves all catalog items of an upload with a few statements, for full catalog refreshes. The
+ * items are streamed into a temporary table with {@code COPY}, matched with existing items the
+ * same way as in {@link CatalogItemWriter} (by equipment code, or by manufacturer and model if
+ * there is no code) and then inserted or updated with one {@code INSERT ... ON CONFLICT}
+ * statement. If the file has several rows for the same existing item, the last one is saved.
+ *
+ * <p>Items are written with plain SQL, so Hibernate does not see them: the caller's persistence
+ * context should not hold catalog items that are updated by the upload.
+ */
+@Component
+public class CatalogItemBulkWriter implements BulkRecordWriter<CatalogItem> {
+  private static final XLogger XLOGGER = XLoggerFactory.getXLogger(CatalogItemBulkWriter.class);
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final String UPLOAD_TABLE = "catalog_items_upload";
+  private static final String ROW_NUMBER = "rowNumber";
+  private static final List<String> COLUMNS = Arrays.asList("id", "fromPqsCatalog",
+      "equipmentCode", "type", "model", "manufacturer", "energySource", "dateOfPrequal",
+      "storageTemperature", "maxOperatingTemp", "minOperatingTemp", "energyConsumption",
+      "holdoverTime", "grossVolume", "netVolume", "width", "depth", "height", "visibleInCatalog",
+      "archived");
+  private static final Joiner COMMA = Joiner.on(", ");
+  private static final String COLUMN_LIST = COMMA.join(COLUMNS);
+
+  private static final String CREATE_UPLOAD_TABLE_SQL = "CREATE TEMPORARY TABLE " + UPLOAD_TABLE
+      + " (LIKE cce.cce_catalog_items, " + ROW_NUMBER + " integer NOT NULL)";
+
+  private static final String COPY_SQL = "COPY " + UPLOAD_TABLE
+      + " (" + COLUMN_LIST + ", " + ROW_NUMBER + ")"
+      + " FROM STDIN WITH (FORMAT csv)";
+
+  private static final String MATCH_BY_EQUIPMENT_CODE_SQL = "UPDATE " + UPLOAD_TABLE + " AS u"
+      + " SET id = c.id"
+      + " FROM cce.cce_catalog_items AS c"
+      + " WHERE u.equipmentCode IS NOT NULL AND c.equipmentCode = u.equipmentCode";
+
+  private static final String MATCH_BY_MANUFACTURER_AND_MODEL_SQL = "UPDATE " + UPLOAD_TABLE
+      + " AS u SET id = c.id"
+      + " FROM cce.cce_catalog_items AS c"
+      + " WHERE u.equipmentCode IS NULL AND c.manufacturer = u.manufacturer"
+      + " AND c.model = u.model";
+
+  private static final String UPSERT_SQL = "INSERT INTO cce.cce_catalog_items"
+      + " (" + COLUMN_LIST + ")"
+      + " SELECT DISTINCT ON (id) " + COLUMN_LIST
+      + " FROM " + UPLOAD_TABLE
+      + " ORDER BY id, " + ROW_NUMBER + " DESC"
+      + " ON CONFLICT (id) DO UPDATE SET " + updateColumns();
+
+  private static final String DROP_UPLOAD_TABLE_SQL = "DROP TABLE " + UPLOAD_TABLE;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  /**
+   * Saves the given catalog items. Items that match an existing item update it, other items are
+   * created.
+   *
+   * @param entities the items to save, in file order
+   */
+  @Override
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void write(Iterator<CatalogItem> entities) {
+    XLOGGER.entry();
+    Profiler profiler = new Profiler("BULK_WRITE");
+    profiler.setLogger(XLOGGER);
+
+    entityManager
+        .unwrap(Session.class)
+        .doWork(connection -> {
+          profiler.start("CREATE_UPLOAD_TABLE");
+          execute(connection, CREATE_UPLOAD_TABLE_SQL);
+
+          profiler.start("COPY");
+          copy(connection, entities);
+
+          profiler.start("MATCH_EXISTING");
+          execute(connection, MATCH_BY_EQUIPMENT_CODE_SQL);
+          execute(connection, MATCH_BY_MANUFACTURER_AND_MODEL_SQL);
+
+          profiler.start("UPSERT");
+          execute(connection, UPSERT_SQL);
+
+          profiler.start("DROP_UPLOAD_TABLE");
+          execute(connection, DROP_UPLOAD_TABLE_SQL);
+        });
+
+    profiler.stop().log();
+    XLOGGER.exit();
+  }
+
+  private void copy(Connection connection, Iterator<CatalogItem> entities) throws SQLException {
+    PGCopyOutputStream output = new PGCopyOutputStream(
+        connection.unwrap(PGConnection.class), COPY_SQL, BUFFER_SIZE);
+
+    // null values are written as empty fields and all other values are quoted
+    try (CSVPrinter printer = new CSVPrinter(new OutputStreamWriter(output, UTF_8),
+        CSVFormat.POSTGRESQL_CSV)) {
+      int rowNumber = 0;
+
+      while (entities.hasNext()) {
+        printer.printRecord(values(entities.next(), ++rowNumber));
+      }
+    } catch (IOException ex) {
+      throw new ServerException(ex);
+    }
+  }
+
+  private void execute(Connection connection, String sql) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.executeUpdate(sql);
+    }
+  }
+
+  /*
+    Values in the order of COLUMNS, followed by the row number. Items that do not match any
+    existing item keep the new id.
+   */
+  private List<Object> values(CatalogItem item, int rowNumber) {
+    Dimensions dimensions = item.getDimensions();
+    List<Object> values = new ArrayList<>(COLUMNS.size() + 1);
+
+    values.add(null == item.getId() ? UUID.randomUUID() : item.getId());
+    values.add(item.getFromPqsCatalog());
+    values.add(item.getEquipmentCode());
+    values.add(item.getType());
+    values.add(item.getModel());
+    values.add(item.getManufacturer());
+    values.add(item.getEnergySource());
+    values.add(item.getDateOfPrequal());
+    values.add(item.getStorageTemperature());
+    values.add(item.getMaxOperatingTemp());
+    values.add(item.getMinOperatingTemp());
+    values.add(item.getEnergyConsumption());
+    values.add(item.getHoldoverTime());
+    values.add(item.getGrossVolume());
+    values.add(item.getNetVolume());
+    values.add(null == dimensions ? null : dimensions.getWidth());
+    values.add(null == dimensions ? null : dimensions.getDepth());
+    values.add(null == dimensions ? null : dimensions.getHeight());
+    values.add(item.getVisibleInCatalog());
+    values.add(item.getArchived());
+    values.add(rowNumber);
+
+    return values;
+  }
+
+  private static String updateColumns() {
+    List<String> updates = new ArrayList<>(COLUMNS.size() - 1);
+
+    for (String column : COLUMNS.subList(1, COLUMNS.size())) {
+      updates.add(column + " = EXCLUDED." + column);
+    }
+
+    return COMMA.join(updates);
+  }
+}
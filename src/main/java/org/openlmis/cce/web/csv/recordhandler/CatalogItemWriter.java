@@ -18,9 +18,14 @@ package org.openlmis.cce.web.csv.recordhandler;
 import static org.springframework.util.CollectionUtils.isEmpty;
 
 import com.google.common.collect.Maps;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.openlmis.cce.domain.CatalogItem;
@@ -30,9 +35,12 @@ import org.slf4j.ext.XLoggerFactory;
 import org.slf4j.profiler.Profiler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
- * This class is responsible for saving {@link CatalogItem} instances to the database.
+ * This class is responsible for saving {@link CatalogItem} instances to the database. Each chunk
+ * is looked up and saved in one transaction, so matched items are not loaded again when they are
+ * merged, and items are written in JDBC batches.
  */
 @Component
 public class CatalogItemWriter implements RecordWriter<CatalogItem> {
@@ -41,7 +49,11 @@ public class CatalogItemWriter implements RecordWriter<CatalogItem> {
   @Autowired
   private CatalogItemRepository catalogItemRepository;
 
+  @PersistenceContext
+  private EntityManager entityManager;
+
   @Override
+  @Transactional
   public void write(List<CatalogItem> entities) {
     XLOGGER.entry();
     Profiler profiler = new Profiler("WRITE");
@@ -93,9 +105,25 @@ public class CatalogItemWriter implements RecordWriter<CatalogItem> {
 
     profiler.start("SAVE");
     catalogItemRepository.saveAll(entities);
+    entityManager.flush();
 
     profiler.stop().log();
     XLOGGER.exit();
   }
 
+  /**
+   * Returns the manufacturer and model and, if set, the equipment code of the item. Items are
+   * matched by them and they are unique.
+   */
+  @Override
+  public Collection<?> getKeys(CatalogItem entity) {
+    Pair<String, String> manufacturerAndModel = ImmutablePair.of(
+        entity.getManufacturer(), entity.getModel()
+    );
+
+    return null == entity.getEquipmentCode()
+        ? Collections.singletonList(manufacturerAndModel)
+        : Arrays.asList(manufacturerAndModel, entity.getEquipmentCode());
+  }
+
 }
@@ -15,6 +15,8 @@
 
 package org.openlmis.cce.web.csv.recordhandler;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import org.openlmis.cce.domain.BaseEntity;
 
@@ -25,4 +27,13 @@ public interface RecordWriter<T extends BaseEntity> {
 
   void write(List<T> entities);
 
+  /**
+   * Returns the keys by which the entity is matched with stored records or that have to be
+   * unique. Chunks that share a key are written one after another, in file order, so the last row
+   * of the file wins and new records are not inserted twice.
+   */
+  default Collection<?> getKeys(T entity) {
+    return Collections.emptyList();
+  }
+
 }
@@ -46,6 +46,17 @@ public class AlertValidator {
    * @see ValidationUtils
    */
   public void validate(AlertDto alertDto) {
+    validateFields(alertDto);
+    validateInventoryItemExists(alertDto.getDeviceId());
+  }
+
+  /**
+   * Validates the {@code alertDto} object like {@link #validate(AlertDto)} does, except for the
+   * existence of the device. Used when devices of many alerts are retrieved at once.
+   *
+   * @param alertDto the object that will be validated
+   */
+  public void validateFields(AlertDto alertDto) {
     validateNotNull(alertDto.getAlertId(), AlertMessageKeys.ERROR_ALERT_ID_REQUIRED);
     validateNotNull(alertDto.getAlertType(), AlertMessageKeys.ERROR_ALERT_TYPE_REQUIRED);
     validateNotNull(alertDto.getDeviceId(), AlertMessageKeys.ERROR_DEVICE_ID_REQUIRED);
@@ -54,7 +65,6 @@ public class AlertValidator {
 
     validateIdMatchesFhirIdRegex(alertDto.getAlertId(),
         AlertMessageKeys.ERROR_ALERT_ID_DOES_NOT_MATCH_REGEX);
-    validateInventoryItemExists(alertDto.getDeviceId());
     validateStatusKeysAreLocales(alertDto.getStatus().keySet());
   }
 
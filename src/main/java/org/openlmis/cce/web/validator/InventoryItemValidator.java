@@ -42,6 +42,38 @@ public class InventoryItemValidator {
    * @see ValidationUtils
    */
   public void validate(InventoryItemDto inventoryItem, InventoryItem existing) {
+    validateRequiredFields(inventoryItem);
+    validateUniqueConstraints(inventoryItem, existing);
+    validateStatusFields(inventoryItem);
+  }
+
+  /**
+   * Validates the {@code inventoryItem} object like {@link #validate(InventoryItemDto,
+   * InventoryItem)} does, except for the unique constraints. Used when uniqueness of many items is
+   * verified at once.
+   *
+   * @param inventoryItem the object that will be validated
+   */
+  public void validateFields(InventoryItemDto inventoryItem) {
+    validateRequiredFields(inventoryItem);
+    validateStatusFields(inventoryItem);
+  }
+
+  /**
+   * Checks if uniqueness of the equipment tracking id, catalog item model and type of the given
+   * object has to be verified in the database.
+   *
+   * @param inventoryItem the object that will be saved
+   * @param existing      the saved version of the object, null if it is a new one
+   * @return true if another item with the same values may exist
+   */
+  public boolean needsUniqueConstraintsCheck(InventoryItemDto inventoryItem,
+      InventoryItem existing) {
+    return existing == null
+        || (checkIfFieldsAreNull(inventoryItem) && valuesChanged(inventoryItem, existing));
+  }
+
+  private void validateRequiredFields(InventoryItemDto inventoryItem) {
     validateNotNull(inventoryItem.getCatalogItem(),
         InventoryItemMessageKeys.ERROR_CATALOG_ITEM_REQUIRED);
     validateNotNull(inventoryItem.getFacility(),
@@ -66,8 +98,9 @@ public class InventoryItemValidator {
         InventoryItemMessageKeys.ERROR_REFERENCE_NAME_REQUIRED);
     validateNotNull(inventoryItem.getRemoteTemperatureMonitor(),
         InventoryItemMessageKeys.ERROR_REMOTE_TEMPERATURE_MONITOR_REQUIRED);
-    validateUniqueConstraints(inventoryItem, existing);
+  }
 
+  private void validateStatusFields(InventoryItemDto inventoryItem) {
     if (inventoryItem.getFunctionalStatus().equals(FunctionalStatus.UNSERVICEABLE)) {
       validateNotNull(inventoryItem.getDecommissionDate(),
           InventoryItemMessageKeys.ERROR_DECOMMISSION_DATE_REQUIRED);
@@ -85,10 +118,7 @@ public class InventoryItemValidator {
   }
 
   private void validateUniqueConstraints(InventoryItemDto inventoryItem, InventoryItem existing) {
-    boolean needsDbVerification = existing == null
-        || (checkIfFieldsAreNull(inventoryItem) && valuesChanged(inventoryItem, existing));
-
-    Boolean exists = needsDbVerification && inventoryItemRepository
+    Boolean exists = needsUniqueConstraintsCheck(inventoryItem, existing) && inventoryItemRepository
         .existsByEquipmentTrackingIdAndCatalogItem_ModelAndCatalogItem_Type(
             inventoryItem.getEquipmentTrackingId(),
             inventoryItem.getCatalogItem().getModel(),
@@ -0,0 +1 @@
+CREATE INDEX cce_inventory_items_referenceName_id_idx ON cce_inventory_items (referenceName, id);
@@ -0,0 +1,14 @@
+CREATE TABLE notification_outbox (
+    id uuid NOT NULL PRIMARY KEY,
+    type text NOT NULL,
+    payload text NOT NULL,
+    locale text,
+    status text NOT NULL,
+    attempts integer NOT NULL DEFAULT 0,
+    createddate timestamptz NOT NULL,
+    nextattemptdate timestamptz NOT NULL,
+    lasterror text
+);
+
+CREATE INDEX notification_outbox_status_nextattemptdate_idx
+    ON notification_outbox (status, nextattemptdate);
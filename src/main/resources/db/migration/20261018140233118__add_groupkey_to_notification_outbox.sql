@@ -0,0 +1,5 @@
+ALTER TABLE notification_outbox ADD COLUMN groupkey text;
+
+CREATE INDEX notification_outbox_type_groupkey_idx
+    ON notification_outbox (type, groupkey)
+    WHERE status = 'PENDING';
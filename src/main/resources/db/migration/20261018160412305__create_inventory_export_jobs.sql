@@ -0,0 +1,22 @@
+CREATE TABLE inventory_export_jobs (
+    id uuid NOT NULL PRIMARY KEY,
+    userid uuid NOT NULL,
+    status text NOT NULL,
+    functionalstatus text,
+    rowcount bigint NOT NULL DEFAULT 0,
+    lastitemid uuid,
+    filesize bigint NOT NULL DEFAULT 0,
+    createddate timestamptz NOT NULL,
+    modifieddate timestamptz NOT NULL,
+    error text
+);
+
+CREATE INDEX inventory_export_jobs_status_createddate_idx
+    ON inventory_export_jobs (status, createddate);
+
+CREATE TABLE inventory_export_job_pairs (
+    jobid uuid NOT NULL REFERENCES inventory_export_jobs (id) ON DELETE CASCADE,
+    facilityid uuid NOT NULL,
+    programid uuid NOT NULL,
+    PRIMARY KEY (jobid, facilityid, programid)
+);
@@ -0,0 +1 @@
+ALTER TABLE inventory_export_jobs ADD COLUMN leaseexpirydate timestamptz;
@@ -0,0 +1,83 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+public class HttpClientConfigurationTest {
+  private HttpClientConfiguration configuration = new HttpClientConfiguration();
+  private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private PoolingHttpClientConnectionManager connectionManager;
+  private CloseableHttpClient httpClient;
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(configuration, "maxConnections", 20);
+    ReflectionTestUtils.setField(configuration, "maxConnectionsPerRoute", 5);
+    ReflectionTestUtils.setField(configuration, "connectTimeoutMillis", 1000);
+    ReflectionTestUtils.setField(configuration, "connectionRequestTimeoutMillis", 1000);
+    ReflectionTestUtils.setField(configuration, "readTimeoutMillis", 2000);
+    ReflectionTestUtils.setField(configuration, "idleTimeoutMillis", 3000L);
+    ReflectionTestUtils.setField(configuration, "gzip", true);
+
+    connectionManager = configuration.httpClientConnectionManager(meterRegistry);
+    httpClient = configuration.httpClient(connectionManager);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    httpClient.close();
+  }
+
+  @Test
+  public void shouldLimitConnectionPool() {
+    assertThat(connectionManager.getMaxTotal(), is(20));
+    assertThat(connectionManager.getDefaultMaxPerRoute(), is(5));
+  }
+
+  @Test
+  public void shouldRegisterPoolMetrics() {
+    double maxTotal = meterRegistry
+        .get("httpcomponents.httpclient.pool.total.max")
+        .tag("httpclient", HttpClientConfiguration.POOL_NAME)
+        .gauge()
+        .value();
+
+    assertThat(maxTotal, is(20.0));
+  }
+
+  @Test
+  public void shouldUsePooledClientInRestTemplate() {
+    RestTemplate restTemplate = configuration.restTemplate(httpClient);
+
+    assertThat(restTemplate.getRequestFactory(),
+        is(instanceOf(HttpComponentsClientHttpRequestFactory.class)));
+  }
+}
@@ -17,9 +17,15 @@ package org.openlmis.cce.repository.custom.impl;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.COUNT_SQL;
+import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.FACILITY_IDS;
 import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.FACILITY_PREDICATE;
+import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.PROGRAM_IDS;
 import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.PROGRAM_PREDICATE;
 import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.SELECT_SQL;
 import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.STATUS_PREDICATE;
@@ -29,6 +35,7 @@ import static org.springframework.data.domain.Sort.Direction.DESC;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.UUID;
+import javax.persistence.TypedQuery;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -47,12 +54,10 @@ public abstract class BaseInventoryItemQueryBuilderTest {
   private static final Collection<UUID> PROGRAMS = Collections.singleton(PROGRAM);
   private static final Collection<UUID> FACILITIES = Collections.singleton(FACILITY);
 
-  private static final String FACILITY_WHERE = String.format(FACILITY_PREDICATE, FACILITY);
-  private static final String PROGRAM_WHERE = String.format(PROGRAM_PREDICATE, PROGRAM);
-  private static final String STATUS_WHERE = String.format(STATUS_PREDICATE, STATUS.toString());
-  private static final String FACILITY_PROGRAM_WHERE = FACILITY_WHERE + " AND " + PROGRAM_WHERE;
+  private static final String FACILITY_PROGRAM_WHERE = FACILITY_PREDICATE + " AND "
+      + PROGRAM_PREDICATE;
   private static final String FACILITY_PROGRAM_STATUS_WHERE = FACILITY_PROGRAM_WHERE + " AND "
-      + STATUS_WHERE;
+      + STATUS_PREDICATE;
 
   private static final String WHERE = " WHERE ";
 
@@ -62,6 +67,9 @@ public abstract class BaseInventoryItemQueryBuilderTest {
   @Mock
   Pageable pageable;
 
+  @Mock
+  TypedQuery<Object> query;
+
   abstract boolean isCount();
 
   private String getSelect() {
@@ -83,13 +91,13 @@ public abstract class BaseInventoryItemQueryBuilderTest {
   @Test
   public void shouldAddFacilityWherePartToQuery() throws Exception {
     String sql = new InventoryItemQueryBuilder(FACILITIES, null, null, null, isCount()).build();
-    assertThat(sql, equalTo(getSelect() + WHERE + FACILITY_WHERE));
+    assertThat(sql, equalTo(getSelect() + WHERE + FACILITY_PREDICATE));
   }
 
   @Test
   public void shouldAddProgramWherePartToQuery() throws Exception {
     String sql = new InventoryItemQueryBuilder(null, PROGRAMS, null, null, isCount()).build();
-    assertThat(sql, equalTo(getSelect() + WHERE + PROGRAM_WHERE));
+    assertThat(sql, equalTo(getSelect() + WHERE + PROGRAM_PREDICATE));
   }
 
   @Test
@@ -102,7 +110,7 @@ public abstract class BaseInventoryItemQueryBuilderTest {
   public void shouldAddFunctionalStatusToQuery() throws Exception {
     String sql = new InventoryItemQueryBuilder(
         null, null, STATUS, null, isCount()).build();
-    assertThat(sql, equalTo(getSelect() + WHERE + STATUS_WHERE));
+    assertThat(sql, equalTo(getSelect() + WHERE + STATUS_PREDICATE));
   }
 
   @Test
@@ -112,4 +120,33 @@ public abstract class BaseInventoryItemQueryBuilderTest {
     assertThat(sql, equalTo(getSelect() + WHERE + FACILITY_PROGRAM_STATUS_WHERE));
   }
 
-}
\ No newline at end of file
+  @Test
+  public void shouldNotInlineSearchValuesIntoQuery() throws Exception {
+    String sql = new InventoryItemQueryBuilder(
+        FACILITIES, PROGRAMS, STATUS, null, isCount()).build();
+    String otherSql = new InventoryItemQueryBuilder(
+        Collections.singleton(UUID.randomUUID()), Collections.singleton(UUID.randomUUID()),
+        FunctionalStatus.UNSERVICEABLE, null, isCount()).build();
+
+    assertThat(sql, equalTo(otherSql));
+  }
+
+  @Test
+  public void shouldBindSearchValuesAsParameters() throws Exception {
+    new InventoryItemQueryBuilder(FACILITIES, PROGRAMS, STATUS, null, isCount())
+        .setParameters(query);
+
+    verify(query).setParameter(FACILITY_IDS, FACILITIES);
+    verify(query).setParameter(PROGRAM_IDS, PROGRAMS);
+    verify(query).setParameter(InventoryItemQueryBuilder.FUNCTIONAL_STATUS, STATUS);
+  }
+
+  @Test
+  public void shouldNotBindParametersIfThereAreNoSearchValues() throws Exception {
+    new InventoryItemQueryBuilder(null, Collections.emptySet(), null, null, isCount())
+        .setParameters(query);
+
+    verify(query, never()).setParameter(anyString(), any());
+  }
+
+}
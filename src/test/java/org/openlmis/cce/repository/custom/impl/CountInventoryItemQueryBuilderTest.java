@@ -20,6 +20,9 @@ import static org.junit.Assert.assertThat;
 import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.COUNT_SQL;
 
 import org.junit.Test;
+import org.openlmis.cce.InventoryItemDataBuilder;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 
 public class CountInventoryItemQueryBuilderTest
     extends BaseInventoryItemQueryBuilderTest {
@@ -37,4 +40,15 @@ public class CountInventoryItemQueryBuilderTest
     String sql = new InventoryItemQueryBuilder(null, null, null, pageable, true).build();
     assertThat(sql, equalTo(COUNT_SQL));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void shouldNotAddSeekPredicateToCountQuery() throws Exception {
+    Sort sort = Sort.by("referenceName");
+    InventoryItemCursor cursor = InventoryItemCursor
+        .of(new InventoryItemDataBuilder().build(), sort);
+
+    String sql = new InventoryItemQueryBuilder(null, null, null, PageRequest.of(0, 10, sort), true,
+        cursor).build();
+    assertThat(sql, equalTo(COUNT_SQL));
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.repository.custom.impl;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.openlmis.cce.i18n.PageableMessageKeys.ERROR_CURSOR_INVALID;
+import static org.openlmis.cce.i18n.PageableMessageKeys.ERROR_CURSOR_SORT_NOT_SUPPORTED;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.openlmis.cce.InventoryItemDataBuilder;
+import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.exception.ValidationMessageException;
+import org.springframework.data.domain.Sort;
+
+public class InventoryItemCursorTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private final Sort sort = Sort.by(Sort.Direction.DESC, "type").and(Sort.by("referenceName"));
+  private final InventoryItem item = new InventoryItemDataBuilder()
+      .withReferenceName("name with / + = and ünicode")
+      .build();
+
+  @Test
+  public void shouldEncodeAndDecodeCursor() {
+    InventoryItemCursor cursor = InventoryItemCursor.of(item, sort);
+    String token = cursor.encode();
+
+    assertThat(token, matchesPattern("[A-Za-z0-9_-]+"));
+
+    InventoryItemCursor decoded = InventoryItemCursor.decode(token, sort);
+
+    assertThat(decoded, equalTo(cursor));
+    assertThat(decoded.getValues(),
+        contains(item.getCatalogItem().getType(), item.getReferenceName()));
+    assertThat(decoded.getId(), equalTo(item.getId()));
+    assertFalse(decoded.isInitial());
+  }
+
+  @Test
+  public void shouldDecodeEmptyTokenAsInitialCursor() {
+    InventoryItemCursor cursor = InventoryItemCursor.decode("", sort);
+
+    assertTrue(cursor.isInitial());
+    assertThat(cursor, equalTo(InventoryItemCursor.initial(sort)));
+  }
+
+  @Test
+  public void shouldRejectMalformedToken() {
+    expectedException.expect(ValidationMessageException.class);
+    expectedException.expectMessage(ERROR_CURSOR_INVALID);
+
+    InventoryItemCursor.decode("not a token!", sort);
+  }
+
+  @Test
+  public void shouldRejectTokenCreatedForOtherSort() {
+    String token = InventoryItemCursor.of(item, sort).encode();
+
+    expectedException.expect(ValidationMessageException.class);
+    expectedException.expectMessage(ERROR_CURSOR_INVALID);
+
+    InventoryItemCursor.decode(token, Sort.by("referenceName"));
+  }
+
+  @Test
+  public void shouldRejectUnsupportedSortProperty() {
+    expectedException.expect(ValidationMessageException.class);
+    expectedException.expectMessage(ERROR_CURSOR_SORT_NOT_SUPPORTED);
+
+    InventoryItemCursor.initial(Sort.by("functionalStatus"));
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.repository.custom.impl;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.openlmis.cce.repository.custom.impl.InventoryItemPairQueryBuilder.PAIR_COUNT_SQL;
+import static org.openlmis.cce.repository.custom.impl.InventoryItemPairQueryBuilder.PAIR_FACILITY_IDS;
+import static org.openlmis.cce.repository.custom.impl.InventoryItemPairQueryBuilder.PAIR_PROGRAM_IDS;
+import static org.openlmis.cce.repository.custom.impl.InventoryItemPairQueryBuilder.PAIR_SELECT_SQL;
+import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.AFTER_ID;
+import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.FUNCTIONAL_STATUS;
+import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.STATUS_PREDICATE;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.PostgresUUIDType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.cce.InventoryItemDataBuilder;
+import org.openlmis.cce.domain.FunctionalStatus;
+import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.repository.custom.FacilityProgramPair;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+@RunWith(MockitoJUnitRunner.class)
+public class InventoryItemPairQueryBuilderTest {
+  private static final UUID FACILITY_1 = UUID.fromString("e6799d64-d10d-4011-b8c2-0e4d4a3f65ce");
+  private static final UUID FACILITY_2 = UUID.fromString("13037147-1769-4735-90a7-b9b310d128b8");
+  private static final UUID PROGRAM_1 = UUID.fromString("dce17f2e-af3e-40ad-8e00-3496adef44c3");
+  private static final UUID PROGRAM_2 = UUID.fromString("10845cb9-d365-4aaa-badd-b4fa39c6a26a");
+
+  private static final List<FacilityProgramPair> PAIRS = Arrays.asList(
+      FacilityProgramPair.of(FACILITY_1, PROGRAM_1),
+      FacilityProgramPair.of(FACILITY_2, PROGRAM_2));
+
+  private final Sort sort = Sort.by("referenceName");
+  private final Pageable pageable = PageRequest.of(0, 10, sort);
+
+  @Mock
+  private NativeQuery<Object> query;
+
+  @Test
+  public void shouldJoinPairsInsteadOfFilteringByFacilitiesAndPrograms() {
+    String sql = new InventoryItemPairQueryBuilder(PAIRS, FunctionalStatus.FUNCTIONING, pageable,
+        false, null).build();
+
+    assertThat(sql, equalTo(PAIR_SELECT_SQL + " WHERE " + STATUS_PREDICATE
+        + " ORDER BY i.referenceName ASC"));
+  }
+
+  @Test
+  public void shouldCreateCountQuery() {
+    String sql = new InventoryItemPairQueryBuilder(PAIRS, null, pageable, true, null).build();
+
+    assertThat(sql, equalTo(PAIR_COUNT_SQL));
+  }
+
+  @Test
+  public void shouldNotDependOnNumberOfPairs() {
+    String sql = new InventoryItemPairQueryBuilder(PAIRS, null, pageable, false, null).build();
+    String otherSql = new InventoryItemPairQueryBuilder(PAIRS.subList(0, 1), null, pageable,
+        false, null).build();
+
+    assertThat(sql, equalTo(otherSql));
+  }
+
+  @Test
+  public void shouldBindPairsAsArrays() {
+    new InventoryItemPairQueryBuilder(PAIRS, FunctionalStatus.FUNCTIONING, pageable, false, null)
+        .setParameters(query);
+
+    verify(query).setParameter(PAIR_FACILITY_IDS, "{" + FACILITY_1 + "," + FACILITY_2 + "}");
+    verify(query).setParameter(PAIR_PROGRAM_IDS, "{" + PROGRAM_1 + "," + PROGRAM_2 + "}");
+    verify(query).setParameter(FUNCTIONAL_STATUS, FunctionalStatus.FUNCTIONING.name());
+  }
+
+  @Test
+  public void shouldBindCursorIdAsUuid() {
+    when(query.unwrap(NativeQuery.class)).thenReturn(query);
+    InventoryItem item = new InventoryItemDataBuilder().build();
+
+    new InventoryItemPairQueryBuilder(PAIRS, null, pageable, false,
+        InventoryItemCursor.of(item, sort)).setParameters(query);
+
+    verify(query).setParameter(AFTER_ID, item.getId(), PostgresUUIDType.INSTANCE);
+  }
+}
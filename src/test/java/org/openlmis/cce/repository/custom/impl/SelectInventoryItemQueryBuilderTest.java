@@ -17,15 +17,33 @@ package org.openlmis.cce.repository.custom.impl;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.AFTER_ID;
+import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.AFTER_VALUE;
 import static org.openlmis.cce.repository.custom.impl.InventoryItemQueryBuilder.SELECT_SQL;
 
 import org.junit.Test;
+import org.openlmis.cce.InventoryItemDataBuilder;
+import org.openlmis.cce.domain.InventoryItem;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 public class SelectInventoryItemQueryBuilderTest
     extends BaseInventoryItemQueryBuilderTest {
 
   private static final String ORDER_BY = " ORDER BY c.type ASC , i.functionalStatus DESC";
+  private static final String KEYSET_ORDER_BY = " ORDER BY c.type ASC , i.referenceName DESC"
+      + " , i.id ASC";
+  private static final String SEEK_WHERE = " WHERE ((c.type > :afterValue0)"
+      + " OR (c.type = :afterValue0 AND i.referenceName < :afterValue1)"
+      + " OR (c.type = :afterValue0 AND i.referenceName = :afterValue1 AND i.id > :afterId))";
+
+  private final Sort keysetSort = Sort.by(Sort.Direction.ASC, "type")
+      .and(Sort.by(Sort.Direction.DESC, "referenceName"));
+  private final Pageable keysetPageable = PageRequest.of(0, 10, keysetSort);
+  private final InventoryItem item = new InventoryItemDataBuilder().build();
 
   @Override
   boolean isCount() {
@@ -45,4 +63,28 @@ public class SelectInventoryItemQueryBuilderTest
     String sql = new InventoryItemQueryBuilder(null, null, null, pageable, false).build();
     assertThat(sql, equalTo(SELECT_SQL + ORDER_BY));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void shouldAddIdToOrderPartForInitialCursor() throws Exception {
+    String sql = new InventoryItemQueryBuilder(null, null, null, keysetPageable, false,
+        InventoryItemCursor.initial(keysetSort)).build();
+    assertThat(sql, equalTo(SELECT_SQL + KEYSET_ORDER_BY));
+  }
+
+  @Test
+  public void shouldAddSeekPredicateForCursor() throws Exception {
+    String sql = new InventoryItemQueryBuilder(null, null, null, keysetPageable, false,
+        InventoryItemCursor.of(item, keysetSort)).build();
+    assertThat(sql, equalTo(SELECT_SQL + SEEK_WHERE + KEYSET_ORDER_BY));
+  }
+
+  @Test
+  public void shouldBindCursorValuesAsParameters() throws Exception {
+    new InventoryItemQueryBuilder(null, null, null, keysetPageable, false,
+        InventoryItemCursor.of(item, keysetSort)).setParameters(query);
+
+    verify(query).setParameter(AFTER_VALUE + 0, item.getCatalogItem().getType());
+    verify(query).setParameter(AFTER_VALUE + 1, item.getReferenceName());
+    verify(query).setParameter(AFTER_ID, item.getId());
+  }
+}
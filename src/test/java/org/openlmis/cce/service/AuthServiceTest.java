@@ -0,0 +1,172 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.time.Clock;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestOperations;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AuthServiceTest {
+  private static final String TOKEN_1 = "token-1";
+  private static final String TOKEN_2 = "token-2";
+
+  @Mock
+  private RestOperations restTemplate;
+
+  @Mock
+  private Clock clock;
+
+  private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private AuthService authService = new AuthService();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(authService, "clientId", "trusted-client");
+    ReflectionTestUtils.setField(authService, "clientSecret", "secret");
+    ReflectionTestUtils.setField(authService, "authorizationUrl", "http://localhost/api/oauth/token");
+    ReflectionTestUtils.setField(authService, "refreshMarginSeconds", 60L);
+    ReflectionTestUtils.setField(authService, "restTemplate", restTemplate);
+    ReflectionTestUtils.setField(authService, "clock", clock);
+    ReflectionTestUtils.setField(authService, "meterRegistry", meterRegistry);
+    authService.init();
+
+    when(clock.millis()).thenReturn(0L);
+  }
+
+  @Test
+  public void shouldReuseTokenUntilShortlyBeforeExpiration() {
+    mockTokenResponses(token(TOKEN_1, 3600), token(TOKEN_2, 3600));
+
+    assertThat(authService.obtainAccessToken(), is(TOKEN_1));
+
+    when(clock.millis()).thenReturn(3539_999L);
+    assertThat(authService.obtainAccessToken(), is(TOKEN_1));
+
+    when(clock.millis()).thenReturn(3540_000L);
+    assertThat(authService.obtainAccessToken(), is(TOKEN_2));
+
+    verifyTokenRequests(2);
+    assertThat(count("hit"), is(1.0));
+    assertThat(count("fetch"), is(2.0));
+  }
+
+  @Test
+  public void shouldNotReuseTokenWithoutExpirationTime() {
+    mockTokenResponses(ImmutableMap.of("access_token", TOKEN_1),
+        ImmutableMap.of("access_token", TOKEN_2));
+
+    assertThat(authService.obtainAccessToken(), is(TOKEN_1));
+    assertThat(authService.obtainAccessToken(), is(TOKEN_2));
+
+    verifyTokenRequests(2);
+  }
+
+  @Test
+  public void shouldFetchNewTokenAfterInvalidation() {
+    mockTokenResponses(token(TOKEN_1, 3600), token(TOKEN_2, 3600));
+
+    assertThat(authService.obtainAccessToken(), is(TOKEN_1));
+    authService.invalidateAccessToken(TOKEN_1);
+    assertThat(authService.obtainAccessToken(), is(TOKEN_2));
+
+    verifyTokenRequests(2);
+    assertThat(count("invalidation"), is(1.0));
+  }
+
+  @Test
+  public void shouldIgnoreInvalidationOfReplacedToken() {
+    mockTokenResponses(token(TOKEN_1, 3600), token(TOKEN_2, 3600));
+
+    assertThat(authService.obtainAccessToken(), is(TOKEN_1));
+    authService.invalidateAccessToken("other-token");
+    assertThat(authService.obtainAccessToken(), is(TOKEN_1));
+
+    verifyTokenRequests(1);
+    assertThat(count("invalidation"), is(0.0));
+  }
+
+  @Test
+  public void shouldKeepUsingValidTokenIfRefreshFails() {
+    mockTokenResponses(token(TOKEN_1, 3600));
+    authService.obtainAccessToken();
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+        eq(Object.class))).thenThrow(new RestClientException("auth service unavailable"));
+
+    when(clock.millis()).thenReturn(3540_000L);
+    assertThat(authService.obtainAccessToken(), is(TOKEN_1));
+    assertThat(count("refresh_failure"), is(1.0));
+  }
+
+  @Test(expected = RestClientException.class)
+  public void shouldThrowExceptionIfTokenCannotBeFetchedAfterExpiration() {
+    mockTokenResponses(token(TOKEN_1, 3600));
+    authService.obtainAccessToken();
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+        eq(Object.class))).thenThrow(new RestClientException("auth service unavailable"));
+
+    when(clock.millis()).thenReturn(3600_000L);
+    authService.obtainAccessToken();
+  }
+
+  private Map<String, Object> token(String value, int expiresIn) {
+    return ImmutableMap.of("access_token", value, "expires_in", expiresIn);
+  }
+
+  @SafeVarargs
+  private final void mockTokenResponses(Map<String, Object> first, Map<String, Object>... next) {
+    ResponseEntity<Object>[] responses = new ResponseEntity[next.length];
+
+    for (int i = 0; i < next.length; ++i) {
+      responses[i] = new ResponseEntity<>(next[i], HttpStatus.OK);
+    }
+
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+        eq(Object.class))).thenReturn(new ResponseEntity<>(first, HttpStatus.OK), responses);
+  }
+
+  private void verifyTokenRequests(int times) {
+    verify(restTemplate, times(times)).exchange(any(URI.class), eq(HttpMethod.POST),
+        any(HttpEntity.class), eq(Object.class));
+  }
+
+  private double count(String result) {
+    return meterRegistry.get(AuthService.TOKEN_METER).tag("result", result).counter().count();
+  }
+}
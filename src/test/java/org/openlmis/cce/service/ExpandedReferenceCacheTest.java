@@ -0,0 +1,92 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ExpandedReferenceCacheTest {
+  private static final String FACILITY = "http://localhost/api/facilities/1";
+  private static final String USER_1 = "http://localhost/api/users/1";
+  private static final String USER_2 = "http://localhost/api/users/2";
+  private static final byte[] OBJECT = "{\"name\":\"value\"}".getBytes(UTF_8);
+
+  private ExpandedReferenceCache cache = new ExpandedReferenceCache();
+  private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(cache, "environment", new MockEnvironment()
+        .withProperty("objReferenceExpander.cache.default.maxSize", "100")
+        .withProperty("objReferenceExpander.cache.default.ttlSeconds", "60")
+        .withProperty("objReferenceExpander.cache.users.maxSize", "1"));
+    ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+  }
+
+  @Test
+  public void shouldReturnStoredObject() {
+    cache.put(FACILITY, OBJECT);
+
+    assertThat(cache.get(FACILITY), is(OBJECT));
+  }
+
+  @Test
+  public void shouldReturnNullIfObjectIsNotCached() {
+    assertThat(cache.get(FACILITY), is(nullValue()));
+  }
+
+  @Test
+  public void shouldStoreMissingObjectAsEmptyArray() {
+    cache.put(FACILITY, null);
+
+    assertThat(cache.get(FACILITY), is(new byte[0]));
+  }
+
+  @Test
+  public void shouldUseLimitsOfResourceType() {
+    cache.put(USER_1, OBJECT);
+    cache.put(USER_2, OBJECT);
+    cache.put(FACILITY, OBJECT);
+
+    assertThat(cache.get(USER_1), is(nullValue()));
+    assertThat(cache.get(USER_2), is(OBJECT));
+    assertThat(cache.get(FACILITY), is(OBJECT));
+  }
+
+  @Test
+  public void shouldExposeSharedCacheHitsAndMisses() {
+    cache.put(FACILITY, OBJECT);
+    cache.get(FACILITY);
+    cache.get(FACILITY);
+    cache.get("http://localhost/api/facilities/2");
+
+    assertThat(cacheGets("hit"), is(2.0));
+    assertThat(cacheGets("miss"), is(1.0));
+  }
+
+  private double cacheGets(String result) {
+    return meterRegistry.get("cache.gets").tag("result", result).functionCounter().count();
+  }
+}
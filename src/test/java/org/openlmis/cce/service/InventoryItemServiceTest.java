@@ -40,6 +40,8 @@ import org.openlmis.cce.InventoryItemSearchParamsDataBuilder;
 import org.openlmis.cce.domain.InventoryItem;
 import org.openlmis.cce.dto.PermissionStringDto;
 import org.openlmis.cce.repository.InventoryItemRepository;
+import org.openlmis.cce.repository.custom.FacilityProgramPair;
+import org.openlmis.cce.util.KeysetPage;
 import org.openlmis.cce.util.Pagination;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -75,7 +77,7 @@ public class InventoryItemServiceTest {
 
     userId = UUID.randomUUID();
     PermissionStrings.Handler handler = mock(PermissionStrings.Handler.class);
-    when(handler.get()).thenReturn(permissionStrings);
+    when(handler.getIndex()).thenAnswer(invocation -> PermissionIndex.of(permissionStrings));
     when(permissionService.getPermissionStrings(userId)).thenReturn(handler);
 
     inventoryItem = new InventoryItemDataBuilder().build();
@@ -98,8 +100,7 @@ public class InventoryItemServiceTest {
         .build();
 
     when(repository.search(
-        eq(Collections.singleton(facilityId)),
-        eq(Sets.asSet(programId2)),
+        eq(Collections.singleton(FacilityProgramPair.of(facilityId, programId2))),
         eq(params.getFunctionalStatus()),
         eq(pageable)
     )).thenReturn(expectedPage);
@@ -132,8 +133,8 @@ public class InventoryItemServiceTest {
     InventoryItemSearchParams params = InventoryItemSearchParamsDataBuilder.buildEmpty();
 
     when(repository.search(
-        eq(Sets.asSet(facilityId1, facilityId2)),
-        eq(Sets.asSet(programId1, programId2)),
+        eq(Sets.asSet(FacilityProgramPair.of(facilityId1, programId1),
+            FacilityProgramPair.of(facilityId2, programId2))),
         eq(null),
         eq(pageable)
     )).thenReturn(expectedPage);
@@ -159,8 +160,7 @@ public class InventoryItemServiceTest {
         .build();
 
     when(repository.search(
-        eq(Collections.singleton(facilityId)),
-        eq(Sets.asSet(programId1)),
+        eq(Collections.singleton(FacilityProgramPair.of(facilityId, programId1))),
         eq(params.getFunctionalStatus()),
         eq(pageable)
     )).thenReturn(expectedPage);
@@ -170,10 +170,65 @@ public class InventoryItemServiceTest {
     assertEquals(expectedPage, page);
   }
 
+  @Test
+  public void seekShouldReturnPageForValidParams() {
+    UUID facilityId = UUID.randomUUID();
+    UUID programId = UUID.randomUUID();
+    addPermission(CCE_INVENTORY_VIEW, facilityId, programId);
+
+    InventoryItemSearchParams params = new InventoryItemSearchParamsDataBuilder()
+        .withFacilityId(facilityId)
+        .withProgramId(programId)
+        .build();
+
+    KeysetPage<InventoryItem> expected = new KeysetPage<>(
+        Collections.singletonList(inventoryItem), 1, "next", null);
+
+    when(repository.seek(
+        eq(Collections.singleton(FacilityProgramPair.of(facilityId, programId))),
+        eq(params.getFunctionalStatus()),
+        eq("after"),
+        eq(false),
+        eq(pageable)
+    )).thenReturn(expected);
+
+    KeysetPage<InventoryItem> page = service.seek(userId, params, "after", false, pageable);
+
+    assertEquals(expected, page);
+  }
+
+  @Test
+  public void seekShouldReturnEmptyPageIfUserHasNoRights() {
+    KeysetPage<InventoryItem> page = service.seek(userId, params, "", true, pageable);
+
+    assertEquals(KeysetPage.empty(pageable.getPageSize(), true), page);
+    verifyZeroInteractions(repository);
+  }
+
+  @Test
+  public void searchShouldNotReturnItemsFromCrossProductOfFacilitiesAndPrograms() {
+    UUID programId1 = UUID.randomUUID();
+    UUID facilityId1 = UUID.randomUUID();
+    addPermission(CCE_INVENTORY_VIEW, facilityId1, programId1);
+
+    UUID programId2 = UUID.randomUUID();
+    UUID facilityId2 = UUID.randomUUID();
+    addPermission(CCE_INVENTORY_VIEW, facilityId2, programId2);
+
+    InventoryItemSearchParams params = new InventoryItemSearchParamsDataBuilder()
+        .withFacilityId(facilityId1)
+        .withProgramId(programId2)
+        .build();
+
+    Page<InventoryItem> page = service.search(userId, params, pageable);
+
+    assertEquals(Pagination.getPage(emptyList(), pageable), page);
+    verifyZeroInteractions(repository);
+  }
+
   @Test(expected = Exception.class)
   public void searchShouldThrowExceptionForMissingPageable() {
     when(repository.search(
-        any(),
         any(),
         any(),
         eq(null)
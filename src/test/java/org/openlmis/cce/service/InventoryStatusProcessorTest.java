@@ -18,6 +18,7 @@ package org.openlmis.cce.service;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import org.junit.Test;
@@ -27,13 +28,14 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.openlmis.cce.domain.FunctionalStatus;
 import org.openlmis.cce.dto.InventoryItemDto;
-import org.openlmis.cce.service.notifier.NonfunctionalCceNotifier;
+import org.openlmis.cce.service.event.InventoryItemEvent;
+import org.openlmis.cce.service.notifier.NotificationOutbox;
 
 @RunWith(MockitoJUnitRunner.class)
 public class InventoryStatusProcessorTest {
 
   @Mock
-  private NonfunctionalCceNotifier nonfunctionalCceNotifier;
+  private NotificationOutbox notificationOutbox;
 
   @InjectMocks
   private InventoryStatusProcessor inventoryStatusProcessor;
@@ -46,7 +48,7 @@ public class InventoryStatusProcessorTest {
 
     inventoryStatusProcessor.functionalStatusChange(inventoryItem);
 
-    verify(nonfunctionalCceNotifier).notify(inventoryItem);
+    verify(notificationOutbox).addNonfunctionalCce(inventoryItem);
   }
 
   @Test
@@ -55,7 +57,7 @@ public class InventoryStatusProcessorTest {
 
     inventoryStatusProcessor.functionalStatusChange(inventoryItem);
 
-    verify(nonfunctionalCceNotifier).notify(inventoryItem);
+    verify(notificationOutbox).addNonfunctionalCce(inventoryItem);
   }
 
   @Test
@@ -64,6 +66,22 @@ public class InventoryStatusProcessorTest {
 
     inventoryStatusProcessor.functionalStatusChange(inventoryItem);
 
-    verify(nonfunctionalCceNotifier, never()).notify(inventoryItem);
+    verify(notificationOutbox, never()).addNonfunctionalCce(inventoryItem);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void shouldProcessStatusChangeEvents() {
+    when(inventoryItem.getFunctionalStatus()).thenReturn(FunctionalStatus.AWAITING_REPAIR);
+
+    inventoryStatusProcessor.onInventoryItemEvent(InventoryItemEvent.statusChanged(inventoryItem));
+
+    verify(notificationOutbox).addNonfunctionalCce(inventoryItem);
+  }
+
+  @Test
+  public void shouldIgnoreOtherEvents() {
+    inventoryStatusProcessor.onInventoryItemEvent(InventoryItemEvent.created(inventoryItem));
+
+    verifyZeroInteractions(notificationOutbox);
+  }
+}
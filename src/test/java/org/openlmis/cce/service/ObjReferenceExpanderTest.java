@@ -20,24 +20,37 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import org.javers.common.collections.Lists;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.openlmis.cce.exception.ValidationMessageException;
 import org.openlmis.cce.service.dto.ExpandedObjectReferenceDto;
 import org.openlmis.cce.service.dto.TestDto;
 import org.openlmis.cce.service.dto.TestDtoDataBuilder;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
 @SuppressWarnings("PMD.UnusedPrivateField")
@@ -54,6 +67,12 @@ public class ObjReferenceExpanderTest {
   @Mock
   private RestTemplate restTemplate;
 
+  @Spy
+  private ExpandedReferenceCache cache = new ExpandedReferenceCache();
+
+  @Spy
+  private ObjectMapper objectMapper = new ObjectMapper();
+
   @InjectMocks
   private ObjReferenceExpander objReferenceExpander = new ObjReferenceExpander();
 
@@ -62,10 +81,22 @@ public class ObjReferenceExpanderTest {
   @Before
   public void setUp() {
     MockitoAnnotations.initMocks(this);
-    objReferenceExpander.registerConverters(); // This is normally called by Spring's @PostConstruct
+    ReflectionTestUtils.setField(cache, "environment", new MockEnvironment()
+        .withProperty("objReferenceExpander.cache.default.maxSize", "100")
+        .withProperty("objReferenceExpander.cache.default.ttlSeconds", "60"));
+    ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+
+    ReflectionTestUtils.setField(objReferenceExpander, "poolSize", 2);
+    ReflectionTestUtils.setField(objReferenceExpander, "queueSize", 10);
+    objReferenceExpander.init(); // This is normally called by Spring's @PostConstruct
     testDto = new TestDtoDataBuilder().buildDtoWithObjectReferenceNotExpanded();
   }
 
+  @After
+  public void tearDown() {
+    objReferenceExpander.shutdown();
+  }
+
   @Test(expected = ValidationMessageException.class)
   public void shouldThrowExceptionIfExpandedFieldIsNotObjectReferenceDto() {
     objReferenceExpander.expandDto(testDto, Lists.asList("uuidProperty"));
@@ -85,7 +116,7 @@ public class ObjReferenceExpanderTest {
   @Test
   public void shouldNotFailIfResourceDoesNotExist() {
     when(restTemplate.exchange(any(), eq(HttpMethod.GET), any(),
-        eq(Map.class))).thenReturn(ResponseEntity.notFound().build());
+        eq(byte[].class))).thenReturn(ResponseEntity.notFound().build());
 
     objReferenceExpander.expandDto(testDto, Lists.asList(EXPANDED_OBJECT_REFERENCE_DTO_FIELD));
 
@@ -102,14 +133,14 @@ public class ObjReferenceExpanderTest {
   }
 
   @Test
-  public void shouldExpandDto() {
+  public void shouldExpandDto() throws Exception {
     Map<String, Object> responseMap = new HashMap<>();
     responseMap.put("expandedStringProperty", EXPANDED_STRING_VALUE);
     responseMap.put("expandedListProperty", EXPANDED_LIST_VALUE);
     responseMap.put("expandedUuidProperty", EXPANDED_UUID_VALUE);
 
     when(restTemplate.exchange(any(), eq(HttpMethod.GET), any(),
-        eq(Map.class))).thenReturn(ResponseEntity.ok(responseMap));
+        eq(byte[].class))).thenReturn(ResponseEntity.ok(json(responseMap)));
 
     objReferenceExpander.expandDto(testDto, Lists.asList(EXPANDED_OBJECT_REFERENCE_DTO_FIELD));
 
@@ -126,4 +157,66 @@ public class ObjReferenceExpanderTest {
     assertNotNull(actual.getExpandedUuidProperty());
     assertEquals(EXPANDED_UUID_VALUE, actual.getExpandedUuidProperty());
   }
+
+  @Test
+  public void shouldRetrieveEachReferencedObjectOnce() {
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(),
+        eq(byte[].class))).thenAnswer(invocation -> ResponseEntity.ok(json(ImmutableMap
+            .of("expandedStringProperty", invocation.getArgument(0).toString()))));
+
+    TestDto first = new TestDtoDataBuilder().buildDtoWithObjectReferenceNotExpanded();
+    TestDto second = new TestDtoDataBuilder().buildDtoWithObjectReferenceNotExpanded();
+    TestDto third = new TestDtoDataBuilder()
+        .withObjRefDto(new ExpandedObjectReferenceDto(UUID.randomUUID(), "someService",
+            "someResource", null, null, null))
+        .build();
+
+    objReferenceExpander.expandDtos(Lists.asList(first, second, third),
+        Lists.asList(EXPANDED_OBJECT_REFERENCE_DTO_FIELD));
+
+    verify(restTemplate, times(2)).exchange(any(URI.class), eq(HttpMethod.GET), any(),
+        eq(byte[].class));
+
+    for (TestDto dto : Lists.asList(first, second, third)) {
+      ExpandedObjectReferenceDto actual = dto.getExpandedObjectReferenceDto();
+      assertEquals(actual.getHref(), actual.getExpandedStringProperty());
+    }
+  }
+
+  @Test(expected = DataRetrievalException.class)
+  public void shouldRethrowErrorFromParallelRetrieval() {
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(), eq(byte[].class)))
+        .thenThrow(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR));
+
+    TestDto first = new TestDtoDataBuilder().buildDtoWithObjectReferenceNotExpanded();
+    TestDto second = new TestDtoDataBuilder()
+        .withObjRefDto(new ExpandedObjectReferenceDto(UUID.randomUUID(), "someService",
+            "someResource", null, null, null))
+        .build();
+
+    objReferenceExpander.expandDtos(Lists.asList(first, second),
+        Lists.asList(EXPANDED_OBJECT_REFERENCE_DTO_FIELD));
+  }
+
+  @Test
+  public void shouldTakeReferencedObjectsFromCache() throws Exception {
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(),
+        eq(byte[].class))).thenReturn(ResponseEntity
+            .ok(json(ImmutableMap.of("expandedStringProperty", EXPANDED_STRING_VALUE))));
+
+    TestDto first = new TestDtoDataBuilder().buildDtoWithObjectReferenceNotExpanded();
+    objReferenceExpander.expandDto(first, Lists.asList(EXPANDED_OBJECT_REFERENCE_DTO_FIELD));
+
+    TestDto second = new TestDtoDataBuilder().buildDtoWithObjectReferenceNotExpanded();
+    objReferenceExpander.expandDto(second, Lists.asList(EXPANDED_OBJECT_REFERENCE_DTO_FIELD));
+
+    verify(restTemplate).exchange(any(URI.class), eq(HttpMethod.GET), any(), eq(byte[].class));
+    assertEquals(EXPANDED_STRING_VALUE,
+        second.getExpandedObjectReferenceDto().getExpandedStringProperty());
+  }
+
+  private byte[] json(Map<String, ?> object) throws JsonProcessingException {
+    // a separate mapper, because calling the spy while stubbing would break the stubbing
+    return new ObjectMapper().writeValueAsBytes(object);
+  }
 }
@@ -0,0 +1,108 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.openlmis.cce.service.PermissionService.CCE_INVENTORY_EDIT;
+import static org.openlmis.cce.service.PermissionService.CCE_INVENTORY_VIEW;
+import static org.openlmis.cce.service.PermissionService.CCE_MANAGE;
+
+import com.google.common.collect.Sets;
+import java.util.Collections;
+import java.util.UUID;
+import org.junit.Test;
+import org.openlmis.cce.dto.PermissionStringDto;
+import org.openlmis.cce.repository.custom.FacilityProgramPair;
+
+public class PermissionIndexTest {
+  private static final UUID FACILITY_1 = UUID.randomUUID();
+  private static final UUID FACILITY_2 = UUID.randomUUID();
+  private static final UUID PROGRAM_1 = UUID.randomUUID();
+  private static final UUID PROGRAM_2 = UUID.randomUUID();
+
+  private final PermissionIndex index = PermissionIndex.of(Sets.newHashSet(
+      PermissionStringDto.create(CCE_MANAGE, null, null),
+      PermissionStringDto.create(CCE_INVENTORY_VIEW, FACILITY_1, PROGRAM_1),
+      PermissionStringDto.create(CCE_INVENTORY_VIEW, FACILITY_1, PROGRAM_2),
+      PermissionStringDto.create(CCE_INVENTORY_VIEW, FACILITY_2, PROGRAM_1),
+      PermissionStringDto.create(CCE_INVENTORY_EDIT, FACILITY_2, PROGRAM_2),
+      PermissionStringDto.create(CCE_INVENTORY_EDIT, FACILITY_1, null)
+  ));
+
+  @Test
+  public void shouldContainGivenPermissionStrings() {
+    assertTrue(index.contains(CCE_MANAGE, null, null));
+    assertTrue(index.contains(CCE_INVENTORY_VIEW, FACILITY_1, PROGRAM_2));
+    assertTrue(index.contains(CCE_INVENTORY_EDIT, FACILITY_1, null));
+    assertTrue(index.contains(CCE_INVENTORY_VIEW.toLowerCase(), FACILITY_2, PROGRAM_1));
+  }
+
+  @Test
+  public void shouldNotContainOtherPermissionStrings() {
+    assertFalse(index.contains(CCE_MANAGE, FACILITY_1, PROGRAM_1));
+    assertFalse(index.contains(CCE_INVENTORY_VIEW, FACILITY_2, PROGRAM_2));
+    assertFalse(index.contains(CCE_INVENTORY_EDIT, FACILITY_1, PROGRAM_1));
+    assertFalse(index.contains(CCE_INVENTORY_VIEW, null, null));
+    assertFalse(index.contains("OTHER_RIGHT", FACILITY_1, PROGRAM_1));
+  }
+
+  @Test
+  public void shouldReturnAllPairsOfRight() {
+    assertThat(index.getPairs(CCE_INVENTORY_VIEW, null, null), containsInAnyOrder(
+        FacilityProgramPair.of(FACILITY_1, PROGRAM_1),
+        FacilityProgramPair.of(FACILITY_1, PROGRAM_2),
+        FacilityProgramPair.of(FACILITY_2, PROGRAM_1)));
+  }
+
+  @Test
+  public void shouldReturnPairsOfRightForFacility() {
+    assertThat(index.getPairs(CCE_INVENTORY_VIEW, FACILITY_1, null), containsInAnyOrder(
+        FacilityProgramPair.of(FACILITY_1, PROGRAM_1),
+        FacilityProgramPair.of(FACILITY_1, PROGRAM_2)));
+  }
+
+  @Test
+  public void shouldReturnPairsOfRightForProgram() {
+    assertThat(index.getPairs(CCE_INVENTORY_VIEW, null, PROGRAM_1), containsInAnyOrder(
+        FacilityProgramPair.of(FACILITY_1, PROGRAM_1),
+        FacilityProgramPair.of(FACILITY_2, PROGRAM_1)));
+  }
+
+  @Test
+  public void shouldReturnPairOfRightForFacilityAndProgram() {
+    assertThat(index.getPairs(CCE_INVENTORY_VIEW, FACILITY_2, PROGRAM_1),
+        containsInAnyOrder(FacilityProgramPair.of(FACILITY_2, PROGRAM_1)));
+    assertThat(index.getPairs(CCE_INVENTORY_VIEW, FACILITY_2, PROGRAM_2), is(empty()));
+  }
+
+  @Test
+  public void shouldSkipPermissionStringsWithoutFacilityOrProgram() {
+    assertThat(index.getPairs(CCE_INVENTORY_EDIT, null, null),
+        containsInAnyOrder(FacilityProgramPair.of(FACILITY_2, PROGRAM_2)));
+    assertThat(index.getPairs(CCE_MANAGE, null, null), is(empty()));
+  }
+
+  @Test
+  public void shouldReturnNoPairsForMissingRight() {
+    assertThat(PermissionIndex.of(Collections.emptySet())
+        .getPairs(CCE_INVENTORY_VIEW, null, null), is(empty()));
+  }
+}
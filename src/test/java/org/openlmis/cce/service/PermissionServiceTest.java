@@ -15,6 +15,8 @@
 
 package org.openlmis.cce.service;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.openlmis.cce.i18n.PermissionMessageKeys.ERROR_NO_FOLLOWING_PERMISSION;
@@ -84,6 +86,7 @@ public class PermissionServiceTest {
     when(authenticationHelper.getCurrentUser()).thenReturn(user);
     when(user.getId()).thenReturn(userId);
     when(permissionStrings.forUser(userId)).thenReturn(handler);
+    when(handler.getIndex()).thenReturn(PermissionIndex.of(Collections.emptySet()));
 
     ReflectionTestUtils.setField(permissionService, "serviceTokenClientId", SERVICE_CLIENT_ID);
     ReflectionTestUtils.setField(permissionService, "apiKeyPrefix", API_KEY_PREFIX);
@@ -120,6 +123,22 @@ public class PermissionServiceTest {
     permissionService.canManageCce();
   }
 
+  @Test
+  public void shouldRecognizeServiceToken() {
+    when(securityContext.getAuthentication()).thenReturn(trustedClient);
+
+    assertTrue(permissionService.isServiceToken());
+  }
+
+  @Test
+  public void userAndApiKeyTokensAreNotServiceTokens() {
+    assertFalse(permissionService.isServiceToken());
+
+    when(securityContext.getAuthentication()).thenReturn(apiKeyClient);
+
+    assertFalse(permissionService.isServiceToken());
+  }
+
   @Test
   public void userCanViewInventoryIfHasRight() throws Exception {
     stubProgramAndFacilityInInventoryItem();
@@ -289,7 +308,7 @@ public class PermissionServiceTest {
 
   private void stubHasRight(String rightName, UUID programId, UUID faciliyId) {
     PermissionStringDto permission = PermissionStringDto.create(rightName, faciliyId, programId);
-    when(handler.get()).thenReturn(Collections.singleton(permission));
+    when(handler.getIndex()).thenReturn(PermissionIndex.of(Collections.singleton(permission)));
   }
 
 }
@@ -23,13 +23,22 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.common.cache.Cache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.lang.reflect.Field;
+import java.time.Clock;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
@@ -37,6 +46,7 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.openlmis.cce.dto.PermissionStringDto;
 import org.openlmis.cce.service.referencedata.UserReferenceDataService;
+import org.springframework.test.util.ReflectionTestUtils;
 
 @RunWith(MockitoJUnitRunner.class)
 public class PermissionStringsTest {
@@ -52,20 +62,44 @@ public class PermissionStringsTest {
   @Mock
   private ServiceResponse<List<String>> response;
 
+  @Mock
+  private Clock clock;
+
+  private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(permissionStrings, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(permissionStrings, "clock", clock);
+    ReflectionTestUtils.setField(permissionStrings, "maxUsers", 10L);
+    ReflectionTestUtils.setField(permissionStrings, "idleMillis", 60000L);
+    ReflectionTestUtils.setField(permissionStrings, "revalidationPoolSize", 1);
+    ReflectionTestUtils.setField(permissionStrings, "revalidationQueueSize", 1);
+    permissionStrings.init();
+
+    // revalidate in the calling thread to make tests deterministic
+    ReflectionTestUtils.setField(permissionStrings, "executor", (Executor) Runnable::run);
+  }
+
+  @After
+  public void tearDown() {
+    permissionStrings.shutdown();
+  }
+
   @Test
   public void shouldCreateHandlerIfNotExist() throws Exception {
     Field handlers = PermissionStrings.class.getDeclaredField(HANDLERS_FIELD_NAME);
     handlers.setAccessible(true);
 
-    Map map = (Map) handlers.get(permissionStrings);
-    assertThat(map.size(), is(0));
+    Cache cache = (Cache) handlers.get(permissionStrings);
+    assertThat(cache.size(), is(0L));
 
     PermissionStrings.Handler handler = permissionStrings.forUser(USER);
 
     assertThat(handler, is(notNullValue()));
 
-    map = (Map) handlers.get(permissionStrings);
-    assertThat(map.size(), is(1));
+    cache = (Cache) handlers.get(permissionStrings);
+    assertThat(cache.size(), is(1L));
   }
 
   @Test
@@ -78,8 +112,8 @@ public class PermissionStringsTest {
     permissionStrings.forUser(USER);
     permissionStrings.forUser(USER);
 
-    Map map = (Map) handlers.get(permissionStrings);
-    assertThat(map.size(), is(1));
+    Cache cache = (Cache) handlers.get(permissionStrings);
+    assertThat(cache.size(), is(1L));
   }
 
   @Test
@@ -92,7 +126,7 @@ public class PermissionStringsTest {
     when(response.isModified()).thenReturn(true);
     when(response.getETag()).thenReturn(etag);
     when(response.getBody()).thenReturn(singletonList(random(5)));
-    Set<PermissionStringDto> one = handler.get();
+    final Set<PermissionStringDto> one = handler.get();
 
     assertThat(one, hasSize(1));
 
@@ -116,7 +150,7 @@ public class PermissionStringsTest {
     when(response.isModified()).thenReturn(true);
     when(response.getETag()).thenReturn(etag);
     when(response.getBody()).thenReturn(singletonList(random(5)));
-    Set<PermissionStringDto> one = handler.get();
+    final Set<PermissionStringDto> one = handler.get();
 
     assertThat(one, hasSize(1));
 
@@ -129,4 +163,113 @@ public class PermissionStringsTest {
 
     assertThat(one, is(equalTo(two)));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void shouldServeCachedDataWithoutCallingService() {
+    ReflectionTestUtils.setField(permissionStrings, "refreshAfterMillis", 5000L);
+    ReflectionTestUtils.setField(permissionStrings, "maxStalenessMillis", 60000L);
+    PermissionStrings.Handler handler = permissionStrings.forUser(USER);
+    mockResponse();
+
+    when(clock.millis()).thenReturn(1000L);
+    final Set<PermissionStringDto> one = handler.get();
+
+    when(clock.millis()).thenReturn(5999L);
+    Set<PermissionStringDto> two = handler.get();
+
+    assertThat(one, is(equalTo(two)));
+    verify(userReferenceDataService, times(1)).getPermissionStrings(any(UUID.class), any());
+    assertThat(count(PermissionStrings.CACHE_METER, "result", "hit"), is(1.0));
+    assertThat(count(PermissionStrings.CACHE_METER, "result", "miss"), is(1.0));
+  }
+
+  @Test
+  public void shouldServeStaleDataAndRevalidateInBackground() {
+    ReflectionTestUtils.setField(permissionStrings, "refreshAfterMillis", 5000L);
+    ReflectionTestUtils.setField(permissionStrings, "maxStalenessMillis", 60000L);
+    PermissionStrings.Handler handler = permissionStrings.forUser(USER);
+    String etag = mockResponse();
+
+    when(clock.millis()).thenReturn(1000L);
+    final Set<PermissionStringDto> one = handler.get();
+
+    when(userReferenceDataService.getPermissionStrings(USER, etag)).thenReturn(response);
+    when(response.getBody()).thenReturn(singletonList(random(5)));
+    when(clock.millis()).thenReturn(6000L);
+    Set<PermissionStringDto> two = handler.get();
+    Set<PermissionStringDto> three = handler.get();
+
+    assertThat(two, is(equalTo(one)));
+    assertThat(three, is(not(equalTo(one))));
+    verify(userReferenceDataService).getPermissionStrings(USER, etag);
+    assertThat(count(PermissionStrings.REVALIDATION_METER, "mode", "async"), is(1.0));
+    assertThat(count(PermissionStrings.REVALIDATION_METER, "mode", "sync"), is(1.0));
+  }
+
+  @Test
+  public void shouldRevalidateSynchronouslyIfDataIsTooStale() {
+    ReflectionTestUtils.setField(permissionStrings, "refreshAfterMillis", 5000L);
+    ReflectionTestUtils.setField(permissionStrings, "maxStalenessMillis", 60000L);
+    PermissionStrings.Handler handler = permissionStrings.forUser(USER);
+    String etag = mockResponse();
+
+    when(clock.millis()).thenReturn(1000L);
+    final Set<PermissionStringDto> one = handler.get();
+
+    when(userReferenceDataService.getPermissionStrings(USER, etag)).thenReturn(response);
+    when(response.getBody()).thenReturn(singletonList(random(5)));
+    when(clock.millis()).thenReturn(61000L);
+    Set<PermissionStringDto> two = handler.get();
+
+    assertThat(two, is(not(equalTo(one))));
+    assertThat(count(PermissionStrings.CACHE_METER, "result", "miss"), is(2.0));
+    assertThat(count(PermissionStrings.REVALIDATION_METER, "mode", "async"), is(0.0));
+  }
+
+  @Test
+  public void shouldKeepDataIfBackgroundRevalidationFailed() {
+    ReflectionTestUtils.setField(permissionStrings, "refreshAfterMillis", 5000L);
+    ReflectionTestUtils.setField(permissionStrings, "maxStalenessMillis", 60000L);
+    PermissionStrings.Handler handler = permissionStrings.forUser(USER);
+    String etag = mockResponse();
+
+    when(clock.millis()).thenReturn(1000L);
+    final Set<PermissionStringDto> one = handler.get();
+
+    when(userReferenceDataService.getPermissionStrings(USER, etag))
+        .thenThrow(new IllegalStateException());
+    when(clock.millis()).thenReturn(6000L);
+    Set<PermissionStringDto> two = handler.get();
+
+    assertThat(two, is(equalTo(one)));
+    assertThat(count(PermissionStrings.REVALIDATION_METER, "mode", "failed"), is(1.0));
+  }
+
+  @Test
+  public void shouldLimitNumberOfHandlers() throws Exception {
+    Field handlers = PermissionStrings.class.getDeclaredField(HANDLERS_FIELD_NAME);
+    handlers.setAccessible(true);
+
+    for (int i = 0; i < 20; ++i) {
+      permissionStrings.forUser(UUID.randomUUID());
+    }
+
+    Cache cache = (Cache) handlers.get(permissionStrings);
+    assertThat(cache.size(), is(10L));
+  }
+
+  private String mockResponse() {
+    String etag = random(5);
+
+    when(userReferenceDataService.getPermissionStrings(USER, null)).thenReturn(response);
+    when(response.isModified()).thenReturn(true);
+    when(response.getETag()).thenReturn(etag);
+    when(response.getBody()).thenReturn(singletonList(random(5)));
+
+    return etag;
+  }
+
+  private double count(String name, String tag, String value) {
+    return meterRegistry.get(name).tag(tag, value).counter().count();
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.event;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.openlmis.cce.service.event.DomainEventPublisher.EVENTS_METER;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.cce.dto.AlertDto;
+import org.openlmis.cce.dto.InventoryItemDto;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DomainEventPublisherTest {
+
+  @Mock
+  private ApplicationEventPublisher applicationEventPublisher;
+
+  @Mock
+  private DomainEventListener<InventoryItemEvent> inventoryItemListener;
+
+  @Mock
+  private DomainEventListener<AlertEvent> alertListener;
+
+  @InjectMocks
+  private DomainEventPublisher publisher;
+
+  private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private InventoryItemEvent event = InventoryItemEvent.created(new InventoryItemDto());
+
+  @Before
+  public void setUp() {
+    when(inventoryItemListener.getEventType()).thenReturn(InventoryItemEvent.class);
+    when(alertListener.getEventType()).thenReturn(AlertEvent.class);
+
+    ReflectionTestUtils.setField(publisher, "listeners",
+        Arrays.asList(inventoryItemListener, alertListener));
+    ReflectionTestUtils.setField(publisher, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(publisher, "poolSize", 1);
+    ReflectionTestUtils.setField(publisher, "queueSize", 1);
+    publisher.init();
+    ReflectionTestUtils.setField(publisher, "executor", (Executor) Runnable::run);
+  }
+
+  @After
+  public void tearDown() {
+    publisher.shutdown();
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  public void shouldPublishToApplicationListenersRightAway() {
+    TransactionSynchronizationManager.initSynchronization();
+
+    publisher.publish(event);
+
+    verify(applicationEventPublisher).publishEvent(event);
+  }
+
+  @Test
+  public void shouldDispatchToListenersOfEventType() {
+    publisher.publish(event);
+
+    verify(inventoryItemListener).onEvent(event);
+    verify(alertListener, never()).onEvent(any());
+    assertThat(getCount("handled")).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldDispatchAfterCommit() {
+    TransactionSynchronizationManager.initSynchronization();
+
+    publisher.publish(event);
+
+    verify(inventoryItemListener, never()).onEvent(event);
+
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(TransactionSynchronization::afterCommit);
+
+    verify(inventoryItemListener).onEvent(event);
+  }
+
+  @Test
+  public void shouldNotDispatchIfTransactionRolledBack() {
+    TransactionSynchronizationManager.initSynchronization();
+
+    publisher.publish(event);
+    TransactionSynchronizationManager.getSynchronizations().forEach(synchronization ->
+        synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+    verify(inventoryItemListener, never()).onEvent(event);
+  }
+
+  @Test
+  public void shouldCountListenerFailures() {
+    AlertEvent alertEvent = AlertEvent.saved(new AlertDto());
+    doThrow(new IllegalStateException("test")).when(alertListener).onEvent(alertEvent);
+
+    publisher.publish(alertEvent);
+
+    assertThat(meterRegistry
+        .counter(EVENTS_METER, "event", "AlertEvent", "result", "failed")
+        .count()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldWaitForFreeThreadInsteadOfRunningListenerInCaller() throws Exception {
+    final ThreadPoolExecutor pool = usePool();
+    final Thread caller = Thread.currentThread();
+    List<Thread> listenerThreads = Collections.synchronizedList(new ArrayList<>());
+    doAnswer(invocation -> {
+      listenerThreads.add(Thread.currentThread());
+      Thread.sleep(50);
+      return null;
+    }).when(inventoryItemListener).onEvent(event);
+
+    for (int i = 0; i < 4; ++i) {
+      publisher.publish(event);
+    }
+
+    publisher.shutdown();
+    assertThat(pool.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(listenerThreads).hasSize(4).doesNotContain(caller);
+    assertThat(getCount("handled")).isEqualTo(4);
+  }
+
+  @Test
+  public void shouldNotFailPublisherWhenPoolIsShutDown() {
+    usePool();
+    publisher.shutdown();
+
+    publisher.publish(event);
+
+    verify(applicationEventPublisher).publishEvent(event);
+    verify(inventoryItemListener, never()).onEvent(event);
+    assertThat(getCount("rejected")).isEqualTo(1);
+  }
+
+  private ThreadPoolExecutor usePool() {
+    ThreadPoolExecutor pool = (ThreadPoolExecutor) ReflectionTestUtils.getField(publisher, "pool");
+    ReflectionTestUtils.setField(publisher, "executor", pool);
+    return pool;
+  }
+
+  private double getCount(String result) {
+    return meterRegistry
+        .counter(EVENTS_METER, "event", "InventoryItemEvent", "result", result)
+        .count();
+  }
+}
@@ -0,0 +1,251 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.export;
+
+import static java.util.Collections.singleton;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.openlmis.cce.service.PermissionService.CCE_INVENTORY_EDIT;
+import static org.openlmis.cce.service.PermissionService.CCE_INVENTORY_VIEW;
+
+import com.google.common.collect.Sets;
+import java.time.Clock;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.cce.domain.FunctionalStatus;
+import org.openlmis.cce.domain.InventoryExportJob;
+import org.openlmis.cce.domain.InventoryExportJob.Pair;
+import org.openlmis.cce.domain.InventoryExportJob.Status;
+import org.openlmis.cce.dto.PermissionStringDto;
+import org.openlmis.cce.exception.NotFoundException;
+import org.openlmis.cce.exception.PermissionMessageException;
+import org.openlmis.cce.exception.ValidationMessageException;
+import org.openlmis.cce.repository.InventoryExportJobRepository;
+import org.openlmis.cce.service.PermissionIndex;
+import org.openlmis.cce.service.PermissionService;
+import org.openlmis.cce.service.PermissionStrings;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+@SuppressWarnings("PMD.TooManyMethods")
+public class InventoryExportJobServiceTest {
+
+  private static final ZonedDateTime NOW = ZonedDateTime.of(2017, 5, 8, 10, 0, 0, 0,
+      ZoneOffset.UTC);
+
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  @Mock
+  private InventoryExportJobRepository repository;
+
+  @Mock
+  private PermissionService permissionService;
+
+  @Mock
+  private PermissionStrings.Handler handler;
+
+  @Mock
+  private InventoryExportJobWorker worker;
+
+  @InjectMocks
+  private InventoryExportJobService service;
+
+  private UUID userId = UUID.randomUUID();
+  private UUID programId = UUID.randomUUID();
+  private UUID otherProgramId = UUID.randomUUID();
+  private UUID facilityId = UUID.randomUUID();
+  private UUID otherFacilityId = UUID.randomUUID();
+
+  private InventoryExportJob job;
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(service, "clock", Clock.fixed(NOW.toInstant(), ZoneOffset.UTC));
+
+    job = InventoryExportJob.newJob(userId, singleton(Pair.of(facilityId, programId)), null, NOW);
+    job.setId(UUID.randomUUID());
+  }
+
+  @Test
+  public void submitShouldQueueJobForPermittedPairs() {
+    stubRights(
+        PermissionStringDto.create(CCE_INVENTORY_VIEW, facilityId, programId),
+        PermissionStringDto.create(CCE_INVENTORY_VIEW, otherFacilityId, programId),
+        PermissionStringDto.create(CCE_INVENTORY_VIEW, facilityId, otherProgramId),
+        PermissionStringDto.create(CCE_INVENTORY_EDIT, otherFacilityId, otherProgramId));
+    when(repository.save(any(InventoryExportJob.class))).then(returnsFirstArg());
+
+    InventoryExportJob submitted = service
+        .submit(userId, programId, null, FunctionalStatus.FUNCTIONING);
+
+    assertThat(submitted.getStatus()).isEqualTo(Status.QUEUED);
+    assertThat(submitted.getUserId()).isEqualTo(userId);
+    assertThat(submitted.getFunctionalStatus()).isEqualTo(FunctionalStatus.FUNCTIONING);
+    assertThat(submitted.getCreatedDate()).isEqualTo(NOW);
+    assertThat(submitted.getPairs()).containsOnly(
+        Pair.of(facilityId, programId), Pair.of(otherFacilityId, programId));
+  }
+
+  @Test
+  public void submitShouldLimitPairsToGivenFacilities() {
+    stubRights(
+        PermissionStringDto.create(CCE_INVENTORY_VIEW, facilityId, programId),
+        PermissionStringDto.create(CCE_INVENTORY_VIEW, facilityId, otherProgramId),
+        PermissionStringDto.create(CCE_INVENTORY_VIEW, otherFacilityId, programId));
+    when(repository.save(any(InventoryExportJob.class))).then(returnsFirstArg());
+
+    InventoryExportJob submitted = service.submit(userId, null, singleton(facilityId), null);
+
+    assertThat(submitted.getPairs()).containsOnly(
+        Pair.of(facilityId, programId), Pair.of(facilityId, otherProgramId));
+  }
+
+  @Test
+  public void submitShouldThrowExceptionIfUserHasNoRightForOneOfFacilities() {
+    stubRights(PermissionStringDto.create(CCE_INVENTORY_VIEW, facilityId, programId));
+    exception.expect(PermissionMessageException.class);
+
+    service.submit(userId, programId, Sets.newHashSet(facilityId, otherFacilityId), null);
+  }
+
+  @Test
+  public void submitShouldThrowExceptionIfUserHasNoRights() {
+    stubRights(PermissionStringDto.create(CCE_INVENTORY_EDIT, facilityId, programId));
+    exception.expect(PermissionMessageException.class);
+
+    service.submit(userId, null, null, null);
+  }
+
+  @Test
+  public void getShouldThrowExceptionIfJobWasSubmittedByOtherUser() {
+    when(repository.findById(job.getId())).thenReturn(Optional.of(job));
+    exception.expect(NotFoundException.class);
+
+    service.get(UUID.randomUUID(), job.getId());
+  }
+
+  @Test
+  public void cancelShouldCancelJobAndRemoveFile() {
+    stubJobForUpdate();
+    when(repository.save(job)).thenReturn(job);
+
+    assertThat(service.cancel(userId, job.getId()).getStatus()).isEqualTo(Status.CANCELLED);
+    verify(worker).deleteFile(job.getId());
+  }
+
+  @Test
+  public void cancelShouldLeaveFileOfRunningJobToWorker() {
+    stubJobForUpdate();
+    job.start(NOW, NOW.plusMinutes(1));
+
+    service.cancel(userId, job.getId());
+
+    assertThat(job.getStatus()).isEqualTo(Status.CANCELLED);
+    verify(worker, never()).deleteFile(job.getId());
+  }
+
+  @Test
+  public void cancelShouldRemoveFileOfInterruptedJob() {
+    stubJobForUpdate();
+    job.start(NOW.minusMinutes(2), NOW.minusMinutes(1));
+
+    service.cancel(userId, job.getId());
+
+    verify(worker).deleteFile(job.getId());
+  }
+
+  @Test
+  public void cancelShouldThrowExceptionIfJobWasSubmittedByOtherUser() {
+    stubJobForUpdate();
+    exception.expect(NotFoundException.class);
+
+    service.cancel(UUID.randomUUID(), job.getId());
+  }
+
+  @Test
+  public void resumeShouldQueueFailedJob() {
+    stubJobForUpdate();
+    job.fail("error", NOW);
+    when(repository.save(job)).thenReturn(job);
+
+    assertThat(service.resume(userId, job.getId()).getStatus()).isEqualTo(Status.QUEUED);
+  }
+
+  @Test
+  public void resumeShouldQueueInterruptedJob() {
+    stubJobForUpdate();
+    // the lease was not renewed
+    job.start(NOW.minusMinutes(2), NOW.minusMinutes(1));
+    when(repository.save(job)).thenReturn(job);
+
+    assertThat(service.resume(userId, job.getId()).getStatus()).isEqualTo(Status.QUEUED);
+  }
+
+  @Test
+  public void resumeShouldThrowExceptionIfJobIsRunning() {
+    stubJobForUpdate();
+    job.start(NOW, NOW.plusMinutes(1));
+    exception.expect(ValidationMessageException.class);
+
+    service.resume(userId, job.getId());
+  }
+
+  @Test
+  public void resumeShouldThrowExceptionIfJobHasCompleted() {
+    stubJobForUpdate();
+    job.complete(NOW);
+    exception.expect(ValidationMessageException.class);
+
+    service.resume(userId, job.getId());
+  }
+
+  @Test
+  public void getFileShouldThrowExceptionIfJobHasNotCompleted() {
+    stubJob();
+    exception.expect(ValidationMessageException.class);
+
+    service.getFile(userId, job.getId());
+  }
+
+  private void stubJob() {
+    when(repository.findById(job.getId())).thenReturn(Optional.of(job));
+  }
+
+  private void stubJobForUpdate() {
+    when(repository.findByIdForUpdate(job.getId())).thenReturn(Optional.of(job));
+  }
+
+  private void stubRights(PermissionStringDto... permissions) {
+    when(permissionService.getPermissionStrings(userId)).thenReturn(handler);
+    when(handler.getIndex()).thenReturn(PermissionIndex.of(Arrays.asList(permissions)));
+  }
+}
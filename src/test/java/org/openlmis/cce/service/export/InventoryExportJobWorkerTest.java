@@ -0,0 +1,290 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.export;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.openlmis.cce.service.export.InventoryExportJobWorker.JOBS_METER;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.cce.domain.InventoryExportJob;
+import org.openlmis.cce.domain.InventoryExportJob.Pair;
+import org.openlmis.cce.domain.InventoryExportJob.Status;
+import org.openlmis.cce.repository.InventoryExportJobRepository;
+import org.openlmis.cce.repository.InventoryItemRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+@RunWith(MockitoJUnitRunner.class)
+public class InventoryExportJobWorkerTest {
+
+  private static final ZonedDateTime NOW = ZonedDateTime.of(2017, 5, 8, 10, 0, 0, 0,
+      ZoneOffset.UTC);
+  private static final long LEASE_SECONDS = 60;
+  private static final String HEADER = "Facility Name,Model,Type,Net Volume,Reference Name,"
+      + "Program Name,Serial No.,Year of Installation,Year of Warranty Expiry,"
+      + "Functional Status,Last Modifier Name,Modified Date\r\n";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Mock
+  private InventoryExportJobRepository jobRepository;
+
+  @Mock
+  private InventoryItemRepository inventoryItemRepository;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  @InjectMocks
+  private InventoryExportJobWorker worker;
+
+  private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private UUID[] itemIds = {
+      UUID.fromString("00000000-0000-0000-0000-000000000001"),
+      UUID.fromString("00000000-0000-0000-0000-000000000002"),
+      UUID.fromString("00000000-0000-0000-0000-000000000003")
+  };
+
+  private InventoryExportJob job;
+
+  @Before
+  public void setUp() throws IOException {
+    ReflectionTestUtils.setField(worker, "clock", Clock.fixed(NOW.toInstant(), ZoneOffset.UTC));
+    ReflectionTestUtils.setField(worker, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(worker, "directory", folder.getRoot().getPath());
+    ReflectionTestUtils.setField(worker, "poolSize", 1);
+    ReflectionTestUtils.setField(worker, "pollIntervalMillis", 3600000L);
+    ReflectionTestUtils.setField(worker, "checkpointRows", 2);
+    ReflectionTestUtils.setField(worker, "retentionHours", 24L);
+    ReflectionTestUtils.setField(worker, "leaseSeconds", LEASE_SECONDS);
+    worker.init();
+    ReflectionTestUtils.setField(worker, "executor", (Executor) Runnable::run);
+
+    when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+    job = InventoryExportJob.newJob(UUID.randomUUID(),
+        singleton(Pair.of(UUID.randomUUID(), UUID.randomUUID())), null, NOW);
+    job.setId(UUID.randomUUID());
+    job.start(NOW, NOW.plusSeconds(LEASE_SECONDS));
+  }
+
+  @After
+  public void tearDown() {
+    worker.shutdown();
+  }
+
+  @Test
+  public void shouldWriteRowsToGzipFileAndCompleteJob() throws IOException {
+    stubJob();
+    when(inventoryItemRepository.streamExportJobRows(job.getId(), null, null))
+        .thenReturn(Stream.of(row(0), row(1), row(2)));
+
+    worker.run(job);
+
+    assertThat(readFile()).isEqualTo(HEADER + line(0) + line(1) + line(2));
+    assertThat(job.getStatus()).isEqualTo(Status.COMPLETED);
+    assertThat(job.getRowCount()).isEqualTo(3);
+    assertThat(job.getLastItemId()).isEqualTo(itemIds[2]);
+    assertThat(job.getFileSize()).isEqualTo(Files.size(worker.getFile(job.getId())));
+    assertThat(meterRegistry.counter(JOBS_METER, "result", "completed").count()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldSaveProgressEveryGivenNumberOfRows() {
+    stubJob();
+    when(inventoryItemRepository.streamExportJobRows(job.getId(), null, null))
+        .thenReturn(Stream.of(row(0), row(1), row(2)));
+
+    worker.run(job);
+
+    // a checkpoint after two rows, one after the last row and completion
+    verify(jobRepository, times(3)).save(job);
+  }
+
+  @Test
+  public void shouldResumeFailedJobFromLastCheckpoint() throws IOException {
+    stubJob();
+    when(inventoryItemRepository.streamExportJobRows(job.getId(), null, null))
+        .thenReturn(Stream.concat(Stream.of(row(0), row(1), row(2)),
+            Stream.<Object[]>generate(() -> {
+              throw new IllegalStateException("connection lost");
+            })));
+    when(inventoryItemRepository.streamExportJobRows(job.getId(), null, itemIds[1]))
+        .thenReturn(Stream.<Object[]>of(row(2)));
+
+    worker.run(job);
+
+    assertThat(job.getStatus()).isEqualTo(Status.FAILED);
+    assertThat(job.getError()).isEqualTo("connection lost");
+    assertThat(job.getRowCount()).isEqualTo(2);
+    assertThat(meterRegistry.counter(JOBS_METER, "result", "failed").count()).isEqualTo(1);
+
+    job.resume(NOW);
+    job.start(NOW, NOW.plusSeconds(LEASE_SECONDS));
+    worker.run(job);
+
+    assertThat(readFile()).isEqualTo(HEADER + line(0) + line(1) + line(2));
+    assertThat(job.getStatus()).isEqualTo(Status.COMPLETED);
+    assertThat(job.getRowCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldStopAndRemoveFileIfJobWasCancelled() {
+    stubJob();
+    when(inventoryItemRepository.streamExportJobRows(job.getId(), null, null))
+        .thenReturn(Stream.of(row(0), row(1), row(2)));
+    job.cancel(NOW);
+
+    worker.run(job);
+
+    assertThat(job.getStatus()).isEqualTo(Status.CANCELLED);
+    assertThat(worker.getFile(job.getId())).doesNotExist();
+    assertThat(meterRegistry.counter(JOBS_METER, "result", "cancelled").count()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldStopAtCheckpointIfJobWasCancelledWhileRunning() {
+    when(jobRepository.findByIdForUpdate(job.getId()))
+        .thenReturn(Optional.of(job))
+        .thenAnswer(invocation -> {
+          // the user has cancelled the job since the last checkpoint
+          job.cancel(NOW);
+          return Optional.of(job);
+        });
+    when(inventoryItemRepository.streamExportJobRows(job.getId(), null, null))
+        .thenReturn(Stream.of(row(0), row(1), row(2)));
+
+    worker.run(job);
+
+    assertThat(job.getStatus()).isEqualTo(Status.CANCELLED);
+    assertThat(job.getRowCount()).isEqualTo(2);
+    verify(jobRepository, times(1)).save(job);
+    assertThat(worker.getFile(job.getId())).doesNotExist();
+  }
+
+  @Test
+  public void shouldRunQueuedJobs() {
+    stubJob();
+    InventoryExportJob queued = InventoryExportJob.newJob(job.getUserId(), job.getPairs(),
+        null, NOW);
+    queued.setId(job.getId());
+    when(jobRepository.findNextQueuedForUpdate()).thenReturn(singletonList(queued), emptyList());
+    when(jobRepository.save(queued)).thenReturn(queued);
+    when(inventoryItemRepository.streamExportJobRows(job.getId(), null, null))
+        .thenReturn(Stream.<Object[]>of(row(0)));
+
+    worker.poll();
+
+    assertThat(queued.getStatus()).isEqualTo(Status.RUNNING);
+    assertThat(queued.getLeaseExpiryDate()).isEqualTo(NOW.plusSeconds(LEASE_SECONDS));
+    assertThat(job.getStatus()).isEqualTo(Status.COMPLETED);
+  }
+
+  @Test
+  public void shouldRenewLeasesOfRunningJobs() {
+    InventoryExportJob queued = InventoryExportJob.newJob(job.getUserId(), job.getPairs(),
+        null, NOW);
+    queued.setId(job.getId());
+    when(jobRepository.findNextQueuedForUpdate()).thenReturn(singletonList(queued), emptyList());
+    when(jobRepository.save(queued)).thenReturn(queued);
+    // the job is handed to the pool but not run yet
+    ReflectionTestUtils.setField(worker, "executor", mock(Executor.class));
+
+    worker.poll();
+    worker.poll();
+
+    verify(jobRepository).renewLeases(singletonList(job.getId()), Status.RUNNING,
+        NOW.plusSeconds(LEASE_SECONDS));
+  }
+
+  @Test
+  public void shouldNotRenewLeasesIfNoJobIsRunning() {
+    worker.poll();
+
+    verify(jobRepository, never()).renewLeases(any(), any(), any());
+  }
+
+  @Test
+  public void shouldRemoveExpiredJobsWithTheirFiles() throws IOException {
+    Path file = Files.createFile(worker.getFile(job.getId()));
+    List<InventoryExportJob> expired = singletonList(job);
+    when(jobRepository.findByStatusInAndModifiedDateBefore(any(), any())).thenReturn(expired);
+
+    worker.poll();
+
+    assertThat(file).doesNotExist();
+    verify(jobRepository).deleteAll(expired);
+  }
+
+  private void stubJob() {
+    when(jobRepository.findByIdForUpdate(job.getId())).thenReturn(Optional.of(job));
+  }
+
+  private Object[] row(int index) {
+    return new Object[]{itemIds[index].toString(), "Facility", "model", "type", 1.5, "ref",
+        "Program", "serial-" + index, 2010, 2020, "FUNCTIONING", "John Doe",
+        "2017-05-08 10:00:00"};
+  }
+
+  private String line(int index) {
+    return "Facility,model,type,1.5,ref,Program,serial-" + index
+        + ",2010,2020,FUNCTIONING,John Doe,2017-05-08 10:00:00\r\n";
+  }
+
+  private String readFile() throws IOException {
+    try (InputStream input = new GZIPInputStream(
+        Files.newInputStream(worker.getFile(job.getId())))) {
+      return IOUtils.toString(input, UTF_8);
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.notifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Collections;
+import java.util.Map;
+import org.apache.commons.lang3.text.StrSubstitutor;
+import org.junit.Test;
+
+public class MessageTemplateTest {
+
+  private static final Map<String, String> VALUES = ImmutableMap.of(
+      "username", "admin",
+      "facilityName", "Comfort Health Clinic");
+
+  @Test
+  public void shouldReplacePlaceholders() {
+    assertThat(render("Dear ${username}, ${facilityName}: ${username}"))
+        .isEqualTo("Dear admin, Comfort Health Clinic: admin");
+  }
+
+  @Test
+  public void shouldRenderTemplateWithoutPlaceholders() {
+    assertThat(render("Hello")).isEqualTo("Hello");
+    assertThat(render("")).isEmpty();
+  }
+
+  @Test
+  public void shouldKeepPlaceholdersWithoutValue() {
+    assertThat(render("Dear ${username} at ${unknown}"))
+        .isEqualTo("Dear admin at ${unknown}");
+  }
+
+  @Test
+  public void shouldKeepEscapedAndUnclosedPlaceholders() {
+    assertThat(render("$${username} costs $5, ${username"))
+        .isEqualTo("${username} costs $5, ${username");
+  }
+
+  @Test
+  public void shouldNotReplacePlaceholdersInValues() {
+    assertThat(MessageTemplate.compile("Dear ${username}")
+        .render(Collections.singletonMap("username", "${facilityName}")))
+        .isEqualTo("Dear ${facilityName}");
+  }
+
+  @Test
+  public void shouldRenderLikeStrSubstitutor() {
+    String text = "Attention: ${equipmentType} \"${referenceName}\" at facility ${facilityName}"
+        + " is ${functionalStatus}.\n$${escaped} ${username}";
+
+    assertThat(render(text)).isEqualTo(new StrSubstitutor(VALUES).replace(text));
+  }
+
+  private String render(String text) {
+    return MessageTemplate.compile(text).render(VALUES);
+  }
+}
@@ -17,18 +17,22 @@ package org.openlmis.cce.service.notifier;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.any;
-import static org.mockito.Mockito.contains;
-import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_CONTENT;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_DIGEST_CONTENT;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_DIGEST_ITEM;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_DIGEST_SUBJECT;
 import static org.openlmis.cce.i18n.InventoryItemMessageKeys.EMAIL_NONFUNCTIONAL_CCE_SUBJECT;
 import static org.openlmis.cce.service.PermissionService.CCE_INVENTORY_EDIT;
+import static org.openlmis.cce.service.notifier.NotificationChannelDto.EMAIL;
 
 import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.text.MessageFormat;
 import java.time.ZonedDateTime;
 import java.time.chrono.Chronology;
@@ -45,6 +49,8 @@ import java.util.UUID;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -81,10 +87,15 @@ public class NonfunctionalCceNotifierTest {
       + "this device was made by user ${saveUser} at ${saveDate}.\n"
       + "Please login to view the list of CCE needing attention"
       + "at this facility. ${urlToViewCceList}";
+  private static final String DIGEST_SUBJECT =
+      "Attention: ${count} CCE items at facility ${facilityName} are not functional";
+  private static final String DIGEST_CONTENT = "Dear ${username}:\n${items}\n${urlToViewCceList}";
+  private static final String DIGEST_ITEM = "${referenceName} is ${functionalStatus}";
   private static final String TEST_KEY = "testKey";
   private static final String FACILITY_NAME = "some-facility";
   private static final String EQUIPMENT_TYPE = "eq-type";
   private static final String REFERENCE_NAME = "some-name";
+  private static final String OTHER_REFERENCE_NAME = "other-name";
   private static final FunctionalStatus FUNCTIONAL_STATUS = FunctionalStatus.AWAITING_REPAIR;
   private static final String LAST_MODIFIER_USERNAME = "lastmodifier";
   private static final String USERNAME_1 = "user1";
@@ -99,7 +110,7 @@ public class NonfunctionalCceNotifierTest {
   private FacilityReferenceDataService facilityReferenceDataService;
 
   @Mock
-  private NotificationService notificationService;
+  private NotificationOutbox notificationOutbox;
 
   @Mock
   private MessageService messageService;
@@ -119,6 +130,9 @@ public class NonfunctionalCceNotifierTest {
   @InjectMocks
   private NonfunctionalCceNotifier notifier;
 
+  @Captor
+  private ArgumentCaptor<NotificationDto> notificationCaptor;
+
   private UUID catalogItemId = UUID.randomUUID();
   private UUID facilityId = UUID.randomUUID();
   private UUID programId = UUID.randomUUID();
@@ -127,6 +141,7 @@ public class NonfunctionalCceNotifierTest {
   private UUID lastModifierId = UUID.randomUUID();
 
   private InventoryItemDto inventoryItem = mock(InventoryItemDto.class);
+  private InventoryItemDto otherInventoryItem = mock(InventoryItemDto.class);
   private CatalogItemDto catalogItemDto = mock(CatalogItemDto.class);
   private CatalogItem catalogItem = mock(CatalogItem.class);
   private UserDto user = mock(UserDto.class);
@@ -145,18 +160,27 @@ public class NonfunctionalCceNotifierTest {
     mockUsers(Collections.singletonList(user));
     mockMessages();
     ReflectionTestUtils.setField(notifier, "urlToViewCce", URL_TO_VIEW_CCE);
+
+    NotificationTemplates templates = new NotificationTemplates();
+    ReflectionTestUtils.setField(templates, "messageService", messageService);
+    ReflectionTestUtils.setField(notifier, "templates", templates);
+
+    NotificationRecipientCache recipientCache = new NotificationRecipientCache();
+    ReflectionTestUtils.setField(recipientCache, "meterRegistry", new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(recipientCache, "ttlSeconds", 60L);
+    ReflectionTestUtils.setField(recipientCache, "maxSize", 10L);
+    recipientCache.init();
+    ReflectionTestUtils.setField(notifier, "recipientCache", recipientCache);
   }
 
   @Test
   public void shouldNotifyWithCorrectSubject() {
     notifier.notify(inventoryItem);
 
-    verify(notificationService).notify(
-        eq(user),
-        eq(String.format("Attention: %s \"%s\" at facility %s on %s is %s",
+    assertThat(getScheduledEmail().getSubject())
+        .isEqualTo(String.format("Attention: %s \"%s\" at facility %s on %s is %s",
             EQUIPMENT_TYPE, REFERENCE_NAME, FACILITY_NAME,
-            getDateTimeFormatter().format(MODIFIED_DATE), FUNCTIONAL_STATUS)),
-        any());
+            getDateTimeFormatter().format(MODIFIED_DATE), FUNCTIONAL_STATUS));
   }
 
   @Test
@@ -165,10 +189,8 @@ public class NonfunctionalCceNotifierTest {
 
     String urlToViewCCe = MessageFormat.format(
         URL_TO_VIEW_CCE, inventoryItem.getFacilityId(), inventoryItem.getProgramId(), "true");
-    verify(notificationService).notify(
-        eq(user),
-        any(),
-        eq(String.format("Dear %s:\n"
+    assertThat(getScheduledEmail().getBody())
+        .isEqualTo(String.format("Dear %s:\n"
                 + "This email is to inform you that the %s \"%s\" at %s is has been marked as %s"
                 + " with the reason \"%s\". The last status update for this device was made by "
                 + "user %s at %s.\n"
@@ -176,7 +198,16 @@ public class NonfunctionalCceNotifierTest {
                 + "at this facility. %s",
             USERNAME_1, EQUIPMENT_TYPE, REFERENCE_NAME, FACILITY_NAME, FUNCTIONAL_STATUS,
             REASON_NOT_WORKING_OR_NOT_IN_USE, LAST_MODIFIER_USERNAME,
-            getDateTimeFormatter().format(MODIFIED_DATE), urlToViewCCe)));
+            getDateTimeFormatter().format(MODIFIED_DATE), urlToViewCCe));
+  }
+
+  @Test
+  public void shouldLocalizeTemplatesOnce() {
+    notifier.notify(inventoryItem);
+    notifier.notify(inventoryItem);
+
+    verify(messageService).localize(new Message(EMAIL_NONFUNCTIONAL_CCE_SUBJECT));
+    verify(messageService).localize(new Message(EMAIL_NONFUNCTIONAL_CCE_CONTENT));
   }
 
   @Test
@@ -185,7 +216,7 @@ public class NonfunctionalCceNotifierTest {
 
     notifier.notify(inventoryItem);
 
-    verify(notificationService, never()).notify(any(), any(), any());
+    verify(notificationOutbox, never()).addNotification(any());
   }
 
   @Test
@@ -197,7 +228,7 @@ public class NonfunctionalCceNotifierTest {
     verify(supervisoryNodeReferenceDataService).findSupervisoryNode(facilityId, programId);
     verify(userReferenceDataService).findByRight(rightId, programId, supervisoryNodeId);
     verify(userReferenceDataService).findByRight(rightId, programId, null);
-    verifyZeroInteractions(notificationService);
+    verifyZeroInteractions(notificationOutbox);
   }
 
   @Test
@@ -207,10 +238,48 @@ public class NonfunctionalCceNotifierTest {
 
     notifier.notify(inventoryItem);
 
-    verify(notificationService)
-        .notify(any(UserDto.class), any(), contains(USERNAME_1));
-    verify(notificationService)
-        .notify(any(UserDto.class), any(), contains(USERNAME_2));
+    verify(notificationOutbox, times(2)).addNotification(notificationCaptor.capture());
+    assertThat(notificationCaptor.getAllValues())
+        .extracting(notification -> notification.getMessages().get(EMAIL.toString()).getBody())
+        .anySatisfy(body -> assertThat(body).contains(USERNAME_1))
+        .anySatisfy(body -> assertThat(body).contains(USERNAME_2));
+  }
+
+  @Test
+  public void shouldResolveRecipientsOnceForFacilityAndProgram() {
+    notifier.notify(inventoryItem);
+    notifier.notify(inventoryItem);
+
+    verify(supervisoryNodeReferenceDataService).findSupervisoryNode(facilityId, programId);
+    verify(rightReferenceDataService).findRight(CCE_INVENTORY_EDIT);
+    verify(userReferenceDataService).findByRight(rightId, programId, null);
+    verify(notificationOutbox, times(2)).addNotification(any());
+  }
+
+  @Test
+  public void shouldNotifyWithDigestAboutManyItems() {
+    mockOtherInventory();
+    mockDigestMessages();
+
+    notifier.notify(Arrays.asList(inventoryItem, otherInventoryItem));
+
+    MessageDto email = getScheduledEmail();
+    assertThat(email.getSubject())
+        .isEqualTo("Attention: 2 CCE items at facility " + FACILITY_NAME + " are not functional");
+    assertThat(email.getBody())
+        .startsWith("Dear " + USERNAME_1)
+        .contains(REFERENCE_NAME + " is " + FUNCTIONAL_STATUS)
+        .contains(OTHER_REFERENCE_NAME + " is " + FunctionalStatus.UNSERVICEABLE)
+        .endsWith(MessageFormat.format(URL_TO_VIEW_CCE, facilityId, programId, "true"));
+  }
+
+  @Test
+  public void shouldNotifyOnlyAboutLatestChangeOfItem() {
+    when(inventoryItem.getId()).thenReturn(UUID.randomUUID());
+
+    notifier.notify(Arrays.asList(inventoryItem, inventoryItem));
+
+    assertThat(getScheduledEmail().getSubject()).contains(REFERENCE_NAME);
   }
 
   @Test
@@ -258,6 +327,11 @@ public class NonfunctionalCceNotifierTest {
         .contains(user, user2);
   }
 
+  private MessageDto getScheduledEmail() {
+    verify(notificationOutbox).addNotification(notificationCaptor.capture());
+    return notificationCaptor.getValue().getMessages().get(EMAIL.toString());
+  }
+
   private void mockInventory() {
     stubEquipmentType();
     when(inventoryItem.getFacilityId()).thenReturn(facilityId);
@@ -271,6 +345,16 @@ public class NonfunctionalCceNotifierTest {
     when(inventoryItem.getReferenceName()).thenReturn(REFERENCE_NAME);
   }
 
+  private void mockOtherInventory() {
+    when(inventoryItem.getId()).thenReturn(UUID.randomUUID());
+    when(otherInventoryItem.getId()).thenReturn(UUID.randomUUID());
+    when(otherInventoryItem.getCatalogItem()).thenReturn(catalogItemDto);
+    when(otherInventoryItem.getFunctionalStatus()).thenReturn(FunctionalStatus.UNSERVICEABLE);
+    when(otherInventoryItem.getLastModifier()).thenReturn(lastModifierObj);
+    when(otherInventoryItem.getModifiedDate()).thenReturn(MODIFIED_DATE);
+    when(otherInventoryItem.getReferenceName()).thenReturn(OTHER_REFERENCE_NAME);
+  }
+
   private void stubEquipmentType() {
     when(inventoryItem.getCatalogItem()).thenReturn(catalogItemDto);
     when(catalogItemDto.getId()).thenReturn(catalogItemId);
@@ -320,6 +404,15 @@ public class NonfunctionalCceNotifierTest {
         .thenReturn(localizedMessage);
   }
 
+  private void mockDigestMessages() {
+    when(messageService.localize(new Message(EMAIL_NONFUNCTIONAL_CCE_DIGEST_SUBJECT)))
+        .thenReturn(new Message(TEST_KEY).new LocalizedMessage(DIGEST_SUBJECT));
+    when(messageService.localize(new Message(EMAIL_NONFUNCTIONAL_CCE_DIGEST_CONTENT)))
+        .thenReturn(new Message(TEST_KEY).new LocalizedMessage(DIGEST_CONTENT));
+    when(messageService.localize(new Message(EMAIL_NONFUNCTIONAL_CCE_DIGEST_ITEM)))
+        .thenReturn(new Message(TEST_KEY).new LocalizedMessage(DIGEST_ITEM));
+  }
+
   private DateTimeFormatter getDateTimeFormatter() {
     Locale locale = LocaleContextHolder.getLocale();
 
@@ -0,0 +1,149 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.notifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.time.Clock;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Locale;
+import java.util.UUID;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.cce.domain.NotificationOutboxEntry;
+import org.openlmis.cce.domain.NotificationOutboxEntry.Status;
+import org.openlmis.cce.domain.NotificationOutboxEntry.Type;
+import org.openlmis.cce.dto.InventoryItemDto;
+import org.openlmis.cce.repository.NotificationOutboxRepository;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NotificationOutboxTest {
+
+  private static final ZonedDateTime NOW = ZonedDateTime.of(2017, 5, 8, 10, 0, 0, 0,
+      ZoneOffset.UTC);
+  private static final long COALESCE_WINDOW_SECONDS = 120;
+
+  @Mock
+  private NotificationOutboxRepository repository;
+
+  @InjectMocks
+  private NotificationOutbox outbox;
+
+  @Captor
+  private ArgumentCaptor<NotificationOutboxEntry> entryCaptor;
+
+  private ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(outbox, "objectMapper", objectMapper);
+    ReflectionTestUtils.setField(outbox, "clock", Clock.fixed(NOW.toInstant(), ZoneOffset.UTC));
+    ReflectionTestUtils.setField(outbox, "coalesceWindowSeconds", COALESCE_WINDOW_SECONDS);
+    LocaleContextHolder.setLocale(Locale.FRENCH);
+  }
+
+  @After
+  public void tearDown() {
+    LocaleContextHolder.resetLocaleContext();
+  }
+
+  @Test
+  public void shouldAddNotification() throws Exception {
+    NotificationDto notification = NotificationDto.email(UUID.randomUUID(), "subject", "body");
+
+    outbox.addNotification(notification);
+
+    NotificationOutboxEntry entry = getSavedEntry();
+    assertThat(entry.getType()).isEqualTo(Type.NOTIFICATION);
+    assertThat(objectMapper.readValue(entry.getPayload(), NotificationDto.class))
+        .isEqualTo(notification);
+  }
+
+  @Test
+  public void shouldAddNonfunctionalCce() throws Exception {
+    outbox.addNonfunctionalCce(newInventoryItem(UUID.randomUUID(), UUID.randomUUID()));
+
+    NotificationOutboxEntry entry = getSavedEntry();
+    assertThat(entry.getType()).isEqualTo(Type.NONFUNCTIONAL_CCE);
+    assertThat(objectMapper.readTree(entry.getPayload()).get("referenceName").asText())
+        .isEqualTo("fridge");
+  }
+
+  @Test
+  public void shouldGroupNonfunctionalCceByFacilityAndProgram() {
+    UUID facilityId = UUID.randomUUID();
+    UUID programId = UUID.randomUUID();
+
+    outbox.addNonfunctionalCce(newInventoryItem(facilityId, programId));
+
+    assertThat(getSavedEntry().getGroupKey()).isEqualTo(facilityId + "/" + programId);
+  }
+
+  @Test
+  public void shouldDelayNonfunctionalCceByCoalesceWindow() {
+    outbox.addNonfunctionalCce(newInventoryItem(UUID.randomUUID(), UUID.randomUUID()));
+
+    NotificationOutboxEntry entry = getSavedEntry();
+    assertThat(entry.getCreatedDate()).isEqualTo(NOW);
+    assertThat(entry.getNextAttemptDate()).isEqualTo(NOW.plusSeconds(COALESCE_WINDOW_SECONDS));
+  }
+
+  @Test
+  public void shouldMakeEntryDueImmediately() {
+    outbox.addNotification(NotificationDto.email(UUID.randomUUID(), "subject", "body"));
+
+    NotificationOutboxEntry entry = getSavedEntry();
+    assertThat(entry.getStatus()).isEqualTo(Status.PENDING);
+    assertThat(entry.getAttempts()).isZero();
+    assertThat(entry.getCreatedDate()).isEqualTo(NOW);
+    assertThat(entry.getNextAttemptDate()).isEqualTo(NOW);
+    assertThat(entry.getGroupKey()).isNull();
+  }
+
+  @Test
+  public void shouldKeepCurrentLocale() {
+    outbox.addNotification(NotificationDto.email(UUID.randomUUID(), "subject", "body"));
+
+    assertThat(getSavedEntry().getLocale()).isEqualTo("fr");
+  }
+
+  private InventoryItemDto newInventoryItem(UUID facilityId, UUID programId) {
+    InventoryItemDto inventoryItem = new InventoryItemDto();
+    inventoryItem.setReferenceName("fridge");
+    inventoryItem.setFacilityId(facilityId);
+    inventoryItem.setProgramId(programId);
+
+    return inventoryItem;
+  }
+
+  private NotificationOutboxEntry getSavedEntry() {
+    verify(repository).save(entryCaptor.capture());
+    return entryCaptor.getValue();
+  }
+}
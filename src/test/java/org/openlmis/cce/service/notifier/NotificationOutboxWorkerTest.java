@@ -0,0 +1,495 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.notifier;
+
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.openlmis.cce.service.notifier.NotificationOutboxWorker.OUTBOX_METER;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.cce.domain.NotificationOutboxEntry;
+import org.openlmis.cce.domain.NotificationOutboxEntry.Status;
+import org.openlmis.cce.domain.NotificationOutboxEntry.Type;
+import org.openlmis.cce.dto.InventoryItemDto;
+import org.openlmis.cce.repository.NotificationOutboxRepository;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+@RunWith(MockitoJUnitRunner.class)
+@SuppressWarnings("PMD.TooManyMethods")
+public class NotificationOutboxWorkerTest {
+
+  private static final ZonedDateTime NOW = ZonedDateTime.of(2017, 5, 8, 10, 0, 0, 0,
+      ZoneOffset.UTC);
+  private static final long LEASE_MILLIS = 60000;
+  private static final long BACKOFF_INITIAL_MILLIS = 1000;
+  private static final long BACKOFF_MAX_MILLIS = 3000;
+  private static final int MAX_ATTEMPTS = 3;
+  private static final long RATE_LIMIT_WINDOW_SECONDS = 600;
+  private static final String GROUP_KEY = "facility/program";
+
+  @Mock
+  private NotificationOutboxRepository repository;
+
+  @Mock
+  private NonfunctionalCceNotifier nonfunctionalCceNotifier;
+
+  @Mock
+  private NotificationService notificationService;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  @InjectMocks
+  private NotificationOutboxWorker worker;
+
+  private Clock clock = Clock.fixed(NOW.toInstant(), ZoneOffset.UTC);
+  private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private NotificationRateLimiter rateLimiter = new NotificationRateLimiter();
+  private ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+  private NotificationDto notification = NotificationDto.email(UUID.randomUUID(), "sub", "body");
+  private String notificationJson;
+  private NotificationOutboxEntry entry;
+
+  @Before
+  public void setUp() throws Exception {
+    ReflectionTestUtils.setField(worker, "objectMapper", objectMapper);
+    ReflectionTestUtils.setField(worker, "clock", clock);
+    ReflectionTestUtils.setField(worker, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(worker, "enabled", false);
+    ReflectionTestUtils.setField(worker, "batchSize", 10);
+    ReflectionTestUtils.setField(worker, "poolSize", 1);
+    ReflectionTestUtils.setField(worker, "leaseMillis", LEASE_MILLIS);
+    ReflectionTestUtils.setField(worker, "maxAttempts", MAX_ATTEMPTS);
+    ReflectionTestUtils.setField(worker, "backoffInitialMillis", BACKOFF_INITIAL_MILLIS);
+    ReflectionTestUtils.setField(worker, "backoffMaxMillis", BACKOFF_MAX_MILLIS);
+    worker.init();
+    ReflectionTestUtils.setField(worker, "executor", (Executor) Runnable::run);
+
+    ReflectionTestUtils.setField(rateLimiter, "clock", clock);
+    ReflectionTestUtils.setField(rateLimiter, "maxPerRecipient", 0);
+    ReflectionTestUtils.setField(rateLimiter, "windowSeconds", RATE_LIMIT_WINDOW_SECONDS);
+    rateLimiter.init();
+    ReflectionTestUtils.setField(worker, "rateLimiter", rateLimiter);
+
+    when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+    notificationJson = objectMapper.writeValueAsString(notification);
+  }
+
+  @After
+  public void tearDown() {
+    worker.shutdown();
+  }
+
+  @Test
+  public void shouldDeleteEntriesAfterSendingNotifications() {
+    entry = newDueEntry(Type.NOTIFICATION, notificationJson);
+    when(notificationService.sendAll(singletonMap(entry.getId(), notification)))
+        .thenReturn(emptySet());
+
+    assertThat(worker.drain()).isEqualTo(1);
+
+    verify(repository).deleteByIdIn(singletonList(entry.getId()));
+    assertThat(meterRegistry.counter(OUTBOX_METER, "result", "sent").count()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldSendNotificationsAsOneBatch() {
+    NotificationOutboxEntry first = newEntry(Type.NOTIFICATION, notificationJson);
+    NotificationOutboxEntry second = newEntry(Type.NOTIFICATION, notificationJson);
+    stubDue(first, second);
+    when(notificationService.sendAll(anyMap())).thenReturn(emptySet());
+
+    worker.drain();
+
+    verify(notificationService).sendAll(argThat(notifications -> notifications.size() == 2));
+    verify(repository).deleteByIdIn(Arrays.asList(first.getId(), second.getId()));
+  }
+
+  @Test
+  public void shouldRetryOnlyNotificationsThatFailed() {
+    NotificationOutboxEntry sent = newEntry(Type.NOTIFICATION, notificationJson);
+    NotificationOutboxEntry failed = stored(newEntry(Type.NOTIFICATION, notificationJson));
+    stubDue(sent, failed);
+    when(notificationService.sendAll(anyMap())).thenReturn(singleton(failed.getId()));
+
+    worker.drain();
+
+    verify(repository).deleteByIdIn(singletonList(sent.getId()));
+    verify(repository).save(failed);
+    assertThat(sent.getAttempts()).isZero();
+    assertThat(failed.getAttempts()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldDeferNotificationsOverRecipientLimit() {
+    ReflectionTestUtils.setField(rateLimiter, "maxPerRecipient", 1);
+    NotificationOutboxEntry sent = newEntry(Type.NOTIFICATION, notificationJson);
+    NotificationOutboxEntry limited = newEntry(Type.NOTIFICATION, notificationJson);
+    stubDue(sent, limited);
+    when(repository.findAllById(singleton(limited.getId()))).thenReturn(singletonList(limited));
+    when(notificationService.sendAll(anyMap())).thenReturn(emptySet());
+
+    worker.drain();
+
+    verify(notificationService).sendAll(singletonMap(sent.getId(), notification));
+    verify(repository).deleteByIdIn(singletonList(sent.getId()));
+    assertThat(limited.getAttempts()).isZero();
+    assertThat(limited.getNextAttemptDate())
+        .isEqualTo(NOW.plusSeconds(RATE_LIMIT_WINDOW_SECONDS));
+    assertThat(meterRegistry.counter(OUTBOX_METER, "result", "deferred").count()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldDeferNotificationsOnlyUntilWindowOfRecipientEnds() {
+    ReflectionTestUtils.setField(rateLimiter, "maxPerRecipient", 1);
+    ReflectionTestUtils.setField(rateLimiter, "clock",
+        Clock.fixed(NOW.minusSeconds(100).toInstant(), ZoneOffset.UTC));
+    rateLimiter.tryAcquire(notification.getUserId());
+    ReflectionTestUtils.setField(rateLimiter, "clock", clock);
+    entry = newDueEntry(Type.NOTIFICATION, notificationJson);
+    when(repository.findAllById(singleton(entry.getId()))).thenReturn(singletonList(entry));
+
+    worker.drain();
+
+    verify(notificationService, never()).sendAll(any());
+    assertThat(entry.getNextAttemptDate())
+        .isEqualTo(NOW.plusSeconds(RATE_LIMIT_WINDOW_SECONDS - 100));
+  }
+
+  @Test
+  public void shouldNotCountFailedNotificationsAgainstRecipientLimit() {
+    ReflectionTestUtils.setField(rateLimiter, "maxPerRecipient", 1);
+    entry = stored(newDueEntry(Type.NOTIFICATION, notificationJson));
+    stubAllFailed();
+
+    worker.drain();
+
+    assertThat(entry.getAttempts()).isEqualTo(1);
+    assertThat(rateLimiter.tryAcquire(notification.getUserId())).isTrue();
+  }
+
+  @Test
+  public void shouldNotifyAboutWholeGroupAtOnce() {
+    NotificationOutboxEntry first = newGroupedEntry("{\"referenceName\":\"fridge\"}");
+    NotificationOutboxEntry notDueYet = newGroupedEntry("{\"referenceName\":\"freezer\"}");
+    stubDue(first);
+    List<NotificationOutboxEntry> group = Arrays.asList(first, notDueYet);
+    when(repository.findPendingGroupForUpdate(Type.NONFUNCTIONAL_CCE.name(), GROUP_KEY))
+        .thenReturn(group);
+
+    worker.drain();
+
+    verify(nonfunctionalCceNotifier).notify(argThat((List<InventoryItemDto> items) ->
+        items.size() == 2 && "freezer".equals(items.get(1).getReferenceName())));
+    verify(repository).deleteByIdIn(Arrays.asList(first.getId(), notDueYet.getId()));
+    assertThat(notDueYet.getNextAttemptDate()).isEqualTo(NOW.plusNanos(LEASE_MILLIS * 1_000_000));
+  }
+
+  @Test
+  public void shouldNotifyAboutGroupOutsideOfLockingTransaction() {
+    entry = newDueEntry(Type.NONFUNCTIONAL_CCE, "{}");
+    ReflectionTestUtils.setField(entry, "groupKey", GROUP_KEY);
+    when(repository.findPendingGroupForUpdate(Type.NONFUNCTIONAL_CCE.name(), GROUP_KEY))
+        .thenReturn(singletonList(entry));
+
+    worker.drain();
+
+    InOrder inOrder = inOrder(repository, transactionManager, nonfunctionalCceNotifier);
+    inOrder.verify(repository).findPendingGroupForUpdate(Type.NONFUNCTIONAL_CCE.name(), GROUP_KEY);
+    inOrder.verify(transactionManager).commit(any());
+    inOrder.verify(transactionManager).getTransaction(any());
+    inOrder.verify(nonfunctionalCceNotifier).notify(anyList());
+    inOrder.verify(repository).deleteByIdIn(singletonList(entry.getId()));
+    inOrder.verify(transactionManager).commit(any());
+  }
+
+  @Test
+  public void shouldHandleGroupOnceForClaimedEntriesOfSameGroup() {
+    NotificationOutboxEntry first = newGroupedEntry("{}");
+    NotificationOutboxEntry second = newGroupedEntry("{}");
+    stubDue(first, second);
+    when(repository.findPendingGroupForUpdate(Type.NONFUNCTIONAL_CCE.name(), GROUP_KEY))
+        .thenReturn(Arrays.asList(first, second));
+
+    worker.drain();
+
+    verify(nonfunctionalCceNotifier).notify(anyList());
+    verify(repository, never()).findById(second.getId());
+  }
+
+  @Test
+  public void shouldSkipGroupHandledByAnotherWorker() {
+    entry = newDueEntry(Type.NONFUNCTIONAL_CCE, "{}");
+    ReflectionTestUtils.setField(entry, "groupKey", GROUP_KEY);
+    when(repository.findPendingGroupForUpdate(Type.NONFUNCTIONAL_CCE.name(), GROUP_KEY))
+        .thenReturn(Collections.emptyList());
+
+    worker.drain();
+
+    verify(nonfunctionalCceNotifier, never()).notify(anyList());
+    verify(repository, never()).deleteByIdIn(any());
+  }
+
+  @Test
+  public void shouldSkipGroupTakenOverByAnotherWorker() {
+    entry = newDueEntry(Type.NONFUNCTIONAL_CCE, "{}");
+    ReflectionTestUtils.setField(entry, "groupKey", GROUP_KEY);
+    NotificationOutboxEntry leasedByOther = newGroupedEntry("{}");
+    leasedByOther.setId(entry.getId());
+    leasedByOther.lease(NOW.plusMinutes(5));
+    when(repository.findPendingGroupForUpdate(Type.NONFUNCTIONAL_CCE.name(), GROUP_KEY))
+        .thenReturn(singletonList(leasedByOther));
+
+    worker.drain();
+
+    verify(nonfunctionalCceNotifier, never()).notify(anyList());
+    verify(repository, never()).deleteByIdIn(any());
+    assertThat(leasedByOther.getNextAttemptDate()).isEqualTo(NOW.plusMinutes(5));
+  }
+
+  @Test
+  public void shouldLeaseClaimedEntries() {
+    entry = newDueEntry(Type.NOTIFICATION, notificationJson);
+    when(notificationService.sendAll(anyMap())).thenReturn(emptySet());
+
+    worker.drain();
+
+    verify(repository).saveAll(singletonList(entry));
+    assertThat(entry.getNextAttemptDate()).isEqualTo(NOW.plusNanos(LEASE_MILLIS * 1_000_000));
+  }
+
+  @Test
+  public void shouldNotifyAboutNonfunctionalCce() {
+    entry = newDueEntry(Type.NONFUNCTIONAL_CCE, "{\"referenceName\":\"fridge\"}");
+
+    worker.drain();
+
+    verify(nonfunctionalCceNotifier).notify(argThat((List<InventoryItemDto> items) ->
+        items.size() == 1 && "fridge".equals(items.get(0).getReferenceName())));
+    verify(repository).deleteByIdIn(singletonList(entry.getId()));
+    assertThat(meterRegistry.counter(OUTBOX_METER, "result", "handled").count()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldHandleEntryInItsLocale() {
+    entry = newDueEntry(Type.NONFUNCTIONAL_CCE, "{}");
+    ReflectionTestUtils.setField(entry, "locale", "fr");
+    Locale[] used = new Locale[1];
+    doAnswer(invocation -> {
+      used[0] = LocaleContextHolder.getLocale();
+      return null;
+    }).when(nonfunctionalCceNotifier).notify(anyList());
+
+    worker.drain();
+
+    assertThat(used[0]).isEqualTo(Locale.FRENCH);
+    assertThat(LocaleContextHolder.getLocale()).isNotEqualTo(Locale.FRENCH);
+  }
+
+  @Test
+  public void shouldRetryWhenNotificationFails() {
+    entry = stored(newDueEntry(Type.NOTIFICATION, notificationJson));
+    stubAllFailed();
+
+    worker.drain();
+
+    verify(repository, never()).deleteByIdIn(any());
+    verify(repository).save(entry);
+    assertThat(entry.getStatus()).isEqualTo(Status.PENDING);
+    assertThat(entry.getAttempts()).isEqualTo(1);
+    assertThat(entry.getLastError()).isNotBlank();
+    assertThat(entry.getNextAttemptDate())
+        .isEqualTo(NOW.plusNanos(BACKOFF_INITIAL_MILLIS * 1_000_000));
+    assertThat(meterRegistry.counter(OUTBOX_METER, "result", "retried").count()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldRetryWhenHandlingFails() {
+    entry = stored(newDueEntry(Type.NONFUNCTIONAL_CCE, "{}"));
+    doThrow(new IllegalStateException("referencedata is down"))
+        .when(nonfunctionalCceNotifier).notify(anyList());
+
+    worker.drain();
+
+    verify(repository, never()).deleteByIdIn(any());
+    verify(transactionManager).rollback(any());
+    assertThat(entry.getAttempts()).isEqualTo(1);
+    assertThat(entry.getLastError()).contains("referencedata is down");
+  }
+
+  @Test
+  public void shouldRetryWholeGroupWhenHandlingFails() {
+    NotificationOutboxEntry first = stored(newGroupedEntry("{}"));
+    NotificationOutboxEntry notDueYet = stored(newGroupedEntry("{}"));
+    stubDue(first);
+    when(repository.findPendingGroupForUpdate(Type.NONFUNCTIONAL_CCE.name(), GROUP_KEY))
+        .thenReturn(Arrays.asList(first, notDueYet));
+    doThrow(new IllegalStateException("referencedata is down"))
+        .when(nonfunctionalCceNotifier).notify(anyList());
+
+    worker.drain();
+
+    verify(repository, never()).deleteByIdIn(any());
+    assertThat(first.getAttempts()).isEqualTo(1);
+    assertThat(notDueYet.getAttempts()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldRetryWhenNotificationCannotBeRead() {
+    entry = stored(newDueEntry(Type.NOTIFICATION, "not a notification"));
+
+    worker.drain();
+
+    verify(notificationService, never()).sendAll(any());
+    assertThat(entry.getAttempts()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldIncreaseBackoffUpToMaximum() {
+    entry = stored(newDueEntry(Type.NOTIFICATION, notificationJson));
+    ReflectionTestUtils.setField(worker, "maxAttempts", 10);
+    ReflectionTestUtils.setField(entry, "attempts", 1);
+    stubAllFailed();
+
+    worker.drain();
+
+    assertThat(entry.getNextAttemptDate())
+        .isEqualTo(NOW.plusNanos(2 * BACKOFF_INITIAL_MILLIS * 1_000_000));
+
+    ReflectionTestUtils.setField(entry, "attempts", 5);
+
+    worker.drain();
+
+    assertThat(entry.getNextAttemptDate())
+        .isEqualTo(NOW.plusNanos(BACKOFF_MAX_MILLIS * 1_000_000));
+  }
+
+  @Test
+  public void shouldGiveUpAfterMaxAttempts() {
+    entry = stored(newDueEntry(Type.NOTIFICATION, notificationJson));
+    ReflectionTestUtils.setField(entry, "attempts", MAX_ATTEMPTS - 1);
+    stubAllFailed();
+
+    worker.drain();
+
+    assertThat(entry.getStatus()).isEqualTo(Status.FAILED);
+    assertThat(entry.getAttempts()).isEqualTo(MAX_ATTEMPTS);
+    assertThat(meterRegistry.counter(OUTBOX_METER, "result", "failed").count()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldKeepPollingWhileBatchesAreFull() {
+    ReflectionTestUtils.setField(worker, "batchSize", 1);
+    entry = newEntry(Type.NOTIFICATION, notificationJson);
+    when(notificationService.sendAll(anyMap())).thenReturn(emptySet());
+    when(repository.findDueForUpdate(any(), anyInt()))
+        .thenReturn(singletonList(entry))
+        .thenReturn(Collections.emptyList());
+
+    worker.poll();
+
+    verify(repository, times(2)).findDueForUpdate(NOW, 1);
+  }
+
+  @Test
+  public void pollShouldNotThrowWhenOutboxIsUnavailable() {
+    when(repository.findDueForUpdate(any(), anyInt()))
+        .thenThrow(new IllegalStateException("database is down"));
+
+    worker.poll();
+
+    verify(notificationService, never()).sendAll(any());
+  }
+
+  private NotificationOutboxEntry newEntry(Type type, String payload) {
+    NotificationOutboxEntry newEntry = NotificationOutboxEntry.newEntry(type, payload, null, NOW);
+    newEntry.setId(UUID.randomUUID());
+
+    return newEntry;
+  }
+
+  private NotificationOutboxEntry newGroupedEntry(String payload) {
+    NotificationOutboxEntry newEntry = NotificationOutboxEntry.newGroupedEntry(
+        Type.NONFUNCTIONAL_CCE, GROUP_KEY, payload, null, NOW, NOW);
+    newEntry.setId(UUID.randomUUID());
+
+    return newEntry;
+  }
+
+  private NotificationOutboxEntry newDueEntry(Type type, String payload) {
+    NotificationOutboxEntry newEntry = newEntry(type, payload);
+    stubDue(newEntry);
+
+    return newEntry;
+  }
+
+  private void stubDue(NotificationOutboxEntry... entries) {
+    when(repository.findDueForUpdate(NOW, 10)).thenReturn(Arrays.asList(entries));
+  }
+
+  private NotificationOutboxEntry stored(NotificationOutboxEntry storedEntry) {
+    when(repository.findById(storedEntry.getId())).thenReturn(Optional.of(storedEntry));
+
+    return storedEntry;
+  }
+
+  private void stubAllFailed() {
+    when(notificationService.sendAll(anyMap()))
+        .thenAnswer(invocation -> new HashSet<>(invocation.<Map<UUID, ?>>getArgument(0).keySet()));
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.notifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class NotificationRateLimiterTest {
+
+  private NotificationRateLimiter rateLimiter = new NotificationRateLimiter();
+
+  private UUID userId = UUID.randomUUID();
+
+  @Before
+  public void setUp() {
+    setTime(0);
+    ReflectionTestUtils.setField(rateLimiter, "maxPerRecipient", 2);
+    ReflectionTestUtils.setField(rateLimiter, "windowSeconds", 60L);
+    rateLimiter.init();
+  }
+
+  @Test
+  public void shouldAllowNotificationsUpToLimit() {
+    assertThat(rateLimiter.tryAcquire(userId)).isTrue();
+    assertThat(rateLimiter.tryAcquire(userId)).isTrue();
+    assertThat(rateLimiter.tryAcquire(userId)).isFalse();
+  }
+
+  @Test
+  public void shouldCountNotificationsPerUser() {
+    rateLimiter.tryAcquire(userId);
+    rateLimiter.tryAcquire(userId);
+
+    assertThat(rateLimiter.tryAcquire(UUID.randomUUID())).isTrue();
+  }
+
+  @Test
+  public void shouldAllowAllNotificationsIfLimitIsDisabled() {
+    ReflectionTestUtils.setField(rateLimiter, "maxPerRecipient", 0);
+
+    for (int i = 0; i < 10; ++i) {
+      assertThat(rateLimiter.tryAcquire(userId)).isTrue();
+    }
+  }
+
+  @Test
+  public void shouldAllowNotificationAfterSlotIsReleased() {
+    rateLimiter.tryAcquire(userId);
+    rateLimiter.tryAcquire(userId);
+    rateLimiter.tryAcquire(userId);
+
+    rateLimiter.release(userId);
+
+    assertThat(rateLimiter.tryAcquire(userId)).isTrue();
+    assertThat(rateLimiter.tryAcquire(userId)).isFalse();
+  }
+
+  @Test
+  public void shouldReturnSecondsRemainingInWindow() {
+    rateLimiter.tryAcquire(userId);
+    setTime(45_500);
+
+    assertThat(rateLimiter.getRemainingSeconds(userId)).isEqualTo(15);
+    assertThat(rateLimiter.getRemainingSeconds(UUID.randomUUID())).isZero();
+  }
+
+  @Test
+  public void shouldStartNewWindowAfterPreviousOneEnds() {
+    rateLimiter.tryAcquire(userId);
+    rateLimiter.tryAcquire(userId);
+    setTime(60_000);
+
+    assertThat(rateLimiter.tryAcquire(userId)).isTrue();
+    assertThat(rateLimiter.getRemainingSeconds(userId)).isEqualTo(60);
+  }
+
+  private void setTime(long millis) {
+    ReflectionTestUtils.setField(rateLimiter, "clock",
+        Clock.fixed(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.notifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.openlmis.cce.service.notifier.NotificationRecipientCache.CACHE_NAME;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.openlmis.cce.dto.UserDto;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class NotificationRecipientCacheTest {
+
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  private NotificationRecipientCache cache = new NotificationRecipientCache();
+  private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private AtomicInteger loads = new AtomicInteger();
+
+  private UUID facilityId = UUID.randomUUID();
+  private UUID otherFacilityId = UUID.randomUUID();
+  private UUID programId = UUID.randomUUID();
+  private UserDto user = new UserDto();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+    ReflectionTestUtils.setField(cache, "maxSize", 10L);
+    cache.init();
+  }
+
+  @Test
+  public void shouldResolveRecipientsOncePerFacilityAndProgram() {
+    Collection<UserDto> first = get(facilityId, programId);
+    Collection<UserDto> second = get(facilityId, programId);
+
+    assertThat(first).containsExactly(user);
+    assertThat(second).isSameAs(first);
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldResolveRecipientsSeparatelyForEachFacility() {
+    get(facilityId, programId);
+    get(otherFacilityId, programId);
+
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldInvalidateRecipientsOfFacility() {
+    get(facilityId, programId);
+    get(otherFacilityId, programId);
+
+    cache.invalidate(facilityId, null);
+    get(facilityId, programId);
+    get(otherFacilityId, programId);
+
+    assertThat(loads.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldInvalidateAllRecipients() {
+    get(facilityId, programId);
+    get(otherFacilityId, programId);
+
+    cache.invalidate(null, null);
+    get(facilityId, programId);
+    get(otherFacilityId, programId);
+
+    assertThat(loads.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void shouldNotCacheFailedResolution() {
+    try {
+      cache.get(facilityId, programId, () -> {
+        throw new IllegalStateException("referencedata is down");
+      });
+    } catch (IllegalStateException ex) {
+      assertThat(ex).hasMessage("referencedata is down");
+    }
+
+    get(facilityId, programId);
+
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldReturnUnmodifiableRecipients() {
+    exception.expect(UnsupportedOperationException.class);
+
+    get(facilityId, programId).add(new UserDto());
+  }
+
+  @Test
+  public void shouldExposeCacheMetrics() {
+    get(facilityId, programId);
+    get(facilityId, programId);
+
+    assertThat(meterRegistry.get("cache.gets").tag("cache", CACHE_NAME).tag("result", "hit")
+        .functionCounter().count()).isEqualTo(1);
+  }
+
+  private Collection<UserDto> get(UUID facility, UUID program) {
+    return cache.get(facility, program, () -> {
+      loads.incrementAndGet();
+      return Collections.singletonList(user);
+    });
+  }
+}
@@ -16,18 +16,29 @@
 package org.openlmis.cce.service.notifier;
 
 import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
 import static org.apache.commons.lang3.builder.EqualsBuilder.reflectionEquals;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.eq;
-import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.openlmis.cce.service.notifier.NotificationChannelDto.EMAIL;
+import static org.openlmis.cce.service.notifier.NotificationService.BATCH_FAILURES_METER;
+import static org.openlmis.cce.service.notifier.NotificationService.BATCH_METER;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.net.URI;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -36,11 +47,13 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
-import org.openlmis.cce.dto.UserDto;
 import org.openlmis.cce.service.AuthService;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -63,19 +76,24 @@ public class NotificationServiceTest {
   @Captor
   private ArgumentCaptor<HttpEntity> captor;
 
+  private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
   @Before
   public void setUp() {
     when(authService.obtainAccessToken()).thenReturn(ACCESS_TOKEN);
 
     ReflectionTestUtils.setField(notificationService, "restTemplate", restTemplate);
     ReflectionTestUtils.setField(notificationService, "notificationUrl", BASE_URL);
+    ReflectionTestUtils.setField(notificationService, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(notificationService, "executor", (Executor) Runnable::run);
   }
 
   @Test
-  public void shouldNotifyUser() throws Exception {
-    UserDto user = mock(UserDto.class);
+  public void shouldSendNotificationWithToken() throws Exception {
+    UUID userId = UUID.randomUUID();
 
-    notificationService.notify(user, MAIL_SUBJECT, MAIL_CONTENT);
+    notificationService.sendAll(singletonMap("key",
+        NotificationDto.email(userId, MAIL_SUBJECT, MAIL_CONTENT)));
 
     verify(restTemplate).postForObject(eq(
         new URI(NOTIFICATION_URL)),
@@ -86,14 +104,63 @@ public class NotificationServiceTest {
         captor.getValue().getHeaders()
             .get(HttpHeaders.AUTHORIZATION));
     assertTrue(
-        reflectionEquals(getNotificationRequest(user),
+        reflectionEquals(getNotificationRequest(userId),
             captor.getValue().getBody()));
   }
 
-  private NotificationDto getNotificationRequest(UserDto user) {
+  @Test
+  public void shouldSendAllNotifications() {
+    Map<String, NotificationDto> notifications = new LinkedHashMap<>();
+    notifications.put("first", newNotification());
+    notifications.put("second", newNotification());
+
+    Set<String> failed = notificationService.sendAll(notifications);
+
+    assertThat(failed).isEmpty();
+    verify(restTemplate, times(2))
+        .postForObject(any(URI.class), captor.capture(), eq(Object.class));
+    assertThat(captor.getAllValues())
+        .extracting(HttpEntity::getBody)
+        .containsExactlyElementsOf(notifications.values());
+  }
+
+  @Test
+  public void shouldReturnNotificationsThatCouldNotBeSent() {
+    when(restTemplate.postForObject(any(URI.class), any(HttpEntity.class), eq(Object.class)))
+        .thenReturn(null)
+        .thenThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST))
+        .thenThrow(new ResourceAccessException("timeout"));
+
+    Map<String, NotificationDto> notifications = new LinkedHashMap<>();
+    notifications.put("sent", newNotification());
+    notifications.put("rejected", newNotification());
+    notifications.put("unreachable", newNotification());
+
+    Set<String> failed = notificationService.sendAll(notifications);
+
+    assertThat(failed).containsOnly("rejected", "unreachable");
+  }
+
+  @Test
+  public void shouldReportBatchLatencyAndFailures() {
+    when(restTemplate.postForObject(any(URI.class), any(HttpEntity.class), eq(Object.class)))
+        .thenThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST));
+
+    notificationService.sendAll(singletonMap("key",
+        newNotification()));
+
+    assertThat(meterRegistry.timer(BATCH_METER).count()).isEqualTo(1);
+    assertThat(meterRegistry.summary(BATCH_FAILURES_METER).totalAmount()).isEqualTo(1);
+  }
+
+  private NotificationDto newNotification() {
+    return NotificationDto.email(UUID.randomUUID(), MAIL_SUBJECT, MAIL_CONTENT);
+  }
+
+  private NotificationDto getNotificationRequest(UUID userId) {
     Map<String, MessageDto> messages = new HashMap<>();
     messages.put(EMAIL.toString(), new MessageDto(MAIL_SUBJECT, MAIL_CONTENT));
 
-    return new NotificationDto(user.getId(), messages);
+    return new NotificationDto(userId, messages);
   }
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.service.notifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.Locale;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.cce.i18n.MessageService;
+import org.openlmis.cce.util.Message;
+import org.springframework.context.i18n.LocaleContextHolder;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NotificationTemplatesTest {
+
+  private static final String KEY = "some.key";
+  private static final ZonedDateTime DATE = ZonedDateTime.of(2017, 5, 8, 10, 0, 0, 0,
+      ZoneOffset.UTC);
+
+  @Mock
+  private MessageService messageService;
+
+  @InjectMocks
+  private NotificationTemplates templates;
+
+  @After
+  public void tearDown() {
+    LocaleContextHolder.resetLocaleContext();
+  }
+
+  @Test
+  public void shouldCompileMessageOncePerLocale() {
+    Message message = new Message(KEY);
+    LocaleContextHolder.setLocale(Locale.ENGLISH);
+    when(messageService.localize(message)).thenReturn(message.new LocalizedMessage("Hi ${name}"));
+    MessageTemplate english = templates.get(KEY);
+    assertThat(templates.get(KEY)).isSameAs(english);
+
+    LocaleContextHolder.setLocale(Locale.FRENCH);
+    when(messageService.localize(message))
+        .thenReturn(message.new LocalizedMessage("Salut ${name}"));
+
+    assertThat(templates.get(KEY).render(Collections.singletonMap("name", "Bob")))
+        .isEqualTo("Salut Bob");
+    assertThat(english.render(Collections.singletonMap("name", "Bob"))).isEqualTo("Hi Bob");
+    verify(messageService, times(2)).localize(message);
+  }
+
+  @Test
+  public void shouldCacheDateTimeFormatterPerLocale() {
+    LocaleContextHolder.setLocale(Locale.ENGLISH);
+    assertThat(templates.getDateTimeFormatter()).isSameAs(templates.getDateTimeFormatter());
+    String english = templates.getDateTimeFormatter().format(DATE);
+
+    LocaleContextHolder.setLocale(Locale.FRENCH);
+
+    assertThat(templates.getDateTimeFormatter().format(DATE)).isNotEqualTo(english);
+  }
+}
@@ -19,6 +19,8 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.net.URI;
@@ -112,4 +114,21 @@ public class RightReferenceDataServiceTest extends BaseReferenceDataServiceTest<
     assertThat(entity.getBody(), is(nullValue()));
   }
 
-}
\ No newline at end of file
+  @Test
+  public void shouldKeepFoundRight() {
+    // given
+    RightDto instance = generateInstance();
+
+    // when
+    mockArrayRequest(HttpMethod.GET, getArrayResultClass(service));
+    mockArrayResponse(response -> when(response.getBody()).thenReturn(new Object[]{instance}));
+
+    service.findRight(RIGHT_NAME);
+    RightDto found = service.findRight(RIGHT_NAME);
+
+    // then
+    assertThat(found, equalTo(instance));
+    verify(getArrayResponse(), times(1)).getBody();
+  }
+
+}
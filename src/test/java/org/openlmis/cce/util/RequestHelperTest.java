@@ -0,0 +1,87 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.util;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.cce.service.AuthService;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RequestHelperTest {
+  private static final String TOKEN_1 = "token-1";
+  private static final String TOKEN_2 = "token-2";
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Mock
+  private AuthService authService;
+
+  private List<String> usedTokens = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    when(authService.obtainAccessToken()).thenReturn(TOKEN_1, TOKEN_2);
+  }
+
+  @Test
+  public void shouldRetryWithNewTokenIfUnauthorized() {
+    String result = RequestHelper.executeWithToken(authService, token -> {
+      usedTokens.add(token);
+
+      if (TOKEN_1.equals(token)) {
+        throw new HttpClientErrorException(HttpStatus.UNAUTHORIZED);
+      }
+
+      return token;
+    });
+
+    assertThat(result, is(TOKEN_2));
+    assertThat(usedTokens, contains(TOKEN_1, TOKEN_2));
+    verify(authService).invalidateAccessToken(TOKEN_1);
+  }
+
+  @Test
+  public void shouldNotRetryOnOtherErrors() {
+    expectedException.expect(HttpClientErrorException.class);
+
+    try {
+      RequestHelper.executeWithToken(authService, token -> {
+        usedTokens.add(token);
+        throw new HttpClientErrorException(HttpStatus.FORBIDDEN);
+      });
+    } finally {
+      assertThat(usedTokens, contains(TOKEN_1));
+      verify(authService, never()).invalidateAccessToken(TOKEN_1);
+    }
+  }
+}
@@ -0,0 +1,265 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.openlmis.cce.i18n.AlertMessageKeys.ERROR_ALERT_TYPE_REQUIRED;
+import static org.openlmis.cce.i18n.AlertMessageKeys.ERROR_BATCH_TOO_LARGE;
+import static org.openlmis.cce.i18n.AlertMessageKeys.ERROR_DEVICE_ID_NOT_FOUND;
+import static org.openlmis.cce.i18n.PermissionMessageKeys.ERROR_NO_FOLLOWING_PERMISSION;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.cce.AlertDataBuilder;
+import org.openlmis.cce.InventoryItemDataBuilder;
+import org.openlmis.cce.domain.Alert;
+import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.dto.AlertDto;
+import org.openlmis.cce.dto.BulkResultDto;
+import org.openlmis.cce.dto.BulkResultDto.Status;
+import org.openlmis.cce.exception.PermissionMessageException;
+import org.openlmis.cce.exception.ValidationMessageException;
+import org.openlmis.cce.i18n.MessageService;
+import org.openlmis.cce.repository.AlertRepository;
+import org.openlmis.cce.repository.InventoryItemRepository;
+import org.openlmis.cce.service.PermissionService;
+import org.openlmis.cce.service.event.AlertEvent;
+import org.openlmis.cce.service.event.DomainEventPublisher;
+import org.openlmis.cce.util.Message;
+import org.openlmis.cce.web.validator.AlertValidator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+@SuppressWarnings("PMD.TooManyMethods")
+public class AlertBulkWriterTest {
+
+  @Rule
+  public final ExpectedException expectedEx = ExpectedException.none();
+
+  @Mock
+  private AlertRepository alertRepository;
+
+  @Mock
+  private InventoryItemRepository inventoryItemRepository;
+
+  @Spy
+  private AlertValidator alertValidator;
+
+  @Mock
+  private PermissionService permissionService;
+
+  @Mock
+  private DomainEventPublisher domainEventPublisher;
+
+  @Mock
+  private MessageService messageService;
+
+  @Mock
+  private EntityManager entityManager;
+
+  @InjectMocks
+  private AlertBulkWriter writer;
+
+  private InventoryItem device = new InventoryItemDataBuilder().build();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(writer, "maxSize", 10);
+
+    when(inventoryItemRepository.findAllById(anyIterable()))
+        .thenReturn(Collections.singletonList(device));
+    when(alertRepository.findByExternalIdIn(anyCollection())).thenReturn(Collections.emptyList());
+    when(alertRepository.saveAll(anyIterable()))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+    when(messageService.localize(any(Message.class))).thenAnswer(invocation ->
+        ((Message) invocation.getArgument(0)).new LocalizedMessage("error"));
+  }
+
+  @Test
+  public void shouldCreateNewAndUpdateExistingAlerts() {
+    ZonedDateTime endTimestamp = ZonedDateTime.now();
+    Alert existing = new AlertDataBuilder()
+        .withInventoryItem(device)
+        .withEndTimestamp(endTimestamp)
+        .build();
+    when(alertRepository.findByExternalIdIn(anyCollection()))
+        .thenReturn(Collections.singletonList(existing));
+
+    AlertDto update = newDto(existing.getExternalId());
+    AlertDto create = newDto("new-alert");
+
+    List<BulkResultDto<String>> results = writer.write(Arrays.asList(update, create));
+
+    assertThat(results).extracting(BulkResultDto::getStatus)
+        .containsExactly(Status.UPDATED, Status.CREATED);
+    assertThat(results).extracting(BulkResultDto::getId)
+        .containsExactly(existing.getExternalId(), "new-alert");
+
+    List<Alert> saved = captureSaved();
+    assertThat(saved).hasSize(2);
+    assertThat(saved.get(0).getId()).isEqualTo(existing.getId());
+    assertThat(saved.get(0).getEndTimestamp()).isEqualTo(endTimestamp);
+    assertThat(saved.get(1).getId()).isNull();
+    verify(entityManager).flush();
+    verify(domainEventPublisher, times(2)).publish(any(AlertEvent.class));
+  }
+
+  @Test
+  public void shouldLoadDevicesAndExistingAlertsOnce() {
+    writer.write(Arrays.asList(newDto("alert-1"), newDto("alert-2"), newDto("alert-3")));
+
+    verify(inventoryItemRepository).findAllById(anyIterable());
+    verify(alertRepository).findByExternalIdIn(anyCollection());
+    verify(inventoryItemRepository, never()).findById(any(UUID.class));
+    verify(inventoryItemRepository, never()).existsById(any(UUID.class));
+    verify(alertRepository, never()).findByExternalId(any());
+    verify(permissionService)
+        .canEditInventoryOrIsApiKey(device.getProgramId(), device.getFacilityId());
+  }
+
+  @Test
+  public void shouldFailAllAlertsIfWriteFails() {
+    doThrow(new PersistenceException("constraint violation")).when(entityManager).flush();
+    expectedEx.expect(PersistenceException.class);
+
+    try {
+      writer.write(Arrays.asList(newDto("alert-1"), newDto("alert-2")));
+    } finally {
+      verify(domainEventPublisher, never()).publish(any());
+    }
+  }
+
+  @Test
+  public void shouldApplyAlertsWithSameIdInOrder() {
+    ZonedDateTime endTimestamp = ZonedDateTime.now();
+    AlertDto start = newDto("alert");
+    AlertDto end = newDto("alert");
+    end.setEndTs(endTimestamp);
+    AlertDto dismiss = newDto("alert");
+    dismiss.setDismissed(true);
+
+    List<BulkResultDto<String>> results = writer.write(Arrays.asList(start, end, dismiss));
+
+    assertThat(results).extracting(BulkResultDto::getStatus)
+        .containsExactly(Status.CREATED, Status.UPDATED, Status.UPDATED);
+
+    List<Alert> saved = captureSaved();
+    assertThat(saved).hasSize(1);
+    assertThat(saved.get(0).getEndTimestamp()).isEqualTo(endTimestamp);
+    assertThat(saved.get(0).getDismissTimestamp()).isNotNull();
+    assertThat(saved.get(0).getActive()).isFalse();
+  }
+
+  @Test
+  public void shouldReportInvalidAlertsAndSaveOthers() {
+    AlertDto invalid = newDto("invalid");
+    invalid.setAlertType(null);
+
+    List<BulkResultDto<String>> results = writer
+        .write(Arrays.asList(invalid, newDto("valid")));
+
+    assertThat(results).extracting(BulkResultDto::getStatus)
+        .containsExactly(Status.FAILED, Status.CREATED);
+    assertThat(results.get(0).getError().toString()).startsWith(ERROR_ALERT_TYPE_REQUIRED);
+    assertThat(captureSaved()).hasSize(1);
+  }
+
+  @Test
+  public void shouldReportAlertsOfMissingDevices() {
+    AlertDto dto = newDto("alert");
+    dto.setDeviceId(UUID.randomUUID());
+
+    List<BulkResultDto<String>> results = writer.write(Collections.singletonList(dto));
+
+    assertThat(results.get(0).getStatus()).isEqualTo(Status.FAILED);
+    assertThat(results.get(0).getError().toString()).startsWith(ERROR_DEVICE_ID_NOT_FOUND);
+    verify(alertRepository, never()).saveAll(anyIterable());
+  }
+
+  @Test
+  public void shouldReportAlertsOfDevicesUserHasNoRightFor() {
+    doThrow(new PermissionMessageException(new Message(ERROR_NO_FOLLOWING_PERMISSION, "right")))
+        .when(permissionService)
+        .canEditInventoryOrIsApiKey(device.getProgramId(), device.getFacilityId());
+
+    List<BulkResultDto<String>> results = writer
+        .write(Arrays.asList(newDto("alert-1"), newDto("alert-2")));
+
+    assertThat(results).extracting(BulkResultDto::getStatus)
+        .containsExactly(Status.FAILED, Status.FAILED);
+    assertThat(results.get(0).getError().toString()).startsWith(ERROR_NO_FOLLOWING_PERMISSION);
+    verify(permissionService)
+        .canEditInventoryOrIsApiKey(device.getProgramId(), device.getFacilityId());
+    verify(alertRepository, never()).saveAll(anyIterable());
+  }
+
+  @Test
+  public void shouldRejectTooLargeBatch() {
+    expectedEx.expect(ValidationMessageException.class);
+    expectedEx.expectMessage(new Message(ERROR_BATCH_TOO_LARGE, 10).toString());
+
+    List<AlertDto> dtos = new ArrayList<>();
+    for (int i = 0; i < 11; ++i) {
+      dtos.add(newDto("alert-" + i));
+    }
+
+    writer.write(dtos);
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Alert> captureSaved() {
+    ArgumentCaptor<Iterable<Alert>> captor = ArgumentCaptor.forClass(Iterable.class);
+    verify(alertRepository).saveAll(captor.capture());
+
+    List<Alert> saved = new ArrayList<>();
+    captor.getValue().forEach(saved::add);
+    return saved;
+  }
+
+  private AlertDto newDto(String alertId) {
+    AlertDto dto = new AlertDto();
+    dto.setAlertId(alertId);
+    dto.setAlertType("warning_hot");
+    dto.setDeviceId(device.getId());
+    dto.setStartTs(ZonedDateTime.now());
+    dto.setStatus(Collections.singletonMap("en-US", "Equipment needs attention: too hot"));
+    return dto;
+  }
+}
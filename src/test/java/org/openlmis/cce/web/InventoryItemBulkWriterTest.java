@@ -0,0 +1,320 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_BATCH_TOO_LARGE;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_ID_NOT_UNIQUE;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_ITEM_ALREADY_EXISTS;
+import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_REFERENCE_NAME_REQUIRED;
+import static org.openlmis.cce.i18n.PermissionMessageKeys.ERROR_NO_FOLLOWING_PERMISSION;
+
+import java.time.Clock;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.cce.InventoryItemDataBuilder;
+import org.openlmis.cce.domain.FunctionalStatus;
+import org.openlmis.cce.domain.InventoryItem;
+import org.openlmis.cce.dto.BulkResultDto;
+import org.openlmis.cce.dto.BulkResultDto.Status;
+import org.openlmis.cce.dto.InventoryItemDto;
+import org.openlmis.cce.dto.UserDto;
+import org.openlmis.cce.exception.PermissionMessageException;
+import org.openlmis.cce.exception.ValidationMessageException;
+import org.openlmis.cce.i18n.MessageService;
+import org.openlmis.cce.repository.InventoryItemRepository;
+import org.openlmis.cce.repository.custom.InventoryItemKey;
+import org.openlmis.cce.service.PermissionService;
+import org.openlmis.cce.service.event.DomainEventPublisher;
+import org.openlmis.cce.service.event.InventoryItemEvent;
+import org.openlmis.cce.util.AuthenticationHelper;
+import org.openlmis.cce.util.Message;
+import org.openlmis.cce.web.validator.InventoryItemValidator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+@SuppressWarnings("PMD.TooManyMethods")
+public class InventoryItemBulkWriterTest {
+  private static final String SERVICE_URL = "localhost";
+  private static final ZonedDateTime NOW = ZonedDateTime.of(2017, 5, 8, 10, 0, 0, 0,
+      ZoneOffset.UTC);
+
+  @Rule
+  public final ExpectedException expectedEx = ExpectedException.none();
+
+  @Mock
+  private InventoryItemRepository inventoryItemRepository;
+
+  @Spy
+  private InventoryItemValidator validator;
+
+  @Mock
+  private PermissionService permissionService;
+
+  @Mock
+  private AuthenticationHelper authenticationHelper;
+
+  @Spy
+  private InventoryItemDtoBuilder inventoryItemDtoBuilder;
+
+  @Mock
+  private DomainEventPublisher domainEventPublisher;
+
+  @Mock
+  private MessageService messageService;
+
+  @Mock
+  private EntityManager entityManager;
+
+  @Mock
+  private UserDto user;
+
+  @InjectMocks
+  private InventoryItemBulkWriter writer;
+
+  private UUID userId = UUID.randomUUID();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(writer, "maxSize", 10);
+    ReflectionTestUtils.setField(writer, "clock", Clock.fixed(NOW.toInstant(), ZoneOffset.UTC));
+
+    when(authenticationHelper.getCurrentUser()).thenReturn(user);
+    when(user.getId()).thenReturn(userId);
+    when(inventoryItemRepository.findAllById(anyIterable())).thenReturn(Collections.emptyList());
+    when(inventoryItemRepository.findIdsByKeys(anyCollection())).thenReturn(Collections.emptyMap());
+    when(inventoryItemRepository.saveAll(anyIterable()))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+    when(messageService.localize(any(Message.class))).thenAnswer(invocation ->
+        ((Message) invocation.getArgument(0)).new LocalizedMessage("error"));
+  }
+
+  @Test
+  public void shouldCreateNewAndUpdateExistingItems() {
+    InventoryItem existing = new InventoryItemDataBuilder().build();
+    InventoryItemDto update = toDto(new InventoryItemDataBuilder()
+        .withReferenceName("new name")
+        .build());
+    InventoryItemDto create = toDto(new InventoryItemDataBuilder()
+        .withId(null)
+        .withEquipmentTrackingId("other-tracking-id")
+        .build());
+    when(inventoryItemRepository.findAllById(anyIterable()))
+        .thenReturn(Collections.singletonList(existing));
+
+    List<BulkResultDto<UUID>> results = writer.write(Arrays.asList(update, create));
+
+    assertThat(results).extracting(BulkResultDto::getStatus)
+        .containsExactly(Status.UPDATED, Status.CREATED);
+    assertThat(results.get(0).getId()).isEqualTo(existing.getId());
+    assertThat(existing.getReferenceName()).isEqualTo("new name");
+    assertThat(existing.getLastModifierId()).isEqualTo(userId);
+    assertThat(ReflectionTestUtils.getField(existing, "modifiedDate")).isEqualTo(NOW);
+
+    verify(inventoryItemRepository).saveAll(anyIterable());
+    verify(entityManager).flush();
+    verify(permissionService).canEditInventory(existing.getProgramId(), existing.getFacilityId());
+    verify(inventoryItemRepository, never())
+        .existsByEquipmentTrackingIdAndCatalogItem_ModelAndCatalogItem_Type(any(), any(), any());
+  }
+
+  @Test
+  public void shouldFailAllItemsIfWriteFails() {
+    doThrow(new PersistenceException("constraint violation")).when(entityManager).flush();
+    expectedEx.expect(PersistenceException.class);
+
+    try {
+      writer.write(Arrays.asList(newDto("tracking-id-1"), newDto("tracking-id-2")));
+    } finally {
+      verify(domainEventPublisher, never()).publish(any());
+    }
+  }
+
+  @Test
+  public void shouldRejectTooLargeBatch() {
+    expectedEx.expect(ValidationMessageException.class);
+    expectedEx.expectMessage(new Message(ERROR_BATCH_TOO_LARGE, 10).toString());
+
+    List<InventoryItemDto> dtos = new ArrayList<>();
+    for (int i = 0; i < 11; ++i) {
+      dtos.add(newDto("tracking-id-" + i));
+    }
+
+    writer.write(dtos);
+  }
+
+  @Test
+  public void shouldReportInvalidItemsAndSaveOthers() {
+    InventoryItemDto invalid = newDto("tracking-id-1");
+    invalid.setReferenceName(null);
+    InventoryItemDto valid = newDto("tracking-id-2");
+
+    List<BulkResultDto<UUID>> results = writer.write(Arrays.asList(invalid, valid));
+
+    assertThat(results).extracting(BulkResultDto::getStatus)
+        .containsExactly(Status.FAILED, Status.CREATED);
+    assertThat(results.get(0).getIndex()).isEqualTo(0);
+    assertThat(results.get(0).getError().toString()).startsWith(ERROR_REFERENCE_NAME_REQUIRED);
+    assertThat(results.get(1).getIndex()).isEqualTo(1);
+    verify(domainEventPublisher).publish(any(InventoryItemEvent.class));
+  }
+
+  @Test
+  public void shouldCheckPermissionOncePerFacilityAndProgram() {
+    writer.write(Arrays.asList(newDto("tracking-id-1"), newDto("tracking-id-2"),
+        newDto("tracking-id-3")));
+
+    verify(permissionService).canEditInventory(any(UUID.class), any(UUID.class));
+  }
+
+  @Test
+  public void shouldReportItemsUserHasNoRightFor() {
+    InventoryItemDto allowed = newDto("tracking-id-1");
+    InventoryItemDto forbidden = toDto(new InventoryItemDataBuilder()
+        .withId(null)
+        .withEquipmentTrackingId("tracking-id-2")
+        .withRandomProgramAndFacility()
+        .build());
+    doThrow(new PermissionMessageException(new Message(ERROR_NO_FOLLOWING_PERMISSION, "right")))
+        .when(permissionService)
+        .canEditInventory(forbidden.getProgramId(), forbidden.getFacilityId());
+
+    List<BulkResultDto<UUID>> results = writer.write(Arrays.asList(allowed, forbidden));
+
+    assertThat(results).extracting(BulkResultDto::getStatus)
+        .containsExactly(Status.CREATED, Status.FAILED);
+    assertThat(results.get(1).getError().toString()).startsWith(ERROR_NO_FOLLOWING_PERMISSION);
+  }
+
+  @Test
+  public void shouldReportItemsThatAlreadyExist() {
+    InventoryItemDto dto = newDto("tracking-id");
+    InventoryItemKey key = InventoryItemKey.of(dto.getEquipmentTrackingId(),
+        dto.getCatalogItem().getModel(), dto.getCatalogItem().getType());
+    when(inventoryItemRepository.findIdsByKeys(anyCollection()))
+        .thenReturn(Collections.singletonMap(key, UUID.randomUUID()));
+
+    List<BulkResultDto<UUID>> results = writer.write(Collections.singletonList(dto));
+
+    assertThat(results.get(0).getStatus()).isEqualTo(Status.FAILED);
+    assertThat(results.get(0).getError().toString()).startsWith(ERROR_ITEM_ALREADY_EXISTS);
+    verify(inventoryItemRepository, never()).saveAll(anyIterable());
+  }
+
+  @Test
+  public void shouldCheckUniqueConstraintsOfAllItemsAtOnce() {
+    writer.write(Arrays.asList(newDto("tracking-id-1"), newDto("tracking-id-2")));
+
+    ArgumentCaptor<Collection<InventoryItemKey>> captor =
+        ArgumentCaptor.forClass(Collection.class);
+    verify(inventoryItemRepository).findIdsByKeys(captor.capture());
+    assertThat(captor.getValue()).hasSize(2);
+  }
+
+  @Test
+  public void shouldReportItemsWithSameValuesWithinBatch() {
+    List<BulkResultDto<UUID>> results = writer
+        .write(Arrays.asList(newDto("tracking-id"), newDto("tracking-id")));
+
+    assertThat(results).extracting(BulkResultDto::getStatus)
+        .containsExactly(Status.CREATED, Status.FAILED);
+    assertThat(results.get(1).getError().toString()).startsWith(ERROR_ITEM_ALREADY_EXISTS);
+  }
+
+  @Test
+  public void shouldReportItemsWithSameIdWithinBatch() {
+    UUID id = UUID.randomUUID();
+    InventoryItemDto first = newDto("tracking-id-1");
+    first.setId(id);
+    InventoryItemDto second = newDto("tracking-id-2");
+    second.setId(id);
+
+    List<BulkResultDto<UUID>> results = writer.write(Arrays.asList(first, second));
+
+    assertThat(results).extracting(BulkResultDto::getStatus)
+        .containsExactly(Status.CREATED, Status.FAILED);
+    assertThat(results.get(1).getError().toString()).startsWith(ERROR_ID_NOT_UNIQUE);
+  }
+
+  @Test
+  public void shouldPublishStatusChangedEventIfStatusChanged() {
+    InventoryItem existing = new InventoryItemDataBuilder().build();
+    InventoryItemDto update = toDto(new InventoryItemDataBuilder()
+        .withUnserviceableStatus()
+        .build());
+    when(inventoryItemRepository.findAllById(anyIterable()))
+        .thenReturn(Collections.singletonList(existing));
+
+    writer.write(Collections.singletonList(update));
+
+    ArgumentCaptor<InventoryItemEvent> captor = ArgumentCaptor.forClass(InventoryItemEvent.class);
+    verify(domainEventPublisher, times(2)).publish(captor.capture());
+    assertThat(captor.getAllValues()).extracting(InventoryItemEvent::getType)
+        .containsExactly(InventoryItemEvent.Type.UPDATED, InventoryItemEvent.Type.STATUS_CHANGED);
+  }
+
+  @Test
+  public void shouldNotWriteIfAllItemsAreInvalid() {
+    InventoryItemDto invalid = newDto("tracking-id");
+    invalid.setFunctionalStatus(FunctionalStatus.AWAITING_REPAIR);
+    invalid.setReasonNotWorkingOrNotInUse(null);
+
+    writer.write(Collections.singletonList(invalid));
+
+    verify(inventoryItemRepository, never()).saveAll(anyIterable());
+    verify(entityManager, never()).flush();
+  }
+
+  private InventoryItemDto newDto(String equipmentTrackingId) {
+    return toDto(new InventoryItemDataBuilder()
+        .withId(null)
+        .withEquipmentTrackingId(equipmentTrackingId)
+        .build());
+  }
+
+  private InventoryItemDto toDto(InventoryItem item) {
+    InventoryItemDto dto = new InventoryItemDto();
+    dto.setServiceUrl(SERVICE_URL);
+    item.export(dto);
+    return dto;
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.format;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.openlmis.cce.web.csv.format.CsvStreamer.CHUNKS_METER;
+import static org.openlmis.cce.web.csv.format.CsvStreamer.DURATION_METER;
+import static org.openlmis.cce.web.csv.format.CsvStreamer.EXPORT_TAG;
+import static org.openlmis.cce.web.csv.format.CsvStreamer.ROWS_METER;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CsvStreamerTest {
+  private static final String EXPORT = "items";
+
+  @Mock
+  private Flushable output;
+
+  @InjectMocks
+  private CsvStreamer csvStreamer;
+
+  private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private List<Integer> written = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(csvStreamer, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(csvStreamer, "flushEveryRows", 2);
+  }
+
+  @Test
+  public void shouldWriteAllRowsInOrder() throws IOException {
+    long count = csvStreamer.stream(EXPORT, Stream.of(1, 2, 3), output, written::add);
+
+    assertThat(count).isEqualTo(3);
+    assertThat(written).containsExactly(1, 2, 3);
+  }
+
+  @Test
+  public void shouldFlushEveryGivenNumberOfRowsAndAfterLastOne() throws IOException {
+    csvStreamer.stream(EXPORT, Stream.of(1, 2, 3, 4, 5), output, written::add);
+
+    verify(output, times(3)).flush();
+    assertThat(meterRegistry.counter(CHUNKS_METER, EXPORT_TAG, EXPORT).count()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldNotFlushTwiceIfLastChunkIsFull() throws IOException {
+    csvStreamer.stream(EXPORT, Stream.of(1, 2, 3, 4), output, written::add);
+
+    verify(output, times(2)).flush();
+  }
+
+  @Test
+  public void shouldFlushOnceIfThereAreNoRows() throws IOException {
+    long count = csvStreamer.stream(EXPORT, Stream.<Integer>empty(), output, written::add);
+
+    assertThat(count).isZero();
+    verify(output).flush();
+  }
+
+  @Test
+  public void shouldFlushAfterWritingRows() throws IOException {
+    Flushable flushable = () -> written.add(0);
+
+    csvStreamer.stream(EXPORT, Stream.of(1, 2, 3), flushable, written::add);
+
+    assertThat(written).containsExactly(1, 2, 0, 3, 0);
+  }
+
+  @Test
+  public void shouldCountRowsAndRecordDuration() throws IOException {
+    csvStreamer.stream(EXPORT, Stream.of(1, 2, 3), output, written::add);
+    csvStreamer.stream(EXPORT, Stream.of(4), output, written::add);
+
+    assertThat(meterRegistry.counter(ROWS_METER, EXPORT_TAG, EXPORT).count()).isEqualTo(4);
+    assertThat(meterRegistry.timer(DURATION_METER, EXPORT_TAG, EXPORT).count()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldRecordMetricsIfWritingFails() throws IOException {
+    doThrow(new IOException("closed")).when(output).flush();
+
+    IOException thrown = null;
+
+    try {
+      csvStreamer.stream(EXPORT, Stream.of(1, 2, 3), output, written::add);
+    } catch (IOException ex) {
+      thrown = ex;
+    }
+
+    assertThat(thrown).hasMessage("closed");
+    assertThat(meterRegistry.counter(ROWS_METER, EXPORT_TAG, EXPORT).count()).isEqualTo(2);
+    assertThat(meterRegistry.timer(DURATION_METER, EXPORT_TAG, EXPORT).count()).isEqualTo(1);
+  }
+}
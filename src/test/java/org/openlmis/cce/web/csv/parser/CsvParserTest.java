@@ -0,0 +1,328 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.parser;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.openlmis.cce.i18n.CsvUploadMessageKeys.ERROR_UPLOAD_RECORD_INVALID;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Test;
+import org.openlmis.cce.domain.CatalogItem;
+import org.openlmis.cce.dto.CatalogItemDto;
+import org.openlmis.cce.exception.ValidationMessageException;
+import org.openlmis.cce.web.csv.model.ModelClass;
+import org.openlmis.cce.web.csv.recordhandler.BulkRecordWriter;
+import org.openlmis.cce.web.csv.recordhandler.RecordWriter;
+import org.openlmis.cce.web.validator.CsvHeaderValidator;
+
+@SuppressWarnings("PMD.TooManyMethods")
+public class CsvParserTest {
+
+  private static final String HEADER = "Type, Model, Manufacturer, Energy source, "
+      + "Storage temperature, From PQS catalog, PQS equipment code, Date of prequal, "
+      + "Max operating temp (degrees C), Min operating temp (degrees C), "
+      + "Energy consumption (NA for solar), Holdover time (hours), Dimensions, "
+      + "Visible in catalog, Archived\n";
+  private static final long TIMEOUT_SECONDS = 5;
+  private static final String FIRST_MODEL = "model-0";
+
+  private CsvParser parser;
+
+  private final List<List<String>> written = Collections.synchronizedList(new ArrayList<>());
+  private final List<String> codes = Collections.synchronizedList(new ArrayList<>());
+
+  @After
+  public void tearDown() throws InterruptedException {
+    parser.shutdown();
+  }
+
+  @Test
+  public void shouldWriteAllRecordsInChunks() throws IOException {
+    createParser(2, 4);
+
+    int count = parse(csv(5), this::record);
+
+    assertThat(count).isEqualTo(5);
+    assertThat(written).containsExactlyInAnyOrder(
+        models(0, 1), models(2, 3), models(4));
+  }
+
+  @Test
+  public void shouldWriteChunksConcurrently() throws IOException {
+    createParser(1, 2);
+    CountDownLatch bothStarted = new CountDownLatch(2);
+
+    parse(csv(2), entities -> {
+      bothStarted.countDown();
+      await(bothStarted);
+      record(entities);
+    });
+
+    assertThat(written).hasSize(2);
+  }
+
+  @Test
+  public void shouldWaitForFreeThreadInsteadOfWritingInCaller() throws IOException {
+    createParser(1, 1);
+    Thread caller = Thread.currentThread();
+    List<Thread> writers = Collections.synchronizedList(new ArrayList<>());
+
+    parse(csv(4), entities -> {
+      writers.add(Thread.currentThread());
+      sleep();
+      record(entities);
+    });
+
+    assertThat(written).hasSize(4);
+    assertThat(writers).doesNotContain(caller);
+  }
+
+  @Test
+  public void shouldWriteChunksWithSameRecordInFileOrder() throws IOException {
+    createParser(1, 2);
+    // the first row is written again by the third chunk
+    String csv = csv(2) + row("model-0", "code-2");
+
+    parse(csv, new RecordWriter<CatalogItem>() {
+      @Override
+      public void write(List<CatalogItem> entities) {
+        if ("code-0".equals(entities.get(0).getEquipmentCode())) {
+          sleep();
+        }
+
+        codes.add(entities.get(0).getEquipmentCode());
+      }
+
+      @Override
+      public Collection<?> getKeys(CatalogItem entity) {
+        return Collections.singletonList(entity.getModel());
+      }
+    });
+
+    assertThat(codes).hasSize(3);
+    assertThat(codes.indexOf("code-0")).isLessThan(codes.indexOf("code-2"));
+  }
+
+  @Test
+  public void shouldNotWriteChunkWithSameRecordAfterEarlierChunkFailed() throws IOException {
+    createParser(1, 2);
+    RuntimeException error = new IllegalStateException(FIRST_MODEL);
+    String csv = csv(2) + row("model-0", "code-2");
+
+    try {
+      parse(csv, new RecordWriter<CatalogItem>() {
+        @Override
+        public void write(List<CatalogItem> entities) {
+          if ("code-0".equals(entities.get(0).getEquipmentCode())) {
+            sleep();
+            throw error;
+          }
+
+          codes.add(entities.get(0).getEquipmentCode());
+        }
+
+        @Override
+        public Collection<?> getKeys(CatalogItem entity) {
+          return Collections.singletonList(entity.getModel());
+        }
+      });
+      fail("Expected the error of the first chunk");
+    } catch (IllegalStateException ex) {
+      assertThat(ex).isSameAs(error);
+    }
+
+    assertThat(codes).doesNotContain("code-2");
+  }
+
+  @Test
+  public void shouldReportErrorOfFirstFailingChunkInFile() throws IOException {
+    createParser(1, 2);
+    CountDownLatch laterChunkFailed = new CountDownLatch(1);
+    RuntimeException firstError = new IllegalStateException(FIRST_MODEL);
+    RuntimeException laterError = new IllegalStateException("model-2");
+
+    try {
+      parse(csv(3), entities -> {
+        String model = entities.get(0).getModel();
+
+        if (FIRST_MODEL.equals(model)) {
+          await(laterChunkFailed);
+          throw firstError;
+        }
+
+        if ("model-2".equals(model)) {
+          laterChunkFailed.countDown();
+          throw laterError;
+        }
+      });
+      fail("Expected the error of the first chunk");
+    } catch (IllegalStateException ex) {
+      assertThat(ex).isSameAs(firstError);
+    }
+  }
+
+  @Test
+  public void shouldPreferErrorOfEarlierChunkToInvalidRecordReadLater() throws IOException {
+    createParser(1, 2);
+    RuntimeException error = new IllegalStateException(FIRST_MODEL);
+    String csv = csv(2) + invalidRow();
+
+    try {
+      parse(csv, entities -> {
+        if (FIRST_MODEL.equals(entities.get(0).getModel())) {
+          throw error;
+        }
+      });
+      fail("Expected the error of the first chunk");
+    } catch (IllegalStateException ex) {
+      assertThat(ex).isSameAs(error);
+    }
+  }
+
+  @Test
+  public void shouldReportRowOfInvalidRecord() throws IOException {
+    createParser(1, 2);
+
+    try {
+      parse(csv(2) + invalidRow(), this::record);
+      fail("Expected invalid record");
+    } catch (ValidationMessageException ex) {
+      assertThat(ex.asMessage().toString()).startsWith(ERROR_UPLOAD_RECORD_INVALID + ": 3, ");
+    }
+
+    assertThat(written).containsExactlyInAnyOrder(models(0), models(1));
+  }
+
+  @Test(expected = RejectedExecutionException.class)
+  public void shouldRejectUploadsAfterShutdown() throws IOException, InterruptedException {
+    createParser(1, 1);
+    parser.shutdown();
+
+    parse(csv(3), this::record);
+  }
+
+  @Test
+  public void shouldWriteAllRecordsAtOnceInBulk() throws IOException {
+    createParser(2, 4);
+
+    int count = parseInBulk(csv(5), entities -> {
+      List<CatalogItem> all = new ArrayList<>();
+      entities.forEachRemaining(all::add);
+      record(all);
+    });
+
+    assertThat(count).isEqualTo(5);
+    assertThat(written).containsExactly(models(0, 1, 2, 3, 4));
+  }
+
+  @Test
+  public void shouldReportRowOfInvalidRecordInBulk() throws IOException {
+    createParser(1, 2);
+    List<CatalogItem> consumed = new ArrayList<>();
+
+    try {
+      parseInBulk(csv(2) + invalidRow(), entities ->
+          entities.forEachRemaining(consumed::add));
+      fail("Expected invalid record");
+    } catch (ValidationMessageException ex) {
+      assertThat(ex.asMessage().toString()).startsWith(ERROR_UPLOAD_RECORD_INVALID + ": 3, ");
+    }
+
+    assertThat(consumed).hasSize(2);
+  }
+
+  private void createParser(int chunkSize, int poolSize) {
+    parser = new CsvParser(chunkSize, poolSize, 1);
+    parser.init();
+  }
+
+  private int parse(String csv, RecordWriter<CatalogItem> writer) throws IOException {
+    InputStream input = new ByteArrayInputStream(csv.getBytes(UTF_8));
+    return parser.parse(input, new ModelClass<>(CatalogItemDto.class), new CsvHeaderValidator(),
+        CatalogItem.class, writer);
+  }
+
+  private int parseInBulk(String csv, BulkRecordWriter<CatalogItem> writer) throws IOException {
+    InputStream input = new ByteArrayInputStream(csv.getBytes(UTF_8));
+    return parser.parseInBulk(input, new ModelClass<>(CatalogItemDto.class),
+        new CsvHeaderValidator(), CatalogItem.class, writer);
+  }
+
+  private void record(List<CatalogItem> entities) {
+    written.add(entities.stream().map(CatalogItem::getModel).collect(Collectors.toList()));
+  }
+
+  private void await(CountDownLatch latch) {
+    try {
+      assertThat(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private void sleep() {
+    try {
+      TimeUnit.MILLISECONDS.sleep(50);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private String csv(int rows) {
+    StringBuilder builder = new StringBuilder(HEADER);
+
+    for (int i = 0; i < rows; ++i) {
+      builder.append(row("model-" + i, "code-" + i));
+    }
+
+    return builder.toString();
+  }
+
+  private String row(String model, String equipmentCode) {
+    return "type, " + model + ", manufacturer, ELECTRIC, PLUS4, Y, " + equipmentCode
+        + ", 2010, 10, -10, NA, 3, \"2, 1, 5\", Y, N\n";
+  }
+
+  private String invalidRow() {
+    return "type, invalid, manufacturer, ELECTRICITY, PLUS4, Y, invalid, 2010, 10, -10, NA, 3, "
+        + "\"2, 1, 5\", Y, N\n";
+  }
+
+  private List<String> models(int... indexes) {
+    List<String> models = new ArrayList<>();
+
+    for (int index : indexes) {
+      models.add("model-" + index);
+    }
+
+    return models;
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.parser;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.openlmis.cce.domain.CatalogItem;
+import org.openlmis.cce.domain.Dimensions;
+import org.openlmis.cce.domain.EnergySource;
+import org.openlmis.cce.domain.StorageTemperature;
+import org.openlmis.cce.dto.CatalogItemDto;
+import org.openlmis.cce.web.csv.model.ModelClass;
+import org.openlmis.cce.web.validator.CsvHeaderValidator;
+import org.supercsv.exception.SuperCsvCellProcessorException;
+import org.supercsv.exception.SuperCsvConstraintViolationException;
+import org.supercsv.exception.SuperCsvException;
+
+public class CsvRecordReaderTest {
+
+  private static final String MANDATORY_HEADER = "From PQS catalog, Type, Model, Manufacturer, "
+      + "Energy source, Storage temperature, Archived";
+
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  @Test
+  public void shouldReadRowsIntoRecords() throws IOException {
+    CsvRecordReader<CatalogItem> reader = reader(MANDATORY_HEADER + ", PQS equipment code, "
+        + "Date of prequal, Holdover time (hours), Dimensions, Visible in catalog\n"
+        + "Y, fridge, model-1, acme, ELECTRIC, PLUS4, N, E003/1, 2010.5, 3, \"2, 1, 5\", Y\n"
+        + "N, freezer, model-2, acme, SOLAR, MINUS20, Y, , , , ,\n");
+
+    CatalogItem first = reader.read();
+    assertThat(first.getFromPqsCatalog()).isTrue();
+    assertThat(first.getType()).isEqualTo("fridge");
+    assertThat(first.getModel()).isEqualTo("model-1");
+    assertThat(first.getManufacturer()).isEqualTo("acme");
+    assertThat(first.getEnergySource()).isEqualTo(EnergySource.ELECTRIC);
+    assertThat(first.getStorageTemperature()).isEqualTo(StorageTemperature.PLUS4);
+    assertThat(first.getArchived()).isFalse();
+    assertThat(first.getEquipmentCode()).isEqualTo("E003/1");
+    assertThat(first.getDateOfPrequal()).isEqualTo(2010);
+    assertThat(first.getHoldoverTime()).isEqualTo(3);
+    assertThat(first.getDimensions()).isEqualTo(new Dimensions(2, 1, 5));
+    assertThat(first.getVisibleInCatalog()).isTrue();
+
+    CatalogItem second = reader.read();
+    assertThat(second.getModel()).isEqualTo("model-2");
+    assertThat(second.getEnergySource()).isEqualTo(EnergySource.SOLAR);
+    assertThat(second.getEquipmentCode()).isNull();
+    assertThat(second.getDimensions()).isNull();
+    assertThat(second.getVisibleInCatalog()).isNull();
+
+    assertThat(reader.read()).isNull();
+    assertThat(reader.getRowNumber()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldReadHeaders() throws IOException {
+    assertThat(reader(MANDATORY_HEADER + "\n").getHeaders()).containsExactly("From PQS catalog",
+        "Type", "Model", "Manufacturer", "Energy source", "Storage temperature", "Archived");
+  }
+
+  @Test
+  public void shouldReadNoHeadersFromEmptyInput() throws IOException {
+    assertThat(reader("").getHeaders()).isEmpty();
+  }
+
+  @Test
+  public void shouldIgnoreUnknownColumns() throws IOException {
+    CatalogItem item = reader(MANDATORY_HEADER + ", Comment\n"
+        + "Y, fridge, model-1, acme, ELECTRIC, PLUS4, N, some comment\n").read();
+
+    assertThat(item.getModel()).isEqualTo("model-1");
+  }
+
+  @Test
+  public void shouldThrowExceptionIfCellCanNotBeParsed() throws IOException {
+    CsvRecordReader<CatalogItem> reader = reader(MANDATORY_HEADER + "\n"
+        + "Y, fridge, model-1, acme, ELECTRIC, PLUS4, N\n"
+        + "Y, fridge, model-2, acme, ELECTRICITY, PLUS4, N\n");
+    reader.read();
+
+    exception.expect(SuperCsvCellProcessorException.class);
+    exception.expectMessage("'ELECTRICITY' could not be parsed as an EnergySource");
+
+    try {
+      reader.read();
+    } catch (SuperCsvException ex) {
+      assertThat(ex.getCsvContext().getRowNumber()).isEqualTo(3);
+      assertThat(ex.getCsvContext().getColumnNumber()).isEqualTo(5);
+      throw ex;
+    }
+  }
+
+  @Test
+  public void shouldThrowExceptionIfMandatoryCellIsEmpty() throws IOException {
+    exception.expect(SuperCsvConstraintViolationException.class);
+
+    reader(MANDATORY_HEADER + "\nY, fridge, , acme, ELECTRIC, PLUS4, N\n").read();
+  }
+
+  @Test
+  public void shouldThrowExceptionIfRowHasDifferentNumberOfColumns() throws IOException {
+    exception.expect(SuperCsvException.class);
+    exception.expectMessage("nameMapping length = 7, columns = 6");
+
+    reader(MANDATORY_HEADER + "\nY, fridge, model-1, acme, ELECTRIC, PLUS4\n").read();
+  }
+
+  private CsvRecordReader<CatalogItem> reader(String csv) throws IOException {
+    return new CsvRecordReader<>(new ModelClass<>(CatalogItemDto.class),
+        new ByteArrayInputStream(csv.getBytes(UTF_8)), new CsvHeaderValidator(), CatalogItem.class);
+  }
+}
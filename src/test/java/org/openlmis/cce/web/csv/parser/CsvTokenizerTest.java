@@ -0,0 +1,101 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.cce.web.csv.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.supercsv.exception.SuperCsvException;
+
+public class CsvTokenizerTest {
+
+  @Test
+  public void shouldSplitRowsIntoColumns() throws IOException {
+    CsvTokenizer tokenizer = tokenizer("a,b,c\nd,e,f\n");
+
+    assertThat(readRow(tokenizer)).containsExactly("a", "b", "c");
+    assertThat(readRow(tokenizer)).containsExactly("d", "e", "f");
+    assertThat(tokenizer.readRow()).isNull();
+    assertThat(tokenizer.getRowNumber()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldIgnoreSpacesAroundUnquotedColumns() throws IOException {
+    assertThat(readRow(tokenizer("  a , b  c ,c"))).containsExactly("a", "b  c", "c");
+  }
+
+  @Test
+  public void shouldReadEmptyUnquotedColumnsAsNull() throws IOException {
+    assertThat(readRow(tokenizer(",  ,\"\",a,"))).containsExactly(null, null, "", "a", null);
+  }
+
+  @Test
+  public void shouldReadQuotedColumns() throws IOException {
+    assertThat(readRow(tokenizer("\"2, 1, 5\", \" a \" ,\"say \"\"hi\"\"\"")))
+        .containsExactly("2, 1, 5", " a ", "say \"hi\"");
+  }
+
+  @Test
+  public void shouldReadLineBreaksInQuotedColumns() throws IOException {
+    CsvTokenizer tokenizer = tokenizer("\"a\r\nb\",c\r\nd,e");
+
+    assertThat(readRow(tokenizer)).containsExactly("a\nb", "c");
+    assertThat(tokenizer.getLineNumber()).isEqualTo(2);
+    assertThat(readRow(tokenizer)).containsExactly("d", "e");
+    assertThat(tokenizer.getLineNumber()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldSkipEmptyLines() throws IOException {
+    CsvTokenizer tokenizer = tokenizer("\n\r\na\r\n\nb\r");
+
+    assertThat(readRow(tokenizer)).containsExactly("a");
+    assertThat(tokenizer.getLineNumber()).isEqualTo(3);
+    assertThat(readRow(tokenizer)).containsExactly("b");
+    assertThat(tokenizer.getLineNumber()).isEqualTo(5);
+    assertThat(tokenizer.readRow()).isNull();
+  }
+
+  @Test
+  public void shouldReadRowsLongerThanBuffer() throws IOException {
+    StringBuilder value = new StringBuilder();
+
+    while (value.length() < 20000) {
+      value.append("0123456789");
+    }
+
+    assertThat(readRow(tokenizer(value + ",\"" + value + "\"")))
+        .containsExactly(value.toString(), value.toString());
+  }
+
+  @Test(expected = SuperCsvException.class)
+  public void shouldThrowExceptionIfQuotedColumnIsNotClosed() throws IOException {
+    tokenizer("a,\"b\nc").readRow();
+  }
+
+  private CsvTokenizer tokenizer(String csv) {
+    return new CsvTokenizer(new StringReader(csv));
+  }
+
+  private List<String> readRow(CsvTokenizer tokenizer) throws IOException {
+    // the tokenizer reuses the list between rows
+    return new ArrayList<>(tokenizer.readRow());
+  }
+}
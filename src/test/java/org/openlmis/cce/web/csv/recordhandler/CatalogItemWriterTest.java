@@ -18,20 +18,25 @@ package org.openlmis.cce.web.csv.recordhandler;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.util.Lists.emptyList;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.anyListOf;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import javax.persistence.EntityManager;
 import org.assertj.core.util.Lists;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -65,6 +70,9 @@ public class CatalogItemWriterTest {
   @Mock
   private CatalogItemRepository catalogItemRepository;
 
+  @Mock
+  private EntityManager entityManager;
+
   @InjectMocks
   private CatalogItemWriter catalogItemWriter;
 
@@ -158,6 +166,40 @@ public class CatalogItemWriterTest {
     verify(catalogItemRepository).saveAll(toSaveList);
   }
 
+  @Test
+  public void shouldFlushItemsInChunkTransaction() {
+    when(catalogItemRepository.findExisting(anyListOf(CatalogItem.class)))
+        .thenReturn(emptyList());
+
+    catalogItemWriter.write(singletonList(create(EQUIPMENT_CODE_1, MANUFACTURER_1, MODEL_1)));
+
+    InOrder inOrder = inOrder(catalogItemRepository, entityManager);
+    inOrder.verify(catalogItemRepository).saveAll(anyListOf(CatalogItem.class));
+    inOrder.verify(entityManager).flush();
+  }
+
+  @Test
+  public void shouldShareKeyWithItemOfSameEquipmentCode() {
+    CatalogItem item = create(EQUIPMENT_CODE_1, MANUFACTURER_1, MODEL_1);
+    CatalogItem other = create(EQUIPMENT_CODE_1, MANUFACTURER_2, MODEL_2);
+
+    assertThat(getKeys(item), hasItem(EQUIPMENT_CODE_1));
+    assertThat(getKeys(other), hasItem(EQUIPMENT_CODE_1));
+  }
+
+  @Test
+  public void shouldShareKeyWithItemOfSameManufacturerAndModel() {
+    CatalogItem item = create(EQUIPMENT_CODE_1, MANUFACTURER_1, MODEL_1);
+    CatalogItem other = create(null, MANUFACTURER_1, MODEL_1);
+
+    assertThat(getKeys(other), hasSize(1));
+    assertThat(getKeys(item), hasItem(getKeys(other).get(0)));
+  }
+
+  private List<Object> getKeys(CatalogItem item) {
+    return new ArrayList<>(catalogItemWriter.getKeys(item));
+  }
+
   private CatalogItem create(String equipmentCode, String manufacturer, String model) {
     CatalogItem item = new CatalogItem();
     item.setId(UUID.randomUUID());
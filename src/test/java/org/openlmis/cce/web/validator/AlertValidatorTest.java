@@ -15,6 +15,7 @@
 
 package org.openlmis.cce.web.validator;
 
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.openlmis.cce.i18n.AlertMessageKeys.ERROR_ALERT_ID_DOES_NOT_MATCH_REGEX;
 import static org.openlmis.cce.i18n.AlertMessageKeys.ERROR_ALERT_ID_REQUIRED;
@@ -157,4 +158,11 @@ public class AlertValidatorTest {
 
     alertValidator.validate(alertDto);
   }
+
+  @Test
+  public void validateFieldsShouldNotCheckIfDeviceExists() {
+    alertValidator.validateFields(alertDto);
+
+    verifyZeroInteractions(inventoryItemRepository);
+  }
 }
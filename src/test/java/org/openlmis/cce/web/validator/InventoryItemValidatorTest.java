@@ -16,6 +16,9 @@
 package org.openlmis.cce.web.validator;
 
 import static java.util.UUID.randomUUID;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_BACKUP_GENERATOR_REQUIRED;
 import static org.openlmis.cce.i18n.InventoryItemMessageKeys.ERROR_CATALOG_ITEM_REQUIRED;
@@ -260,4 +263,41 @@ public class InventoryItemValidatorTest {
   public void shouldNotThrowExceptionIfUpdatingInventoryItem() {
     inventoryItemValidator.validate(inventoryItemDto, inventoryItem);
   }
+
+  @Test
+  public void shouldValidateFieldsWithoutCheckingUniqueConstraints() {
+    inventoryItemValidator.validateFields(inventoryItemDto);
+
+    verifyZeroInteractions(inventoryItemRepository);
+  }
+
+  @Test
+  public void shouldThrowExceptionIfFieldsAreInvalid() {
+    expectedEx.expect(ValidationMessageException.class);
+    expectedEx.expectMessage(
+        new Message(ERROR_REASON_REQUIRED, "").toString());
+
+    inventoryItemDto.setFunctionalStatus(FunctionalStatus.AWAITING_REPAIR);
+    inventoryItemDto.setReasonNotWorkingOrNotInUse(null);
+
+    inventoryItemValidator.validateFields(inventoryItemDto);
+  }
+
+  @Test
+  public void shouldNeedUniqueConstraintsCheckForNewItem() {
+    assertTrue(inventoryItemValidator.needsUniqueConstraintsCheck(inventoryItemDto, null));
+  }
+
+  @Test
+  public void shouldNeedUniqueConstraintsCheckIfTrackingIdChanged() {
+    inventoryItemDto.setEquipmentTrackingId("new-tracking-id");
+
+    assertTrue(inventoryItemValidator.needsUniqueConstraintsCheck(inventoryItemDto, inventoryItem));
+  }
+
+  @Test
+  public void shouldNotNeedUniqueConstraintsCheckIfValuesDidNotChange() {
+    assertFalse(
+        inventoryItemValidator.needsUniqueConstraintsCheck(inventoryItemDto, inventoryItem));
+  }
 }